@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.remoting;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
+import com.avanza.astrix.beans.service.ServiceComponent;
+import com.avanza.astrix.beans.service.ServiceDefinition;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.beans.service.SimpleBoundServiceBeanInstance;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
+import com.avanza.astrix.remoting.client.RemotingProxyFactory;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+import com.avanza.astrix.versioning.core.ObjectSerializerFactory;
+
+/**
+ * ServiceComponent that binds to providers registered using {@link #register(Class, Object)} through
+ * the ordinary remoting client and server side ({@link AstrixServiceActivator}), using a {@link LoopbackRemotingTransport}. <p>
+ * 
+ * Service uri: "loopback-remoting:"
+ */
+public class LoopbackRemotingComponent implements ServiceComponent {
+	
+	public static final String NAME = "loopback-remoting";
+	public static final IntSetting PARTITION_COUNT = IntSetting.create("astrix.benchmarks.loopback.partitionCount", 4);
+	
+	private static final Map<Class<?>, Object> providerByApi = new ConcurrentHashMap<>();
+	
+	private final RemotingProxyFactory remotingProxyFactory;
+	private final AstrixServiceActivator serviceActivator;
+	private final ObjectSerializerFactory objectSerializerFactory;
+	private final AstrixConfig config;
+	
+	public LoopbackRemotingComponent(RemotingProxyFactory remotingProxyFactory, 
+									 AstrixServiceActivator serviceActivator,
+									 ObjectSerializerFactory objectSerializerFactory, 
+									 AstrixConfig config) {
+		this.remotingProxyFactory = remotingProxyFactory;
+		this.serviceActivator = serviceActivator;
+		this.objectSerializerFactory = objectSerializerFactory;
+		this.config = config;
+	}
+	
+	public static <T> void register(Class<T> api, T provider) {
+		providerByApi.put(api, provider);
+	}
+
+	@Override
+	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
+		Object provider = providerByApi.get(serviceDefinition.getServiceType());
+		if (provider == null) {
+			throw new IllegalStateException("No provider registered in LoopbackRemotingComponent for: " + serviceDefinition.getServiceType().getName());
+		}
+		exportService(serviceDefinition.getServiceType(), serviceDefinition.getServiceType().cast(provider), serviceDefinition);
+		serviceProperties.setApi(serviceDefinition.getServiceType());
+		serviceActivator.publishMethodTable(serviceDefinition.getServiceType(), serviceProperties);
+		LoopbackRemotingTransport transport = new LoopbackRemotingTransport(serviceActivator, config.get(PARTITION_COUNT).get());
+		T serviceProxy = remotingProxyFactory.create(serviceDefinition, serviceProperties, transport, new DefaultAstrixRoutingStrategy());
+		return new SimpleBoundServiceBeanInstance<T>(serviceProxy);
+	}
+
+	@Override
+	public ServiceProperties parseServiceProviderUri(String serviceProviderUri) {
+		ServiceProperties serviceProperties = new ServiceProperties();
+		serviceProperties.setComponent(NAME);
+		return serviceProperties;
+	}
+
+	@Override
+	public <T> ServiceProperties createServiceProperties(ServiceDefinition<T> exportedServiceDefinition) {
+		ServiceProperties serviceProperties = new ServiceProperties();
+		serviceProperties.setComponent(NAME);
+		serviceProperties.setApi(exportedServiceDefinition.getServiceType());
+		serviceActivator.publishMethodTable(exportedServiceDefinition.getServiceType(), serviceProperties);
+		return serviceProperties;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean canBindType(Class<?> type) {
+		return true;
+	}
+
+	@Override
+	public <T> void exportService(Class<T> providedApi, T provider, ServiceDefinition<T> serviceDefinition) {
+		AstrixObjectSerializer objectSerializer = objectSerializerFactory.create(serviceDefinition.getObjectSerializerDefinition());
+		this.serviceActivator.register(provider, objectSerializer, providedApi);
+	}
+
+	@Override
+	public boolean requiresProviderInstance() {
+		return true;
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.remoting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RemotingTransportSpi;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+import rx.Observable;
+
+/**
+ * In-process RemotingTransportSpi that hands each request directly to an {@link AstrixServiceActivator}
+ * on the calling thread. All partitions are served by the same activator, which means
+ * that the cost measured is the cost of the remoting pipeline itself, without any network
+ * or wire serialization.
+ */
+public class LoopbackRemotingTransport implements RemotingTransportSpi {
+	
+	private final AstrixServiceActivator serviceActivator;
+	private final int partitionCount;
+	
+	public LoopbackRemotingTransport(AstrixServiceActivator serviceActivator, int partitionCount) {
+		this.serviceActivator = serviceActivator;
+		this.partitionCount = partitionCount;
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return Observable.defer(() -> Observable.just(serviceActivator.invokeService(request)));
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		return Observable.defer(() -> Observable.just(serviceActivator.invokeServiceBatch(requests)));
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		return Observable.defer(() -> {
+			List<AstrixServiceInvocationResponse> responses = new ArrayList<>(requests.size());
+			for (RoutedServiceInvocationRequest request : requests) {
+				responses.add(serviceActivator.invokeService(request.getRequest()));
+			}
+			return Observable.just(responses);
+		});
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return Observable.defer(() -> {
+			List<AstrixServiceInvocationResponse> responses = new ArrayList<>(partitionCount);
+			for (int partition = 0; partition < partitionCount; partition++) {
+				responses.add(serviceActivator.invokeService(request));
+			}
+			return Observable.just(responses);
+		});
+	}
+
+	@Override
+	public int partitionCount() {
+		return partitionCount;
+	}
+
+}
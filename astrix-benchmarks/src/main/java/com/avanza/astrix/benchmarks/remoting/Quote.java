@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.remoting;
+
+import java.io.Serializable;
+
+public class Quote implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	private String instrumentId;
+	private double bid;
+	private double ask;
+	private long timestamp;
+	
+	public Quote() {
+	}
+	
+	public Quote(String instrumentId, double bid, double ask, long timestamp) {
+		this.instrumentId = instrumentId;
+		this.bid = bid;
+		this.ask = ask;
+		this.timestamp = timestamp;
+	}
+
+	public String getInstrumentId() {
+		return instrumentId;
+	}
+	
+	public void setInstrumentId(String instrumentId) {
+		this.instrumentId = instrumentId;
+	}
+	
+	public double getBid() {
+		return bid;
+	}
+	
+	public void setBid(double bid) {
+		this.bid = bid;
+	}
+	
+	public double getAsk() {
+		return ask;
+	}
+	
+	public void setAsk(double ask) {
+		this.ask = ask;
+	}
+	
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+}
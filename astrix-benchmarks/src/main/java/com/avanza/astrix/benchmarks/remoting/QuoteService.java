@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.remoting;
+
+import java.util.List;
+
+import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixPartitionedRouting;
+import com.avanza.astrix.core.AstrixRouting;
+
+/**
+ * Service used by the remoting benchmarks. Contains one method for each
+ * kind of RemoteServiceMethod: routed, partitioned and broadcasted.
+ */
+public interface QuoteService {
+	
+	Quote getQuote(@AstrixRouting String instrumentId);
+	
+	List<Quote> getQuotes(@AstrixPartitionedRouting List<String> instrumentIds);
+	
+	@AstrixBroadcast
+	List<Quote> getQuotesPerPartition(int count);
+
+}
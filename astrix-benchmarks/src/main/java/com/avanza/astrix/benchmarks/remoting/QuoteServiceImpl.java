@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class QuoteServiceImpl implements QuoteService {
+	
+	private static final long TIMESTAMP = 1_400_000_000_000L;
+
+	@Override
+	public Quote getQuote(String instrumentId) {
+		return new Quote(instrumentId, 99.5D, 100.5D, TIMESTAMP);
+	}
+
+	@Override
+	public List<Quote> getQuotes(List<String> instrumentIds) {
+		List<Quote> result = new ArrayList<>(instrumentIds.size());
+		for (String instrumentId : instrumentIds) {
+			result.add(getQuote(instrumentId));
+		}
+		return result;
+	}
+	
+	@Override
+	public List<Quote> getQuotesPerPartition(int count) {
+		List<Quote> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(getQuote(Integer.toString(i)));
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.context.AstrixContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+
+/**
+ * Measures the cost of a remote service invocation through the complete remoting pipeline:
+ * 
+ * <pre>
+ * RemotingProxy.invoke 
+ *   -&gt; Routed/Partitioned/BroadcastedRemoteServiceMethod 
+ *   -&gt; RemotingEngine.marshall 
+ *   -&gt; AstrixServiceActivator.invokeService 
+ *   -&gt; RemotingEngine.toRemoteResult
+ * </pre>
+ * 
+ * The request is passed to the service activator using an in-process {@link LoopbackRemotingTransport}, hence
+ * no network or wire serialization is included in the measurements. <p>
+ * 
+ * Run using: 
+ * <pre>
+ * mvn -pl astrix-benchmarks -am package
+ * java -jar astrix-benchmarks/target/benchmarks.jar RemotingPipelineBenchmark -prof gc
+ * </pre>
+ * 
+ * Throughput and latency percentiles are reported by the Throughput and SampleTime modes, and
+ * the allocation rate per invocation by the gc profiler ("gc.alloc.rate.norm").
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RemotingPipelineBenchmark {
+	
+	public static final String QUOTE_SERVICE_URI = "quoteServiceUri";
+	
+	@Param({"false", "true"})
+	public boolean versioned;
+	
+	@Param({"false", "true"})
+	public boolean faultToleranceEnabled;
+	
+	@Param({"false", "true"})
+	public boolean beanMetricsEnabled;
+	
+	@Param({"4"})
+	public int partitionCount;
+	
+	@Param({"16"})
+	public int keyCount;
+	
+	private AstrixContext context;
+	private QuoteService quoteService;
+	private List<String> instrumentIds;
+	private int nextInstrument;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		LoopbackRemotingComponent.register(QuoteService.class, new QuoteServiceImpl());
+		TestAstrixConfigurer configurer = new TestAstrixConfigurer();
+		configurer.registerModule(new LoopbackRemotingModule());
+		configurer.registerApiProvider(versioned ? VersionedQuoteApi.class : QuoteApi.class);
+		configurer.enableFaultTolerance(faultToleranceEnabled);
+		configurer.set(AstrixSettings.ENABLE_BEAN_METRICS, beanMetricsEnabled);
+		configurer.set(LoopbackRemotingComponent.PARTITION_COUNT, partitionCount);
+		configurer.set(QUOTE_SERVICE_URI, LoopbackRemotingComponent.NAME + ":");
+		this.context = configurer.configure();
+		this.quoteService = context.getBean(QuoteService.class);
+		this.instrumentIds = new ArrayList<>(keyCount);
+		for (int i = 0; i < keyCount; i++) {
+			instrumentIds.add("SE000000" + i);
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.context.destroy();
+	}
+	
+	@Benchmark
+	public Quote routedInvocation() {
+		nextInstrument = (nextInstrument + 1) % keyCount;
+		return quoteService.getQuote(instrumentIds.get(nextInstrument));
+	}
+	
+	@Benchmark
+	public List<Quote> partitionedInvocation() {
+		return quoteService.getQuotes(instrumentIds);
+	}
+	
+	@Benchmark
+	public List<Quote> broadcastInvocation() {
+		return quoteService.getQuotesPerPartition(1);
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmarks.serialization;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.avanza.astrix.modules.Modules;
+import com.avanza.astrix.modules.ModulesConfigurer;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+import com.avanza.astrix.versioning.core.ObjectSerializerDefinition;
+import com.avanza.astrix.versioning.core.ObjectSerializerFactory;
+import com.avanza.astrix.versioning.core.ObjectSerializerModule;
+import com.avanza.astrix.versioning.jackson1.Jackson1SerializerModule;
+import com.avanza.astrix.versioning.jackson1.TaggedBinarySerializerModule;
+
+/**
+ * Compares the Jackson1 json serializer with the compact tagged binary serializer using the 
+ * types from the lunch example. Both serializers are created through the ObjectSerializerFactory
+ * exactly as for an api using the given AstrixObjectSerializerConfigurer. <p>
+ * 
+ * The "version" parameter controls the version of the serialized messages. Version 2 is the current
+ * version, version 1 requires each LunchRestaurant to be migrated. <p>
+ * 
+ * Run using: 
+ * <pre>
+ * mvn -pl astrix-benchmarks -am package
+ * java -jar astrix-benchmarks/target/benchmarks.jar ObjectSerializerBenchmark -prof gc
+ * </pre>
+ * 
+ * The size of the serialized payloads for each format is printed during setup. 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ObjectSerializerBenchmark {
+	
+	private static final int API_VERSION = 2;
+	
+	private static final Type RESTAURANT_LIST_TYPE = new ParameterizedType() {
+		@Override
+		public Type getRawType() {
+			return List.class;
+		}
+		@Override
+		public Type getOwnerType() {
+			return null;
+		}
+		@Override
+		public Type[] getActualTypeArguments() {
+			return new Type[] { LunchRestaurant.class };
+		}
+	};
+	
+	@Param({"json", "binary"})
+	public String format;
+	
+	@Param({"2", "1"})
+	public int version;
+	
+	@Param({"20"})
+	public int restaurantCount;
+	
+	private Modules modules;
+	private AstrixObjectSerializer serializer;
+	private LunchRestaurant restaurant;
+	private List<LunchRestaurant> restaurants;
+	private byte[] serializedRestaurant;
+	private byte[] serializedRestaurants;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		ModulesConfigurer modulesConfigurer = new ModulesConfigurer();
+		modulesConfigurer.register(new ObjectSerializerModule());
+		modulesConfigurer.register(new Jackson1SerializerModule());
+		modulesConfigurer.register(new TaggedBinarySerializerModule());
+		this.modules = modulesConfigurer.configure();
+		ObjectSerializerDefinition serializerDefinition = ObjectSerializerDefinition.versionedService(API_VERSION, 
+				"binary".equals(format) ? LunchApiBinarySerializerConfigurer.class : LunchApiJsonSerializerConfigurer.class);
+		this.serializer = modules.getInstance(ObjectSerializerFactory.class).create(serializerDefinition);
+		this.serializer.prepareType(LunchRestaurant.class);
+		this.serializer.prepareType(RESTAURANT_LIST_TYPE);
+		
+		this.restaurant = new LunchRestaurant("Martins Green Room", "vegetarian");
+		this.restaurants = new ArrayList<>(restaurantCount);
+		for (int i = 0; i < restaurantCount; i++) {
+			restaurants.add(new LunchRestaurant("Restaurant-" + i, i % 2 == 0 ? "vegetarian" : "asian"));
+		}
+		this.serializedRestaurant = serializer.serializeToBytes(restaurant, version);
+		this.serializedRestaurants = serializer.serializeToBytes(restaurants, version);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.modules.destroy();
+	}
+	
+	@Benchmark
+	public byte[] serializeRestaurant() {
+		return serializer.serializeToBytes(restaurant, version);
+	}
+	
+	@Benchmark
+	public LunchRestaurant deserializeRestaurant() {
+		return serializer.deserialize(ByteBuffer.wrap(serializedRestaurant), LunchRestaurant.class, version);
+	}
+	
+	@Benchmark
+	public byte[] serializeRestaurants() {
+		return serializer.serializeToBytes(restaurants, version);
+	}
+	
+	@Benchmark
+	public List<LunchRestaurant> deserializeRestaurants() {
+		return serializer.deserialize(ByteBuffer.wrap(serializedRestaurants), RESTAURANT_LIST_TYPE, version);
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable, versioned view of all property values in a configuration source at a given
+ * point in time. <p>
+ * 
+ * A snapshot is never modified after it is published, hence several properties may be read
+ * from the same snapshot without locking and without observing a partially applied update.
+ */
+public final class ConfigSnapshot {
+	
+	static final ConfigSnapshot EMPTY = new ConfigSnapshot(0, Collections.emptyMap());
+	
+	private final long version;
+	private final Map<String, String> properties;
+	
+	private ConfigSnapshot(long version, Map<String, String> properties) {
+		this.version = version;
+		this.properties = properties;
+	}
+	
+	/**
+	 * Creates the next version of this snapshot with the given property values applied. A
+	 * null value removes the property.
+	 */
+	ConfigSnapshot update(Map<String, String> propertyValues) {
+		Map<String, String> updated = new HashMap<>(this.properties);
+		for (Map.Entry<String, String> property : propertyValues.entrySet()) {
+			if (property.getValue() != null) {
+				updated.put(property.getKey(), property.getValue());
+			} else {
+				updated.remove(property.getKey());
+			}
+		}
+		return new ConfigSnapshot(version + 1, Collections.unmodifiableMap(updated));
+	}
+	
+	/**
+	 * Creates the next version of this snapshot containing exactly the given property values. 
+	 */
+	ConfigSnapshot replace(Map<String, String> propertyValues) {
+		return new ConfigSnapshot(version + 1, Collections.unmodifiableMap(new HashMap<>(propertyValues)));
+	}
+	
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * @param propertyName
+	 * @return the value of the given property in this snapshot, or null if not set
+	 */
+	public String get(String propertyName) {
+		return properties.get(propertyName);
+	}
+	
+	/**
+	 * @return an unmodifiable map containing all properties in this snapshot
+	 */
+	public Map<String, String> getProperties() {
+		return properties;
+	}
+	
+	@Override
+	public String toString() {
+		return properties.toString();
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the current {@link ConfigSnapshot} of a {@link DynamicConfigSource} and notifies the 
+ * {@link DynamicPropertyListener}'s registered for each property. <p>
+ * 
+ * Updates are published by atomically replacing the current snapshot, hence reads are lock free 
+ * and always see a consistent snapshot. Listeners are notified by comparing the last notified 
+ * snapshot with the current one, and only listeners of properties that actually changed are 
+ * notified. Several snapshots published before listeners are notified are coalesced into a single 
+ * notification, see {@link #notifyListenersAsync(ConfigSnapshot)}. <p>
+ * 
+ * Listeners are invoked without holding any lock, one at a time and in the order the changes were 
+ * published. Listeners must not block, since a blocked listener delays the notification of all other 
+ * listeners of this source, and of all sources notified by the shared config dispatcher thread.
+ */
+final class ConfigSnapshotSupport {
+	
+	private static final Logger log = LoggerFactory.getLogger(ConfigSnapshotSupport.class);
+	
+	private final ConcurrentMap<String, List<DynamicPropertyListener<String>>> listenersByProperty = new ConcurrentHashMap<>();
+	private final AtomicBoolean notificationScheduled = new AtomicBoolean(false);
+	private volatile ConfigSnapshot current = ConfigSnapshot.EMPTY;
+	
+	private final Object notificationLock = new Object();
+	private ConfigSnapshot lastNotified = ConfigSnapshot.EMPTY; // Guarded by notificationLock
+	private ConfigSnapshot lastDelivered = ConfigSnapshot.EMPTY; // Guarded by notificationLock
+	private final Queue<Delivery> pendingDeliveries = new ArrayDeque<>(); // Guarded by notificationLock
+	private final List<PendingNotification> pendingNotifications = new ArrayList<>(); // Guarded by notificationLock
+	private boolean delivering = false; // Guarded by notificationLock
+	
+	ConfigSnapshot current() {
+		return current;
+	}
+	
+	String get(String propertyName, DynamicPropertyListener<String> propertyChangeListener) {
+		listenersByProperty.computeIfAbsent(propertyName, name -> new CopyOnWriteArrayList<>()).add(propertyChangeListener);
+		return current.get(propertyName);
+	}
+	
+	/**
+	 * Publishes a new snapshot with the given property values applied, a null value removes the property. 
+	 */
+	synchronized ConfigSnapshot update(Map<String, String> propertyValues) {
+		ConfigSnapshot updated = current.update(propertyValues);
+		current = updated;
+		return updated;
+	}
+	
+	/**
+	 * Publishes a new snapshot containing exactly the given property values.
+	 */
+	synchronized ConfigSnapshot replace(Map<String, String> propertyValues) {
+		ConfigSnapshot replaced = current.replace(propertyValues);
+		current = replaced;
+		return replaced;
+	}
+	
+	/**
+	 * Notifies all listeners about changes in the current snapshot on the calling thread. <p>
+	 * 
+	 * The changed properties are computed under a lock, but listeners are invoked without holding it. In 
+	 * order to deliver changes in the order they were published, only one thread at a time invokes listeners.
+	 * If another thread is currently invoking listeners, or if this method is called by a listener, the 
+	 * changes are delivered by that thread and this method returns without waiting for them to be delivered.
+	 */
+	void notifyListeners() {
+		synchronized (notificationLock) {
+			ConfigSnapshot target = current;
+			ConfigSnapshot previous = lastNotified;
+			lastNotified = target;
+			if (previous != target) {
+				pendingDeliveries.add(new Delivery(target, getChangedProperties(previous, target)));
+			}
+			if (delivering) {
+				return;
+			}
+			delivering = true;
+		}
+		deliverPendingChanges();
+	}
+	
+	/**
+	 * Notifies all listeners about changes in the current snapshot on the config dispatcher thread. Several
+	 * snapshots published before the dispatcher thread runs are coalesced into a single notification per 
+	 * changed property.
+	 * 
+	 * @param snapshot
+	 * @return a future that is completed when listeners are notified about all changes in the given snapshot
+	 */
+	CompletableFuture<ConfigSnapshot> notifyListenersAsync(ConfigSnapshot snapshot) {
+		CompletableFuture<ConfigSnapshot> result = new CompletableFuture<>();
+		synchronized (notificationLock) {
+			if (lastDelivered.getVersion() >= snapshot.getVersion()) {
+				result.complete(snapshot);
+				return result;
+			}
+			pendingNotifications.add(new PendingNotification(snapshot, result));
+		}
+		if (notificationScheduled.compareAndSet(false, true)) {
+			Dispatcher.EXECUTOR.execute(() -> {
+				notificationScheduled.set(false);
+				notifyListeners();
+			});
+		}
+		return result;
+	}
+	
+	private void deliverPendingChanges() {
+		Delivery delivery = null;
+		while (true) {
+			List<PendingNotification> completed;
+			synchronized (notificationLock) {
+				if (delivery != null) {
+					lastDelivered = delivery.target;
+				}
+				completed = takeCompletedNotifications(lastDelivered);
+				delivery = pendingDeliveries.poll();
+				if (delivery == null) {
+					delivering = false;
+				}
+			}
+			for (PendingNotification notification : completed) {
+				notification.result.complete(notification.snapshot);
+			}
+			if (delivery == null) {
+				return;
+			}
+			delivery.notifyListeners();
+		}
+	}
+
+	private List<PropertyChange> getChangedProperties(ConfigSnapshot previous, ConfigSnapshot target) {
+		List<PropertyChange> changes = new ArrayList<>();
+		for (Map.Entry<String, List<DynamicPropertyListener<String>>> property : listenersByProperty.entrySet()) {
+			String newValue = target.get(property.getKey());
+			if (!Objects.equals(previous.get(property.getKey()), newValue)) {
+				changes.add(new PropertyChange(property.getKey(), newValue, property.getValue()));
+			}
+		}
+		return changes;
+	}
+	
+	private List<PendingNotification> takeCompletedNotifications(ConfigSnapshot notified) {
+		if (pendingNotifications.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<PendingNotification> completed = new ArrayList<>(pendingNotifications.size());
+		Iterator<PendingNotification> pending = pendingNotifications.iterator();
+		while (pending.hasNext()) {
+			PendingNotification notification = pending.next();
+			if (notification.snapshot.getVersion() <= notified.getVersion()) {
+				pending.remove();
+				completed.add(notification);
+			}
+		}
+		return completed;
+	}
+	
+	/*
+	 * The changed properties between the last notified snapshot and a target snapshot.
+	 */
+	private static final class Delivery {
+		private final ConfigSnapshot target;
+		private final List<PropertyChange> changes;
+		
+		Delivery(ConfigSnapshot target, List<PropertyChange> changes) {
+			this.target = target;
+			this.changes = changes;
+		}
+		
+		void notifyListeners() {
+			for (PropertyChange change : changes) {
+				for (DynamicPropertyListener<String> listener : change.listeners) {
+					try {
+						listener.propertyChanged(change.newValue);
+					} catch (RuntimeException e) {
+						log.error("Failed to notify listener about changed property: " + change.propertyName, e);
+					}
+				}
+			}
+		}
+	}
+	
+	private static final class PropertyChange {
+		private final String propertyName;
+		private final String newValue;
+		private final List<DynamicPropertyListener<String>> listeners;
+		
+		PropertyChange(String propertyName, String newValue, List<DynamicPropertyListener<String>> listeners) {
+			this.propertyName = propertyName;
+			this.newValue = newValue;
+			this.listeners = listeners;
+		}
+	}
+	
+	private static final class PendingNotification {
+		private final ConfigSnapshot snapshot;
+		private final CompletableFuture<ConfigSnapshot> result;
+		
+		PendingNotification(ConfigSnapshot snapshot, CompletableFuture<ConfigSnapshot> result) {
+			this.snapshot = snapshot;
+			this.result = result;
+		}
+	}
+	
+	/*
+	 * A single daemon thread shared by all config sources, lazily started.
+	 */
+	private static final class Dispatcher {
+		private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "astrix-config-dispatcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+}
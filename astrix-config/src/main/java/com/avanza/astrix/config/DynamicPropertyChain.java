@@ -15,10 +15,15 @@
  */
 package com.avanza.astrix.config;
 
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
+ * The chain of values for a property, one per config source, in order of precedence. <p>
+ * 
+ * The chain is read on each property change and may be extended concurrently, hence it is 
+ * kept in a copy-on-write list which allows lock free reads.
  * 
  * @author Elias Lindholm (elilin)
  *
@@ -26,7 +31,7 @@ import java.util.Objects;
  */
 final class DynamicPropertyChain<T> implements DynamicPropertyListener<T> {
 
-	private final LinkedList<DynamicConfigProperty<T>> chain = new LinkedList<>();
+	private final List<DynamicConfigProperty<T>> chain = new CopyOnWriteArrayList<>();
 	private final DynamicPropertyChainListener<T> propertyListener;
 	private final PropertyParser<T> parser;
 	private final T defaultValue;
@@ -53,7 +58,7 @@ final class DynamicPropertyChain<T> implements DynamicPropertyListener<T> {
 
 	public DynamicConfigProperty<T> prependValue() {
 		DynamicConfigProperty<T> property = DynamicConfigProperty.create(this, parser);
-		chain.addFirst(property);
+		chain.add(0, property);
 		return property;
 	}
 
@@ -68,7 +73,7 @@ final class DynamicPropertyChain<T> implements DynamicPropertyListener<T> {
 
 	public DynamicConfigProperty<T> appendValue() {
 		DynamicConfigProperty<T> property = DynamicConfigProperty.create(this, parser);
-		chain.addLast(property);
+		chain.add(property);
 		return property;
 	}
 	
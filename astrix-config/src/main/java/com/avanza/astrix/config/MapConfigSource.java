@@ -13,91 +13,76 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-	package com.avanza.astrix.config;
+package com.avanza.astrix.config;
 
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Map backed {@link DynamicConfigSource} useful in testing. <p> 
  * 
+ * The property values are held in an immutable {@link ConfigSnapshot} which is replaced on each update. 
+ * Single properties set using one of the set methods are applied synchronously, i.e listeners are notified 
+ * on the calling thread before the method returns, unless another thread is notifying listeners of this
+ * source at the same time, in which case that thread delivers the change. Bulk updates using {@link #setAll(Map)} 
+ * are applied atomically and listeners are notified asynchronously. <p>
+ * 
+ * Listeners are invoked one at a time without holding any lock, and must not block. <p>
+ * 
  * @author Elias Lindholm (elilin)
  *
  */
 public class MapConfigSource extends AbstractDynamicConfigSource implements MutableConfigSource {
 	
-	private final ConcurrentMap<String, ListenableStringProperty> propertyValues = new ConcurrentHashMap<>();
+	private final ConfigSnapshotSupport snapshotSupport = new ConfigSnapshotSupport();
 	
 	@Override
 	public String get(String propertyName, DynamicPropertyListener<String> propertyChangeListener) {
-		ListenableStringProperty dynamicProperty = getProperty(propertyName);
-		dynamicProperty.listeners.add(propertyChangeListener);
-		return dynamicProperty.value;
+		return snapshotSupport.get(propertyName, propertyChangeListener);
 	}
 	
 	public void set(String propertyName, String value) {
-		getProperty(propertyName).set(value);
+		snapshotSupport.update(Collections.singletonMap(propertyName, value));
+		snapshotSupport.notifyListeners();
 	}
 	
 	@Override
 	public <T> void set(Setting<T> setting, T value) {
 		String stringRepresentation = value != null ? value.toString() : null;
-		getProperty(setting.name()).set(stringRepresentation);
+		set(setting.name(), stringRepresentation);
 	}
 	
 	@Override
 	public void set(LongSetting setting, long value) {
-		getProperty(setting.name()).set(Long.toString(value));
+		set(setting.name(), Long.toString(value));
 	}
 	
 	@Override
 	public void set(BooleanSetting setting, boolean value) {
-		getProperty(setting.name()).set(Boolean.toString(value));
+		set(setting.name(), Boolean.toString(value));
+	}
+	
+	@Override
+	public CompletionStage<ConfigSnapshot> setAll(Map<String, String> propertyValues) {
+		return snapshotSupport.notifyListenersAsync(snapshotSupport.update(propertyValues));
 	}
 	
-	private ListenableStringProperty getProperty(String propertyName) {
-		ListenableStringProperty result = propertyValues.get(propertyName);
-		if (result != null) {
-			return result;
-		}
-		propertyValues.putIfAbsent(propertyName, new ListenableStringProperty());
-		return propertyValues.get(propertyName);
+	/**
+	 * @return the current snapshot of all properties in this source
+	 */
+	public ConfigSnapshot snapshot() {
+		return snapshotSupport.current();
 	}
 
 	public void setAll(MapConfigSource config) {
-		for (Map.Entry<String, ListenableStringProperty> entry : config.propertyValues.entrySet()) {
-			set(entry.getKey(), entry.getValue().value);
-		}
+		snapshotSupport.update(config.snapshot().getProperties());
+		snapshotSupport.notifyListeners();
 	}
 	
 	@Override
 	public String toString() {
-		return this.propertyValues.toString();
-	}
-
-	private static class ListenableStringProperty {
-		
-		final List<DynamicPropertyListener<String>> listeners = new CopyOnWriteArrayList<>();
-		volatile String value;
-		
-		void propertyChanged(String newValue) {
-			for (DynamicPropertyListener<String> l : listeners) {
-				l.propertyChanged(newValue);
-			}
-		}
-
-		void set(String value) {
-			this.value = value;
-			propertyChanged(value);
-		}
-		
-		@Override
-		public String toString() {
-			return value;
-		}
+		return snapshotSupport.current().toString();
 	}
 
-}
\ No newline at end of file
+}
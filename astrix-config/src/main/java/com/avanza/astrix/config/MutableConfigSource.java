@@ -14,6 +14,10 @@
  * limitations under the License.
  */
 package com.avanza.astrix.config;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 /**
  * Most used by test-utility classes to allow setting configuration programmatically.
  * 
@@ -29,4 +33,22 @@ public interface MutableConfigSource {
 	
 	void set(BooleanSetting setting, boolean value);
 	
+	/**
+	 * Atomically updates several properties. All new values become visible to readers of this
+	 * source at once, and listeners are notified asynchronously, with updates published in 
+	 * quick succession coalesced into a single notification per changed property. <p>
+	 * 
+	 * The default implementation sets each property separately using {@link #set(Setting, Object)}, i.e. the 
+	 * update is not atomic, and returns a completed CompletionStage with a snapshot containing the given values. 
+	 * 
+	 * @param propertyValues - the new value for each updated property, a null value removes the property
+	 * @return a CompletionStage that completes with the published snapshot when all listeners are notified
+	 */
+	default CompletionStage<ConfigSnapshot> setAll(Map<String, String> propertyValues) {
+		for (Map.Entry<String, String> propertyValue : propertyValues.entrySet()) {
+			set(StringSetting.create(propertyValue.getKey(), null), propertyValue.getValue());
+		}
+		return CompletableFuture.completedFuture(ConfigSnapshot.EMPTY.update(propertyValues));
+	}
+	
 }
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.config;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link DynamicConfigSource} reading properties from one or more properties files which are reloaded 
+ * when they change on disk. When the same property is defined in several files, the last file wins. <p>
+ * 
+ * The files are watched using a {@link WatchService} on a dedicated daemon thread. Bursts of writes are
+ * debounced: The files are reloaded when no further changes have been seen for the debounce period, 
+ * or at the latest when the max debounce period has elapsed since the first change was seen. 
+ * Each reload publishes a new {@link ConfigSnapshot}, and only listeners of properties that actually 
+ * changed are notified, on the watcher thread. A file that fails to load leaves the previously loaded 
+ * values untouched. A missing file is treated as empty, and is loaded once it is created. A watched directory 
+ * that is deleted is treated as empty, and watched again once it is recreated. <p>
+ * 
+ * Note that some WatchService implementations poll the file system, in which case changes may be 
+ * detected with a delay of several seconds.
+ */
+public final class WatchedPropertiesFileConfigSource extends AbstractDynamicConfigSource implements Closeable {
+	
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+	public static final long DEFAULT_MAX_DEBOUNCE_MILLIS = 2000;
+	private static final long REWATCH_INTERVAL_MILLIS = 1000;
+	private static final Logger log = LoggerFactory.getLogger(WatchedPropertiesFileConfigSource.class);
+	
+	private final List<Path> files;
+	private final long debounceMillis;
+	private final long maxDebounceMillis;
+	private final ConfigSnapshotSupport snapshotSupport = new ConfigSnapshotSupport();
+	private final Map<Path, Map<String, String>> propertiesByFile = new HashMap<>(); // Only accessed by watcher thread after construction
+	private final WatchService watchService;
+	private final Set<Path> unwatchedDirectories = new LinkedHashSet<>(); // Only accessed by watcher thread after construction
+	private final Thread watcher;
+	private volatile boolean closed = false;
+	
+	/**
+	 * Loads and starts watching the given files, see {@link #WatchedPropertiesFileConfigSource(List, long)}.
+	 */
+	public static WatchedPropertiesFileConfigSource watch(Path... files) {
+		return new WatchedPropertiesFileConfigSource(Arrays.asList(files), DEFAULT_DEBOUNCE_MILLIS);
+	}
+	
+	/**
+	 * Loads the given files and starts watching them for changes, see {@link #WatchedPropertiesFileConfigSource(List, long, long)}.
+	 * The max debounce period is {@link #DEFAULT_MAX_DEBOUNCE_MILLIS}, or the debounce period if longer.
+	 */
+	public WatchedPropertiesFileConfigSource(List<Path> files, long debounceMillis) {
+		this(files, debounceMillis, Math.max(debounceMillis, DEFAULT_MAX_DEBOUNCE_MILLIS));
+	}
+	
+	/**
+	 * Loads the given files and starts watching them for changes.
+	 * 
+	 * @param files - the properties files, in increasing order of precedence
+	 * @param debounceMillis - how long to wait for further changes before reloading changed files
+	 * @param maxDebounceMillis - max time to wait for further changes before reloading changed files, measured from the first change
+	 */
+	public WatchedPropertiesFileConfigSource(List<Path> files, long debounceMillis, long maxDebounceMillis) {
+		if (files.isEmpty()) {
+			throw new IllegalArgumentException("At least one config file must be given");
+		}
+		this.files = new ArrayList<>(files.size());
+		for (Path file : files) {
+			this.files.add(file.toAbsolutePath().normalize());
+		}
+		this.debounceMillis = debounceMillis;
+		this.maxDebounceMillis = maxDebounceMillis;
+		for (Path file : this.files) {
+			propertiesByFile.put(file, load(file));
+		}
+		snapshotSupport.replace(mergeProperties());
+		snapshotSupport.notifyListeners();
+		try {
+			this.watchService = this.files.get(0).getFileSystem().newWatchService();
+			Set<Path> directories = new LinkedHashSet<>();
+			for (Path file : this.files) {
+				directories.add(file.getParent());
+			}
+			for (Path directory : directories) {
+				directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to watch config files: " + this.files, e);
+		}
+		this.watcher = new Thread(this::watch, "astrix-config-file-watcher");
+		this.watcher.setDaemon(true);
+		this.watcher.start();
+	}
+	
+	@Override
+	public String get(String propertyName, DynamicPropertyListener<String> propertyChangeListener) {
+		return snapshotSupport.get(propertyName, propertyChangeListener);
+	}
+	
+	/**
+	 * @return the current snapshot of all properties in this source
+	 */
+	public ConfigSnapshot snapshot() {
+		return snapshotSupport.current();
+	}
+	
+	private void watch() {
+		try {
+			while (!closed) {
+				Set<Path> changedFiles = new LinkedHashSet<>();
+				rewatchDirectories(changedFiles);
+				if (changedFiles.isEmpty()) {
+					WatchKey key = unwatchedDirectories.isEmpty() ? watchService.take() : watchService.poll(REWATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+					if (key != null) {
+						collectChangedFiles(key, changedFiles);
+					}
+				}
+				if (changedFiles.isEmpty()) {
+					continue;
+				}
+				// Debounce, wait until no further changes are seen or the max debounce period has elapsed
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDebounceMillis);
+				long remainingMillis;
+				while ((remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+					WatchKey key = watchService.poll(Math.min(debounceMillis, remainingMillis), TimeUnit.MILLISECONDS);
+					if (key == null) {
+						break;
+					}
+					collectChangedFiles(key, changedFiles);
+				}
+				reload(changedFiles);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Closed
+		} catch (RuntimeException e) {
+			log.error("Stopped watching config files: " + files, e);
+		}
+	}
+
+	private void collectChangedFiles(WatchKey key, Set<Path> changedFiles) {
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				changedFiles.addAll(files);
+				continue;
+			}
+			Path file = directory.resolve((Path) event.context());
+			if (files.contains(file)) {
+				changedFiles.add(file);
+			}
+		}
+		if (!key.reset()) {
+			log.warn("Config directory no longer watched, trying to watch it again: {}", directory);
+			addFilesInDirectory(directory, changedFiles);
+			unwatchedDirectories.add(directory);
+			rewatchDirectories(changedFiles);
+		}
+	}
+	
+	/*
+	 * Tries to register all directories that are not watched, typically since they were deleted. All files
+	 * in a directory are considered changed when the directory is registered, since they might have changed 
+	 * while it was not watched.
+	 */
+	private void rewatchDirectories(Set<Path> changedFiles) {
+		for (Iterator<Path> it = unwatchedDirectories.iterator(); it.hasNext();) {
+			Path directory = it.next();
+			try {
+				directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+				log.info("Watching config directory again: {}", directory);
+				addFilesInDirectory(directory, changedFiles);
+				it.remove();
+			} catch (NoSuchFileException e) {
+				log.debug("Config directory not present: {}", directory);
+			} catch (IOException e) {
+				log.warn("Failed to watch config directory: " + directory, e);
+			}
+		}
+	}
+	
+	private void addFilesInDirectory(Path directory, Set<Path> changedFiles) {
+		for (Path file : files) {
+			if (file.getParent().equals(directory)) {
+				changedFiles.add(file);
+			}
+		}
+	}
+	
+	private void reload(Set<Path> changedFiles) {
+		for (Path file : changedFiles) {
+			try {
+				propertiesByFile.put(file, read(file));
+			} catch (IOException e) {
+				log.warn("Failed to reload config file, keeping previous values: " + file, e);
+			}
+		}
+		ConfigSnapshot snapshot = snapshotSupport.replace(mergeProperties());
+		log.info("Reloaded config files: {} version={}", changedFiles, snapshot.getVersion());
+		snapshotSupport.notifyListeners();
+	}
+	
+	private Map<String, String> mergeProperties() {
+		Map<String, String> merged = new HashMap<>();
+		for (Path file : files) {
+			merged.putAll(propertiesByFile.get(file));
+		}
+		return merged;
+	}
+	
+	private static Map<String, String> load(Path file) {
+		try {
+			return read(file);
+		} catch (IOException e) {
+			log.warn("Failed to load config file: " + file, e);
+			return new HashMap<>();
+		}
+	}
+	
+	private static Map<String, String> read(Path file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		} catch (NoSuchFileException e) {
+			log.info("Config file not present: " + file);
+		}
+		Map<String, String> result = new HashMap<>();
+		for (String propertyName : properties.stringPropertyNames()) {
+			result.put(propertyName, properties.getProperty(propertyName));
+		}
+		return result;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+	}
+	
+	@Override
+	public String toString() {
+		return "WatchedPropertiesFileConfigSource: " + files;
+	}
+
+}
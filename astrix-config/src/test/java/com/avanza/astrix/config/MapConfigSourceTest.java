@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class MapConfigSourceTest {
+	
+	private final MapConfigSource configSource = new MapConfigSource();
+	
+	@Test
+	public void setAllPublishesAllValuesInASingleSnapshot() throws Exception {
+		configSource.set("foo", "1");
+		long versionBeforeUpdate = configSource.snapshot().getVersion();
+		
+		Map<String, String> update = new HashMap<>();
+		update.put("foo", "2");
+		update.put("bar", "3");
+		ConfigSnapshot snapshot = configSource.setAll(update).toCompletableFuture().get(5, TimeUnit.SECONDS);
+		
+		assertEquals(versionBeforeUpdate + 1, snapshot.getVersion());
+		assertEquals("2", snapshot.get("foo"));
+		assertEquals("3", snapshot.get("bar"));
+		assertEquals("3", configSource.get("bar"));
+	}
+	
+	@Test
+	public void setAllNotifiesListenersOfChangedPropertiesOnDispatcherThread() throws Exception {
+		configSource.set("foo", "1");
+		configSource.set("bar", "1");
+		List<String> notifiedThreads = new CopyOnWriteArrayList<>();
+		List<String> fooValues = new CopyOnWriteArrayList<>();
+		List<String> barValues = new CopyOnWriteArrayList<>();
+		configSource.get("foo", value -> {
+			notifiedThreads.add(Thread.currentThread().getName());
+			fooValues.add(value);
+		});
+		configSource.get("bar", barValues::add);
+		
+		Map<String, String> update = new HashMap<>();
+		update.put("foo", "2");
+		update.put("bar", "1");
+		configSource.setAll(update).toCompletableFuture().get(5, TimeUnit.SECONDS);
+		
+		assertEquals("2", fooValues.get(0));
+		assertEquals(1, fooValues.size());
+		assertTrue("Unchanged property should not be notified: " + barValues, barValues.isEmpty());
+		assertEquals("astrix-config-dispatcher", notifiedThreads.get(0));
+	}
+	
+	@Test
+	public void setAllRemovesPropertiesWithNullValue() throws Exception {
+		configSource.set("foo", "1");
+		
+		configSource.setAll(Collections.singletonMap("foo", null)).toCompletableFuture().get(5, TimeUnit.SECONDS);
+		
+		assertNull(configSource.get("foo"));
+	}
+	
+	@Test
+	public void dynamicPropertiesAreUpdatedWhenSetAllCompletes() throws Exception {
+		DynamicConfig dynamicConfig = new DynamicConfig(configSource);
+		DynamicIntProperty poolSize = dynamicConfig.getIntProperty("poolSize", 1);
+		DynamicLongProperty timeout = dynamicConfig.getLongProperty("timeout", 100);
+		
+		Map<String, String> update = new HashMap<>();
+		update.put("poolSize", "10");
+		update.put("timeout", "500");
+		configSource.setAll(update).toCompletableFuture().get(5, TimeUnit.SECONDS);
+		
+		assertEquals(10, poolSize.get());
+		assertEquals(500, timeout.get());
+	}
+	
+	@Test
+	public void setNotifiesListenersSynchronously() throws Exception {
+		List<String> values = new CopyOnWriteArrayList<>();
+		configSource.get("foo", values::add);
+		
+		configSource.set("foo", "1");
+		
+		assertEquals(1, values.size());
+		assertEquals("1", values.get(0));
+	}
+
+	@Test
+	public void coalescesSnapshotsPublishedBeforeDispatcherRunsIntoOneNotificationPerChangedProperty() throws Exception {
+		configSource.set("foo", "1");
+		configSource.set("bar", "1");
+		List<String> fooValues = new CopyOnWriteArrayList<>();
+		List<String> barValues = new CopyOnWriteArrayList<>();
+		configSource.get("foo", fooValues::add);
+		configSource.get("bar", barValues::add);
+		
+		// Keep the shared dispatcher thread busy while the snapshots are published
+		CountDownLatch dispatcherBlocked = new CountDownLatch(1);
+		CountDownLatch releaseDispatcher = new CountDownLatch(1);
+		MapConfigSource blockingSource = new MapConfigSource();
+		blockingSource.get("block", value -> {
+			dispatcherBlocked.countDown();
+			awaitUninterruptibly(releaseDispatcher);
+		});
+		blockingSource.setAll(Collections.singletonMap("block", "true"));
+		assertTrue(dispatcherBlocked.await(5, TimeUnit.SECONDS));
+		
+		configSource.setAll(Collections.singletonMap("foo", "2"));
+		configSource.setAll(Collections.singletonMap("foo", "3"));
+		CompletionStage<ConfigSnapshot> lastUpdate = configSource.setAll(Collections.singletonMap("bar", "2"));
+		releaseDispatcher.countDown();
+		lastUpdate.toCompletableFuture().get(5, TimeUnit.SECONDS);
+		
+		assertEquals(Collections.singletonList("3"), fooValues);
+		assertEquals(Collections.singletonList("2"), barValues);
+	}
+	
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WatchedPropertiesFileConfigSourceTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private WatchedPropertiesFileConfigSource configSource;
+	
+	@After
+	public void after() throws Exception {
+		if (configSource != null) {
+			configSource.close();
+		}
+	}
+	
+	@Test
+	public void notifiesListenersOfChangedPropertiesWhenFileChanges() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("astrix.properties");
+		write(file, "timeout=100\npoolSize=4\n");
+		configSource = new WatchedPropertiesFileConfigSource(Arrays.asList(file), 50);
+		BlockingQueue<String> timeoutChanges = new LinkedBlockingQueue<>();
+		BlockingQueue<String> poolSizeChanges = new LinkedBlockingQueue<>();
+		assertEquals("100", configSource.get("timeout", timeoutChanges::add));
+		assertEquals("4", configSource.get("poolSize", poolSizeChanges::add));
+		
+		write(file, "timeout=250\npoolSize=4\n");
+		
+		assertEquals("250", timeoutChanges.poll(20, TimeUnit.SECONDS));
+		assertNull(poolSizeChanges.poll(200, TimeUnit.MILLISECONDS));
+		assertEquals("250", configSource.get("timeout"));
+	}
+	
+	@Test
+	public void laterFilesTakePrecedenceAndMissingFilesAreLoadedWhenCreated() throws Exception {
+		Path defaults = folder.getRoot().toPath().resolve("defaults.properties");
+		Path overrides = folder.getRoot().toPath().resolve("overrides.properties");
+		write(defaults, "timeout=100\n");
+		configSource = new WatchedPropertiesFileConfigSource(Arrays.asList(defaults, overrides), 50);
+		DynamicLongProperty timeout = new DynamicConfig(configSource).getLongProperty("timeout", 0);
+		BlockingQueue<Long> timeoutChanges = new LinkedBlockingQueue<>();
+		timeout.addListener(timeoutChanges::add);
+		assertEquals(100, timeout.get());
+		
+		write(overrides, "timeout=500\n");
+		
+		assertEquals(Long.valueOf(500), timeoutChanges.poll(20, TimeUnit.SECONDS));
+		assertEquals(500, timeout.get());
+	}
+	
+	@Test
+	public void reloadsWhenMaxDebouncePeriodElapsesWhileFileKeepsChanging() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("astrix.properties");
+		write(file, "version=0\n");
+		configSource = new WatchedPropertiesFileConfigSource(Arrays.asList(file), 500, 1000);
+		BlockingQueue<String> versionChanges = new LinkedBlockingQueue<>();
+		configSource.get("version", versionChanges::add);
+		
+		long deadline = System.currentTimeMillis() + 20_000;
+		String reloadedVersion = null;
+		for (int version = 1; reloadedVersion == null && System.currentTimeMillis() < deadline; version++) {
+			// Keep writing more often than the debounce period
+			write(file, "version=" + version + "\n");
+			reloadedVersion = versionChanges.poll(100, TimeUnit.MILLISECONDS);
+		}
+		
+		assertNotNull("Expected file to be reloaded while it keeps changing", reloadedVersion);
+	}
+	
+	@Test
+	public void watchesDirectoryAgainWhenItIsRecreated() throws Exception {
+		Path directory = folder.newFolder("config").toPath();
+		Path file = directory.resolve("astrix.properties");
+		write(file, "timeout=100\n");
+		configSource = new WatchedPropertiesFileConfigSource(Arrays.asList(file), 50);
+		BlockingQueue<String> timeoutChanges = new LinkedBlockingQueue<>();
+		configSource.get("timeout", value -> timeoutChanges.add(String.valueOf(value)));
+		
+		Files.delete(file);
+		Files.delete(directory);
+		assertEquals("null", timeoutChanges.poll(20, TimeUnit.SECONDS));
+		
+		Files.createDirectory(directory);
+		write(file, "timeout=250\n");
+		
+		assertEquals("250", timeoutChanges.poll(20, TimeUnit.SECONDS));
+		assertEquals("250", configSource.get("timeout"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void requiresAtLeastOneFile() throws Exception {
+		new WatchedPropertiesFileConfigSource(Collections.<Path>emptyList(), 50);
+	}
+	
+	private static void write(Path file, String content) throws IOException {
+		Files.write(file, content.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+}
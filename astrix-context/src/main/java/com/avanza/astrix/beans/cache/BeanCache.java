@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.cache;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+/**
+ * Cache of results from cacheable methods on a single bean. Entries are evicted in approximate 
+ * least recently used order when the number of entries exceeds the maximum number of entries. <p>
+ * 
+ * Lookups are lock free. Each lookup stamps the entry with a logical access time. When a put makes 
+ * the cache exceed its maximum size, expired entries are removed first. If the cache is still full, 
+ * the entries with the oldest stamps are evicted in a batch, down to a low-water mark 10% below 
+ * the maximum size. Hence the cost of scanning the cache is amortized over the puts that fill it 
+ * up again. A put racing with an ongoing eviction does not wait for it to complete, and concurrent 
+ * lookups might cause a recently used entry to be evicted. <p>
+ * 
+ * The cache is invalidated each time the value of the generation property changes. 
+ */
+final class BeanCache {
+	
+	private final ConcurrentHashMap<CacheKey, CacheEntry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong accessCounter = new AtomicLong();
+	private final AtomicBoolean evicting = new AtomicBoolean(false);
+	private final DynamicLongProperty ttlMillis;
+	private final DynamicIntProperty maxEntries;
+	private final DynamicLongProperty generation;
+	private final LongSupplier clock;
+	private volatile long currentGeneration;
+	
+	BeanCache(DynamicLongProperty ttlMillis, DynamicIntProperty maxEntries, DynamicLongProperty generation, LongSupplier clock) {
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+		this.generation = generation;
+		this.clock = clock;
+		this.currentGeneration = generation.get();
+	}
+
+	/**
+	 * @return the cached entry for the given key, or null if no valid entry exists
+	 */
+	CacheEntry get(CacheKey key) {
+		long currentGeneration = generation();
+		CacheEntry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.generation != currentGeneration || entry.expiresAt <= clock.getAsLong()) {
+			entries.remove(key, entry);
+			return null;
+		}
+		entry.lastAccess = accessCounter.incrementAndGet();
+		return entry;
+	}
+	
+	/**
+	 * The current generation of this cache. A result is only cached if the cache 
+	 * is not invalidated between the time the result was requested and the time
+	 * it was received, see {@link #put(CacheKey, Object, long)}.
+	 */
+	long generation() {
+		long generation = this.generation.get();
+		if (generation != currentGeneration) {
+			invalidate(generation);
+		}
+		return generation;
+	}
+
+	/**
+	 * Caches a result received for the given key.
+	 * 
+	 * @param key
+	 * @param value
+	 * @param requestedGeneration - the generation of this cache when the result was requested
+	 * @return the number of entries evicted to make room for the given value
+	 */
+	int put(CacheKey key, Object value, long requestedGeneration) {
+		if (requestedGeneration != generation()) {
+			return 0;
+		}
+		// Entries are tagged with their generation, which discards results put concurrently with an invalidation
+		entries.put(key, new CacheEntry(value, clock.getAsLong() + ttlMillis.get(), requestedGeneration, accessCounter.incrementAndGet()));
+		int max = Math.max(0, maxEntries.get());
+		if (entries.size() <= max || !evicting.compareAndSet(false, true)) {
+			return 0;
+		}
+		try {
+			removeExpiredEntries(requestedGeneration);
+			return evictLeastRecentlyUsed(max - max / 10);
+		} finally {
+			evicting.set(false);
+		}
+	}
+	
+	private void removeExpiredEntries(long currentGeneration) {
+		long now = clock.getAsLong();
+		for (Map.Entry<CacheKey, CacheEntry> entry : entries.entrySet()) {
+			CacheEntry cacheEntry = entry.getValue();
+			if (cacheEntry.generation != currentGeneration || cacheEntry.expiresAt <= now) {
+				entries.remove(entry.getKey(), cacheEntry);
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the least recently used entries until the cache contains at most lowWaterMark entries.
+	 * 
+	 * @return the number of evicted entries
+	 */
+	private int evictLeastRecentlyUsed(int lowWaterMark) {
+		int excess = entries.size() - lowWaterMark;
+		if (excess <= 0) {
+			return 0;
+		}
+		long[] accessStamps = new long[entries.size()];
+		int entryCount = 0;
+		for (CacheEntry entry : entries.values()) {
+			if (entryCount == accessStamps.length) {
+				break; // Entries added concurrently
+			}
+			accessStamps[entryCount++] = entry.lastAccess;
+		}
+		if (entryCount == 0) {
+			return 0;
+		}
+		Arrays.sort(accessStamps, 0, entryCount);
+		long evictionThreshold = accessStamps[Math.min(excess, entryCount) - 1];
+		int evicted = 0;
+		for (Map.Entry<CacheKey, CacheEntry> entry : entries.entrySet()) {
+			if (evicted == excess) {
+				break;
+			}
+			if (entry.getValue().lastAccess <= evictionThreshold && entries.remove(entry.getKey(), entry.getValue())) {
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+	
+	int size() {
+		return entries.size();
+	}
+	
+	private synchronized void invalidate(long generation) {
+		if (generation != currentGeneration) {
+			entries.clear();
+			currentGeneration = generation;
+		}
+	}
+	
+	static final class CacheEntry {
+		private final Object value;
+		private final long expiresAt;
+		private final long generation;
+		private volatile long lastAccess;
+		
+		private CacheEntry(Object value, long expiresAt, long generation, long lastAccess) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.generation = generation;
+			this.lastAccess = lastAccess;
+		}
+		
+		/**
+		 * The cached result. The same instance is returned to all callers hitting this entry.
+		 */
+		Object getValue() {
+			return value;
+		}
+	}
+	
+	static final class CacheKey {
+		
+		private final String method;
+		private final Object[] args;
+		private final int hash;
+
+		CacheKey(String method, Object[] args) {
+			this.method = method;
+			this.args = args == null ? new Object[0] : args.clone();
+			this.hash = 31 * method.hashCode() + Arrays.deepHashCode(this.args);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return hash == other.hash && method.equals(other.method) && Arrays.deepEquals(args, other.args);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.cache;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.avanza.astrix.beans.cache.BeanCache.CacheEntry;
+import com.avanza.astrix.beans.cache.BeanCache.CacheKey;
+import com.avanza.astrix.beans.config.BeanConfiguration;
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
+import com.avanza.astrix.beans.core.BeanProxy;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.context.metrics.MetricsSpi;
+import com.avanza.astrix.core.AstrixCacheable;
+import com.avanza.astrix.core.function.CheckedCommand;
+import com.avanza.astrix.core.util.ReflectionUtil;
+
+import rx.Observable;
+/**
+ * Caches results from invocations of methods annotated with {@link AstrixCacheable}. <p>
+ * 
+ * Only successful invocations are cached. Reactive invocations are cached when they complete, and 
+ * only if they emit exactly one value. Methods returning a {@link Future} are never cached. Cached results are returned as is, i.e.
+ * the same instance is shared by all invocations hitting the cache. <p>
+ * 
+ * The number of cache hits, misses and evictions are reported using {@link MetricsSpi#incrementCounter(String, String)}.
+ */
+final class BeanCacheProxy implements BeanProxy {
+	
+	private static final String METRICS_GROUP = "ServiceBeanCache";
+	
+	private final ConcurrentMap<Method, Boolean> cacheableByMethod = new ConcurrentHashMap<>();
+	private final BeanCache cache;
+	private final DynamicBooleanProperty cacheEnabled;
+	private final MetricsSpi metrics;
+	private final String hitsMetric;
+	private final String missesMetric;
+	private final String evictionsMetric;
+	
+	BeanCacheProxy(AstrixBeanKey<?> beanKey, BeanConfiguration beanConfiguration, MetricsSpi metrics) {
+		this(beanKey, beanConfiguration, metrics, System::currentTimeMillis);
+	}
+	
+	BeanCacheProxy(AstrixBeanKey<?> beanKey, BeanConfiguration beanConfiguration, MetricsSpi metrics, LongSupplier clock) {
+		this.cache = new BeanCache(beanConfiguration.get(AstrixBeanSettings.CACHE_TTL_MILLIS), 
+								   beanConfiguration.get(AstrixBeanSettings.CACHE_MAX_ENTRIES), 
+								   beanConfiguration.get(AstrixBeanSettings.CACHE_GENERATION),
+								   clock);
+		this.cacheEnabled = beanConfiguration.get(AstrixBeanSettings.CACHE_ENABLED);
+		this.metrics = metrics;
+		this.hitsMetric = beanKey + ".hits";
+		this.missesMetric = beanKey + ".misses";
+		this.evictionsMetric = beanKey + ".evictions";
+	}
+
+	@Override
+	public <T> CheckedCommand<T> proxyInvocation(CheckedCommand<T> command) {
+		return command;
+	}
+
+	@Override
+	public <T> Supplier<Observable<T>> proxyReactiveInvocation(Supplier<Observable<T>> command) {
+		return command;
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> CheckedCommand<T> proxyInvocation(Method method, Object[] args, CheckedCommand<T> command) {
+		if (!isCacheable(method) || Future.class.isAssignableFrom(method.getReturnType())) {
+			return command;
+		}
+		return () -> {
+			CacheKey key = new CacheKey(ReflectionUtil.methodSignatureWithoutReturnType(method), args);
+			CacheEntry cachedResult = cache.get(key);
+			if (cachedResult != null) {
+				metrics.incrementCounter(METRICS_GROUP, hitsMetric);
+				return (T) cachedResult.getValue();
+			}
+			metrics.incrementCounter(METRICS_GROUP, missesMetric);
+			long generation = cache.generation();
+			T result = command.call();
+			put(key, result, generation);
+			return result;
+		};
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> Supplier<Observable<T>> proxyReactiveInvocation(Method method, Object[] args, Supplier<Observable<T>> command) {
+		if (!isCacheable(method)) {
+			return command;
+		}
+		return () -> {
+			CacheKey key = new CacheKey(ReflectionUtil.methodSignatureWithoutReturnType(method), args);
+			CacheEntry cachedResult = cache.get(key);
+			if (cachedResult != null) {
+				metrics.incrementCounter(METRICS_GROUP, hitsMetric);
+				return Observable.just((T) cachedResult.getValue());
+			}
+			metrics.incrementCounter(METRICS_GROUP, missesMetric);
+			long generation = cache.generation();
+			return command.get().toList().doOnNext((List<T> result) -> {
+				if (result.size() == 1) {
+					put(key, result.get(0), generation);
+				}
+			}).flatMap(Observable::from);
+		};
+	}
+	
+	private void put(CacheKey key, Object value, long generation) {
+		int evicted = cache.put(key, value, generation);
+		for (int i = 0; i < evicted; i++) {
+			metrics.incrementCounter(METRICS_GROUP, evictionsMetric);
+		}
+	}
+	
+	private boolean isCacheable(Method method) {
+		if (!cacheEnabled.get()) {
+			return false;
+		}
+		Boolean cacheable = cacheableByMethod.get(method);
+		if (cacheable == null) {
+			cacheable = method.isAnnotationPresent(AstrixCacheable.class);
+			cacheableByMethod.put(method, cacheable);
+		}
+		return cacheable;
+	}
+	
+	// For testing
+	BeanCache getCache() {
+		return cache;
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.cache;
+
+import com.avanza.astrix.beans.config.BeanConfigurations;
+import com.avanza.astrix.beans.core.BeanProxy;
+import com.avanza.astrix.beans.service.ServiceBeanProxyFactory;
+import com.avanza.astrix.beans.service.ServiceComponent;
+import com.avanza.astrix.beans.service.ServiceDefinition;
+import com.avanza.astrix.context.metrics.MetricsSpi;
+/**
+ * Creates the {@link BeanCacheProxy} for each service bean. The BeanCacheProxy is ordered
+ * after the fault tolerance and metrics proxies, i.e. it is the outermost proxy, which means that
+ * cached results are returned without passing the fault tolerance layer or the underlying transport. 
+ */
+public class ServiceBeanCacheProxyFactory implements ServiceBeanProxyFactory {
+
+	private final MetricsSpi metrics;
+	private final BeanConfigurations beanConfigurations;
+	
+	public ServiceBeanCacheProxyFactory(MetricsSpi metrics, BeanConfigurations beanConfigurations) {
+		this.metrics = metrics;
+		this.beanConfigurations = beanConfigurations;
+	}
+
+	@Override
+	public BeanProxy create(ServiceDefinition<?> serviceDefinition, ServiceComponent serviceComponent) {
+		return new BeanCacheProxy(serviceDefinition.getBeanKey(), beanConfigurations.getBeanConfiguration(serviceDefinition.getBeanKey()), metrics);
+	}
+
+	@Override
+	public int order() {
+		return 3;
+	}
+
+}
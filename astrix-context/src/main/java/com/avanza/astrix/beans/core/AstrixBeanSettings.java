@@ -17,6 +17,7 @@ package com.avanza.astrix.beans.core;
 
 import java.util.Objects;
 
+import com.avanza.astrix.core.AstrixCacheable;
 import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.provider.core.DefaultBeanSettings;
 
@@ -83,6 +84,81 @@ public final class AstrixBeanSettings {
 	public static final BooleanBeanSetting AVAILABLE = 
 			new BooleanBeanSetting("available", true);
 
+	/**
+	 * Determines whether routed remote invocations on the associated bean should be batched. When
+	 * enabled, routed invocations targeting the same partition are gathered for at most 
+	 * {@link #REMOTING_BATCH_WINDOW_MICROS}, or until {@link #REMOTING_BATCH_MAX_SIZE} invocations 
+	 * are gathered, and sent to the server as one request.
+	 */
+	public static final BooleanBeanSetting REMOTING_BATCHING_ENABLED = 
+			new BooleanBeanSetting("remoting.batching.enabled", false);
+	
+	/**
+	 * The maximum time, in microseconds, that a routed invocation is held waiting for other invocations
+	 * targeting the same partition when remoting batching is enabled.
+	 */
+	public static final LongBeanSetting REMOTING_BATCH_WINDOW_MICROS = 
+			new LongBeanSetting("remoting.batching.windowMicros", 200);
+	
+	/**
+	 * The maximum number of routed invocations sent in a single batch when remoting batching is enabled.
+	 */
+	public static final IntBeanSetting REMOTING_BATCH_MAX_SIZE = 
+			new IntBeanSetting("remoting.batching.maxBatchSize", 32);
+	
+	/**
+	 * Determines whether routed invocations of idempotent service methods on the associated bean should 
+	 * be hedged. When enabled, a duplicate request is sent if no response is received within 
+	 * {@link #REMOTING_HEDGE_DELAY_MILLIS}, and the first received response is used. Only applies to
+	 * beans bound using a remoting transport able to send the duplicate request to an alternate provider.
+	 */
+	public static final BooleanBeanSetting REMOTING_HEDGING_ENABLED = 
+			new BooleanBeanSetting("remoting.hedging.enabled", false);
+	
+	/**
+	 * The time, in milliseconds, to wait for a response before a hedged request is sent. A non positive
+	 * value means that the observed 95th percentile latency is used.
+	 */
+	public static final LongBeanSetting REMOTING_HEDGE_DELAY_MILLIS = 
+			new LongBeanSetting("remoting.hedging.delayMillis", -1);
+	
+	/**
+	 * The maximum number of hedged requests, as a percentage of all hedgeable invocations. Limits the extra 
+	 * load that hedging might add to an already overloaded server.
+	 */
+	public static final IntBeanSetting REMOTING_HEDGE_BUDGET_PERCENT = 
+			new IntBeanSetting("remoting.hedging.budgetPercent", 5);
+	
+	/**
+	 * Determines whether results from methods annotated with {@link AstrixCacheable} on the 
+	 * associated bean should be cached. <p>
+	 * 
+	 * A cached result is not copied, the same instance is returned to every caller until it 
+	 * is evicted. Hence results from cacheable methods must be treated as immutable.
+	 */
+	public static final BooleanBeanSetting CACHE_ENABLED = 
+			new BooleanBeanSetting("cache.enabled", true);
+	
+	/**
+	 * The time, in milliseconds, that a cached result is valid.
+	 */
+	public static final LongBeanSetting CACHE_TTL_MILLIS = 
+			new LongBeanSetting("cache.ttlMillis", 1000);
+	
+	/**
+	 * The maximum number of cached results for the associated bean. The least recently
+	 * used result is evicted when the cache is full.
+	 */
+	public static final IntBeanSetting CACHE_MAX_ENTRIES = 
+			new IntBeanSetting("cache.maxEntries", 1000);
+	
+	/**
+	 * Changing the value of this setting at runtime invalidates all cached results for the 
+	 * associated bean.
+	 */
+	public static final LongBeanSetting CACHE_GENERATION = 
+			new LongBeanSetting("cache.generation", 0);
+
 	
 	private AstrixBeanSettings() {
 	}
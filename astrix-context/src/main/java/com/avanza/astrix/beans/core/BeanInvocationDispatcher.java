@@ -49,7 +49,7 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 	private Object proxyInvocation(final Method method, final Object[] args) throws Throwable {
 		CheckedCommand<Object> serviceInvocation = () -> ReflectionUtil.invokeMethod(method, targetBean, args);
 		for (BeanProxy proxy : proxys) {
-			serviceInvocation = proxy.proxyInvocation(serviceInvocation);
+			serviceInvocation = proxy.proxyInvocation(method, args, serviceInvocation);
 		}
 		return serviceInvocation.call();
 	}
@@ -68,7 +68,7 @@ public final class BeanInvocationDispatcher implements InvocationHandler {
 			}
 		};
 		for (BeanProxy proxy : proxys) {
-			serviceInvocation = proxy.proxyReactiveInvocation(serviceInvocation);
+			serviceInvocation = proxy.proxyReactiveInvocation(method, args, serviceInvocation);
 		}
 		
 		if (isObservableType(method.getReturnType())) {
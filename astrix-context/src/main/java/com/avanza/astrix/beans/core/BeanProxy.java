@@ -15,6 +15,7 @@
  */
 package com.avanza.astrix.beans.core;
 
+import java.lang.reflect.Method;
 import java.util.function.Supplier;
 
 import com.avanza.astrix.core.function.CheckedCommand;
@@ -44,6 +45,35 @@ public interface BeanProxy {
 	 */
 	<T> Supplier<Observable<T>> proxyReactiveInvocation(Supplier<Observable<T>> command);
 	
+	/**
+	 * Proxy a synchronous invocation of a given bean method. <p>
+	 * 
+	 * The default implementation delegates to {@link #proxyInvocation(CheckedCommand)}. BeanProxy 
+	 * implementations that depend on the invoked method, or the arguments passed to it, should
+	 * override this method.
+	 * 
+	 * @param method - the invoked bean method
+	 * @param args - the arguments passed to the method, might be null for a method without arguments
+	 * @param command
+	 * @return
+	 */
+	default <T> CheckedCommand<T> proxyInvocation(Method method, Object[] args, CheckedCommand<T> command) {
+		return proxyInvocation(command);
+	}
+	
+	/**
+	 * Proxy a reactive invocation of a given bean method, see {@link #proxyReactiveInvocation(Supplier)} 
+	 * and {@link #proxyInvocation(Method, Object[], CheckedCommand)}.
+	 * 
+	 * @param method - the invoked bean method
+	 * @param args - the arguments passed to the method, might be null for a method without arguments
+	 * @param command
+	 * @return
+	 */
+	default <T> Supplier<Observable<T>> proxyReactiveInvocation(Method method, Object[] args, Supplier<Observable<T>> command) {
+		return proxyReactiveInvocation(command);
+	}
+	
 	public static class NoProxy implements BeanProxy {
 
 		@Override
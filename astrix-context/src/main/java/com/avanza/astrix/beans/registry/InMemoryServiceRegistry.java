@@ -18,6 +18,7 @@ package com.avanza.astrix.beans.registry;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.avanza.astrix.beans.core.AstrixBeanKey;
@@ -26,6 +27,7 @@ import com.avanza.astrix.beans.service.DirectComponent;
 import com.avanza.astrix.beans.service.ServiceConsumerProperties;
 import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.config.BooleanSetting;
+import com.avanza.astrix.config.ConfigSnapshot;
 import com.avanza.astrix.config.DynamicConfigSource;
 import com.avanza.astrix.config.DynamicPropertyListener;
 import com.avanza.astrix.config.GlobalConfigSourceRegistry;
@@ -125,6 +127,11 @@ public class InMemoryServiceRegistry implements DynamicConfigSource, AstrixServi
 		this.configSource.set(setting, value);
 	}
 	
+	@Override
+	public CompletionStage<ConfigSnapshot> setAll(Map<String, String> propertyValues) {
+		return this.configSource.setAll(propertyValues);
+	}
+	
 	
 	public <T> void registerProvider(Class<T> api, T provider, String subsystem) {
 		// TODO: remove this method?
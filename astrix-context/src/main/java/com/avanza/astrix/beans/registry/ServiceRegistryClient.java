@@ -16,8 +16,11 @@
 package com.avanza.astrix.beans.registry;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.avanza.astrix.beans.core.AstrixBeanKey;
 import com.avanza.astrix.beans.service.ServiceConsumerProperties;
@@ -31,6 +34,7 @@ public class ServiceRegistryClient {
 	
 	private final AstrixServiceRegistry serviceRegistry;
 	private final ServiceConsumerProperties consumerProperties;
+	private final ConcurrentMap<AstrixBeanKey<?>, ServiceProperties> lastClusterByBeanKey = new ConcurrentHashMap<>();
 
 	public ServiceRegistryClient(AstrixServiceRegistry serviceRegistry, ServiceConsumerProperties serviceConsumerProperties) {
 		this.consumerProperties = Objects.requireNonNull(serviceConsumerProperties);
@@ -42,7 +46,92 @@ public class ServiceRegistryClient {
 		if (entry == null) {
 			return null;
 		}
-		return new ServiceProperties(entry.getServiceProperties());
+		ServiceProperties serviceProperties = new ServiceProperties(entry.getServiceProperties());
+		if (serviceProperties.getClusterSize() > 1) {
+			return lookupCluster(beanKey, serviceProperties);
+		}
+		lastClusterByBeanKey.remove(beanKey);
+		return serviceProperties;
+	}
+	
+	/*
+	 * Listing all members requires an additional round trip to the service registry. The members are only 
+	 * listed if the last known cluster is incomplete, or if the member returned by the lookup differs from 
+	 * the last known properties of that member. Since the service registry returns the members of a cluster 
+	 * in round robin order, a change to any member is detected within cluster size number of lookups.
+	 */
+	private <T> ServiceProperties lookupCluster(AstrixBeanKey<T> beanKey, ServiceProperties serviceProperties) {
+		ServiceProperties lastCluster = lastClusterByBeanKey.get(beanKey);
+		if (lastCluster != null && isCompleteClusterContaining(lastCluster, serviceProperties)) {
+			return new ServiceProperties(lastCluster.getProperties());
+		}
+		ServiceProperties cluster = withClusterMembers(beanKey, serviceProperties);
+		lastClusterByBeanKey.put(beanKey, new ServiceProperties(cluster.getProperties()));
+		return cluster;
+	}
+	
+	private static boolean isCompleteClusterContaining(ServiceProperties cluster, ServiceProperties member) {
+		if (cluster.getClusterSize() != member.getClusterSize()) {
+			return false;
+		}
+		for (int clusterInstanceId = 0; clusterInstanceId < cluster.getClusterSize(); clusterInstanceId++) {
+			if (cluster.getClusterMember(clusterInstanceId) == null) {
+				return false;
+			}
+		}
+		return member.equals(cluster.getClusterMember(member.getClusterInstanceId())) 
+				|| member.equals(cluster.getClusterMemberAlternate(member.getClusterInstanceId()));
+	}
+	
+	/*
+	 * Each member in a cluster providing a partitioned service registers its own entry. The properties
+	 * of all registered members are attached to the properties of the member with the lowest cluster instance id,
+	 * making the result independent of which member the lookup returned. 
+	 * 
+	 * When several servers register the same cluster instance id, the one with the lowest application instance id 
+	 * is used as member, and the next one as alternate provider for that member, see RemotingTransportSpi#submitHedgedRequest.
+	 */
+	private <T> ServiceProperties withClusterMembers(AstrixBeanKey<T> beanKey, ServiceProperties serviceProperties) {
+		ServiceProperties[] members = new ServiceProperties[serviceProperties.getClusterSize()];
+		ServiceProperties[] alternates = new ServiceProperties[members.length];
+		List<ServiceProperties> candidates = list(beanKey);
+		candidates.sort(Comparator.comparing((ServiceProperties candidate) -> candidate.getProperty(ServiceProperties.APPLICATION_INSTANCE_ID), 
+											 Comparator.nullsFirst(Comparator.naturalOrder())));
+		for (ServiceProperties candidate : candidates) {
+			int clusterInstanceId = candidate.getClusterInstanceId();
+			if (!isSameCluster(serviceProperties, candidate) || clusterInstanceId < 0 || clusterInstanceId >= members.length) {
+				continue;
+			}
+			if (members[clusterInstanceId] == null) {
+				members[clusterInstanceId] = candidate;
+			} else if (alternates[clusterInstanceId] == null) {
+				alternates[clusterInstanceId] = candidate;
+			}
+		}
+		if (serviceProperties.getClusterInstanceId() < members.length && members[serviceProperties.getClusterInstanceId()] == null) {
+			members[serviceProperties.getClusterInstanceId()] = serviceProperties;
+		}
+		ServiceProperties result = null;
+		for (int clusterInstanceId = 0; clusterInstanceId < members.length; clusterInstanceId++) {
+			if (members[clusterInstanceId] == null) {
+				continue;
+			}
+			if (result == null) {
+				result = new ServiceProperties(members[clusterInstanceId].getProperties());
+			}
+			result.setClusterMember(clusterInstanceId, members[clusterInstanceId]);
+			if (alternates[clusterInstanceId] != null) {
+				result.setClusterMemberAlternate(clusterInstanceId, alternates[clusterInstanceId]);
+			}
+		}
+		return result != null ? result : serviceProperties;
+	}
+
+	private static boolean isSameCluster(ServiceProperties serviceProperties, ServiceProperties candidate) {
+		return Objects.equals(serviceProperties.getComponent(), candidate.getComponent())
+				&& serviceProperties.getClusterSize() == candidate.getClusterSize()
+				&& Objects.equals(serviceProperties.getProperty(ServiceProperties.PUBLISHED), candidate.getProperty(ServiceProperties.PUBLISHED))
+				&& Objects.equals(serviceProperties.getProperty(ServiceProperties.SERVICE_ZONE), candidate.getProperty(ServiceProperties.SERVICE_ZONE));
 	}
 
 	public <T> List<ServiceProperties> list(AstrixBeanKey<T> beanKey) {
@@ -20,6 +20,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
+import com.avanza.astrix.core.remoting.Partitioner;
+
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -36,6 +38,20 @@ public final class ServiceProperties implements Serializable {
 	public static final String APPLICATION_INSTANCE_ID = "_applicationInstanceId";
 	public static final String PUBLISHED = "_published";
 	public static final String SERVICE_ZONE = "_zone";
+	/**
+	 * Partitioned services might be provided by a cluster of servers, each serving
+	 * one partition, identified by its cluster instance id (0 &lt;= id &lt; cluster size). 
+	 */
+	public static final String CLUSTER_SIZE = "_clusterSize";
+	public static final String CLUSTER_INSTANCE_ID = "_clusterInstanceId";
+	/**
+	 * The name of the {@link Partitioner} used by a cluster to map routing keys to cluster members, 
+	 * see {@link Partitioner#create(String)}. Published by the servers in the cluster along with the
+	 * cluster size, since all clients must route requests the same way the servers are populated.
+	 */
+	public static final String PARTITIONER = "_partitioner";
+	private static final String CLUSTER_MEMBER_PREFIX = "_clusterMember.";
+	private static final String CLUSTER_MEMBER_ALTERNATE_PREFIX = "_clusterMemberAlternate.";
 	
 	private final Map<String, String> properties = new HashMap<>();
 	
@@ -91,6 +107,90 @@ public final class ServiceProperties implements Serializable {
 	public void setComponent(String component) {
 		setProperty(COMPONENT, component);
 	}
+	
+	/**
+	 * @return the number of servers in the cluster providing the service, 1 if the service is not provided by a cluster
+	 */
+	public int getClusterSize() {
+		String clusterSize = getProperty(CLUSTER_SIZE);
+		return clusterSize != null ? Integer.parseInt(clusterSize) : 1;
+	}
+	
+	/**
+	 * @return the Partitioner published by the cluster providing the service, {@link Partitioner#MODULO} if none is published
+	 */
+	public Partitioner getPartitioner() {
+		String partitioner = getProperty(PARTITIONER);
+		return partitioner != null ? Partitioner.create(partitioner) : Partitioner.MODULO;
+	}
+	
+	public int getClusterInstanceId() {
+		String clusterInstanceId = getProperty(CLUSTER_INSTANCE_ID);
+		return clusterInstanceId != null ? Integer.parseInt(clusterInstanceId) : 0;
+	}
+	
+	/**
+	 * Attaches the properties of a given member in the cluster providing the service. 
+	 * 
+	 * @param clusterInstanceId
+	 * @param member
+	 */
+	public void setClusterMember(int clusterInstanceId, ServiceProperties member) {
+		setMemberProperties(CLUSTER_MEMBER_PREFIX + clusterInstanceId + ".", member);
+	}
+	
+	/**
+	 * Attaches the properties of an alternate provider for a given member in the cluster providing the service, 
+	 * i.e. another server serving the same cluster instance id. 
+	 * 
+	 * @param clusterInstanceId
+	 * @param alternate
+	 */
+	public void setClusterMemberAlternate(int clusterInstanceId, ServiceProperties alternate) {
+		setMemberProperties(CLUSTER_MEMBER_ALTERNATE_PREFIX + clusterInstanceId + ".", alternate);
+	}
+	
+	private void setMemberProperties(String prefix, ServiceProperties member) {
+		for (Map.Entry<String, String> property : member.properties.entrySet()) {
+			if (!property.getKey().startsWith(CLUSTER_MEMBER_PREFIX) && !property.getKey().startsWith(CLUSTER_MEMBER_ALTERNATE_PREFIX)) {
+				setProperty(prefix + property.getKey(), property.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Returns the properties of a given member in the cluster providing the service, see {@link #setClusterMember(int, ServiceProperties)}.
+	 * 
+	 * @param clusterInstanceId
+	 * @return the properties of the given member, or null if the member is not known
+	 */
+	public ServiceProperties getClusterMember(int clusterInstanceId) {
+		return getMemberProperties(CLUSTER_MEMBER_PREFIX + clusterInstanceId + ".");
+	}
+	
+	/**
+	 * Returns the properties of the alternate provider for a given member in the cluster providing the service, 
+	 * see {@link #setClusterMemberAlternate(int, ServiceProperties)}.
+	 * 
+	 * @param clusterInstanceId
+	 * @return the properties of the alternate provider, or null if no alternate provider is known
+	 */
+	public ServiceProperties getClusterMemberAlternate(int clusterInstanceId) {
+		return getMemberProperties(CLUSTER_MEMBER_ALTERNATE_PREFIX + clusterInstanceId + ".");
+	}
+	
+	private ServiceProperties getMemberProperties(String prefix) {
+		ServiceProperties result = null;
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			if (property.getKey().startsWith(prefix)) {
+				if (result == null) {
+					result = new ServiceProperties();
+				}
+				result.setProperty(property.getKey().substring(prefix.length()), property.getValue());
+			}
+		}
+		return result;
+	}
 
 	@Override
 	public int hashCode() {
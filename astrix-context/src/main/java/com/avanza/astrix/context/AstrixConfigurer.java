@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.avanza.astrix.beans.api.ApiProviderBeanPublisherModule;
+import com.avanza.astrix.beans.cache.BeanCacheModule;
 import com.avanza.astrix.beans.config.AstrixConfigModule;
 import com.avanza.astrix.beans.configdiscovery.ConfigDiscoveryModule;
 import com.avanza.astrix.beans.core.AstrixBeanKey;
@@ -80,6 +81,7 @@ import com.avanza.astrix.serviceunit.AstrixApplicationDescriptor;
 import com.avanza.astrix.serviceunit.ServiceUnitModule;
 import com.avanza.astrix.versioning.core.ObjectSerializerModule;
 import com.avanza.astrix.versioning.jackson1.Jackson1SerializerModule;
+import com.avanza.astrix.versioning.jackson1.TaggedBinarySerializerModule;
 /**
  * Used to configure and create an {@link AstrixContext}. <p>
  * 
@@ -136,6 +138,7 @@ public class AstrixConfigurer {
 		modulesConfigurer.register(new DirectComponentModule());
 		modulesConfigurer.register(new AstrixBeansCoreModule());
 		modulesConfigurer.register(new MetricsModule());
+		modulesConfigurer.register(new BeanCacheModule());
 		modulesConfigurer.register(new AstrixMBeanModule());
 		modulesConfigurer.register(new ServiceRegistryDiscoveryModule());
 		modulesConfigurer.register(new ConfigDiscoveryModule());
@@ -143,6 +146,7 @@ public class AstrixConfigurer {
 		modulesConfigurer.register(new ServiceModule());
 		modulesConfigurer.register(new ObjectSerializerModule());
 		modulesConfigurer.register(new Jackson1SerializerModule());
+		modulesConfigurer.register(new TaggedBinarySerializerModule());
 		modulesConfigurer.register(new ApiProviderBeanPublisherModule());
 		modulesConfigurer.register(new FaultToleranceModule());
 		modulesConfigurer.register(new BeanFactoryModule());
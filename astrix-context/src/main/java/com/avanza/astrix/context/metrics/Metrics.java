@@ -30,6 +30,30 @@ public interface Metrics {
 	
 	<T> Supplier<Observable<T>> timeObservable(Supplier<Observable<T>> observableFactory, String group, String name);
 	
+	/**
+	 * Increments the counter with the given group and name by one. <p>
+	 * 
+	 * The default implementation ignores the increment.
+	 * 
+	 * @param group
+	 * @param name
+	 */
+	default void incrementCounter(String group, String name) {
+	}
+	
+	/**
+	 * Registers a gauge whose value is read from the given supplier each time the metric is
+	 * reported. Registering a gauge with the same group and name again replaces the previous gauge. <p>
+	 * 
+	 * The default implementation ignores the gauge.
+	 * 
+	 * @param group
+	 * @param name
+	 * @param gauge
+	 */
+	default void registerGauge(String group, String name, Supplier<? extends Number> gauge) {
+	}
+	
 	public static class NoMetrics implements Metrics {
 		@Override
 		public <T> CheckedCommand<T> timeExecution(CheckedCommand<T> execution, String group, String name) {
@@ -53,5 +53,15 @@ final class MetricsImpl implements Metrics {
 	public <T> Supplier<Observable<T>> timeObservable(Supplier<Observable<T>> observableFactory, String group, String name) {
 		return metricsSpi.timeObservable(observableFactory, group, name);
 	}
+	
+	@Override
+	public void incrementCounter(String group, String name) {
+		metricsSpi.incrementCounter(group, name);
+	}
+	
+	@Override
+	public void registerGauge(String group, String name, Supplier<? extends Number> gauge) {
+		metricsSpi.registerGauge(group, name, gauge);
+	}
 
 }
@@ -26,4 +26,23 @@ public interface MetricsSpi {
 	<T> CheckedCommand<T> timeExecution(CheckedCommand<T> execution, String group, String name);
 	
 	<T> Supplier<Observable<T>> timeObservable(Supplier<Observable<T>> observableFactory, String group, String name);
+	
+	/**
+	 * See {@link Metrics#incrementCounter(String, String)}. The default implementation ignores the increment.
+	 * 
+	 * @param group
+	 * @param name
+	 */
+	default void incrementCounter(String group, String name) {
+	}
+	
+	/**
+	 * See {@link Metrics#registerGauge(String, String, Supplier)}. The default implementation ignores the gauge.
+	 * 
+	 * @param group
+	 * @param name
+	 * @param gauge
+	 */
+	default void registerGauge(String group, String name, Supplier<? extends Number> gauge) {
+	}
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.config.BeanConfiguration;
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.context.metrics.MetricsSpi;
+import com.avanza.astrix.core.AstrixCacheable;
+import com.avanza.astrix.core.function.CheckedCommand;
+
+import rx.Observable;
+
+public class BeanCacheProxyTest {
+	
+	private final AstrixBeanKey<PriceService> beanKey = AstrixBeanKey.create(PriceService.class);
+	private final MapConfigSource config = new MapConfigSource();
+	private final AtomicLong clock = new AtomicLong(0);
+	private final CountingMetrics metrics = new CountingMetrics();
+	private final AtomicInteger invocationCount = new AtomicInteger();
+	private final BeanCacheProxy cacheProxy = new BeanCacheProxy(beanKey, new BeanConfiguration(beanKey, new DynamicConfig(config), Collections.emptyMap()), metrics, clock::get);
+	
+	@Test
+	public void returnsCachedResultWithoutInvokingProxiedCommand() throws Throwable {
+		assertEquals("price-A", invoke("getPrice", "A"));
+		assertEquals("price-A", invoke("getPrice", "A"));
+		assertEquals("price-B", invoke("getPrice", "B"));
+		
+		assertEquals(2, invocationCount.get());
+		assertEquals(1, metrics.count(beanKey + ".hits"));
+		assertEquals(2, metrics.count(beanKey + ".misses"));
+	}
+	
+	@Test
+	public void doesNotCacheMethodsNotAnnotatedWithAstrixCacheable() throws Throwable {
+		invoke("getUncachedPrice", "A");
+		invoke("getUncachedPrice", "A");
+		
+		assertEquals(2, invocationCount.get());
+	}
+	
+	@Test
+	public void cachedResultsExpiresAfterTtl() throws Throwable {
+		config.set(AstrixBeanSettings.CACHE_TTL_MILLIS.nameFor(beanKey), "100");
+		invoke("getPrice", "A");
+		clock.set(99);
+		invoke("getPrice", "A");
+		assertEquals(1, invocationCount.get());
+		
+		clock.set(100);
+		invoke("getPrice", "A");
+		assertEquals(2, invocationCount.get());
+	}
+	
+	@Test
+	public void evictsLeastRecentlyUsedResultWhenMaxEntriesIsReached() throws Throwable {
+		config.set(AstrixBeanSettings.CACHE_MAX_ENTRIES.nameFor(beanKey), "2");
+		invoke("getPrice", "A");
+		invoke("getPrice", "B");
+		invoke("getPrice", "A");
+		invoke("getPrice", "C"); // Evicts B
+		assertEquals(3, invocationCount.get());
+		assertEquals(1, metrics.count(beanKey + ".evictions"));
+		
+		invoke("getPrice", "A");
+		assertEquals(3, invocationCount.get());
+		invoke("getPrice", "B");
+		assertEquals(4, invocationCount.get());
+	}
+	
+	@Test
+	public void changingCacheGenerationInvalidatesCache() throws Throwable {
+		invoke("getPrice", "A");
+		config.set(AstrixBeanSettings.CACHE_GENERATION.nameFor(beanKey), "1");
+		invoke("getPrice", "A");
+		
+		assertEquals(2, invocationCount.get());
+	}
+	
+	@Test
+	public void cachesReactiveInvocations() throws Throwable {
+		Method observePrice = PriceService.class.getMethod("observePrice", String.class);
+		Supplier<Observable<Object>> command = () -> Observable.defer(() -> Observable.<Object>just("price-" + invocationCount.incrementAndGet()));
+		
+		assertEquals("price-1", cacheProxy.proxyReactiveInvocation(observePrice, new Object[] {"A"}, command).get().toBlocking().first());
+		assertEquals("price-1", cacheProxy.proxyReactiveInvocation(observePrice, new Object[] {"A"}, command).get().toBlocking().first());
+		assertEquals(1, invocationCount.get());
+	}
+	
+	@Test
+	public void cachingCanBeDisabledAtRuntime() throws Throwable {
+		invoke("getPrice", "A");
+		config.set(AstrixBeanSettings.CACHE_ENABLED.nameFor(beanKey), "false");
+		invoke("getPrice", "A");
+		
+		assertEquals(2, invocationCount.get());
+	}
+	
+	private Object invoke(String methodName, String instrument) throws Throwable {
+		Method method = PriceService.class.getMethod(methodName, String.class);
+		CheckedCommand<Object> command = () -> {
+			invocationCount.incrementAndGet();
+			return "price-" + instrument;
+		};
+		return cacheProxy.proxyInvocation(method, new Object[] {instrument}, command).call();
+	}
+	
+	public interface PriceService {
+		@AstrixCacheable
+		String getPrice(String instrument);
+		
+		String getUncachedPrice(String instrument);
+		
+		@AstrixCacheable
+		Observable<String> observePrice(String instrument);
+	}
+	
+	private static final class CountingMetrics implements MetricsSpi {
+		
+		private final Map<String, Integer> counters = new HashMap<>();
+
+		@Override
+		public <T> CheckedCommand<T> timeExecution(CheckedCommand<T> execution, String group, String name) {
+			return execution;
+		}
+
+		@Override
+		public <T> Supplier<Observable<T>> timeObservable(Supplier<Observable<T>> observableFactory, String group, String name) {
+			return observableFactory;
+		}
+
+		@Override
+		public void incrementCounter(String group, String name) {
+			counters.merge(name, 1, Integer::sum);
+		}
+		
+		int count(String name) {
+			return counters.getOrDefault(name, 0);
+		}
+	}
+
+}
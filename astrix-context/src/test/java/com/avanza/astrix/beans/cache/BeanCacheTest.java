@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.cache.BeanCache.CacheKey;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+
+public class BeanCacheTest {
+	
+	private final AtomicLong clock = new AtomicLong(0);
+	private final DynamicLongProperty ttlMillis = new DynamicLongProperty(1000);
+	private final DynamicIntProperty maxEntries = new DynamicIntProperty(10);
+	private final BeanCache cache = new BeanCache(ttlMillis, maxEntries, new DynamicLongProperty(0), clock::get);
+	
+	@Test
+	public void evictsLeastRecentlyUsedEntriesDownToLowWaterMarkWhenFull() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			put(i);
+		}
+		for (int i = 0; i < 10; i++) {
+			if (i != 3) {
+				assertNotNull(cache.get(key(i)));
+			}
+		}
+		
+		assertEquals(2, put(10));
+		
+		assertEquals(9, cache.size());
+		assertNull(cache.get(key(3)));
+		assertNull(cache.get(key(0)));
+		assertNotNull(cache.get(key(1)));
+		assertNotNull(cache.get(key(10)));
+		assertEquals(0, put(11));
+	}
+	
+	@Test
+	public void removesExpiredEntriesBeforeEvictingLiveEntries() throws Exception {
+		maxEntries.set(2);
+		ttlMillis.set(100);
+		put(0);
+		ttlMillis.set(1000);
+		put(1);
+		clock.set(50);
+		assertNotNull(cache.get(key(0)));
+		
+		clock.set(100);
+		assertEquals(0, put(2));
+		
+		assertNull(cache.get(key(0)));
+		assertNotNull(cache.get(key(1)));
+		assertNotNull(cache.get(key(2)));
+	}
+	
+	private int put(int i) {
+		return cache.put(key(i), Integer.toString(i), cache.generation());
+	}
+	
+	private static CacheKey key(int i) {
+		return new CacheKey("getPrice", new Object[] { i });
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.beans.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.service.ServiceConsumerProperties;
+import com.avanza.astrix.beans.service.ServiceProperties;
+
+public class ServiceRegistryClientTest {
+	
+	private final FakeServiceRegistry serviceRegistry = new FakeServiceRegistry();
+	private final ServiceRegistryClient serviceRegistryClient = new ServiceRegistryClient(serviceRegistry, new ServiceConsumerProperties());
+	private final AstrixBeanKey<Ping> beanKey = AstrixBeanKey.create(Ping.class);
+	
+	@Test
+	public void attachesAllMembersInSameClusterToLookedUpService() throws Exception {
+		serviceRegistry.register(member(1, 2, "host-b"));
+		serviceRegistry.register(member(0, 2, "host-a"));
+		Map<String, String> otherZone = member(0, 2, "host-c");
+		otherZone.put(ServiceProperties.SERVICE_ZONE, "other-zone");
+		serviceRegistry.register(otherZone);
+		
+		ServiceProperties cluster = serviceRegistryClient.lookup(beanKey);
+		
+		assertEquals("host-a", cluster.getProperty("host"));
+		assertEquals("host-a", cluster.getClusterMember(0).getProperty("host"));
+		assertEquals("host-b", cluster.getClusterMember(1).getProperty("host"));
+		assertNull(cluster.getClusterMember(2));
+	}
+	
+	@Test
+	public void reusesLastKnownClusterWhileLookedUpMemberIsUnchanged() throws Exception {
+		serviceRegistry.register(member(0, 2, "host-a"));
+		serviceRegistry.register(member(1, 2, "host-b"));
+		
+		ServiceProperties first = serviceRegistryClient.lookup(beanKey);
+		ServiceProperties second = serviceRegistryClient.lookup(beanKey);
+		ServiceProperties third = serviceRegistryClient.lookup(beanKey);
+		
+		assertEquals(1, serviceRegistry.listCount);
+		assertEquals(first, second);
+		assertEquals(first, third);
+	}
+	
+	@Test
+	public void listsMembersWhenLookedUpMemberIsChanged() throws Exception {
+		serviceRegistry.register(member(0, 2, "host-a"));
+		serviceRegistry.register(member(1, 2, "host-b"));
+		serviceRegistryClient.lookup(beanKey);
+		
+		serviceRegistry.entries.get(1).getServiceProperties().put("host", "host-c");
+		ServiceProperties cluster = serviceRegistryClient.lookup(beanKey);
+		
+		assertEquals(2, serviceRegistry.listCount);
+		assertEquals("host-c", cluster.getClusterMember(1).getProperty("host"));
+	}
+	
+	@Test
+	public void listsMembersOnEachLookupWhileClusterIsIncomplete() throws Exception {
+		serviceRegistry.register(member(0, 2, "host-a"));
+		
+		serviceRegistryClient.lookup(beanKey);
+		ServiceProperties cluster = serviceRegistryClient.lookup(beanKey);
+		
+		assertEquals(2, serviceRegistry.listCount);
+		assertEquals("host-a", cluster.getClusterMember(0).getProperty("host"));
+		assertNull(cluster.getClusterMember(1));
+	}
+	
+	@Test
+	public void doesNotListMembersOfServiceProvidedBySingleServer() throws Exception {
+		Map<String, String> singleServer = member(0, 1, "host-a");
+		serviceRegistry.register(singleServer);
+		
+		ServiceProperties serviceProperties = serviceRegistryClient.lookup(beanKey);
+		
+		assertEquals(0, serviceRegistry.listCount);
+		assertEquals(singleServer, serviceProperties.getProperties());
+	}
+	
+	@Test
+	public void attachesSecondProviderOfClusterMemberAsAlternate() throws Exception {
+		Map<String, String> alternate = member(0, 2, "host-c");
+		alternate.put(ServiceProperties.APPLICATION_INSTANCE_ID, "instance-c");
+		serviceRegistry.register(alternate);
+		Map<String, String> primary = member(0, 2, "host-a");
+		primary.put(ServiceProperties.APPLICATION_INSTANCE_ID, "instance-a");
+		serviceRegistry.register(primary);
+		serviceRegistry.register(member(1, 2, "host-b"));
+		
+		ServiceProperties cluster = serviceRegistryClient.lookup(beanKey);
+		
+		assertEquals("host-a", cluster.getClusterMember(0).getProperty("host"));
+		assertEquals("host-c", cluster.getClusterMemberAlternate(0).getProperty("host"));
+		assertEquals("host-b", cluster.getClusterMember(1).getProperty("host"));
+		assertNull(cluster.getClusterMemberAlternate(1));
+	}
+	
+	private static Map<String, String> member(int clusterInstanceId, int clusterSize, String host) {
+		Map<String, String> properties = new HashMap<>();
+		properties.put(ServiceProperties.API, Ping.class.getName());
+		properties.put(ServiceProperties.COMPONENT, "netty");
+		properties.put(ServiceProperties.PUBLISHED, "true");
+		properties.put(ServiceProperties.CLUSTER_SIZE, Integer.toString(clusterSize));
+		properties.put(ServiceProperties.CLUSTER_INSTANCE_ID, Integer.toString(clusterInstanceId));
+		properties.put("host", host);
+		return properties;
+	}
+	
+	public interface Ping {
+	}
+	
+	private static class FakeServiceRegistry implements AstrixServiceRegistry {
+		
+		private final List<AstrixServiceRegistryEntry> entries = new ArrayList<>();
+		private int lookupCount = 0;
+		private int listCount = 0;
+		
+		void register(Map<String, String> serviceProperties) {
+			AstrixServiceRegistryEntry entry = new AstrixServiceRegistryEntry();
+			entry.setServiceBeanType(Ping.class.getName());
+			entry.setServiceProperties(serviceProperties);
+			entries.add(entry);
+		}
+
+		@Override
+		public <T> AstrixServiceRegistryEntry lookup(String type, String qualifier, ServiceConsumerProperties serviceConsumerProperties) {
+			// Round robin over all registered entries, like the service registry
+			return entries.get(lookupCount++ % entries.size());
+		}
+
+		@Override
+		public <T> void register(AstrixServiceRegistryEntry properties, long lease) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T> void deregister(AstrixServiceRegistryEntry properties) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<AstrixServiceRegistryEntry> listServices() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<AstrixServiceRegistryEntry> listServices(String type, String qualifier) {
+			listCount++;
+			return entries;
+		}
+	}
+
+}
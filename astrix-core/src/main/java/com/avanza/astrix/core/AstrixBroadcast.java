@@ -32,4 +32,14 @@ public @interface AstrixBroadcast {
 	@SuppressWarnings("rawtypes")
 	Class<? extends RemoteResultReducer> reducer() default DefaultAstrixRemoteResultReducer.class;
 	
+	/**
+	 * Opt-in deadline (in milliseconds) for receiving the response from each server partition. <p>
+	 * 
+	 * When set to a positive value the reducer is invoked with the responses that have arrived when
+	 * the deadline expires, and each partition that did not respond in time is reported as
+	 * {@link AstrixRemoteResult#unavailable(String, CorrelationId)}. Defaults to -1, i.e. wait for all partitions.
+	 * Not applicable for methods with void return type.
+	 */
+	long partialResultDeadlineMillis() default -1;
+	
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method whose result might be cached by the client for a short period
+ * of time. Results are cached per bean, keyed by the invoked method and the arguments passed
+ * to it. Hence all arguments to a cacheable method must implement equals and hashCode. <p>
+ * 
+ * Cached results are shared, i.e. all invocations hitting the cache receive the same instance. 
+ * Callers must therefore never modify a result returned from a cacheable method, and such
+ * methods should preferably return immutable types. <p>
+ * 
+ * The time to live and maximum number of cached results are configured using 
+ * the cache settings in AstrixBeanSettings. 
+ */
+@Target(value={ElementType.METHOD})
+@Retention(value=RetentionPolicy.RUNTIME)
+@Documented
+public @interface AstrixCacheable {
+}
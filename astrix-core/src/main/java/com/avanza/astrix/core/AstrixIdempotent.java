@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a service method as idempotent, i.e. invoking the method several times with 
+ * equal arguments has the same effect, and returns the same result, as invoking it once. <p>
+ * 
+ * Remoting clients uses this information to collapse concurrent invocations of an idempotent
+ * method: While an invocation is in flight, all invocations with equal arguments share the 
+ * response from the in flight invocation rather than sending a new request to the server. 
+ */
+@Target(value={ElementType.METHOD})
+@Retention(value=RetentionPolicy.RUNTIME)
+@Documented
+public @interface AstrixIdempotent {
+}
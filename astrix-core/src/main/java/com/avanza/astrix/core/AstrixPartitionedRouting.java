@@ -68,4 +68,14 @@ public @interface AstrixPartitionedRouting {
 	@SuppressWarnings("rawtypes")
 	Class<? extends Collection> collectionFactory() default ArrayList.class;
 	
+	/**
+	 * Opt-in deadline (in milliseconds) for receiving the response from each targeted server partition. <p>
+	 * 
+	 * When set to a positive value the reducer is invoked with the responses that have arrived when
+	 * the deadline expires, and each partition that did not respond in time is reported as
+	 * {@link AstrixRemoteResult#unavailable(String, CorrelationId)}. Defaults to -1, i.e. wait for all partitions.
+	 * Not applicable for methods with void return type.
+	 */
+	long partialResultDeadlineMillis() default -1;
+	
 }
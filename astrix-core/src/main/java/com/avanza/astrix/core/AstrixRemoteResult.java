@@ -131,6 +131,11 @@ public abstract class AstrixRemoteResult<T> {
 		public boolean hasThrownException() {
 			return true;
 		}
+		
+		@Override
+		public boolean isServiceUnavailable() {
+			return true;
+		}
 
 		@Override
 		public boolean equals(Object obj) {
@@ -198,5 +203,13 @@ public abstract class AstrixRemoteResult<T> {
 	 * @return The exception if the underlying service invocation threw an exception.   
 	 */
 	public abstract Exception getThrownException();
+	
+	/**
+	 * @return true if no result is available from the target partition (or cluster member), for instance
+	 * when it did not respond within the partial result deadline of a broadcasted or partitioned invocation.
+	 */
+	public boolean isServiceUnavailable() {
+		return false;
+	}
 
 }
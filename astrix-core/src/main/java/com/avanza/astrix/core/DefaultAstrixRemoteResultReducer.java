@@ -20,20 +20,32 @@ import java.util.Collection;
 import java.util.List;
 
 /**
+ * Concatenates the results from all partitions. Partitions that are unavailable, for instance
+ * partitions that did not respond within the partial result deadline, are left out.
  *
  */
-public class DefaultAstrixRemoteResultReducer<T> implements RemoteResultReducer<List<T>> {
+public class DefaultAstrixRemoteResultReducer<T> implements IncrementalRemoteResultReducer<List<T>, List<T>> {
 
 	@Override
-	public List<T> reduce(List<AstrixRemoteResult<List<T>>> results) {
-		List<T> result = new ArrayList<>();
-		for (AstrixRemoteResult<List<T>> remoteResult : results) {
-			Collection<T> r = remoteResult.getResult();
-			if (result != null) {
-				result.addAll(r);
-			}
+	public List<T> init() {
+		return new ArrayList<>();
+	}
+	
+	@Override
+	public List<T> accumulate(List<T> result, AstrixRemoteResult<List<T>> remoteResult) {
+		if (remoteResult.isServiceUnavailable()) {
+			return result;
+		}
+		Collection<T> r = remoteResult.getResult();
+		if (r != null) {
+			result.addAll(r);
 		}
 		return result;
 	}
+	
+	@Override
+	public List<T> finish(List<T> result) {
+		return result;
+	}
 
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.util.List;
+
+/**
+ * A {@link RemoteResultReducer} that reduces the response from each partition as soon as 
+ * it is received, rather than waiting for the responses from all partitions. This 
+ * reduces peak memory usage for broadcasted and partitioned invocations against large 
+ * clusters, and allows responses to be deserialized while waiting for the slowest partition. <p>
+ * 
+ * A new reducer instance is created for each invocation, and the methods of a given instance
+ * are never invoked concurrently. <p>
+ * 
+ *
+ * @param <T> - the result type
+ * @param <A> - the type of the accumulated (partial) result
+ */
+public interface IncrementalRemoteResultReducer<T, A> extends RemoteResultReducer<T> {
+	
+	/**
+	 * Creates the initial accumulated result, before any response is received.
+	 * 
+	 * @return
+	 */
+	A init();
+	
+	/**
+	 * Folds the response from a single partition into the accumulated result. 
+	 * 
+	 * @param accumulator - the currently accumulated result
+	 * @param result - the response from a single partition
+	 * @return the new accumulated result
+	 */
+	A accumulate(A accumulator, AstrixRemoteResult<T> result);
+	
+	/**
+	 * Creates the final result when the responses from all partitions have been accumulated.
+	 * 
+	 * @param accumulator
+	 * @return
+	 */
+	T finish(A accumulator);
+	
+	@Override
+	default T reduce(List<AstrixRemoteResult<T>> results) {
+		A accumulator = init();
+		for (AstrixRemoteResult<T> result : results) {
+			accumulator = accumulate(accumulator, result);
+		}
+		return finish(accumulator);
+	}
+
+}
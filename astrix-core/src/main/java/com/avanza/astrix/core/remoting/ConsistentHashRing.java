@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.remoting;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Consistent hashing {@link Partitioner}. Each partition owns a number of virtual nodes placed on a ring 
+ * of 32 bit hashes, and a routing key is mapped to the owner of the first virtual node at or after the 
+ * (mixed) hash of the key. <p>
+ * 
+ * The placement of the virtual nodes of a given partition does not depend on the number of partitions. 
+ * Hence, adding a partition to a cluster of N partitions only moves the keys taken over by the virtual
+ * nodes of the new partition, about 1/(N+1) of all keys, whereas {@link Partitioner#MODULO} remaps 
+ * almost every key. <p>
+ * 
+ * The ring for a given partition count is built once and cached.
+ */
+public final class ConsistentHashRing implements Partitioner {
+	
+	public static final int DEFAULT_VIRTUAL_NODES_PER_PARTITION = 160;
+	
+	private final int virtualNodesPerPartition;
+	private final ConcurrentMap<Integer, Ring> ringByPartitionCount = new ConcurrentHashMap<>();
+	
+	public ConsistentHashRing() {
+		this(DEFAULT_VIRTUAL_NODES_PER_PARTITION);
+	}
+	
+	public ConsistentHashRing(int virtualNodesPerPartition) {
+		if (virtualNodesPerPartition < 1) {
+			throw new IllegalArgumentException("virtualNodesPerPartition must be positive: " + virtualNodesPerPartition);
+		}
+		this.virtualNodesPerPartition = virtualNodesPerPartition;
+	}
+
+	@Override
+	public int partition(RoutingKey routingKey, int partitionCount) {
+		if (partitionCount < 2) {
+			return 0;
+		}
+		Ring ring = ringByPartitionCount.get(partitionCount);
+		if (ring == null) {
+			ring = ringByPartitionCount.computeIfAbsent(partitionCount, count -> new Ring(count, virtualNodesPerPartition));
+		}
+		return ring.owner(mix(routingKey.hashCode()));
+	}
+	
+	/*
+	 * Spreads the bits of the hash (murmur3 finalizer). Routing keys are frequently small 
+	 * sequential integers, which would otherwise all land between the same two virtual nodes.
+	 */
+	static int mix(int hash) {
+		int h = hash;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+	
+	private static final class Ring {
+		
+		private final int[] points;
+		private final int[] owners;
+		
+		Ring(int partitionCount, int virtualNodesPerPartition) {
+			int size = partitionCount * virtualNodesPerPartition;
+			long[] nodes = new long[size];
+			int i = 0;
+			for (int partition = 0; partition < partitionCount; partition++) {
+				for (int virtualNode = 0; virtualNode < virtualNodesPerPartition; virtualNode++) {
+					int point = mix(31 * mix(partition) + virtualNode);
+					// Sort by point, break ties by partition to keep the ring deterministic
+					nodes[i++] = ((long) point << 32) | partition;
+				}
+			}
+			Arrays.sort(nodes);
+			this.points = new int[size];
+			this.owners = new int[size];
+			for (i = 0; i < size; i++) {
+				this.points[i] = (int) (nodes[i] >> 32);
+				this.owners[i] = (int) nodes[i];
+			}
+		}
+		
+		int owner(int hash) {
+			int index = Arrays.binarySearch(points, hash);
+			if (index < 0) {
+				index = -index - 1;
+				if (index == points.length) {
+					index = 0;
+				}
+			} else {
+				// Several virtual nodes may share the same point, use the first one
+				while (index > 0 && points[index - 1] == hash) {
+					index--;
+				}
+			}
+			return owners[index];
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.remoting;
+
+/**
+ * A Partitioner decides what partition (cluster member) a given routing key is mapped to. <p>
+ * 
+ * Both the client side partitioning of a partitioned invocation and the transport routing the 
+ * resulting requests must use the same Partitioner. The default is {@link #MODULO}, which is 
+ * compatible with the routing used by GigaSpaces. <p>
+ * 
+ * Transports that don't rely on GigaSpaces routing may use a {@link ConsistentHashRing} instead,
+ * which only remaps about 1/N of all keys when the number of partitions changes.
+ */
+public interface Partitioner {
+	
+	/**
+	 * Maps each routing key to partition abs(hash % partitionCount).
+	 */
+	Partitioner MODULO = new Modulo();
+	
+	/**
+	 * Maps the given routing key to a partition. 
+	 * 
+	 * @param routingKey
+	 * @param partitionCount
+	 * @return the target partition, in the range [0, partitionCount). Always 0 when partitionCount is less than 2.
+	 */
+	int partition(RoutingKey routingKey, int partitionCount);
+	
+	/**
+	 * Creates a Partitioner by name, either "modulo" or "consistent-hash".
+	 */
+	static Partitioner create(String name) {
+		switch (name.trim().toLowerCase()) {
+		case "modulo":
+			return MODULO;
+		case "consistent-hash":
+			return new ConsistentHashRing();
+		default:
+			throw new IllegalArgumentException("Unknown partitioner: " + name);
+		}
+	}
+	
+	public static final class Modulo implements Partitioner {
+		@Override
+		public int partition(RoutingKey routingKey, int partitionCount) {
+			if (partitionCount < 2) {
+				return 0;
+			}
+			return Math.abs(routingKey.hashCode() % partitionCount);
+		}
+	}
+
+}
@@ -23,7 +23,8 @@ import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.RemoteResultReducer;
 
 /**
- * Reduce {@link Map}s into one {@link Map} containing the union of all input data
+ * Reduce {@link Map}s into one {@link Map} containing the union of all input data. Results
+ * from unavailable partitions are left out.
  * @author joasah
  */
 public class GenericAstrixMapReducer<K, V> implements RemoteResultReducer<Map<K, V>> {
@@ -32,6 +33,9 @@ public class GenericAstrixMapReducer<K, V> implements RemoteResultReducer<Map<K,
 	public Map<K, V> reduce(List<AstrixRemoteResult<Map<K, V>>> results) {
 		Map<K, V> map = new HashMap<K, V>();
 		for (AstrixRemoteResult<Map<K, V>> result : results) {
+			if (result.isServiceUnavailable()) {
+				continue;
+			}
 			map.putAll(result.getResult());
 		}
 		return map;
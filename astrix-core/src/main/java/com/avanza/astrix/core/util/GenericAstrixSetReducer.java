@@ -23,7 +23,8 @@ import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.RemoteResultReducer;
 
 /**
- * Reduce {@link Set}s into one {@link Set} containing the union of all unique input data.
+ * Reduce {@link Set}s into one {@link Set} containing the union of all unique input data. Results
+ * from unavailable partitions are left out.
  * 
  */
 public class GenericAstrixSetReducer<T> implements RemoteResultReducer<Set<T>> {
@@ -32,6 +33,9 @@ public class GenericAstrixSetReducer<T> implements RemoteResultReducer<Set<T>> {
 	public Set<T> reduce(List<AstrixRemoteResult<Set<T>>> results) {
 		Set<T> set = new HashSet<>();
 		for (AstrixRemoteResult<Set<T>> result : results) {
+			if (result.isServiceUnavailable()) {
+				continue;
+			}
 			set.addAll(result.getResult());
 		}
 		return set;
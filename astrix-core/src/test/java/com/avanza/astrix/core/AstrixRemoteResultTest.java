@@ -26,6 +26,7 @@ public class AstrixRemoteResultTest {
 		AstrixRemoteResult<String> result = AstrixRemoteResult.successful("foo");
 		
 		assertFalse(result.hasThrownException());
+		assertFalse(result.isServiceUnavailable());
 		assertEquals("foo", result.getResult());
 		assertNull(result.getThrownException());
 	}
@@ -35,6 +36,7 @@ public class AstrixRemoteResultTest {
 		AstrixRemoteResult<String> result = AstrixRemoteResult.unavailable("unavailable", CorrelationId.valueOf("foo"));
 		
 		assertTrue(result.hasThrownException());
+		assertTrue(result.isServiceUnavailable());
 		assertEquals(ServiceUnavailableException.class, result.getThrownException().getClass());
 		try {
 			result.getResult();
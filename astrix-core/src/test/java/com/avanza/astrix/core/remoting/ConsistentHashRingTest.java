@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+	
+	private static final int KEY_COUNT = 100_000;
+	private final ConsistentHashRing ring = new ConsistentHashRing();
+	
+	@Test
+	public void spreadsKeysEvenlyOverAllPartitions() throws Exception {
+		int[] keysByPartition = new int[8];
+		for (int key = 0; key < KEY_COUNT; key++) {
+			keysByPartition[ring.partition(RoutingKey.create(key), 8)]++;
+		}
+		for (int partition = 0; partition < 8; partition++) {
+			int keyCount = keysByPartition[partition];
+			assertTrue("Unbalanced partition " + partition + ": " + keyCount, keyCount > 0.75 * KEY_COUNT / 8 && keyCount < 1.25 * KEY_COUNT / 8);
+		}
+	}
+	
+	@Test
+	public void addingAPartitionOnlyMovesKeysToTheNewPartition() throws Exception {
+		int movedKeys = 0;
+		for (int key = 0; key < KEY_COUNT; key++) {
+			int before = ring.partition(RoutingKey.create(key), 4);
+			int after = ring.partition(RoutingKey.create(key), 5);
+			if (before != after) {
+				assertEquals(4, after);
+				movedKeys++;
+			}
+		}
+		assertTrue("Moved keys: " + movedKeys, movedKeys > 0.1 * KEY_COUNT && movedKeys < 0.3 * KEY_COUNT);
+	}
+	
+	@Test
+	public void handlesNegativeHashes() throws Exception {
+		for (int hash : new int[] { -1, -17, Integer.MIN_VALUE }) {
+			int partition = ring.partition(RoutingKey.create(hash), 3);
+			assertTrue(partition >= 0 && partition < 3);
+			assertTrue(Partitioner.MODULO.partition(RoutingKey.create(hash), 3) >= 0);
+		}
+	}
+	
+	@Test
+	public void singlePartitionClusterAlwaysMapsToPartitionZero() throws Exception {
+		assertEquals(0, ring.partition(RoutingKey.create(42), 1));
+		assertEquals(0, Partitioner.MODULO.partition(RoutingKey.create(42), 0));
+	}
+
+}
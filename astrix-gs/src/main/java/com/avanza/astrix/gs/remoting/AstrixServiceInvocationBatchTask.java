@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+import org.openspaces.core.executor.AutowireTask;
+import org.openspaces.core.executor.Task;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.spring.AstrixSpringContext;
+/**
+ * Invokes a batch of service invocation requests routed to the same partition, see 
+ * {@link AstrixServiceActivator#invokeServiceBatch(List)}.
+ */
+@AutowireTask
+public class AstrixServiceInvocationBatchTask implements Task<ArrayList<AstrixServiceInvocationResponse>> {
+
+	private static final long serialVersionUID = 1L;
+
+	@Resource
+	private transient AstrixSpringContext astrixSpringContext;
+	private final ArrayList<AstrixServiceInvocationRequest> invocationRequests;
+	
+	public AstrixServiceInvocationBatchTask(List<AstrixServiceInvocationRequest> invocationRequests) {
+		this.invocationRequests = new ArrayList<>(invocationRequests);
+	}
+
+	@Override
+	public ArrayList<AstrixServiceInvocationResponse> execute() throws Exception {
+		AstrixServiceActivator serviceActivator = astrixSpringContext.getInstance(AstrixServiceActivator.class);
+		return new ArrayList<>(serviceActivator.invokeServiceBatch(invocationRequests));
+	}
+
+}
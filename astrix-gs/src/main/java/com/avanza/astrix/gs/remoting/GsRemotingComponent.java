@@ -17,19 +17,16 @@ package com.avanza.astrix.gs.remoting;
 
 import org.openspaces.core.GigaSpace;
 
-import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
-import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.gs.BoundProxyServiceBeanInstance;
 import com.avanza.astrix.gs.ClusteredProxyCache;
 import com.avanza.astrix.gs.ClusteredProxyCacheImpl.GigaSpaceInstance;
 import com.avanza.astrix.gs.GsBinder;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
-import com.avanza.astrix.remoting.client.RemotingProxy;
-import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.RemotingProxyFactory;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 import com.avanza.astrix.spring.AstrixSpringContext;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -47,28 +44,24 @@ public class GsRemotingComponent implements ServiceComponent {
 	private final AstrixServiceActivator serviceActivator;
 	private final ObjectSerializerFactory objectSerializerFactory;
 	private final ClusteredProxyCache proxyCache;
-	private final ReactiveTypeConverter reactiveTypeConverter;
+	private final RemotingProxyFactory remotingProxyFactory;
 	
 	public GsRemotingComponent(GsBinder gsBinder, AstrixSpringContext astrixSpringContext,
 			AstrixServiceActivator serviceActivator, ObjectSerializerFactory objectSerializerFactory,
-			ClusteredProxyCache proxyCache, ReactiveTypeConverter reactiveTypeConverter) {
+			ClusteredProxyCache proxyCache, RemotingProxyFactory remotingProxyFactory) {
 		this.gsBinder = gsBinder;
 		this.astrixSpringContext = astrixSpringContext;
 		this.serviceActivator = serviceActivator;
 		this.objectSerializerFactory = objectSerializerFactory;
 		this.proxyCache = proxyCache;
-		this.reactiveTypeConverter = reactiveTypeConverter;
+		this.remotingProxyFactory = remotingProxyFactory;
 	}
 
 	@Override
 	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
-		AstrixObjectSerializer objectSerializer = objectSerializerFactory.create(serviceDefinition.getObjectSerializerDefinition());
-		
 		GigaSpaceInstance proxyInstance = proxyCache.getProxy(serviceProperties);
 		GsRemotingTransport gsRemotingTransport = new GsRemotingTransport(proxyInstance.getSpaceTaskDispatcher());
-		RemotingTransport remotingTransport = RemotingTransport.create(gsRemotingTransport);
-		T proxy = RemotingProxy.create(serviceDefinition.getServiceType(), ReflectionUtil.classForName(serviceProperties.getProperty(ServiceProperties.API))
-				, remotingTransport, objectSerializer, new GsRoutingStrategy(), reactiveTypeConverter);
+		T proxy = remotingProxyFactory.create(serviceDefinition, serviceProperties, gsRemotingTransport, new GsRoutingStrategy());
 		return BoundProxyServiceBeanInstance.create(proxy, proxyInstance);
 	}
 	
@@ -81,6 +74,7 @@ public class GsRemotingComponent implements ServiceComponent {
 	public <T> ServiceProperties createServiceProperties(ServiceDefinition<T> serviceDefinition) {
 		GigaSpace space = gsBinder.getEmbeddedSpace(astrixSpringContext.getApplicationContext());
 		ServiceProperties serviceProperties = gsBinder.createProperties(space);
+		serviceActivator.publishMethodTable(serviceDefinition.getServiceType(), serviceProperties);
 		return serviceProperties;
 	}
 	
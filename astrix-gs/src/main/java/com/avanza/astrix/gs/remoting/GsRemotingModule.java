@@ -17,13 +17,13 @@ package com.avanza.astrix.gs.remoting;
 
 import org.kohsuke.MetaInfServices;
 
-import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.ft.BeanFaultToleranceFactory;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.context.AstrixContextPlugin;
 import com.avanza.astrix.context.AstrixStrategiesConfig;
 import com.avanza.astrix.gs.ClusteredProxyCache;
 import com.avanza.astrix.modules.ModuleContext;
+import com.avanza.astrix.remoting.client.RemotingProxyFactory;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 import com.avanza.astrix.spring.AstrixSpringContext;
 import com.avanza.astrix.versioning.core.ObjectSerializerFactory;
@@ -43,7 +43,7 @@ public class GsRemotingModule implements AstrixContextPlugin {
 		moduleContext.importType(BeanFaultToleranceFactory.class);
 		moduleContext.importType(ClusteredProxyCache.class);
 		moduleContext.importType(AstrixServiceActivator.class);
-		moduleContext.importType(ReactiveTypeConverter.class);
+		moduleContext.importType(RemotingProxyFactory.class);
 		
 		moduleContext.export(ServiceComponent.class);
 	}
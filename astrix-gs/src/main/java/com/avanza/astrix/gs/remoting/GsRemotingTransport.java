@@ -49,12 +49,27 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return observeRoutedRequest(request, routingKey);
 	}
 
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		return spaceTaskDispatcher.observe(new AstrixServiceInvocationBatchTask(requests), routingKey)
+								  .map(responses -> (List<AstrixServiceInvocationResponse>) responses);
+	}
+
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(final Collection<RoutedServiceInvocationRequest> requests) {
 		if (requests.isEmpty()) {
 			return Observable.just(Collections.<AstrixServiceInvocationResponse>emptyList());
 		}
-		return observeRoutedReqeuests(requests);
+		return streamRoutedRequests(requests).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		for (RoutedServiceInvocationRequest request : requests) {
+			result = result.mergeWith(spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request.getRequest()), request.getRoutingkey()));
+		}
+		return result;
 	}
 	
 	@Override
@@ -62,19 +77,26 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return observeBroadcastRequest(request);
 	}
 	
+	/**
+	 * Sends one routed task to each partition, rather than a single distributed task, so that
+	 * the response from each partition is emitted as soon as it is received. This allows
+	 * a partial result to be reduced when some partitions fail to respond within the deadline 
+	 * of the invoked service method.
+	 */
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		for (int partition = 0; partition < partitionCount(); partition++) {
+			result = result.mergeWith(observeRoutedRequest(request, RoutingKey.create(partition)));
+		}
+		return result;
+	}
+	
 	private Observable<AstrixServiceInvocationResponse> observeRoutedRequest(AstrixServiceInvocationRequest request,
 																			  RoutingKey routingKey) {
 		return spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request), routingKey);
 	}
 	
-	private Observable<List<AstrixServiceInvocationResponse>> observeRoutedReqeuests(Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
-		for (RoutedServiceInvocationRequest request : requests) {
-			result = result.mergeWith(spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request.getRequest()), request.getRoutingkey()));
-		}
-		return result.toList();
-	}
-	
 	private Observable<List<AstrixServiceInvocationResponse>> observeBroadcastRequest(AstrixServiceInvocationRequest request) {
 		Observable<List<AsyncResult<AstrixServiceInvocationResponse>>> responses = spaceTaskDispatcher.observe(new AstrixDistributedServiceInvocationTask(request));
 		Func1<List<AsyncResult<AstrixServiceInvocationResponse>>, Observable<AstrixServiceInvocationResponse>> listToObservable = 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Reads the response to a batch posted to a {@link HttpRemotingEndpoint} as its content arrives, and
+ * passes each invocation response to a {@link ResponseListener} as soon as it is fully received. <p>
+ * 
+ * Each response in the batch is framed by the index of the request it belongs to, followed by the length 
+ * of the serialized response. The exchange fails if a response index is unknown or repeated, or if the 
+ * response ends before a response for each request is received.
+ */
+final class BatchResponseConsumer extends AbstractAsyncResponseConsumer<Void> {
+	
+	static final int FRAME_HEADER_LENGTH = 8;
+	
+	private final ResponseListener listener;
+	private final boolean[] receivedResponses;
+	private int remainingResponses;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+	private byte[] content = new byte[8192];
+	private int contentLength = 0;
+	
+	BatchResponseConsumer(int responseCount, ResponseListener listener) {
+		this.listener = listener;
+		this.receivedResponses = new boolean[responseCount];
+		this.remainingResponses = responseCount;
+	}
+
+	@Override
+	protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+		if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+			throw new HttpException("Batch invocation failed: " + response.getStatusLine());
+		}
+	}
+
+	@Override
+	protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+		while (decoder.read(readBuffer) > 0) {
+			readBuffer.flip();
+			append(readBuffer);
+			readBuffer.clear();
+		}
+		readResponses();
+	}
+
+	@Override
+	protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+	}
+
+	@Override
+	protected Void buildResult(HttpContext context) throws Exception {
+		if (remainingResponses > 0) {
+			throw new IOException("Batch response ended before all responses were received. Missing responses: " + remainingResponses);
+		}
+		return null;
+	}
+
+	@Override
+	protected void releaseResources() {
+		content = null;
+	}
+	
+	private void append(ByteBuffer buffer) {
+		int required = contentLength + buffer.remaining();
+		if (required > content.length) {
+			content = Arrays.copyOf(content, Math.max(required, 2 * content.length));
+		}
+		buffer.get(content, contentLength, buffer.remaining());
+		contentLength = required;
+	}
+	
+	private void readResponses() throws IOException {
+		int offset = 0;
+		while (contentLength - offset >= FRAME_HEADER_LENGTH) {
+			int requestIndex = readInt(offset);
+			int responseLength = readInt(offset + 4);
+			if (responseLength < 0) {
+				throw new IOException("Illegal response length in batch: " + responseLength);
+			}
+			if (contentLength - offset - FRAME_HEADER_LENGTH < responseLength) {
+				break; // Wait for remaining content of response
+			}
+			AstrixServiceInvocationResponse response = deserialize(offset + FRAME_HEADER_LENGTH, responseLength);
+			offset += FRAME_HEADER_LENGTH + responseLength;
+			if (requestIndex < 0 || requestIndex >= receivedResponses.length || receivedResponses[requestIndex]) {
+				throw new IOException("Unexpected request index in batch response: " + requestIndex);
+			}
+			receivedResponses[requestIndex] = true;
+			remainingResponses--;
+			listener.onResponse(requestIndex, response);
+		}
+		System.arraycopy(content, offset, content, 0, contentLength - offset);
+		contentLength -= offset;
+	}
+	
+	private int readInt(int offset) {
+		return ((content[offset] & 0xff) << 24) 
+				| ((content[offset + 1] & 0xff) << 16) 
+				| ((content[offset + 2] & 0xff) << 8) 
+				| (content[offset + 3] & 0xff);
+	}
+	
+	private AstrixServiceInvocationResponse deserialize(int offset, int length) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(content, offset, length))) {
+			return (AstrixServiceInvocationResponse) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Failed to read batch invocation response", e);
+		}
+	}
+	
+	interface ResponseListener {
+		void onResponse(int requestIndex, AstrixServiceInvocationResponse response);
+	}
+
+}
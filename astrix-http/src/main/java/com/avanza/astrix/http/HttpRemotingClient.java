@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.context.metrics.Metrics;
+
+/**
+ * Owns the http client, and its pool of keep-alive connections, shared by all
+ * {@link HttpRemotingTransport}'s within an AstrixContext. <p>
+ * 
+ * The connection pool is bounded both per route (remote endpoint) and in total, and its
+ * statistics are published as gauges in the "HttpRemotingClient" metrics group.
+ */
+public final class HttpRemotingClient {
+	
+	/**
+	 * Max number of connections to a single remote endpoint.
+	 */
+	public static final IntSetting HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE = IntSetting.create("astrix.http.client.maxConnectionsPerRoute", 50);
+	/**
+	 * Max number of connections in total, to all remote endpoints.
+	 */
+	public static final IntSetting HTTP_CLIENT_MAX_CONNECTIONS = IntSetting.create("astrix.http.client.maxConnections", 500);
+	/**
+	 * Number of io dispatch threads. A value less than one uses the number of available processors.
+	 */
+	public static final IntSetting HTTP_CLIENT_IO_THREADS = IntSetting.create("astrix.http.client.ioThreads", 0);
+	public static final IntSetting HTTP_CLIENT_CONNECT_TIMEOUT = IntSetting.create("astrix.http.client.connectTimeout", 1_000);
+	/**
+	 * Max time in milliseconds to wait for a connection from the pool when all connections
+	 * to the target route are leased.
+	 */
+	public static final IntSetting HTTP_CLIENT_CONNECTION_REQUEST_TIMEOUT = IntSetting.create("astrix.http.client.connectionRequestTimeout", 5_000);
+	private static final String METRICS_GROUP = "HttpRemotingClient";
+	
+	private final PoolingNHttpClientConnectionManager connectionManager;
+	private final CloseableHttpAsyncClient httpClient;
+	
+	public HttpRemotingClient(AstrixConfig config, Metrics metrics) {
+		IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+				.setConnectTimeout(config.get(HTTP_CLIENT_CONNECT_TIMEOUT).get())
+				.setTcpNoDelay(true)
+				.setSoKeepAlive(true);
+		int ioThreads = config.get(HTTP_CLIENT_IO_THREADS).get();
+		if (ioThreads > 0) {
+			ioReactorConfig.setIoThreadCount(ioThreads);
+		}
+		try {
+			this.connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig.build()));
+		} catch (IOReactorException e) {
+			throw new IllegalStateException("Failed to create http remoting io reactor", e);
+		}
+		this.connectionManager.setMaxTotal(config.get(HTTP_CLIENT_MAX_CONNECTIONS).get());
+		this.connectionManager.setDefaultMaxPerRoute(config.get(HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE).get());
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(config.get(HTTP_CLIENT_CONNECT_TIMEOUT).get())
+				.setConnectionRequestTimeout(config.get(HTTP_CLIENT_CONNECTION_REQUEST_TIMEOUT).get())
+				.build();
+		this.httpClient = HttpAsyncClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.build();
+		metrics.registerGauge(METRICS_GROUP, "leasedConnections", () -> connectionManager.getTotalStats().getLeased());
+		metrics.registerGauge(METRICS_GROUP, "availableConnections", () -> connectionManager.getTotalStats().getAvailable());
+		metrics.registerGauge(METRICS_GROUP, "pendingConnectionRequests", () -> connectionManager.getTotalStats().getPending());
+		metrics.registerGauge(METRICS_GROUP, "maxConnections", () -> connectionManager.getTotalStats().getMax());
+		this.httpClient.start();
+	}
+	
+	Future<HttpResponse> execute(HttpPost request, FutureCallback<HttpResponse> callback) {
+		return httpClient.execute(request, callback);
+	}
+	
+	<T> Future<T> execute(HttpPost request, HttpAsyncResponseConsumer<T> responseConsumer, FutureCallback<T> callback) {
+		return httpClient.execute(HttpAsyncMethods.create(request), responseConsumer, callback);
+	}
+	
+	@PreDestroy
+	public void destroy() throws IOException {
+		httpClient.close();
+	}
+
+}
@@ -1,9 +1,3 @@
-package com.avanza.astrix.http;
-
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-
 /*
  * Copyright 2014 Avanza Bank AB
  *
@@ -19,24 +13,53 @@ import java.io.ObjectOutputStream;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 /**
+ * Servlet endpoint for remoting over http. <p>
+ * 
+ * Requests are processed asynchronously: The container thread is released as soon as the 
+ * invocation request is read, and the response is written by the thread completing the
+ * service invocation. Hence the servlet must be registered with async support enabled. <p>
+ * 
+ * Responses are sent with a Content-Length, allowing clients to reuse keep-alive connections
+ * without chunked transfer encoding. <p>
+ * 
+ * Requests posted with the {@link #BATCH_CONTENT_TYPE} carry several invocation requests in a single
+ * object stream: The number of requests followed by each request. The requests in a batch are executed
+ * concurrently, and each response is streamed back as soon as it completes. Each response is serialized
+ * separately and framed by the index of the request it belongs to followed by the length of the serialized
+ * response, allowing the client to read each response without waiting for the rest of the batch.
  * 
  * @author Elias Lindholm
  *
  */
 public class HttpRemotingEndpoint extends HttpServlet {
 	
-	/*
-	 * This is only a draft for remoting over http
-	 */
+	static final String BATCH_CONTENT_TYPE = "application/x-astrix-batch";
+	private static final String SERIALIZED_OBJECT = "application/x-java-serialized-object";
+	private static final Logger log = LoggerFactory.getLogger(HttpRemotingEndpoint.class);
 	
 	private final AstrixServiceActivator serviceActivator;
 	
@@ -46,13 +69,132 @@ public class HttpRemotingEndpoint extends HttpServlet {
 
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		String contentType = req.getContentType();
+		if (contentType != null && contentType.startsWith(BATCH_CONTENT_TYPE)) {
+			doPostBatch(req, resp);
+			return;
+		}
+		AstrixServiceInvocationRequest invocationRequest;
+		try {
+			invocationRequest = (AstrixServiceInvocationRequest) new ObjectInputStream(req.getInputStream()).readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new ServletException("Failed to read invocation request", e);
+		}
+		AsyncContext asyncContext = req.startAsync();
+		serviceActivator.invokeServiceAsync(invocationRequest).whenComplete((invocationResponse, error) -> {
+			try {
+				if (error != null) {
+					log.warn("Service invocation failed", error);
+					resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				} else {
+					writeResponse(invocationResponse, resp);
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn("Failed to write invocation response", e);
+			} finally {
+				asyncContext.complete();
+			}
+		});
+	}
+	
+	private void doPostBatch(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		List<AstrixServiceInvocationRequest> invocationRequests;
 		try {
 			ObjectInputStream input = new ObjectInputStream(req.getInputStream());
-			AstrixServiceInvocationRequest invocationRequest = (AstrixServiceInvocationRequest) input.readObject();
-			AstrixServiceInvocationResponse invocationResponse = serviceActivator.invokeService(invocationRequest);
-			new ObjectOutputStream(resp.getOutputStream()).writeObject(invocationResponse);
-		} catch (Exception e) {
-			throw new ServletException(e);
+			int requestCount = input.readInt();
+			invocationRequests = new ArrayList<>(requestCount);
+			for (int i = 0; i < requestCount; i++) {
+				invocationRequests.add((AstrixServiceInvocationRequest) input.readObject());
+			}
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new ServletException("Failed to read batch invocation request", e);
+		}
+		resp.setContentType(BATCH_CONTENT_TYPE);
+		AsyncContext asyncContext = req.startAsync();
+		BatchResponseWriter responseWriter = new BatchResponseWriter(asyncContext, invocationRequests.size());
+		for (int i = 0; i < invocationRequests.size(); i++) {
+			int requestIndex = i;
+			AstrixServiceInvocationRequest invocationRequest = invocationRequests.get(i);
+			asyncContext.start(() -> {
+				try {
+					serviceActivator.invokeServiceAsync(invocationRequest).whenComplete((invocationResponse, error) -> {
+						if (error != null) {
+							log.warn("Service invocation failed", error);
+							invocationResponse = serviceUnavailable(error);
+						}
+						responseWriter.write(requestIndex, invocationResponse);
+					});
+				} catch (RuntimeException e) {
+					// Each request in the batch must be answered, otherwise the batch is never completed
+					log.warn("Service invocation failed", e);
+					responseWriter.write(requestIndex, serviceUnavailable(e));
+				}
+			});
+		}
+	}
+	
+	private static AstrixServiceInvocationResponse serviceUnavailable(Throwable error) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("Service invocation failed: " + error.getMessage());
+		response.setCorrelationId(UUID.randomUUID().toString());
+		return response;
+	}
+	
+	private static void writeResponse(AstrixServiceInvocationResponse invocationResponse, HttpServletResponse resp) throws IOException {
+		byte[] serializedResponse = serialize(invocationResponse);
+		resp.setContentType(SERIALIZED_OBJECT);
+		resp.setContentLength(serializedResponse.length);
+		resp.getOutputStream().write(serializedResponse);
+	}
+	
+	private static byte[] serialize(AstrixServiceInvocationResponse invocationResponse) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(invocationResponse);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the responses in a batch in the order they complete, each response framed by its request 
+	 * index and length. The request is completed when the last response is written.
+	 */
+	private static final class BatchResponseWriter {
+		
+		private final AsyncContext asyncContext;
+		private int remainingResponses;
+		private DataOutputStream out;
+		private boolean failed = false;
+		
+		BatchResponseWriter(AsyncContext asyncContext, int responseCount) {
+			this.asyncContext = asyncContext;
+			this.remainingResponses = responseCount;
+			if (responseCount == 0) {
+				asyncContext.complete();
+			}
+		}
+		
+		synchronized void write(int requestIndex, AstrixServiceInvocationResponse invocationResponse) {
+			try {
+				if (!failed) {
+					if (out == null) {
+						out = new DataOutputStream(asyncContext.getResponse().getOutputStream());
+					}
+					byte[] serializedResponse = serialize(invocationResponse);
+					out.writeInt(requestIndex);
+					out.writeInt(serializedResponse.length);
+					out.write(serializedResponse);
+					out.flush();
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn("Failed to write batch invocation response", e);
+				failed = true;
+			}
+			remainingResponses--;
+			if (remainingResponses == 0) {
+				asyncContext.complete();
+			}
 		}
 	}
 
@@ -15,47 +15,69 @@
  */
 package com.avanza.astrix.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.entity.SerializableEntity;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
 
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 /**
+ * Invokes remote services by posting java serialized requests to a {@link HttpRemotingEndpoint}. All
+ * transports share the pooled keep-alive connections of a single {@link HttpRemotingClient}. <p>
+ * 
+ * Routed requests targeting the same cluster member are grouped and posted as a single batch. The
+ * responses in a batch are parsed and emitted as they arrive, see {@link BatchResponseConsumer}.
  * 
  * @author Elias Lindholm
  *
  */
 public final class HttpRemotingTransport implements RemotingTransportSpi {
 
-	private final CloseableHttpAsyncClient httpclient = HttpAsyncClients.createDefault();
+	private static final ContentType SERIALIZED_OBJECT = ContentType.create("application/x-java-serialized-object");
+	private static final ContentType BATCH = ContentType.create(HttpRemotingEndpoint.BATCH_CONTENT_TYPE);
+	
+	private final HttpRemotingClient httpClient;
 	private final Map<Integer, ClusterMember> clusterMembers = new ConcurrentHashMap<>();
 	private final int clusterSize; // may be larger than clusterMembers.size in case not all members are discovered yet.
+	private final Partitioner partitioner;
 	
-	public HttpRemotingTransport(Collection<ClusterMember> clusterMembers, int clusterSize) {
+	/**
+	 * @param httpClient
+	 * @param clusterMembers
+	 * @param clusterSize
+	 * @param partitioner the partitioner published by the cluster along with the cluster size, see {@link com.avanza.astrix.beans.service.ServiceProperties#getPartitioner()}
+	 */
+	public HttpRemotingTransport(HttpRemotingClient httpClient, Collection<ClusterMember> clusterMembers, int clusterSize, Partitioner partitioner) {
+		this.httpClient = httpClient;
 		this.clusterSize = clusterSize;
+		this.partitioner = partitioner;
 		for (ClusterMember clusterMember : clusterMembers) {
 			this.clusterMembers.put(clusterMember.getClusterInstanceId(), clusterMember);
 		}
@@ -65,13 +87,60 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(
 			final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
 		ClusterMember clusterMember = getTargetMember(routingKey);
+		return execute(request, clusterMember);
+	}
+	
+	/**
+	 * Posts the given request to the given cluster member. The http request is cancelled if the subscriber
+	 * unsubscribes before the response is received, for instance when a broadcasted invocation returns a
+	 * partial result since the cluster member failed to respond within the deadline of the invoked method.
+	 */
+	private Observable<AstrixServiceInvocationResponse> execute(AstrixServiceInvocationRequest request, ClusterMember clusterMember) {
+		return post(clusterMember, new ByteArrayEntity(serialize(request), SERIALIZED_OBJECT), this::serviceResponseCallback);
+	}
+	
+	/**
+	 * Posts the given requests as a single batch to the given cluster member. Each response is emitted 
+	 * as soon as it is received from the cluster member, together with the index of the request it belongs 
+	 * to. The http request is cancelled if the subscriber unsubscribes before all responses are received.
+	 */
+	private Observable<IndexedResponse> executeBatch(List<AstrixServiceInvocationRequest> requests, ClusterMember clusterMember) {
+		final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
+		postRequest.setEntity(new ByteArrayEntity(serializeBatch(requests), BATCH));
+		return Observable.create(new OnSubscribe<IndexedResponse>() {
+			@Override
+			public void call(final Subscriber<? super IndexedResponse> t1) {
+				try {
+					BatchResponseConsumer responseConsumer = new BatchResponseConsumer(requests.size(), 
+							(requestIndex, response) -> t1.onNext(new IndexedResponse(requestIndex, response)));
+					Future<Void> response = httpClient.execute(postRequest, responseConsumer, batchCompletedCallback(t1));
+					t1.add(Subscriptions.from(response));
+				} catch (Exception e) {
+					t1.onError(e);
+				}
+			}
+		});
+	}
+	
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		ClusterMember clusterMember = getTargetMember(routingKey);
+		return executeBatch(requests, clusterMember)
+				.collect(() -> new AstrixServiceInvocationResponse[requests.size()], 
+						 (responses, indexedResponse) -> responses[indexedResponse.requestIndex] = indexedResponse.response)
+				.map(Arrays::asList);
+	}
+	
+	private Observable<AstrixServiceInvocationResponse> post(ClusterMember clusterMember, HttpEntity entity, 
+			Function<Subscriber<? super AstrixServiceInvocationResponse>, FutureCallback<HttpResponse>> responseCallback) {
 		final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-		postRequest.setEntity(new SerializableEntity(request));
+		postRequest.setEntity(entity);
 		return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
 			@Override
 			public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
 				try {
-					httpclient.execute(postRequest, serviceResponseCallback(t1));
+					Future<HttpResponse> response = httpClient.execute(postRequest, responseCallback.apply(t1));
+					t1.add(Subscriptions.from(response));
 				} catch (Exception e) {
 					t1.onError(e);
 				}
@@ -83,33 +152,42 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(
 			Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
+		return streamRoutedRequests(requests).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(
+			Collection<RoutedServiceInvocationRequest> requests) {
+		Map<ClusterMember, List<AstrixServiceInvocationRequest>> requestsByMember = new LinkedHashMap<>();
 		for (RoutedServiceInvocationRequest request : requests) {
-			result = result.mergeWith(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
+			requestsByMember.computeIfAbsent(getTargetMember(request.getRoutingkey()), member -> new ArrayList<>()).add(request.getRequest());
+		}
+		List<Observable<AstrixServiceInvocationResponse>> result = new ArrayList<>(requestsByMember.size());
+		for (Map.Entry<ClusterMember, List<AstrixServiceInvocationRequest>> memberRequests : requestsByMember.entrySet()) {
+			List<AstrixServiceInvocationRequest> batch = memberRequests.getValue();
+			if (batch.size() == 1) {
+				result.add(execute(batch.get(0), memberRequests.getKey()));
+			} else {
+				result.add(executeBatch(batch, memberRequests.getKey()).map(indexedResponse -> indexedResponse.response));
+			}
 		}
-		return result.toList();
+		return Observable.merge(result);
 	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(
 			AstrixServiceInvocationRequest request) {
+		return streamBroadcastRequest(request).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(
+			AstrixServiceInvocationRequest request) {
 		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
 		for (ClusterMember clusterMember : getAllClusterMembers()) {
-			final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-			postRequest.setEntity(new SerializableEntity(request));
-			result = result.mergeWith(Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
-				@Override
-				public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
-					try {
-						httpclient.execute(postRequest, serviceResponseCallback(t1));
-					} catch (Exception e) {
-						t1.onError(e);
-					}
-				}
-
-			}));
+			result = result.mergeWith(execute(request, clusterMember));
 		}
-		return result.toList();
+		return result;
 	}
 	
 	private Collection<ClusterMember> getAllClusterMembers() {
@@ -117,7 +195,7 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 	}
 	
 	private ClusterMember getTargetMember(RoutingKey routingKey) {
-		int targetPartition = routingKey.hashCode() % partitionCount();
+		int targetPartition = partitioner().partition(routingKey, partitionCount());
 		ClusterMember target = this.clusterMembers.get(targetPartition);
 		if (target == null) {
 			throw new ServiceUnavailableException("Failed to find cluster member with id: " + targetPartition);
@@ -140,7 +218,25 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 				t1.onError(ex);
 			}
 			public void cancelled() {
-				t1.onError(new RuntimeException("Request cancelled"));
+				if (!t1.isUnsubscribed()) {
+					t1.onError(new RuntimeException("Request cancelled"));
+				}
+			}
+		};
+	}
+	
+	private FutureCallback<Void> batchCompletedCallback(final Subscriber<?> t1) {
+		return new FutureCallback<Void>() {
+			public void completed(final Void result) {
+				t1.onCompleted();
+			}
+			public void failed(final Exception ex) {
+				t1.onError(ex);
+			}
+			public void cancelled() {
+				if (!t1.isUnsubscribed()) {
+					t1.onError(new RuntimeException("Request cancelled"));
+				}
 			}
 		};
 	}
@@ -160,17 +256,49 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 		return this.clusterSize;
 	}
 	
-	@PostConstruct
-	public void init() {
-	    httpclient.start();
+	@Override
+	public Partitioner partitioner() {
+		return partitioner;
+	}
+	
+	/*
+	 * Serialized up front rather than streamed, which allows the request to be sent with
+	 * a Content-Length rather than using chunked transfer encoding.
+	 */
+	private static byte[] serialize(Object request) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(request);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to serialize invocation request", e);
+		}
+		return bytes.toByteArray();
 	}
 	
-	@PreDestroy
-	public void destroy() throws IOException {
-		httpclient.close();
+	private static byte[] serializeBatch(List<AstrixServiceInvocationRequest> requests) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512 * requests.size());
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeInt(requests.size());
+			for (AstrixServiceInvocationRequest request : requests) {
+				out.writeObject(request);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to serialize batch invocation request", e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static final class IndexedResponse {
+		private final int requestIndex;
+		private final AstrixServiceInvocationResponse response;
+		
+		IndexedResponse(int requestIndex, AstrixServiceInvocationResponse response) {
+			this.requestIndex = requestIndex;
+			this.response = response;
+		}
 	}
 	
-	private static class ClusterMember {
+	public static final class ClusterMember {
 		private String remoteEndpoint;
 		private int clusterInstanceId;
 		public ClusterMember(String remoteEndpoint, int clusterInstanceId) {
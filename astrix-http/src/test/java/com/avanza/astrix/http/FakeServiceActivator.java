@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+/**
+ * AstrixServiceActivator that delegates each asynchronous invocation to a given function.
+ */
+final class FakeServiceActivator implements AstrixServiceActivator {
+	
+	private volatile Function<AstrixServiceInvocationRequest, CompletionStage<AstrixServiceInvocationResponse>> invoker;
+	
+	void setInvoker(Function<AstrixServiceInvocationRequest, CompletionStage<AstrixServiceInvocationResponse>> invoker) {
+		this.invoker = invoker;
+	}
+
+	@Override
+	public CompletionStage<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest invocationRequest) {
+		return invoker.apply(invocationRequest);
+	}
+
+	@Override
+	public AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest invocationRequest) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<AstrixServiceInvocationResponse> invokeServiceBatch(List<AstrixServiceInvocationRequest> invocationRequests) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public CompletionStage<List<AstrixServiceInvocationResponse>> invokeServiceBatchAsync(List<AstrixServiceInvocationRequest> invocationRequests) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String getServiceApi(AstrixServiceInvocationRequest invocationRequest) {
+		return null;
+	}
+
+	@Override
+	public void publishMethodTable(Class<?> publishedApi, ServiceProperties serviceProperties) {
+		throw new UnsupportedOperationException();
+	}
+	
+	static AstrixServiceInvocationResponse response(Object body) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody(body);
+		return response;
+	}
+	
+	static AstrixServiceInvocationRequest request(String value) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader("value", value);
+		return request;
+	}
+
+}
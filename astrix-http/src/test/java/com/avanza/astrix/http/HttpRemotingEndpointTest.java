@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static com.avanza.astrix.http.FakeServiceActivator.request;
+import static com.avanza.astrix.http.FakeServiceActivator.response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+public class HttpRemotingEndpointTest {
+	
+	@Rule
+	public HttpRemotingTestServer server = new HttpRemotingTestServer();
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+	
+	@Test(timeout = 5000)
+	public void respondsWithSerializedInvocationResponseAndContentLength() throws Exception {
+		server.getServiceActivator().setInvoker(request -> CompletableFuture.completedFuture(response("echo-" + request.getHeader("value"))));
+		
+		HttpURLConnection connection = post(request("foo"));
+		
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("application/x-java-serialized-object", connection.getContentType());
+		byte[] body = readFully(connection.getInputStream());
+		assertEquals(body.length, connection.getContentLength());
+		assertEquals("echo-foo", deserialize(body).getResponseBody());
+	}
+	
+	@Test(timeout = 5000)
+	public void respondsWhenInvocationCompletesAsynchronously() throws Exception {
+		CompletableFuture<AstrixServiceInvocationResponse> result = new CompletableFuture<>();
+		server.getServiceActivator().setInvoker(request -> {
+			scheduler.schedule(() -> result.complete(response("async-response")), 100, TimeUnit.MILLISECONDS);
+			return result;
+		});
+		
+		HttpURLConnection connection = post(request("foo"));
+		
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("async-response", deserialize(readFully(connection.getInputStream())).getResponseBody());
+	}
+	
+	@Test(timeout = 5000)
+	public void respondsWithInternalServerErrorWhenInvocationFails() throws Exception {
+		CompletableFuture<AstrixServiceInvocationResponse> result = new CompletableFuture<>();
+		result.completeExceptionally(new IllegalStateException("Invocation failed"));
+		server.getServiceActivator().setInvoker(request -> result);
+		
+		HttpURLConnection connection = post(request("foo"));
+		
+		assertEquals(500, connection.getResponseCode());
+	}
+	
+	@Test(timeout = 5000)
+	public void respondsWithServiceUnavailableResponseForFailedRequestInBatch() throws Exception {
+		server.getServiceActivator().setInvoker(request -> {
+			CompletableFuture<AstrixServiceInvocationResponse> result = new CompletableFuture<>();
+			if (request.getHeader("value").equals("fail")) {
+				result.completeExceptionally(new IllegalStateException("Invocation failed"));
+			} else {
+				result.complete(response("ok-response"));
+			}
+			return result;
+		});
+		
+		HttpURLConnection connection = postBatch(request("fail"), request("ok"));
+		
+		assertEquals(200, connection.getResponseCode());
+		AstrixServiceInvocationResponse[] responses = new AstrixServiceInvocationResponse[2];
+		try (DataInputStream in = new DataInputStream(connection.getInputStream())) {
+			for (int i = 0; i < responses.length; i++) {
+				int requestIndex = in.readInt();
+				byte[] serializedResponse = new byte[in.readInt()];
+				in.readFully(serializedResponse);
+				responses[requestIndex] = deserialize(serializedResponse);
+			}
+			assertEquals("Expected end of batch", -1, in.read());
+		}
+		assertTrue(responses[0].isServiceUnavailable());
+		assertNotNull(responses[0].getExceptionMsg());
+		assertEquals("ok-response", responses[1].getResponseBody());
+	}
+	
+	private HttpURLConnection post(AstrixServiceInvocationRequest request) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(body)) {
+			out.writeObject(request);
+		}
+		return post("application/x-java-serialized-object", body.toByteArray());
+	}
+	
+	private HttpURLConnection postBatch(AstrixServiceInvocationRequest... requests) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(body)) {
+			out.writeInt(requests.length);
+			for (AstrixServiceInvocationRequest request : requests) {
+				out.writeObject(request);
+			}
+		}
+		return post(HttpRemotingEndpoint.BATCH_CONTENT_TYPE, body.toByteArray());
+	}
+	
+	private HttpURLConnection post(String contentType, byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(server.getEndpointUri()).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", contentType);
+		connection.setDoOutput(true);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		return connection;
+	}
+	
+	private static AstrixServiceInvocationResponse deserialize(byte[] serializedResponse) throws Exception {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedResponse))) {
+			return (AstrixServiceInvocationResponse) in.readObject();
+		}
+	}
+	
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			result.write(buffer, 0, read);
+		}
+		in.close();
+		return result.toByteArray();
+	}
+
+}
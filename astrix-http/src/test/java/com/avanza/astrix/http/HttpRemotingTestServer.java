@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.Collections;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.rules.ExternalResource;
+import org.mockito.Mockito;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.core.remoting.Partitioner;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+
+/**
+ * Runs a {@link HttpRemotingEndpoint} in an embedded jetty server, and a {@link HttpRemotingClient}
+ * connected to it, for the duration of a test.
+ */
+final class HttpRemotingTestServer extends ExternalResource {
+	
+	private final FakeServiceActivator serviceActivator = new FakeServiceActivator();
+	private Server server;
+	private HttpRemotingClient client;
+	
+	@Override
+	protected void before() throws Throwable {
+		server = new Server(0);
+		ServletContextHandler context = new ServletContextHandler();
+		ServletHolder endpoint = new ServletHolder(new HttpRemotingEndpoint(serviceActivator));
+		endpoint.setAsyncSupported(true);
+		context.addServlet(endpoint, "/remoting");
+		server.setHandler(context);
+		server.start();
+		client = new HttpRemotingClient(config(), new Metrics.NoMetrics());
+	}
+	
+	@Override
+	protected void after() {
+		try {
+			client.destroy();
+			server.stop();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	FakeServiceActivator getServiceActivator() {
+		return serviceActivator;
+	}
+	
+	HttpRemotingClient getClient() {
+		return client;
+	}
+	
+	String getEndpointUri() {
+		return "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/remoting";
+	}
+	
+	HttpRemotingTransport createTransport() {
+		return new HttpRemotingTransport(client, Collections.singleton(new ClusterMember(getEndpointUri(), 0)), 1, Partitioner.MODULO);
+	}
+	
+	private static AstrixConfig config() {
+		DynamicConfig dynamicConfig = DynamicConfig.create(new MapConfigSource());
+		AstrixConfig config = Mockito.mock(AstrixConfig.class);
+		Mockito.when(config.get(Mockito.any(IntSetting.class))).thenAnswer(invocation -> ((IntSetting) invocation.getArguments()[0]).getFrom(dynamicConfig));
+		return config;
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static com.avanza.astrix.http.FakeServiceActivator.request;
+import static com.avanza.astrix.http.FakeServiceActivator.response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import rx.observers.TestSubscriber;
+
+import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+
+public class HttpRemotingTransportTest {
+	
+	@Rule
+	public HttpRemotingTestServer server = new HttpRemotingTestServer();
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	
+	@After
+	public void after() {
+		scheduler.shutdownNow();
+	}
+	
+	@Test(timeout = 5000)
+	public void submitRoutedBatch_MatchesResponsesWithRequestsByIndex() throws Exception {
+		CompletableFuture<AstrixServiceInvocationResponse> first = new CompletableFuture<>();
+		server.getServiceActivator().setInvoker(request -> {
+			if (request.getHeader("value").equals("first")) {
+				return first;
+			}
+			// Complete the first request well after the second, making the server respond out of order
+			scheduler.schedule(() -> first.complete(response("first-response")), 100, TimeUnit.MILLISECONDS);
+			return CompletableFuture.completedFuture(response("second-response"));
+		});
+		
+		List<AstrixServiceInvocationResponse> responses = server.createTransport()
+				.submitRoutedBatch(Arrays.asList(request("first"), request("second")), RoutingKey.create(1))
+				.toBlocking().first();
+		
+		assertEquals(2, responses.size());
+		assertEquals("first-response", responses.get(0).getResponseBody());
+		assertEquals("second-response", responses.get(1).getResponseBody());
+	}
+	
+	@Test(timeout = 5000)
+	public void streamRoutedRequests_EmitsEachResponseInBatchAsSoonAsItIsReceived() throws Exception {
+		CompletableFuture<AstrixServiceInvocationResponse> slow = new CompletableFuture<>();
+		server.getServiceActivator().setInvoker(request -> {
+			if (request.getHeader("value").equals("slow")) {
+				return slow;
+			}
+			return CompletableFuture.completedFuture(response("fast-response"));
+		});
+		
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		server.createTransport().streamRoutedRequests(Arrays.asList(
+				new RoutedServiceInvocationRequest(request("slow"), RoutingKey.create(1)), 
+				new RoutedServiceInvocationRequest(request("fast"), RoutingKey.create(1)))).subscribe(subscriber);
+		
+		while (subscriber.getOnNextEvents().isEmpty()) {
+			Thread.sleep(10);
+		}
+		assertEquals("fast-response", subscriber.getOnNextEvents().get(0).getResponseBody());
+		assertTrue(subscriber.getOnCompletedEvents().isEmpty());
+		
+		slow.complete(response("slow-response"));
+		subscriber.awaitTerminalEvent(2, TimeUnit.SECONDS);
+		subscriber.assertNoErrors();
+		assertEquals(2, subscriber.getOnNextEvents().size());
+		assertEquals("slow-response", subscriber.getOnNextEvents().get(1).getResponseBody());
+	}
+	
+	@Test(timeout = 5000)
+	public void submitRoutedBatch_InvocationThrowingSynchronously_RespondsServiceUnavailableForThatRequest() throws Exception {
+		server.getServiceActivator().setInvoker(request -> {
+			if (request.getHeader("value").equals("fail")) {
+				throw new IllegalStateException("Invocation failed");
+			}
+			return CompletableFuture.completedFuture(response("ok-response"));
+		});
+		
+		List<AstrixServiceInvocationResponse> responses = server.createTransport()
+				.submitRoutedBatch(Arrays.asList(request("ok"), request("fail")), RoutingKey.create(1))
+				.toBlocking().first();
+		
+		assertFalse(responses.get(0).isServiceUnavailable());
+		assertEquals("ok-response", responses.get(0).getResponseBody());
+		assertTrue(responses.get(1).isServiceUnavailable());
+	}
+
+}
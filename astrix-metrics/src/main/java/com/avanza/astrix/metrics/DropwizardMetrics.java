@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import com.avanza.astrix.context.mbeans.AstrixMBeanExporter;
 import com.avanza.astrix.context.metrics.MetricsSpi;
 import com.avanza.astrix.core.function.CheckedCommand;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -94,6 +95,18 @@ public class DropwizardMetrics implements MetricsSpi {
 		};
 	}
 	
+	@Override
+	public void incrementCounter(String group, String name) {
+		metrics.counter(group + "#" + name).inc();
+	}
+	
+	@Override
+	public void registerGauge(String group, String name, Supplier<? extends Number> gauge) {
+		String metricName = group + "#" + name;
+		metrics.remove(metricName);
+		metrics.register(metricName, (Gauge<Number>) gauge::get);
+	}
+	
 	// For testing
 	MetricRegistry getMetrics() {
 		return metrics;
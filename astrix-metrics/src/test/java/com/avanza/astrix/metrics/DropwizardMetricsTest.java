@@ -18,6 +18,7 @@ package com.avanza.astrix.metrics;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import org.junit.After;
@@ -28,6 +29,7 @@ import com.avanza.astrix.context.AstrixApplicationContext;
 import com.avanza.astrix.context.TestAstrixConfigurer;
 import com.avanza.astrix.context.metrics.MetricsSpi;
 import com.avanza.astrix.core.function.CheckedCommand;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Timer;
 
 import rx.Observable;
@@ -100,5 +102,17 @@ public class DropwizardMetricsTest {
 		// Should meassure execution time roughly equal to 2000 us
 		assertTrue(fooMetrics.getSnapshot().getMean() > 100_000);
 	}
+	
+	@Test
+	public void registerGauge() throws Throwable {
+		AtomicInteger queueDepth = new AtomicInteger(3);
+		dropwizardMetrics.registerGauge("bar-group", "queue-depth", queueDepth::get);
+		
+		Gauge<?> gauge = dropwizardMetrics.getMetrics().getGauges().get("bar-group#queue-depth");
+		assertEquals(3, gauge.getValue());
+		
+		queueDepth.set(5);
+		assertEquals(5, gauge.getValue());
+	}
 
 }
@@ -15,8 +15,12 @@
  */
 package com.avanza.astrix.netty;
 
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,10 +29,13 @@ import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
-import com.avanza.astrix.beans.service.SimpleBoundServiceBeanInstance;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.netty.client.NettyRemotingClient;
+import com.avanza.astrix.netty.client.NettyRemotingClientManager;
 import com.avanza.astrix.netty.server.NettyRemotingServer;
+import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
 import com.avanza.astrix.remoting.client.RemotingProxyFactory;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -52,26 +59,137 @@ public class NettyRemotingComponent implements ServiceComponent {
 	private final AstrixServiceActivator serviceActivator;
 	private final ObjectSerializerFactory objectSerializerFactory;
 	private final NettyRemotingServer remotingServer;
+	private final NettyRemotingClientManager clientManager;
 	
 
 	public NettyRemotingComponent(RemotingProxyFactory remotingProxyFactory, AstrixServiceActivator serviceActivator,
-			ObjectSerializerFactory objectSerializerFactory, NettyRemotingServer remotingServer) {
+			ObjectSerializerFactory objectSerializerFactory, NettyRemotingServer remotingServer, NettyRemotingClientManager clientManager) {
 		this.remotingProxyFactory = remotingProxyFactory;
 		this.serviceActivator = serviceActivator;
 		this.objectSerializerFactory = objectSerializerFactory;
 		this.remotingServer = remotingServer;
+		this.clientManager = clientManager;
 	}
 
 	@Override
 	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
+		NettyRemotingClient[] clusterMembers = new NettyRemotingClient[serviceProperties.getClusterSize()];
+		NettyRemotingClient[] alternates = new NettyRemotingClient[clusterMembers.length];
+		try {
+			if (clusterMembers.length == 1) {
+				clusterMembers[0] = connect(serviceDefinition, serviceProperties);
+			} else {
+				connectClusterMembers(serviceDefinition, serviceProperties, clusterMembers);
+				connectAlternates(serviceDefinition, serviceProperties, alternates);
+			}
+		} catch (RuntimeException e) {
+			release(clusterMembers);
+			release(alternates);
+			throw e;
+		}
+		NettyRemotingTransport nettyRemotingTransport = new NettyRemotingTransport(clusterMembers, alternates, serviceProperties.getPartitioner());
+		T serviceProxy = remotingProxyFactory.create(serviceDefinition, serviceProperties, nettyRemotingTransport, new NettyRoutingStrategy());
+		return new NettyBoundServiceBeanInstance<T>(serviceProxy, clusterMembers, alternates);
+	}
+
+	/*
+	 * Partitioned services are provided by a cluster of servers, each serving one partition. Members
+	 * that are not discovered yet, or that can't be connected to, are left out. Invocations routed to such
+	 * members fail with ServiceUnavailableException until the bean is rebound.
+	 */
+	private void connectClusterMembers(ServiceDefinition<?> serviceDefinition, ServiceProperties serviceProperties, NettyRemotingClient[] clusterMembers) {
+		for (int clusterInstanceId = 0; clusterInstanceId < clusterMembers.length; clusterInstanceId++) {
+			ServiceProperties member = serviceProperties.getClusterMember(clusterInstanceId);
+			if (member == null && serviceProperties.getClusterInstanceId() == clusterInstanceId) {
+				member = serviceProperties;
+			}
+			if (member == null) {
+				log.warn("Cluster member not discovered. service={} clusterInstanceId={}", serviceDefinition.getServiceType().getName(), clusterInstanceId);
+				continue;
+			}
+			try {
+				clusterMembers[clusterInstanceId] = connect(serviceDefinition, member);
+			} catch (IllegalArgumentException e) {
+				log.warn("Failed to connect to cluster member: " + member, e);
+			}
+		}
+		if (Arrays.stream(clusterMembers).allMatch(Objects::isNull)) {
+			throw new ServiceUnavailableException("Failed to connect to any cluster member: " + serviceProperties);
+		}
+	}
+	
+	/*
+	 * Alternate providers are only used for hedged requests, hence a failure to connect to one is not an error.
+	 */
+	private void connectAlternates(ServiceDefinition<?> serviceDefinition, ServiceProperties serviceProperties, NettyRemotingClient[] alternates) {
+		for (int clusterInstanceId = 0; clusterInstanceId < alternates.length; clusterInstanceId++) {
+			ServiceProperties alternate = serviceProperties.getClusterMemberAlternate(clusterInstanceId);
+			if (alternate == null) {
+				continue;
+			}
+			try {
+				alternates[clusterInstanceId] = connect(serviceDefinition, alternate);
+			} catch (IllegalArgumentException e) {
+				log.warn("Failed to connect to alternate provider of cluster member: " + alternate, e);
+			}
+		}
+	}
+	
+	private NettyRemotingClient connect(ServiceDefinition<?> serviceDefinition, ServiceProperties serviceProperties) {
 		String host = serviceProperties.getProperty(NETTY_HOST);
 		int port = Integer.valueOf(serviceProperties.getProperty(NETTY_PORT));
-		log.info("Connecting to: {}:{}", host, port);
-		NettyRemotingClient remotingClient = new NettyRemotingClient();
-		remotingClient.connect(host, port);
-		NettyRemotingTransport nettyRemotingTransport = new NettyRemotingTransport(remotingClient);
-		T serviceProxy = remotingProxyFactory.create(serviceDefinition, serviceProperties, nettyRemotingTransport, new RoutingStrategy.RoundRobin());
-		return new SimpleBoundServiceBeanInstance<T>(serviceProxy); // TODO: proper lifecycle-management of remotingClient instance
+		log.debug("Binding {} to: {}:{}", serviceDefinition.getServiceType().getName(), host, port);
+		return clientManager.acquire(host, port);
+	}
+	
+	private void release(NettyRemotingClient[] clusterMembers) {
+		for (NettyRemotingClient clusterMember : clusterMembers) {
+			if (clusterMember != null) {
+				clientManager.release(clusterMember);
+			}
+		}
+	}
+	
+	/**
+	 * Routes using @AstrixRouting annotated arguments, if any, and round robin otherwise.
+	 */
+	private static class NettyRoutingStrategy implements RoutingStrategy {
+		
+		private final RoutingStrategy annotatedArgumentRouting = new DefaultAstrixRoutingStrategy();
+		private final RoutingStrategy roundRobin = new RoutingStrategy.RoundRobin();
+		
+		@Override
+		public Router create(Method serviceMethod) {
+			Router router = annotatedArgumentRouting.create(serviceMethod);
+			return router != null ? router : roundRobin.create(serviceMethod);
+		}
+	}
+	
+	private class NettyBoundServiceBeanInstance<T> implements BoundServiceBeanInstance<T> {
+		
+		private final T serviceProxy;
+		private final NettyRemotingClient[] clusterMembers;
+		private final NettyRemotingClient[] alternates;
+		private final AtomicBoolean released = new AtomicBoolean(false);
+		
+		public NettyBoundServiceBeanInstance(T serviceProxy, NettyRemotingClient[] clusterMembers, NettyRemotingClient[] alternates) {
+			this.serviceProxy = serviceProxy;
+			this.clusterMembers = clusterMembers;
+			this.alternates = alternates;
+		}
+
+		@Override
+		public T get() {
+			return serviceProxy;
+		}
+
+		@Override
+		public void release() {
+			if (released.compareAndSet(false, true)) {
+				NettyRemotingComponent.this.release(clusterMembers);
+				NettyRemotingComponent.this.release(alternates);
+			}
+		}
 	}
 
 	@Override
@@ -88,6 +206,12 @@ public class NettyRemotingComponent implements ServiceComponent {
 		ServiceProperties properties = new ServiceProperties();
 		properties.getProperties().put(NETTY_HOST, getHostName()); // TODO
 		properties.getProperties().put(NETTY_PORT, Integer.toString(remotingServer.getPort()));
+		if (remotingServer.getClusterSize() > 1) {
+			properties.getProperties().put(ServiceProperties.CLUSTER_SIZE, Integer.toString(remotingServer.getClusterSize()));
+			properties.getProperties().put(ServiceProperties.CLUSTER_INSTANCE_ID, Integer.toString(remotingServer.getClusterInstanceId()));
+			properties.getProperties().put(ServiceProperties.PARTITIONER, remotingServer.getPartitioner());
+		}
+		serviceActivator.publishMethodTable(exportedServiceDefinition.getServiceType(), properties);
 		return properties;
 	}
 
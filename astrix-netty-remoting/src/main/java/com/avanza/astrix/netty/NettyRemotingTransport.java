@@ -15,9 +15,12 @@
  */
 package com.avanza.astrix.netty;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.netty.client.NettyRemotingClient;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
@@ -27,34 +30,126 @@ import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 
 import rx.Observable;
 
+/**
+ * Transport for a cluster of netty remoting servers, where each member serves one partition. A
+ * service provided by a single server is represented by a cluster of size one. <p>
+ * 
+ * Routed requests are sent to the member serving the partition of the routing key, as decided by the
+ * configured {@link Partitioner}. Broadcast requests 
+ * are sent to all members concurrently. Requests targeting a member that is not discovered (yet) fail 
+ * with a {@link ServiceUnavailableException}. <p>
+ * 
+ * A member might have an alternate provider, i.e. another server serving the same partition. Hedged 
+ * requests are sent to the alternate provider of the target member, see 
+ * {@link RemotingTransportSpi#submitHedgedRequest(AstrixServiceInvocationRequest, RoutingKey)}.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class NettyRemotingTransport implements RemotingTransportSpi {
 	
-	private NettyRemotingClient remotingClient;
+	private final NettyRemotingClient[] clusterMembers;
+	private final NettyRemotingClient[] alternates;
+	private final Partitioner partitioner;
 
-	public NettyRemotingTransport(NettyRemotingClient remotingClient) {
-		this.remotingClient = remotingClient;
+	/**
+	 * @param clusterMembers the client for each cluster member, indexed by cluster instance id. Contains null for
+	 * members that are not discovered.
+	 * @param alternates the client for the alternate provider of each cluster member, indexed by cluster instance id. 
+	 * Contains null for members without a known alternate provider.
+	 * @param partitioner
+	 */
+	public NettyRemotingTransport(NettyRemotingClient[] clusterMembers, NettyRemotingClient[] alternates, Partitioner partitioner) {
+		this.clusterMembers = clusterMembers.clone();
+		this.alternates = alternates.clone();
+		this.partitioner = partitioner;
 	}
 
 	@Override
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
-		return remotingClient.invokeService(request); // TODO: Add support for routing
+		return invoke(request, getTargetPartition(routingKey));
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitHedgedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		int clusterInstanceId = getTargetPartition(routingKey);
+		NettyRemotingClient alternate = alternates[clusterInstanceId];
+		if (alternate == null) {
+			return Observable.error(new ServiceUnavailableException("No alternate provider for cluster member with id: " + clusterInstanceId));
+		}
+		return alternate.invokeService(request);
+	}
+	
+	@Override
+	public boolean supportsHedgedRequest(RoutingKey routingKey) {
+		return alternates[getTargetPartition(routingKey)] != null;
+	}
+	
+	/**
+	 * Writes all requests in the batch to the connection of the target member before flushing it once.
+	 */
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		int clusterInstanceId = getTargetPartition(routingKey);
+		NettyRemotingClient clusterMember = clusterMembers[clusterInstanceId];
+		if (clusterMember == null) {
+			return Observable.error(new ServiceUnavailableException("Failed to find cluster member with id: " + clusterInstanceId));
+		}
+		return clusterMember.invokeServices(requests);
+	}
+	
+	private int getTargetPartition(RoutingKey routingKey) {
+		if (clusterMembers.length == 1) {
+			// Not partitioned, routing key might be null
+			return 0;
+		}
+		return partitioner.partition(routingKey, clusterMembers.length);
 	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = submitRoutedRequest(requests.iterator().next().getRequest(), null);
-		return result.toList();
+		return streamRoutedRequests(requests).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(requests.size());
+		for (RoutedServiceInvocationRequest request : requests) {
+			responses.add(submitRoutedRequest(request.getRequest(), request.getRoutingkey()));
+		}
+		return Observable.merge(responses);
 	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
-		Observable<AstrixServiceInvocationResponse> result = submitRoutedRequest(request, null);
-		return result.toList();
+		return streamBroadcastRequest(request).toList();
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(clusterMembers.length);
+		for (int clusterInstanceId = 0; clusterInstanceId < clusterMembers.length; clusterInstanceId++) {
+			responses.add(invoke(request, clusterInstanceId));
+		}
+		return Observable.merge(responses);
+	}
+	
+	private Observable<AstrixServiceInvocationResponse> invoke(AstrixServiceInvocationRequest request, int clusterInstanceId) {
+		NettyRemotingClient clusterMember = clusterMembers[clusterInstanceId];
+		if (clusterMember == null) {
+			return Observable.error(new ServiceUnavailableException("Failed to find cluster member with id: " + clusterInstanceId));
+		}
+		return clusterMember.invokeService(request);
 	}
 
 	@Override
 	public int partitionCount() {
-		return 1;
+		return clusterMembers.length;
+	}
+	
+	@Override
+	public Partitioner partitioner() {
+		return partitioner;
 	}
 
 }
@@ -15,65 +15,188 @@
  */
 package com.avanza.astrix.netty.client;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 
+import com.avanza.astrix.netty.protocol.FlushConsolidationHandler;
+import com.avanza.astrix.netty.protocol.NettyRemotingDecoder;
+import com.avanza.astrix.netty.protocol.NettyRemotingEncoder;
+
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.util.Timer;
 import rx.Observable;
 
+/**
+ * A single multiplexed connection to a remoting server. Requests from any number of
+ * service beans may be in flight concurrently on the same connection, responses are
+ * matched to requests using the correlation id carried in each frame. <p>
+ * 
+ * When the connection is lost all pending requests fail, and the client reconnects
+ * in the background using an exponential backoff. Requests sent while disconnected 
+ * fail immediately with a {@link ServiceUnavailableException}. <p>
+ * 
+ * Instances are shared between all service beans bound to the same endpoint, see
+ * {@link NettyRemotingClientManager}.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public final class NettyRemotingClient {
 
-	private final EventLoopGroup group = new NioEventLoopGroup();
-	private final NettyRemotingClientHandler nettyRemotingClientHandler = new NettyRemotingClientHandler();
+	private static final Logger log = LoggerFactory.getLogger(NettyRemotingClient.class);
+	private static final long INITIAL_RECONNECT_DELAY_MILLIS = 100;
+	private static final long MAX_RECONNECT_DELAY_MILLIS = 10_000;
+	
+	private final String endpoint;
+	private final EventLoopGroup group;
+	private final Bootstrap bootstrap;
+	private volatile Channel channel;
+	private volatile NettyRemotingClientHandler handler;
+	private volatile boolean closed = false;
+	private volatile long reconnectDelayMillis = INITIAL_RECONNECT_DELAY_MILLIS;
+	private int references = 0; // Guarded by NettyRemotingClientManager
 
-    public void connect(String host, int port) {
-        Bootstrap b = new Bootstrap();
-        b.group(group)
+	NettyRemotingClient(String host, int port, EventLoopGroup group, Timer timer, DynamicLongProperty requestTimeout,
+						Supplier<FlushConsolidationHandler> flushConsolidationHandlerFactory) {
+		this.endpoint = host + ":" + port;
+		this.group = group;
+		this.bootstrap = new Bootstrap();
+        bootstrap.group(group)
          .channel(NioSocketChannel.class)
+         .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+         .remoteAddress(host, port)
          .handler(new ChannelInitializer<SocketChannel>() {
             @Override
             public void initChannel(SocketChannel ch) throws Exception {
                 ChannelPipeline p = ch.pipeline();
 				p.addLast(
-                        new ObjectEncoder(),
-                        new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                        nettyRemotingClientHandler);
+                        flushConsolidationHandlerFactory.get(),
+                        new NettyRemotingEncoder(),
+                        new NettyRemotingDecoder(),
+                        new NettyRemotingClientHandler(timer, requestTimeout));
             }
          });
+	}
 
+    void connect() {
         // Start the connection attempt.
-        ChannelFuture channel = b.connect(host, port);
+        ChannelFuture channel = bootstrap.connect();
         try {
 			if (channel.await(1, TimeUnit.SECONDS)) {
 				if (channel.isSuccess()) {
+					onConnected(channel.channel());
 					return;
 				}
 			}
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-        destroy();
-        throw new IllegalArgumentException(String.format("Failed to connect to remoting server: %s:%d", host, port));
+        channel.channel().close();
+        throw new IllegalArgumentException("Failed to connect to remoting server: " + endpoint);
+    }
+    
+    private void onConnected(Channel channel) {
+    	this.channel = channel;
+    	this.handler = channel.pipeline().get(NettyRemotingClientHandler.class);
+    	this.reconnectDelayMillis = INITIAL_RECONNECT_DELAY_MILLIS;
+    	channel.closeFuture().addListener(future -> onDisconnected());
+    	if (closed) {
+    		// Closed while connecting
+    		channel.close();
+    	}
     }
     
+    private void onDisconnected() {
+    	if (closed) {
+    		return;
+    	}
+    	log.warn("Lost connection to remoting server: {}", endpoint);
+    	scheduleReconnect();
+    }
+
+	private void scheduleReconnect() {
+		long delay = reconnectDelayMillis;
+		reconnectDelayMillis = Math.min(2 * delay, MAX_RECONNECT_DELAY_MILLIS);
+		try {
+			group.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+		} catch (RuntimeException e) {
+			// Event loop group shutting down
+			log.debug("Failed to schedule reconnect to remoting server: " + endpoint, e);
+		}
+	}
+	
+	private void reconnect() {
+		if (closed) {
+			return;
+		}
+		bootstrap.connect().addListener((ChannelFuture future) -> {
+			if (future.isSuccess()) {
+				log.info("Reconnected to remoting server: {}", endpoint);
+				onConnected(future.channel());
+			} else if (!closed) {
+				log.debug("Failed to reconnect to remoting server: {}", endpoint);
+				scheduleReconnect();
+			}
+		});
+	}
+    
     public Observable<AstrixServiceInvocationResponse> invokeService(AstrixServiceInvocationRequest request) {
-    	return nettyRemotingClientHandler.sendInvocationRequest(request);
+    	return handler.sendInvocationRequest(request);
+    }
+    
+    /**
+     * Sends all requests in a batch before flushing the connection, see {@link NettyRemotingClientHandler#sendInvocationRequests(List)}.
+     */
+    public Observable<List<AstrixServiceInvocationResponse>> invokeServices(List<AstrixServiceInvocationRequest> requests) {
+    	return handler.sendInvocationRequests(requests);
+    }
+    
+    String getEndpoint() {
+		return endpoint;
+	}
+    
+    void retain() {
+    	references++;
     }
     
-    public void destroy() {
-    	group.shutdownGracefully();
+    /**
+     * @return true if this was the last reference to this client
+     */
+    boolean release() {
+    	references--;
+    	return references == 0;
     }
-    		
-    		
-}
\ No newline at end of file
+    
+    void close() {
+    	closed = true;
+    	Channel channel = this.channel;
+    	if (channel != null) {
+    		channel.close();
+    	}
+    }
+    
+    // For testing
+    boolean isConnected() {
+    	Channel channel = this.channel;
+    	return channel != null && channel.isActive();
+    }
+    
+}
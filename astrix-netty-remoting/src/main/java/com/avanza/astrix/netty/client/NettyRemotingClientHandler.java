@@ -15,52 +15,84 @@
  */
 package com.avanza.astrix.netty.client;
 
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.protocol.InvocationRequestFrame;
+import com.avanza.astrix.netty.protocol.InvocationResponseFrame;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 import rx.Observable;
 import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
 
+/**
+ * Client side handler for a single connection. Keeps track of all pending invocations
+ * sent on the connection. A pending invocation is completed when its response is received, 
+ * or fails with a {@link ServiceUnavailableException} when the request timeout expires or 
+ * when the connection is lost. <p>
+ * 
+ * A new handler is created for each connection.
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class NettyRemotingClientHandler extends ChannelInboundHandlerAdapter {
 	
+	private static final Logger log = LoggerFactory.getLogger(NettyRemotingClientHandler.class);
 
-	public static final String NETTY_RESPONSE_SUBSCRIBER_ID = "netty.responseSubscriberId";
 	private volatile ChannelHandlerContext ctx;
 	
-	private ConcurrentMap<String, Subscriber<? super AstrixServiceInvocationResponse>> subscriberBySubscriberId = new ConcurrentHashMap<>(); 
+	/*
+	 * Correlation id's are only required to be unique per connection
+	 */
+	private final AtomicLong nextCorrelationId = new AtomicLong();
+	private final ConcurrentMap<Long, PendingInvocation> pendingInvocationByCorrelationId = new ConcurrentHashMap<>(); 
+	private final Timer timer;
+	private final DynamicLongProperty requestTimeout;
+	
+	NettyRemotingClientHandler(Timer timer, DynamicLongProperty requestTimeout) {
+		this.timer = timer;
+		this.requestTimeout = requestTimeout;
+	}
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
 		this.ctx = ctx;
-//         Send the first message if this handler is a client-side handler.
-//        ctx.writeAndFlush();
+    }
+    
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    	failPendingInvocations(new ServiceUnavailableException("Lost connection to remoting server: " + ctx.channel().remoteAddress()));
+    	super.channelInactive(ctx);
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-    	AstrixServiceInvocationResponse response = (AstrixServiceInvocationResponse) msg;
-    	String invocationId = response.getHeader(NETTY_RESPONSE_SUBSCRIBER_ID);
-    	Subscriber<? super AstrixServiceInvocationResponse> subscriber = getSubscriber(invocationId);
-    	if (subscriber == null) {
+    	InvocationResponseFrame response = (InvocationResponseFrame) msg;
+    	PendingInvocation pendingInvocation = pendingInvocationByCorrelationId.remove(response.getCorrelationId());
+    	if (pendingInvocation == null) {
+    		// Expired or abandoned
     		return;
     	}
-    	subscriber.onNext(response);
-    	subscriber.onCompleted();
-        // Echo back the received object to the server.
-//        ctx.write(msg);
+    	pendingInvocation.complete(response.getResponse());
     }
 
-    private Subscriber<? super AstrixServiceInvocationResponse> getSubscriber(String invocationId) {
-    	Subscriber<? super AstrixServiceInvocationResponse> subscriber = this.subscriberBySubscriberId.remove(invocationId);
-		return subscriber;
-	}
-
 	@Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
         ctx.flush();
@@ -68,16 +100,120 @@ public class NettyRemotingClientHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        cause.printStackTrace();
+    	log.warn("Closing connection to remoting server: " + ctx.channel().remoteAddress(), cause);
         ctx.close();
     }
 
 	public Observable<AstrixServiceInvocationResponse> sendInvocationRequest(AstrixServiceInvocationRequest request) {
+		return send(request, true);
+	}
+	
+	/**
+	 * Sends a batch of invocation requests. All requests are written to the connection before it is 
+	 * flushed once, hence the batch is sent using as few writes to the socket as possible.
+	 * 
+	 * @param requests
+	 * @return an Observable that will emit one item with the responses for each request, in the same order
+	 * as the given requests.
+	 */
+	public Observable<List<AstrixServiceInvocationResponse>> sendInvocationRequests(List<AstrixServiceInvocationRequest> requests) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(requests.size());
+		for (AstrixServiceInvocationRequest request : requests) {
+			responses.add(send(request, false));
+		}
+		Observable<List<AstrixServiceInvocationResponse>> batchResponse = Observable.zip(responses, args -> {
+			List<AstrixServiceInvocationResponse> result = new ArrayList<>(args.length);
+			for (Object response : args) {
+				result.add((AstrixServiceInvocationResponse) response);
+			}
+			return result;
+		});
+		return Observable.create(subscriber -> {
+			// Subscribing to the zipped responses writes all requests
+			batchResponse.unsafeSubscribe(subscriber);
+			ChannelHandlerContext ctx = this.ctx;
+			if (ctx != null) {
+				ctx.flush();
+			}
+		});
+	}
+	
+	private Observable<AstrixServiceInvocationResponse> send(AstrixServiceInvocationRequest request, boolean flush) {
 		return Observable.create((subscriber) -> {
-			String invocationId = UUID.randomUUID().toString();
-			this.subscriberBySubscriberId.put(invocationId, subscriber);
-			request.setHeader(NETTY_RESPONSE_SUBSCRIBER_ID, invocationId);
-			ctx.writeAndFlush(request);
+			ChannelHandlerContext ctx = this.ctx;
+			if (ctx == null || !ctx.channel().isActive()) {
+				subscriber.onError(new ServiceUnavailableException("Not connected to remoting server"));
+				return;
+			}
+			long correlationId = nextCorrelationId.incrementAndGet();
+			PendingInvocation pendingInvocation = new PendingInvocation(correlationId, subscriber);
+			this.pendingInvocationByCorrelationId.put(correlationId, pendingInvocation);
+			pendingInvocation.timeout = timer.newTimeout(timeout -> expire(pendingInvocation), requestTimeout.get(), TimeUnit.MILLISECONDS);
+			// Forget abandoned invocations, for instance when a partial result is returned before the response is received
+			subscriber.add(Subscriptions.create(() -> {
+				if (this.pendingInvocationByCorrelationId.remove(correlationId, pendingInvocation)) {
+					pendingInvocation.timeout.cancel();
+				}
+			}));
+			InvocationRequestFrame requestFrame = new InvocationRequestFrame(correlationId, request);
+			ChannelFuture writeFuture = flush ? ctx.writeAndFlush(requestFrame) : ctx.write(requestFrame);
+			writeFuture.addListener((ChannelFuture future) -> {
+				if (!future.isSuccess()) {
+					fail(pendingInvocation, new ServiceUnavailableException("Failed to send request to remoting server", future.cause()));
+				}
+			});
 		});
 	}
-}
\ No newline at end of file
+	
+	private void expire(PendingInvocation pendingInvocation) {
+		fail(pendingInvocation, new ServiceUnavailableException(
+				String.format("No response received from remoting server within %d ms, correlationId=%d", requestTimeout.get(), pendingInvocation.correlationId)));
+	}
+	
+	private void fail(PendingInvocation pendingInvocation, ServiceUnavailableException cause) {
+		if (pendingInvocationByCorrelationId.remove(pendingInvocation.correlationId, pendingInvocation)) {
+			pendingInvocation.fail(cause);
+		}
+	}
+	
+	private void failPendingInvocations(ServiceUnavailableException cause) {
+		for (PendingInvocation pendingInvocation : pendingInvocationByCorrelationId.values()) {
+			fail(pendingInvocation, cause);
+		}
+	}
+	
+	// For testing
+	int pendingInvocationCount() {
+		return pendingInvocationByCorrelationId.size();
+	}
+	
+	private static final class PendingInvocation {
+		
+		private final long correlationId;
+		private final Subscriber<? super AstrixServiceInvocationResponse> subscriber;
+		private volatile Timeout timeout;
+		
+		public PendingInvocation(long correlationId, Subscriber<? super AstrixServiceInvocationResponse> subscriber) {
+			this.correlationId = correlationId;
+			this.subscriber = subscriber;
+		}
+		
+		void complete(AstrixServiceInvocationResponse response) {
+			cancelTimeout();
+			subscriber.onNext(response);
+			subscriber.onCompleted();
+		}
+		
+		void fail(ServiceUnavailableException cause) {
+			cancelTimeout();
+			subscriber.onError(cause);
+		}
+
+		private void cancelTimeout() {
+			Timeout timeout = this.timeout;
+			if (timeout != null) {
+				timeout.cancel();
+			}
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.config.AstrixConfig;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.netty.protocol.FlushConsolidationHandler;
+import com.avanza.astrix.netty.protocol.FlushStatistics;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+
+/**
+ * Owns the client side netty resources within an AstrixContext. <p>
+ * 
+ * All clients share a single event loop group, and a single connection is used for
+ * each remote endpoint (host:port) regardless of the number of service beans bound
+ * to it. Connections are reference counted and closed when the last bean using it
+ * is released. <p>
+ * 
+ * Connections are established without holding any lock. Concurrent requests for a
+ * client to the same endpoint wait for the same connection attempt. Pending requests
+ * on all connections are expired using a single shared timer, see
+ * {@link #NETTY_CLIENT_REQUEST_TIMEOUT}.
+ */
+public final class NettyRemotingClientManager {
+
+	/**
+	 * Number of event loop threads shared by all netty remoting clients. A value
+	 * less than one uses the number of available processors.
+	 */
+	public static final IntSetting NETTY_CLIENT_EVENT_LOOP_THREADS = IntSetting.create("astrix.netty.client.eventLoopThreads", 0);
+	/**
+	 * Max time in milliseconds to wait for the response to a request before it fails with
+	 * a ServiceUnavailableException.
+	 */
+	public static final LongSetting NETTY_CLIENT_REQUEST_TIMEOUT = LongSetting.create("astrix.netty.client.requestTimeout", 30_000);
+	private static final String METRICS_GROUP = "NettyRemotingClient";
+	private static final Logger log = LoggerFactory.getLogger(NettyRemotingClientManager.class);
+	
+	private final Map<String, CompletableFuture<NettyRemotingClient>> clientByEndpoint = new HashMap<>();
+	private final int eventLoopThreads;
+	private final DynamicLongProperty requestTimeout;
+	private final Supplier<FlushConsolidationHandler> flushConsolidationHandlerFactory;
+	private EventLoopGroup group;
+	private HashedWheelTimer timer;
+	private boolean destroyed = false;
+	
+	public NettyRemotingClientManager(AstrixConfig config, Metrics metrics) {
+		int configuredThreads = config.get(NETTY_CLIENT_EVENT_LOOP_THREADS).get();
+		this.eventLoopThreads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+		this.requestTimeout = config.get(NETTY_CLIENT_REQUEST_TIMEOUT);
+		int maxMessagesPerFlush = config.get(FlushConsolidationHandler.MAX_MESSAGES_PER_FLUSH).get();
+		long flushDelayMicros = config.get(FlushConsolidationHandler.FLUSH_DELAY_MICROS).get();
+		FlushStatistics flushStatistics = new FlushStatistics(metrics, METRICS_GROUP);
+		this.flushConsolidationHandlerFactory = () -> new FlushConsolidationHandler(maxMessagesPerFlush, flushDelayMicros, flushStatistics);
+	}
+	
+	/**
+	 * Returns a connected client for the given endpoint, creating a new connection if
+	 * none exists. Every call must be matched by a call to {@link #release(NettyRemotingClient)}.
+	 */
+	public NettyRemotingClient acquire(String host, int port) {
+		String endpoint = host + ":" + port;
+		while (true) {
+			CompletableFuture<NettyRemotingClient> connection;
+			NettyRemotingClient newClient = null;
+			synchronized (this) {
+				assertNotDestroyed();
+				connection = clientByEndpoint.get(endpoint);
+				if (connection == null) {
+					connection = new CompletableFuture<>();
+					newClient = new NettyRemotingClient(host, port, getGroup(), getTimer(), requestTimeout, flushConsolidationHandlerFactory);
+					clientByEndpoint.put(endpoint, connection);
+				}
+			}
+			if (newClient != null) {
+				connect(newClient, connection);
+			}
+			NettyRemotingClient client = await(connection);
+			synchronized (this) {
+				if (destroyed) {
+					client.close();
+					assertNotDestroyed();
+				}
+				if (clientByEndpoint.get(endpoint) == connection) {
+					client.retain();
+					return client;
+				}
+				// Last reference released and connection closed while waiting for it, try again
+			}
+		}
+	}
+	
+	private void connect(NettyRemotingClient client, CompletableFuture<NettyRemotingClient> connection) {
+		log.info("Connecting to: {}", client.getEndpoint());
+		try {
+			client.connect();
+			connection.complete(client);
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				clientByEndpoint.remove(client.getEndpoint(), connection);
+			}
+			connection.completeExceptionally(e);
+		}
+	}
+	
+	private static NettyRemotingClient await(CompletableFuture<NettyRemotingClient> connection) {
+		try {
+			return connection.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+	private void assertNotDestroyed() {
+		if (destroyed) {
+			throw new IllegalStateException("NettyRemotingClientManager is destroyed");
+		}
+	}
+	
+	public synchronized void release(NettyRemotingClient client) {
+		CompletableFuture<NettyRemotingClient> connection = clientByEndpoint.get(client.getEndpoint());
+		if (connection == null || connection.getNow(null) != client) {
+			return;
+		}
+		if (client.release()) {
+			log.info("Closing connection to: {}", client.getEndpoint());
+			clientByEndpoint.remove(client.getEndpoint());
+			client.close();
+		}
+	}
+	
+	/**
+	 * @return the number of connections that are established, or being established
+	 */
+	synchronized int connectionCount() {
+		return clientByEndpoint.size();
+	}
+
+	private EventLoopGroup getGroup() {
+		if (group == null) {
+			group = new NioEventLoopGroup(eventLoopThreads);
+		}
+		return group;
+	}
+	
+	private HashedWheelTimer getTimer() {
+		if (timer == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			timer = new HashedWheelTimer(runnable -> {
+				Thread thread = new Thread(runnable, "Astrix-NettyRemotingClient-Timer-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}, 10, TimeUnit.MILLISECONDS);
+		}
+		return timer;
+	}
+	
+	@PreDestroy
+	public synchronized void destroy() {
+		destroyed = true;
+		for (CompletableFuture<NettyRemotingClient> connection : clientByEndpoint.values()) {
+			// Connections still being established are closed by the connecting thread
+			NettyRemotingClient client = connection.getNow(null);
+			if (client != null) {
+				client.close();
+			}
+		}
+		clientByEndpoint.clear();
+		if (group != null) {
+			group.shutdownGracefully();
+		}
+		if (timer != null) {
+			timer.stop();
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.LongSetting;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Consolidates flushes to reduce the number of write syscalls. <p>
+ * 
+ * Flushes requested while a read is in progress are deferred until the read completes. Other flushes
+ * are deferred to a task on the channel's event loop, hence all messages written by tasks already
+ * queued on the event loop are flushed together. A flush is performed immediately when the number 
+ * of unflushed messages reaches {@link #MAX_MESSAGES_PER_FLUSH}, and a deferred flush might be 
+ * delayed further using {@link #FLUSH_DELAY_MICROS}. <p>
+ * 
+ * Must be placed before the encoder in the pipeline. A new instance is required for each channel.
+ */
+public final class FlushConsolidationHandler extends ChannelDuplexHandler {
+	
+	/**
+	 * Max number of written messages before an explicit flush is performed. A value of 
+	 * one or less disables flush consolidation. 
+	 */
+	public static final IntSetting MAX_MESSAGES_PER_FLUSH = IntSetting.create("astrix.netty.maxMessagesPerFlush", 64);
+	/**
+	 * Delay in microseconds of deferred flushes. Zero flushes at the next event loop iteration.
+	 */
+	public static final LongSetting FLUSH_DELAY_MICROS = LongSetting.create("astrix.netty.flushDelayMicros", 0);
+	
+	private final int maxMessagesPerFlush;
+	private final long flushDelayMicros;
+	private final FlushStatistics statistics;
+	private final Runnable flushTask;
+	
+	// Only accessed from the channel's event loop
+	private ChannelHandlerContext ctx;
+	private int unflushedMessages = 0;
+	private boolean readInProgress = false;
+	private boolean flushPending = false;
+	private boolean flushScheduled = false;
+	
+	public FlushConsolidationHandler(int maxMessagesPerFlush, long flushDelayMicros, FlushStatistics statistics) {
+		this.maxMessagesPerFlush = maxMessagesPerFlush;
+		this.flushDelayMicros = flushDelayMicros;
+		this.statistics = statistics;
+		this.flushTask = () -> {
+			flushScheduled = false;
+			if (flushPending) {
+				flushNow(ctx);
+			}
+		};
+	}
+	
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+	
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		unflushedMessages++;
+		ctx.write(msg, promise);
+	}
+	
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		if (unflushedMessages == 0) {
+			// Nothing written since last flush
+			return;
+		}
+		flushPending = true;
+		if (maxMessagesPerFlush <= 1 || unflushedMessages >= maxMessagesPerFlush) {
+			flushNow(ctx);
+			return;
+		}
+		if (readInProgress) {
+			// Flushed in channelReadComplete
+			return;
+		}
+		scheduleFlush(ctx);
+	}
+
+	private void scheduleFlush(ChannelHandlerContext ctx) {
+		if (flushScheduled) {
+			return;
+		}
+		flushScheduled = true;
+		if (flushDelayMicros > 0) {
+			ctx.executor().schedule(flushTask, flushDelayMicros, TimeUnit.MICROSECONDS);
+		} else {
+			ctx.executor().execute(flushTask);
+		}
+	}
+	
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		readInProgress = true;
+		ctx.fireChannelRead(msg);
+	}
+	
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		// Flushes requested by handlers completing the read are included
+		ctx.fireChannelReadComplete();
+		readInProgress = false;
+		if (flushPending) {
+			flushNow(ctx);
+		}
+	}
+	
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (!ctx.channel().isWritable() && flushPending) {
+			// Let the outbound buffer drain
+			flushNow(ctx);
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+	
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushIfPending(ctx);
+		ctx.close(promise);
+	}
+	
+	@Override
+	public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushIfPending(ctx);
+		ctx.disconnect(promise);
+	}
+	
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		flushIfPending(ctx);
+	}
+
+	private void flushIfPending(ChannelHandlerContext ctx) {
+		if (flushPending) {
+			flushNow(ctx);
+		}
+	}
+	
+	private void flushNow(ChannelHandlerContext ctx) {
+		statistics.flushed(unflushedMessages);
+		unflushedMessages = 0;
+		flushPending = false;
+		ctx.flush();
+	}
+
+}
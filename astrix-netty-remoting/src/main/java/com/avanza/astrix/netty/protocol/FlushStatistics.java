@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.avanza.astrix.context.metrics.Metrics;
+
+/**
+ * Number of flushes, and number of messages written, on all channels using a given
+ * {@link FlushConsolidationHandler}. Reported to {@link Metrics} as gauges named 
+ * "flushes", "flushedMessages" and "messagesPerFlush".
+ */
+public final class FlushStatistics {
+	
+	private final LongAdder flushes = new LongAdder();
+	private final LongAdder flushedMessages = new LongAdder();
+	
+	public FlushStatistics(Metrics metrics, String metricsGroup) {
+		metrics.registerGauge(metricsGroup, "flushes", this::getFlushCount);
+		metrics.registerGauge(metricsGroup, "flushedMessages", this::getFlushedMessageCount);
+		metrics.registerGauge(metricsGroup, "messagesPerFlush", this::getMessagesPerFlush);
+	}
+
+	void flushed(int messages) {
+		flushes.increment();
+		flushedMessages.add(messages);
+	}
+	
+	public long getFlushCount() {
+		return flushes.sum();
+	}
+	
+	public long getFlushedMessageCount() {
+		return flushedMessages.sum();
+	}
+	
+	public double getMessagesPerFlush() {
+		long flushCount = getFlushCount();
+		return flushCount == 0 ? 0 : (double) getFlushedMessageCount() / flushCount;
+	}
+	
+}
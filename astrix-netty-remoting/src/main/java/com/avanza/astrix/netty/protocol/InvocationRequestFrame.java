@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+
+/**
+ * An invocation request sent over a netty channel. The correlation id is used to match
+ * the corresponding {@link InvocationResponseFrame}, and is unique per connection.
+ */
+public final class InvocationRequestFrame {
+	
+	private final long correlationId;
+	private final AstrixServiceInvocationRequest request;
+	
+	public InvocationRequestFrame(long correlationId, AstrixServiceInvocationRequest request) {
+		this.correlationId = correlationId;
+		this.request = request;
+	}
+	
+	public long getCorrelationId() {
+		return correlationId;
+	}
+	
+	public AstrixServiceInvocationRequest getRequest() {
+		return request;
+	}
+
+}
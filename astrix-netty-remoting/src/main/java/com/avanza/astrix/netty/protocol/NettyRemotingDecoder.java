@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * Decodes length prefixed frames written by {@link NettyRemotingEncoder} into {@link InvocationRequestFrame}'s
+ * and {@link InvocationResponseFrame}'s. <p>
+ * 
+ * Each frame is decoded directly from a slice of the cumulated input buffer, i.e without being copied into 
+ * a separate buffer first. 
+ */
+public final class NettyRemotingDecoder extends LengthFieldBasedFrameDecoder {
+	
+	public NettyRemotingDecoder() {
+		super(NettyRemotingProtocol.MAX_FRAME_LENGTH, 0, 4, 0, 4);
+	}
+	
+	@Override
+	protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+		ByteBuf frame = (ByteBuf) super.decode(ctx, in);
+		if (frame == null) {
+			return null;
+		}
+		try {
+			return NettyRemotingProtocol.readFrame(frame);
+		} finally {
+			frame.release();
+		}
+	}
+	
+	@Override
+	protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer, int index, int length) {
+		return buffer.slice(index, length).retain();
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Encodes {@link InvocationRequestFrame}'s and {@link InvocationResponseFrame}'s into length prefixed frames, 
+ * see {@link NettyRemotingProtocol}. Frames are written to buffers allocated by the channel's allocator, 
+ * which is expected to be pooled.
+ */
+@Sharable
+public final class NettyRemotingEncoder extends MessageToByteEncoder<Object> {
+
+	@Override
+	public boolean acceptOutboundMessage(Object msg) {
+		return msg instanceof InvocationRequestFrame || msg instanceof InvocationResponseFrame;
+	}
+	
+	@Override
+	protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+		int lengthIndex = out.writerIndex();
+		out.writeInt(0);
+		if (msg instanceof InvocationRequestFrame) {
+			NettyRemotingProtocol.writeRequest((InvocationRequestFrame) msg, out);
+		} else if (msg instanceof InvocationResponseFrame) {
+			NettyRemotingProtocol.writeResponse((InvocationResponseFrame) msg, out);
+		} else {
+			throw new EncoderException("Unsupported message type: " + msg.getClass().getName());
+		}
+		out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * The wire protocol used by netty remoting. Each message is sent as a length prefixed frame: 
+ * 
+ * <pre>
+ * int   frameLength      - number of bytes following the length field
+ * byte  frameType        - REQUEST or RESPONSE
+ * byte  flags            - BYTE_PAYLOADS
+ * long  correlationId
+ * 
+ * REQUEST:
+ * int   serviceId, methodId, methodTableFingerprint, apiVersion  - the compact invocation header
+ * headers
+ * int   argumentCount, followed by one payload per argument
+ * 
+ * RESPONSE:
+ * headers
+ * payload responseBody, payload exception
+ * string thrownExceptionType, string exceptionMsg, string correlationId
+ * </pre>
+ * 
+ * Headers are written as a short count followed by the name and value of each header. Strings are written as
+ * an int byte length, or -1 for null, followed by the utf8 bytes. <p>
+ * 
+ * Payloads produced by a byte oriented AstrixObjectSerializer are written as is. Other payloads, for instance
+ * the arguments of non versioned services, fall back to java serialization. 
+ */
+final class NettyRemotingProtocol {
+	
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+	
+	static final byte REQUEST = 1;
+	static final byte RESPONSE = 2;
+	
+	static final byte BYTE_PAYLOADS = 0x01;
+	
+	private static final byte NULL_PAYLOAD = 0;
+	private static final byte BYTES_PAYLOAD = 1;
+	private static final byte STRING_PAYLOAD = 2;
+	private static final byte SERIALIZED_PAYLOAD = 3;
+	
+	private NettyRemotingProtocol() {
+	}
+	
+	static void writeRequest(InvocationRequestFrame frame, ByteBuf out) throws IOException {
+		AstrixServiceInvocationRequest request = frame.getRequest();
+		out.writeByte(REQUEST);
+		out.writeByte(request.hasBytePayloads() ? BYTE_PAYLOADS : 0);
+		out.writeLong(frame.getCorrelationId());
+		out.writeInt(request.getServiceId());
+		out.writeInt(request.getMethodId());
+		out.writeInt(request.getMethodTableFingerprint());
+		out.writeInt(request.getApiVersion());
+		writeHeaders(request.getHeaders(), out);
+		Object[] arguments = request.getArguments();
+		if (arguments == null) {
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(arguments.length);
+		for (Object argument : arguments) {
+			writePayload(argument, out);
+		}
+	}
+	
+	static void writeResponse(InvocationResponseFrame frame, ByteBuf out) throws IOException {
+		AstrixServiceInvocationResponse response = frame.getResponse();
+		out.writeByte(RESPONSE);
+		out.writeByte(0);
+		out.writeLong(frame.getCorrelationId());
+		writeHeaders(response.getHeaders(), out);
+		writePayload(response.getResponseBody(), out);
+		writePayload(response.getException(), out);
+		writeString(response.getThrownExceptionType(), out);
+		writeString(response.getExceptionMsg(), out);
+		writeString(response.getCorrelationId(), out);
+	}
+	
+	static Object readFrame(ByteBuf in) throws IOException, ClassNotFoundException {
+		byte frameType = in.readByte();
+		byte flags = in.readByte();
+		long correlationId = in.readLong();
+		switch (frameType) {
+		case REQUEST:
+			return new InvocationRequestFrame(correlationId, readRequest(in, flags));
+		case RESPONSE:
+			return new InvocationResponseFrame(correlationId, readResponse(in));
+		default:
+			throw new CorruptedFrameException("Unknown frame type: " + frameType);
+		}
+	}
+	
+	private static AstrixServiceInvocationRequest readRequest(ByteBuf in, byte flags) throws IOException, ClassNotFoundException {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setBytePayloads((flags & BYTE_PAYLOADS) != 0);
+		int serviceId = in.readInt();
+		int methodId = in.readInt();
+		int methodTableFingerprint = in.readInt();
+		int apiVersion = in.readInt();
+		request.setCompactHeader(serviceId, methodId, methodTableFingerprint, apiVersion);
+		request.setAllHeaders(readHeaders(in));
+		// Each argument occupies at least one byte
+		Object[] arguments = new Object[readLength(in, "argument count")];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = readPayload(in);
+		}
+		request.setArguments(arguments);
+		return request;
+	}
+	
+	private static AstrixServiceInvocationResponse readResponse(ByteBuf in) throws IOException, ClassNotFoundException {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		for (Map.Entry<String, String> header : readHeaders(in).entrySet()) {
+			response.setHeader(header.getKey(), header.getValue());
+		}
+		response.setResponseBody(readPayload(in));
+		response.setException(readPayload(in));
+		response.setThrownExceptionType(readString(in));
+		response.setExceptionMsg(readString(in));
+		response.setCorrelationId(readString(in));
+		return response;
+	}
+	
+	private static void writeHeaders(Map<String, String> headers, ByteBuf out) {
+		out.writeShort(headers.size());
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			writeString(header.getKey(), out);
+			writeString(header.getValue(), out);
+		}
+	}
+	
+	private static Map<String, String> readHeaders(ByteBuf in) {
+		int headerCount = in.readUnsignedShort();
+		Map<String, String> headers = new HashMap<>(headerCount * 2);
+		for (int i = 0; i < headerCount; i++) {
+			headers.put(readString(in), readString(in));
+		}
+		return headers;
+	}
+	
+	private static void writePayload(Object payload, ByteBuf out) throws IOException {
+		if (payload == null) {
+			out.writeByte(NULL_PAYLOAD);
+		} else if (payload instanceof byte[]) {
+			byte[] bytes = (byte[]) payload;
+			out.writeByte(BYTES_PAYLOAD);
+			out.writeInt(bytes.length);
+			out.writeBytes(bytes);
+		} else if (payload instanceof String) {
+			out.writeByte(STRING_PAYLOAD);
+			writeString((String) payload, out);
+		} else {
+			out.writeByte(SERIALIZED_PAYLOAD);
+			int lengthIndex = out.writerIndex();
+			out.writeInt(0);
+			try (ObjectOutputStream objectOut = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+				objectOut.writeObject(payload);
+			}
+			out.setInt(lengthIndex, out.writerIndex() - lengthIndex - 4);
+		}
+	}
+	
+	private static Object readPayload(ByteBuf in) throws IOException, ClassNotFoundException {
+		byte kind = in.readByte();
+		switch (kind) {
+		case NULL_PAYLOAD:
+			return null;
+		case BYTES_PAYLOAD:
+			byte[] bytes = new byte[readLength(in, "payload length")];
+			in.readBytes(bytes);
+			return bytes;
+		case STRING_PAYLOAD:
+			return readString(in);
+		case SERIALIZED_PAYLOAD:
+			int length = readLength(in, "payload length");
+			try (ObjectInputStream objectIn = new ContextClassLoaderObjectInputStream(new ByteBufInputStream(in.readSlice(length)))) {
+				return objectIn.readObject();
+			}
+		default:
+			throw new CorruptedFrameException("Unknown payload kind: " + kind);
+		}
+	}
+	
+	private static void writeString(String value, ByteBuf out) {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		int lengthIndex = out.writerIndex();
+		out.writeInt(0);
+		int length = ByteBufUtil.writeUtf8(out, value);
+		out.setInt(lengthIndex, length);
+	}
+	
+	private static String readString(ByteBuf in) {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		checkLength(in, length, "string length");
+		String result = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+		in.skipBytes(length);
+		return result;
+	}
+	
+	/*
+	 * Lengths and counts are read from the peer, hence they are validated against the remaining bytes 
+	 * of the frame before anything is allocated.
+	 */
+	private static int readLength(ByteBuf in, String name) {
+		int length = in.readInt();
+		checkLength(in, length, name);
+		return length;
+	}
+	
+	private static void checkLength(ByteBuf in, int length, String name) {
+		if (length < 0 || length > in.readableBytes()) {
+			throw new CorruptedFrameException("Invalid " + name + ": " + length + ", readable bytes: " + in.readableBytes());
+		}
+	}
+	
+	private static final class ContextClassLoaderObjectInputStream extends ObjectInputStream {
+		
+		ContextClassLoaderObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+			if (contextClassLoader != null) {
+				try {
+					return Class.forName(desc.getName(), false, contextClassLoader);
+				} catch (ClassNotFoundException e) {
+					// Fall back to default resolution
+				}
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+}
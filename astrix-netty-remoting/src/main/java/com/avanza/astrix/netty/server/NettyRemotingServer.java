@@ -26,9 +26,19 @@ import org.slf4j.LoggerFactory;
 
 import com.avanza.astrix.beans.config.AstrixConfig;
 import com.avanza.astrix.config.IntSetting;
+import com.avanza.astrix.config.StringSetting;
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 
+import com.avanza.astrix.netty.protocol.FlushConsolidationHandler;
+import com.avanza.astrix.netty.protocol.FlushStatistics;
+import com.avanza.astrix.netty.protocol.NettyRemotingDecoder;
+import com.avanza.astrix.netty.protocol.NettyRemotingEncoder;
+import com.avanza.astrix.netty.server.ServiceInvocationExecutor.ExecutionModel;
+
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -39,15 +49,33 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.serialization.ClassResolvers;
-import io.netty.handler.codec.serialization.ObjectDecoder;
-import io.netty.handler.codec.serialization.ObjectEncoder;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 
 public final class NettyRemotingServer {
 	
 	public static final IntSetting NETTY_SERVER_BIND_PORT = IntSetting.create("astrix.netty.server.bindport", 12003);
+	/**
+	 * Determines where service invocations are executed, one of "inline" (on the netty event loop),
+	 * "worker-pool" (on a single bounded worker pool) or "per-service-api" (on a bounded worker pool per
+	 * service api). Read when the server is created.
+	 */
+	public static final StringSetting NETTY_SERVER_EXECUTION_MODEL = StringSetting.create("astrix.netty.server.executionModel", "worker-pool");
+	public static final IntSetting NETTY_SERVER_WORKER_THREADS = IntSetting.create("astrix.netty.server.workerThreads", 16);
+	public static final IntSetting NETTY_SERVER_WORKER_QUEUE_SIZE = IntSetting.create("astrix.netty.server.workerQueueSize", 1000);
+	/**
+	 * Partitioned services are provided by a cluster of servers, each serving one partition. The cluster
+	 * size and the partition (cluster instance id) served by this server are published with each service,
+	 * allowing clients to discover all members of the cluster.
+	 */
+	public static final IntSetting NETTY_SERVER_CLUSTER_SIZE = IntSetting.create("astrix.netty.server.clusterSize", 1);
+	public static final IntSetting NETTY_SERVER_CLUSTER_INSTANCE_ID = IntSetting.create("astrix.netty.server.clusterInstanceId", 0);
+	/**
+	 * The partitioner used to populate the members of a partitioned cluster, either "modulo" or "consistent-hash", 
+	 * see {@link Partitioner#create(String)}. Published with each service along with the cluster size, and used
+	 * by clients to route requests. All servers in a cluster must use the same partitioner.
+	 */
+	public static final StringSetting NETTY_SERVER_PARTITIONER = StringSetting.create("astrix.netty.server.partitioner", "modulo");
 	private static final Logger log = LoggerFactory.getLogger(NettyRemotingServer.class);
 
 	private int port;
@@ -55,10 +83,32 @@ public final class NettyRemotingServer {
 	private EventLoopGroup workerGroup;
 	private AtomicBoolean started = new AtomicBoolean(false);
 	private AstrixServiceActivator serviceActivator;
+	private final ServiceInvocationExecutor invocationExecutor;
+	private final int clusterSize;
+	private final int clusterInstanceId;
+	private final String partitioner;
+	private final int maxMessagesPerFlush;
+	private final long flushDelayMicros;
+	private final FlushStatistics flushStatistics;
 	
-	public NettyRemotingServer(AstrixServiceActivator serviceActivator, AstrixConfig config) {
+	public NettyRemotingServer(AstrixServiceActivator serviceActivator, AstrixConfig config, Metrics metrics) {
 		this.serviceActivator = serviceActivator;
 		this.port = config.get(NETTY_SERVER_BIND_PORT).get();
+		this.clusterSize = config.get(NETTY_SERVER_CLUSTER_SIZE).get();
+		this.clusterInstanceId = config.get(NETTY_SERVER_CLUSTER_INSTANCE_ID).get();
+		this.partitioner = config.get(NETTY_SERVER_PARTITIONER).get();
+		Partitioner.create(partitioner); // Fail fast on unknown partitioner
+		this.maxMessagesPerFlush = config.get(FlushConsolidationHandler.MAX_MESSAGES_PER_FLUSH).get();
+		this.flushDelayMicros = config.get(FlushConsolidationHandler.FLUSH_DELAY_MICROS).get();
+		this.flushStatistics = new FlushStatistics(metrics, ServiceInvocationExecutor.METRICS_GROUP);
+		if (clusterInstanceId < 0 || clusterInstanceId >= clusterSize) {
+			throw new IllegalArgumentException(String.format("Illegal cluster instance id: %d, clusterSize=%d", clusterInstanceId, clusterSize));
+		}
+		this.invocationExecutor = new ServiceInvocationExecutor(ExecutionModel.parse(config.get(NETTY_SERVER_EXECUTION_MODEL).get()),
+																config.get(NETTY_SERVER_WORKER_THREADS).get(),
+																config.get(NETTY_SERVER_WORKER_QUEUE_SIZE).get(),
+																metrics,
+																serviceActivator::getServiceApi);
 	}
 
 	public void verifyStarted() {
@@ -74,15 +124,17 @@ public final class NettyRemotingServer {
         b.group(bossGroup, workerGroup)
          .channel(NioServerSocketChannel.class)
          .option(ChannelOption.SO_REUSEADDR, false)
+         .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
          .handler(new LoggingHandler(LogLevel.INFO))
          .childHandler(new ChannelInitializer<SocketChannel>() {
 			@Override
             public void initChannel(SocketChannel ch) throws Exception {
                 ChannelPipeline p = ch.pipeline();
                 p.addLast(
-                        new ObjectEncoder(),
-                        new ObjectDecoder(ClassResolvers.cacheDisabled(null)),
-                        new NettyRemotingServerHandler(serviceActivator));
+                        new FlushConsolidationHandler(maxMessagesPerFlush, flushDelayMicros, flushStatistics),
+                        new NettyRemotingEncoder(),
+                        new NettyRemotingDecoder(),
+                        new NettyRemotingServerHandler(serviceActivator, invocationExecutor));
             }
          });
 
@@ -108,10 +160,26 @@ public final class NettyRemotingServer {
     		bossGroup.shutdownGracefully();
     		workerGroup.shutdownGracefully();
     	}
+    	invocationExecutor.shutdown();
 	}
 
 	public int getPort() {
 		return this.port;
 	}
+	
+	public int getClusterSize() {
+		return clusterSize;
+	}
+	
+	public int getClusterInstanceId() {
+		return clusterInstanceId;
+	}
+	
+	/**
+	 * @return the name of the partitioner used by the cluster, see {@link #NETTY_SERVER_PARTITIONER}
+	 */
+	public String getPartitioner() {
+		return partitioner;
+	}
 
 }
\ No newline at end of file
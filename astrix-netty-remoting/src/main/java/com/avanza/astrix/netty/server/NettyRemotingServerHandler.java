@@ -15,8 +15,19 @@
  */
 package com.avanza.astrix.netty.server;
 
-import com.avanza.astrix.netty.client.NettyRemotingClientHandler;
-import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.netty.protocol.InvocationRequestFrame;
+import com.avanza.astrix.netty.protocol.InvocationResponseFrame;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 
@@ -25,20 +36,105 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 
 public class NettyRemotingServerHandler extends ChannelInboundHandlerAdapter {
 
-	private AstrixServiceActivator serviceActivator;
+	private static final Logger log = LoggerFactory.getLogger(NettyRemotingServerHandler.class);
+	
+	private final AstrixServiceActivator serviceActivator;
+	private final ServiceInvocationExecutor invocationExecutor;
 	
-    public NettyRemotingServerHandler(AstrixServiceActivator serviceActivator) {
+	/*
+	 * Responses completed off the event loop are queued and written in batches
+	 * by a single task on the event loop, followed by a single flush.
+	 */
+	private final Queue<InvocationResponseFrame> pendingResponses = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+	
+    NettyRemotingServerHandler(AstrixServiceActivator serviceActivator, ServiceInvocationExecutor invocationExecutor) {
 		this.serviceActivator = serviceActivator;
+		this.invocationExecutor = invocationExecutor;
 	}
     
 	@Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-    	AstrixServiceInvocationRequest request = (AstrixServiceInvocationRequest) msg;
-		AstrixServiceInvocationResponse response = serviceActivator.invokeService(request);
-    	response.setHeader(NettyRemotingClientHandler.NETTY_RESPONSE_SUBSCRIBER_ID, request.getHeader(NettyRemotingClientHandler.NETTY_RESPONSE_SUBSCRIBER_ID));
-        ctx.write(response);
+    	InvocationRequestFrame request = (InvocationRequestFrame) msg;
+    	if (invocationExecutor.isInline()) {
+    		invokeInline(ctx, request);
+    		return;
+    	}
+    	try {
+    		invocationExecutor.execute(request.getRequest(), () -> invoke(ctx, request));
+    	} catch (RejectedExecutionException e) {
+    		// Flushed in channelReadComplete
+    		ctx.write(new InvocationResponseFrame(request.getCorrelationId(), rejected(request)));
+    	}
     }
 
+	private void invokeInline(ChannelHandlerContext ctx, InvocationRequestFrame request) {
+		long correlationId = request.getCorrelationId();
+		CompletableFuture<AstrixServiceInvocationResponse> response = invokeService(request);
+    	if (response.isDone()) {
+    		// Completed synchronously, flushed in channelReadComplete
+    		ctx.write(new InvocationResponseFrame(correlationId, response.join()));
+    		return;
+    	}
+    	response.thenAccept(asyncResponse -> writeLater(ctx, new InvocationResponseFrame(correlationId, asyncResponse)));
+	}
+	
+	private void invoke(ChannelHandlerContext ctx, InvocationRequestFrame request) {
+		long correlationId = request.getCorrelationId();
+		invokeService(request).thenAccept(response -> writeLater(ctx, new InvocationResponseFrame(correlationId, response)));
+	}
+	
+	/*
+	 * The returned future never completes exceptionally. A failed invocation is mapped to a service unavailable 
+	 * response, which is sent with the correlation id of the request rather than leaving the client waiting 
+	 * for its request to time out.
+	 */
+	private CompletableFuture<AstrixServiceInvocationResponse> invokeService(InvocationRequestFrame request) {
+		CompletableFuture<AstrixServiceInvocationResponse> response;
+		try {
+			response = serviceActivator.invokeServiceAsync(request.getRequest()).toCompletableFuture();
+		} catch (RuntimeException e) {
+			response = new CompletableFuture<>();
+			response.completeExceptionally(e);
+		}
+		return response.handle((invocationResponse, error) -> error == null ? invocationResponse : serviceUnavailable(request, error));
+	}
+	
+	private void writeLater(ChannelHandlerContext ctx, InvocationResponseFrame response) {
+		pendingResponses.add(response);
+		if (writeScheduled.compareAndSet(false, true)) {
+			ctx.channel().eventLoop().execute(() -> writePendingResponses(ctx));
+		}
+	}
+
+	private void writePendingResponses(ChannelHandlerContext ctx) {
+		writeScheduled.set(false);
+		InvocationResponseFrame response;
+		while ((response = pendingResponses.poll()) != null) {
+			ctx.write(response);
+		}
+		ctx.flush();
+	}
+	
+	private static AstrixServiceInvocationResponse serviceUnavailable(InvocationRequestFrame request, Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("Service invocation failed: " + cause.getMessage());
+		response.setCorrelationId(UUID.randomUUID().toString());
+		log.warn("Service invocation failed. request=" + request.getRequest() + " correlationId=" + response.getCorrelationId(), cause);
+		return response;
+	}
+	
+	private AstrixServiceInvocationResponse rejected(InvocationRequestFrame request) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("Service invocation rejected, server worker pool is saturated");
+		response.setCorrelationId(UUID.randomUUID().toString());
+		log.debug("Service invocation rejected. request={} correlationId={}", request.getRequest(), response.getCorrelationId());
+		return response;
+	}
+
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
         ctx.flush();
@@ -49,4 +145,4 @@ public class NettyRemotingServerHandler extends ChannelInboundHandlerAdapter {
         cause.printStackTrace();
         ctx.close();
     }
-}
\ No newline at end of file
+}
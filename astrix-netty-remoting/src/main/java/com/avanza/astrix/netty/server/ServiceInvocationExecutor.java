@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+/**
+ * Decides which thread executes a service invocation received by the {@link NettyRemotingServer}. <p>
+ * 
+ * <ul>
+ * <li>{@link ExecutionModel#INLINE} invokes the service directly on the netty event loop. Only suitable
+ * when all provided service methods are trivial and never block.</li>
+ * <li>{@link ExecutionModel#WORKER_POOL} invokes all services on a single bounded worker pool.</li>
+ * <li>{@link ExecutionModel#PER_SERVICE_API} uses a separate bounded worker pool for each service api,
+ * preventing a slow service from starving the others. Pools are only created for apis exported by the server,
+ * invocations that don't target an exported api are executed on the shared default pool.</li>
+ * </ul>
+ * 
+ * Each worker pool rejects invocations when its queue is full. The number of rejected invocations and 
+ * the current queue depth of each pool are reported to {@link Metrics}.
+ */
+final class ServiceInvocationExecutor {
+	
+	enum ExecutionModel {
+		INLINE,
+		WORKER_POOL,
+		PER_SERVICE_API;
+		
+		static ExecutionModel parse(String executionModel) {
+			return valueOf(executionModel.trim().toUpperCase().replace('-', '_'));
+		}
+	}
+	
+	static final String METRICS_GROUP = "NettyRemotingServer";
+	private static final String DEFAULT_POOL = "default";
+	
+	private final ExecutionModel executionModel;
+	private final int threads;
+	private final int queueSize;
+	private final Metrics metrics;
+	private final Function<AstrixServiceInvocationRequest, String> serviceApiResolver;
+	private final ConcurrentMap<String, ThreadPoolExecutor> workerPoolByName = new ConcurrentHashMap<>();
+	
+	/**
+	 * @param serviceApiResolver resolves the exported api targeted by a request, or null if the request 
+	 * 	does not target an exported api, see {@link AstrixServiceActivator#getServiceApi(AstrixServiceInvocationRequest)}
+	 */
+	ServiceInvocationExecutor(ExecutionModel executionModel, int threads, int queueSize, Metrics metrics, 
+							  Function<AstrixServiceInvocationRequest, String> serviceApiResolver) {
+		this.serviceApiResolver = serviceApiResolver;
+		this.executionModel = executionModel;
+		this.threads = threads;
+		this.queueSize = queueSize;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return true if invocations are executed directly on the calling (event loop) thread
+	 */
+	boolean isInline() {
+		return executionModel == ExecutionModel.INLINE;
+	}
+
+	/**
+	 * Executes the given invocation of the service targeted by the given request.
+	 * 
+	 * @throws RejectedExecutionException if the worker pool for the given request is saturated
+	 */
+	void execute(AstrixServiceInvocationRequest request, Runnable invocation) {
+		Executor executor = getExecutor(request);
+		try {
+			executor.execute(invocation);
+		} catch (RejectedExecutionException e) {
+			metrics.incrementCounter(METRICS_GROUP, "rejectedInvocations");
+			throw e;
+		}
+	}
+
+	private Executor getExecutor(AstrixServiceInvocationRequest request) {
+		switch (executionModel) {
+		case INLINE:
+			return Runnable::run;
+		case PER_SERVICE_API:
+			return getWorkerPool(getServiceApi(request));
+		default:
+			return getWorkerPool(DEFAULT_POOL);
+		}
+	}
+	
+	private String getServiceApi(AstrixServiceInvocationRequest request) {
+		// Only exported apis get a pool of their own, otherwise any client could create an unbounded number of pools
+		String serviceApi = serviceApiResolver.apply(request);
+		return serviceApi != null ? serviceApi : DEFAULT_POOL;
+	}
+
+	private ThreadPoolExecutor getWorkerPool(String name) {
+		ThreadPoolExecutor workerPool = workerPoolByName.get(name);
+		if (workerPool != null) {
+			return workerPool;
+		}
+		return workerPoolByName.computeIfAbsent(name, this::createWorkerPool);
+	}
+	
+	private ThreadPoolExecutor createWorkerPool(String name) {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor workerPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+			Thread thread = new Thread(runnable, "Astrix-NettyRemotingServer-" + name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		workerPool.allowCoreThreadTimeOut(true);
+		metrics.registerGauge(METRICS_GROUP, "queueDepth." + name, () -> workerPool.getQueue().size());
+		return workerPool;
+	}
+	
+	void shutdown() {
+		List<ThreadPoolExecutor> workerPools = new ArrayList<>(workerPoolByName.values());
+		workerPoolByName.clear();
+		for (ThreadPoolExecutor workerPool : workerPools) {
+			workerPool.shutdown();
+		}
+	}
+
+}
@@ -16,15 +16,31 @@
 package com.avanza.astrix.netty;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Test;
 
+import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.registry.InMemoryServiceRegistry;
 import com.avanza.astrix.context.AstrixApplicationContext;
 import com.avanza.astrix.context.AstrixContext;
 import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixIdempotent;
+import com.avanza.astrix.core.AstrixPartitionedRouting;
+import com.avanza.astrix.core.AstrixRouting;
+import com.avanza.astrix.core.remoting.ConsistentHashRing;
+import com.avanza.astrix.core.remoting.RoutingKey;
+import com.avanza.astrix.netty.server.NettyRemotingServer;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
 import com.avanza.astrix.provider.core.AstrixApiProvider;
 import com.avanza.astrix.provider.core.AstrixApplication;
@@ -38,11 +54,19 @@ public class NettyRemotingTest {
 	InMemoryServiceRegistry registry = new InMemoryServiceRegistry();
 	private AstrixApplicationContext serverContext;
 	private AstrixContext clientContext;
+	private List<AstrixApplicationContext> partitionContexts = new ArrayList<>();
 	
 	@After
 	public void cleanup() {
-		serverContext.destroy();
-		clientContext.destroy();
+		if (serverContext != null) {
+			serverContext.destroy();
+		}
+		for (AstrixApplicationContext partitionContext : partitionContexts) {
+			partitionContext.destroy();
+		}
+		if (clientContext != null) {
+			clientContext.destroy();
+		}
 	}
 	
 	@Test(timeout=5000)
@@ -50,6 +74,7 @@ public class NettyRemotingTest {
 		
 		serverContext = (AstrixApplicationContext) new TestAstrixConfigurer().setApplicationDescriptor(PingApp.class)
 				.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+				.set(NettyRemotingServer.NETTY_SERVER_BIND_PORT, 0)
 				.set(AstrixSettings.SERVICE_ADMINISTRATOR_COMPONENT, AstrixServiceComponentNames.DIRECT).configure();
 		serverContext.getInstance(ServiceExporter.class).addServiceProvider(new PingImpl());
 		serverContext.startServicePublisher();
@@ -63,6 +88,90 @@ public class NettyRemotingTest {
 		
 	}
 	
+	@Test(timeout=5000)
+	public void routesAndBroadcastsToAllClusterMembersOfPartitionedService() throws Exception {
+		startPartition(0, 2);
+		startPartition(1, 2);
+		
+		clientContext = new TestAstrixConfigurer().registerApiProvider(PartitionedPingApi.class)
+																.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+																.set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 10L)
+																.configure();
+		PartitionedPing ping = clientContext.waitForBean(PartitionedPing.class, 1000L);
+		
+		assertEquals("partition-0", ping.ping(2));
+		assertEquals("partition-1", ping.ping(3));
+		
+		List<String> broadcastResult = new ArrayList<>(ping.pingAll());
+		Collections.sort(broadcastResult);
+		assertEquals(Arrays.asList("partition-0", "partition-1"), broadcastResult);
+		
+		List<String> partitionedResult = new ArrayList<>(ping.pingEach(Arrays.asList(1, 2, 3, 4)));
+		Collections.sort(partitionedResult);
+		assertEquals(Arrays.asList("partition-0:2", "partition-0:4", "partition-1:1", "partition-1:3"), partitionedResult);
+	}
+
+	@Test(timeout=5000)
+	public void routesUsingPartitionerPublishedByCluster() throws Exception {
+		startPartition(0, 2, "consistent-hash");
+		startPartition(1, 2, "consistent-hash");
+		
+		clientContext = new TestAstrixConfigurer().registerApiProvider(PartitionedPingApi.class)
+																.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+																.set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 10L)
+																.configure();
+		PartitionedPing ping = clientContext.waitForBean(PartitionedPing.class, 1000L);
+		
+		ConsistentHashRing consistentHashRing = new ConsistentHashRing();
+		for (int routingKey = 0; routingKey < 20; routingKey++) {
+			assertEquals("partition-" + consistentHashRing.partition(RoutingKey.create(routingKey), 2), ping.ping(routingKey));
+		}
+	}
+
+	@Test(timeout=5000)
+	public void hedgedRequestToAlternateProviderWinsOverSlowClusterMember() throws Exception {
+		startPartition(0, 2, "modulo", new PartitionedPingImpl("partition-0", 3000));
+		startPartition(0, 2, "modulo", new PartitionedPingImpl("partition-0-alternate", 0));
+		startPartition(1, 2);
+		
+		TestAstrixConfigurer configurer = new TestAstrixConfigurer().registerApiProvider(PartitionedPingApi.class)
+																	.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+																	.set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 10L);
+		AstrixBeanKey<PartitionedPing> beanKey = AstrixBeanKey.create(PartitionedPing.class);
+		configurer.set(AstrixBeanSettings.REMOTING_HEDGING_ENABLED, beanKey, true);
+		configurer.set(AstrixBeanSettings.REMOTING_HEDGE_BUDGET_PERCENT, beanKey, 100);
+		configurer.set(AstrixBeanSettings.REMOTING_HEDGE_DELAY_MILLIS.nameFor(beanKey), 50L);
+		clientContext = configurer.configure();
+		PartitionedPing ping = clientContext.waitForBean(PartitionedPing.class, 1000L);
+		
+		long startTime = System.nanoTime();
+		assertEquals("partition-0-alternate", ping.slowPing(2));
+		assertTrue("Expected hedged request to return before the slow cluster member", 
+				   System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(2000));
+	}
+
+	private void startPartition(int clusterInstanceId, int clusterSize) {
+		startPartition(clusterInstanceId, clusterSize, "modulo");
+	}
+	
+	private void startPartition(int clusterInstanceId, int clusterSize, String partitioner) {
+		startPartition(clusterInstanceId, clusterSize, partitioner, new PartitionedPingImpl("partition-" + clusterInstanceId, 0));
+	}
+	
+	private void startPartition(int clusterInstanceId, int clusterSize, String partitioner, PartitionedPingImpl partitionedPing) {
+		AstrixApplicationContext partitionContext = (AstrixApplicationContext) new TestAstrixConfigurer().setApplicationDescriptor(PartitionedPingApp.class)
+				.set(AstrixSettings.SERVICE_REGISTRY_URI, registry.getServiceUri())
+				.set(AstrixSettings.APPLICATION_INSTANCE_ID, partitionedPing.partition)
+				.set(NettyRemotingServer.NETTY_SERVER_BIND_PORT, 0)
+				.set(NettyRemotingServer.NETTY_SERVER_CLUSTER_SIZE, clusterSize)
+				.set(NettyRemotingServer.NETTY_SERVER_CLUSTER_INSTANCE_ID, clusterInstanceId)
+				.set(NettyRemotingServer.NETTY_SERVER_PARTITIONER, partitioner)
+				.set(AstrixSettings.SERVICE_ADMINISTRATOR_COMPONENT, AstrixServiceComponentNames.DIRECT).configure();
+		partitionContexts.add(partitionContext);
+		partitionContext.getInstance(ServiceExporter.class).addServiceProvider(partitionedPing);
+		partitionContext.startServicePublisher();
+	}
+	
 	public interface Ping {
 		String ping(String msg);
 	}
@@ -85,4 +194,67 @@ public class NettyRemotingTest {
 //	@AstrixApplication(defaultServiceComponent = AstrixServiceComponentNames.DIRECT, exportsRemoteServicesFor = PingApi.class)
 	public static class PingApp {
 	}
+	
+	public interface PartitionedPing {
+		String ping(@AstrixRouting int routingKey);
+		
+		@AstrixIdempotent
+		String slowPing(@AstrixRouting int routingKey);
+		
+		@AstrixBroadcast
+		List<String> pingAll();
+		
+		List<String> pingEach(@AstrixPartitionedRouting List<Integer> routingKeys);
+	}
+	
+	@AstrixServiceExport(PartitionedPing.class)
+	public static class PartitionedPingImpl implements PartitionedPing {
+		
+		private final String partition;
+		private final long slowPingDelayMillis;
+		
+		public PartitionedPingImpl(String partition, long slowPingDelayMillis) {
+			this.partition = partition;
+			this.slowPingDelayMillis = slowPingDelayMillis;
+		}
+		
+		@Override
+		public String ping(int routingKey) {
+			return partition;
+		}
+		
+		@Override
+		public String slowPing(int routingKey) {
+			try {
+				Thread.sleep(slowPingDelayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return partition;
+		}
+		
+		@Override
+		public List<String> pingAll() {
+			return Arrays.asList(partition);
+		}
+		
+		@Override
+		public List<String> pingEach(List<Integer> routingKeys) {
+			List<String> result = new ArrayList<>();
+			for (Integer routingKey : routingKeys) {
+				result.add(partition + ":" + routingKey);
+			}
+			return result;
+		}
+	}
+	
+	@AstrixApiProvider
+	public static interface PartitionedPingApi {
+		@Service
+		PartitionedPing ping();
+	}
+	
+	@AstrixApplication(defaultServiceComponent = NettyRemotingComponent.NAME, exportsRemoteServicesFor = PartitionedPingApi.class)
+	public static class PartitionedPingApp {
+	}
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.netty.protocol.InvocationRequestFrame;
+import com.avanza.astrix.netty.protocol.InvocationResponseFrame;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.HashedWheelTimer;
+import rx.observers.TestSubscriber;
+
+public class NettyRemotingClientHandlerTest {
+	
+	private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+	private final DynamicLongProperty requestTimeout = new DynamicLongProperty(10_000);
+	private final NettyRemotingClientHandler handler = new NettyRemotingClientHandler(timer, requestTimeout);
+	private final EmbeddedChannel channel = new EmbeddedChannel(handler);
+	
+	@After
+	public void after() {
+		channel.finish();
+		timer.stop();
+	}
+	
+	@Test
+	public void completesPendingInvocationWhenResponseIsReceived() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		handler.sendInvocationRequest(new AstrixServiceInvocationRequest()).subscribe(subscriber);
+		InvocationRequestFrame sentRequest = (InvocationRequestFrame) channel.readOutbound();
+		
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		channel.writeInbound(new InvocationResponseFrame(sentRequest.getCorrelationId(), response));
+		
+		subscriber.assertNoErrors();
+		assertSame(response, subscriber.getOnNextEvents().get(0));
+		assertEquals(0, handler.pendingInvocationCount());
+	}
+	
+	@Test
+	public void expiresPendingInvocationsWhenRequestTimeoutExpires() throws Exception {
+		requestTimeout.set(20);
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		handler.sendInvocationRequest(new AstrixServiceInvocationRequest()).subscribe(subscriber);
+		
+		subscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		
+		assertEquals(1, subscriber.getOnErrorEvents().size());
+		assertTrue(subscriber.getOnErrorEvents().get(0) instanceof ServiceUnavailableException);
+		assertEquals(0, handler.pendingInvocationCount());
+	}
+	
+	@Test
+	public void failsAllPendingInvocationsWhenConnectionIsLost() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> first = new TestSubscriber<>();
+		TestSubscriber<AstrixServiceInvocationResponse> second = new TestSubscriber<>();
+		handler.sendInvocationRequest(new AstrixServiceInvocationRequest()).subscribe(first);
+		handler.sendInvocationRequest(new AstrixServiceInvocationRequest()).subscribe(second);
+		assertEquals(2, handler.pendingInvocationCount());
+		
+		channel.close();
+		channel.runPendingTasks();
+		
+		assertTrue(first.getOnErrorEvents().get(0) instanceof ServiceUnavailableException);
+		assertTrue(second.getOnErrorEvents().get(0) instanceof ServiceUnavailableException);
+		assertEquals(0, handler.pendingInvocationCount());
+	}
+	
+	@Test
+	public void failsInvocationsSentWhileDisconnected() throws Exception {
+		channel.close();
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		
+		handler.sendInvocationRequest(new AstrixServiceInvocationRequest()).subscribe(subscriber);
+		
+		assertTrue(subscriber.getOnErrorEvents().get(0) instanceof ServiceUnavailableException);
+		assertEquals(0, handler.pendingInvocationCount());
+	}
+	
+	@Test
+	public void sendsBatchUsingSingleFlushAndReturnsResponsesInRequestOrder() throws Exception {
+		AtomicInteger flushCount = new AtomicInteger();
+		NettyRemotingClientHandler batchHandler = new NettyRemotingClientHandler(timer, requestTimeout);
+		EmbeddedChannel batchChannel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+			@Override
+			public void flush(ChannelHandlerContext ctx) throws Exception {
+				flushCount.incrementAndGet();
+				super.flush(ctx);
+			}
+		}, batchHandler);
+		flushCount.set(0);
+		TestSubscriber<List<AstrixServiceInvocationResponse>> subscriber = new TestSubscriber<>();
+		
+		batchHandler.sendInvocationRequests(Arrays.asList(new AstrixServiceInvocationRequest(), new AstrixServiceInvocationRequest())).subscribe(subscriber);
+		InvocationRequestFrame first = (InvocationRequestFrame) batchChannel.readOutbound();
+		InvocationRequestFrame second = (InvocationRequestFrame) batchChannel.readOutbound();
+		assertEquals(1, flushCount.get());
+		
+		AstrixServiceInvocationResponse firstResponse = new AstrixServiceInvocationResponse();
+		AstrixServiceInvocationResponse secondResponse = new AstrixServiceInvocationResponse();
+		batchChannel.writeInbound(new InvocationResponseFrame(second.getCorrelationId(), secondResponse));
+		batchChannel.writeInbound(new InvocationResponseFrame(first.getCorrelationId(), firstResponse));
+		
+		subscriber.assertNoErrors();
+		assertEquals(Arrays.asList(Arrays.asList(firstResponse, secondResponse)), subscriber.getOnNextEvents());
+		batchChannel.finish();
+	}
+	
+	@Test
+	public void forgetsAbandonedInvocations() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		handler.sendInvocationRequest(new AstrixServiceInvocationRequest()).subscribe(subscriber);
+		
+		subscriber.unsubscribe();
+		
+		assertEquals(0, handler.pendingInvocationCount());
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.context.metrics.Metrics;
+
+public class NettyRemotingClientManagerTest {
+	
+	private final NettyRemotingClientManager clientManager = new NettyRemotingClientManager(new FakeAstrixConfig(), new Metrics.NoMetrics());
+	private final List<ServerSocket> servers = new ArrayList<>();
+	
+	@After
+	public void after() throws Exception {
+		clientManager.destroy();
+		for (ServerSocket server : servers) {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void sharesSingleConnectionForEachEndpoint() throws Exception {
+		int port1 = startServer();
+		int port2 = startServer();
+		
+		NettyRemotingClient client1 = clientManager.acquire("localhost", port1);
+		NettyRemotingClient client2 = clientManager.acquire("localhost", port1);
+		NettyRemotingClient client3 = clientManager.acquire("localhost", port2);
+		
+		assertSame(client1, client2);
+		assertNotSame(client1, client3);
+		assertTrue(client1.isConnected());
+		assertTrue(client3.isConnected());
+		assertEquals(2, clientManager.connectionCount());
+	}
+	
+	@Test
+	public void closesConnectionWhenLastReferenceIsReleased() throws Exception {
+		int port = startServer();
+		NettyRemotingClient client = clientManager.acquire("localhost", port);
+		clientManager.acquire("localhost", port);
+		
+		clientManager.release(client);
+		assertEquals(1, clientManager.connectionCount());
+		assertTrue(client.isConnected());
+		
+		clientManager.release(client);
+		assertEquals(0, clientManager.connectionCount());
+		awaitDisconnected(client);
+		
+		NettyRemotingClient newClient = clientManager.acquire("localhost", port);
+		assertNotSame(client, newClient);
+		assertTrue(newClient.isConnected());
+	}
+	
+	@Test
+	public void concurrentAcquiresOfSameEndpointShareSingleConnectionAttempt() throws Exception {
+		int port = startServer();
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<NettyRemotingClient>> clients = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				clients.add(executor.submit(() -> {
+					start.await();
+					return clientManager.acquire("localhost", port);
+				}));
+			}
+			start.countDown();
+			
+			NettyRemotingClient client = clients.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<NettyRemotingClient> other : clients) {
+				assertSame(client, other.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, clientManager.connectionCount());
+			for (int i = 0; i < threads - 1; i++) {
+				clientManager.release(client);
+			}
+			assertEquals("Connection should be retained once per acquire", 1, clientManager.connectionCount());
+			clientManager.release(client);
+			assertEquals(0, clientManager.connectionCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void failedConnectionAttemptsAreNotPooled() throws Exception {
+		int port = startServer();
+		servers.get(0).close();
+		
+		try {
+			clientManager.acquire("localhost", port);
+			fail("Expected connection attempt to fail");
+		} catch (IllegalArgumentException expected) {
+		}
+		
+		assertEquals(0, clientManager.connectionCount());
+	}
+	
+	private int startServer() throws IOException {
+		// Connections are accepted by the backlog of the server socket
+		ServerSocket server = new ServerSocket(0);
+		servers.add(server);
+		return server.getLocalPort();
+	}
+	
+	private static void awaitDisconnected(NettyRemotingClient client) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (client.isConnected() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(client.isConnected());
+	}
+
+}
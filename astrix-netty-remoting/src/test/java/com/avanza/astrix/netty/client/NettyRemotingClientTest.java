@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.client;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.context.metrics.Metrics;
+
+public class NettyRemotingClientTest {
+	
+	private final NettyRemotingClientManager clientManager = new NettyRemotingClientManager(new FakeAstrixConfig(), new Metrics.NoMetrics());
+	private TestServer server;
+	
+	@After
+	public void after() throws Exception {
+		clientManager.destroy();
+		if (server != null) {
+			server.close();
+		}
+	}
+	
+	@Test
+	public void reconnectsWhenServerIsRestarted() throws Exception {
+		server = new TestServer(0);
+		int port = server.getPort();
+		NettyRemotingClient client = clientManager.acquire("localhost", port);
+		assertTrue(client.isConnected());
+		// The connection must be accepted before the server is closed, otherwise it is left open
+		await(() -> server.getConnectionCount() == 1);
+		
+		server.close();
+		await(() -> !client.isConnected());
+		// Let a few reconnect attempts fail, backing off between each
+		Thread.sleep(500);
+		assertFalse(client.isConnected());
+		
+		server = new TestServer(port);
+		await(client::isConnected);
+	}
+	
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+	
+	private static class TestServer {
+		
+		private final ServerSocket serverSocket = new ServerSocket();
+		private final List<Socket> connections = new CopyOnWriteArrayList<>();
+		
+		TestServer(int port) throws IOException {
+			serverSocket.setReuseAddress(true);
+			serverSocket.bind(new InetSocketAddress(port));
+			Thread acceptor = new Thread(() -> {
+				try {
+					while (true) {
+						connections.add(serverSocket.accept());
+					}
+				} catch (IOException e) {
+					// Closed
+				}
+			}, "TestServer-Acceptor");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+		
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+		
+		int getConnectionCount() {
+			return connections.size();
+		}
+		
+		void close() throws IOException {
+			serverSocket.close();
+			for (Socket connection : connections) {
+				connection.close();
+			}
+		}
+	}
+
+}
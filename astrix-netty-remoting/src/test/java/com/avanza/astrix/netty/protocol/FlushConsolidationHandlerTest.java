@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.avanza.astrix.context.metrics.Metrics;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class FlushConsolidationHandlerTest {
+	
+	private final FlushStatistics statistics = new FlushStatistics(new Metrics.NoMetrics(), "test");
+	
+	@Test
+	public void consolidatesFlushesUntilNextEventLoopIteration() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidationHandler(64, 0, statistics));
+		
+		channel.writeAndFlush("1");
+		channel.writeAndFlush("2");
+		channel.writeAndFlush("3");
+		assertNull(channel.readOutbound());
+		
+		channel.runPendingTasks();
+		assertEquals("1", channel.readOutbound());
+		assertEquals("2", channel.readOutbound());
+		assertEquals("3", channel.readOutbound());
+		assertEquals(1, statistics.getFlushCount());
+		assertEquals(3.0, statistics.getMessagesPerFlush(), 0.0);
+		channel.finish();
+	}
+	
+	@Test
+	public void flushesImmediatelyWhenMaxMessagesPerFlushIsReached() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidationHandler(2, 0, statistics));
+		
+		channel.writeAndFlush("1");
+		assertNull(channel.readOutbound());
+		channel.writeAndFlush("2");
+		
+		assertEquals("1", channel.readOutbound());
+		assertEquals("2", channel.readOutbound());
+		assertEquals(1, statistics.getFlushCount());
+		channel.finish();
+	}
+	
+	@Test
+	public void flushesWrittenResponsesWhenReadCompletes() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidationHandler(64, 0, statistics), new ChannelInboundHandlerAdapter() {
+			@Override
+			public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+				ctx.writeAndFlush("response-" + msg);
+			}
+		});
+		
+		channel.pipeline().fireChannelRead("1");
+		channel.pipeline().fireChannelRead("2");
+		channel.runPendingTasks();
+		assertNull(channel.readOutbound());
+		
+		channel.pipeline().fireChannelReadComplete();
+		assertEquals("response-1", channel.readOutbound());
+		assertEquals("response-2", channel.readOutbound());
+		assertEquals(1, statistics.getFlushCount());
+		channel.finish();
+	}
+	
+	@Test
+	public void consolidationCanBeDisabled() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new FlushConsolidationHandler(1, 0, statistics));
+		
+		channel.writeAndFlush("1");
+		
+		assertEquals("1", channel.readOutbound());
+		assertEquals(1, statistics.getFlushCount());
+		channel.finish();
+	}
+
+}
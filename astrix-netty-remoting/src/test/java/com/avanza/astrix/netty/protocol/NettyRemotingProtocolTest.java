@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class NettyRemotingProtocolTest {
+	
+	@Test
+	public void encodesAndDecodesInvocationRequests() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setCompactHeader(2, 5, 12345, 3);
+		request.setBytePayloads(true);
+		request.setHeader("foo", "bar");
+		request.setArguments(new Object[] { new byte[] { 1, 2, 3 }, null, "åäö", Arrays.asList(1, 2) });
+		
+		InvocationRequestFrame decoded = (InvocationRequestFrame) roundtrip(new InvocationRequestFrame(Long.MAX_VALUE, request));
+		
+		assertEquals(Long.MAX_VALUE, decoded.getCorrelationId());
+		AstrixServiceInvocationRequest decodedRequest = decoded.getRequest();
+		assertEquals(2, decodedRequest.getServiceId());
+		assertEquals(5, decodedRequest.getMethodId());
+		assertEquals(12345, decodedRequest.getMethodTableFingerprint());
+		assertEquals(3, decodedRequest.getApiVersion());
+		assertTrue(decodedRequest.hasBytePayloads());
+		assertEquals("bar", decodedRequest.getHeader("foo"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) decodedRequest.getArguments()[0]);
+		assertNull(decodedRequest.getArguments()[1]);
+		assertEquals("åäö", decodedRequest.getArguments()[2]);
+		assertEquals(Arrays.asList(1, 2), decodedRequest.getArguments()[3]);
+	}
+	
+	@Test
+	public void encodesAndDecodesInvocationResponses() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setResponseBody(new byte[] { 4, 5 });
+		response.setExceptionMsg("msg");
+		response.setThrownExceptionType(IllegalArgumentException.class.getName());
+		response.setCorrelationId("correlation-id");
+		
+		InvocationResponseFrame decoded = (InvocationResponseFrame) roundtrip(new InvocationResponseFrame(21L, response));
+		
+		assertEquals(21L, decoded.getCorrelationId());
+		AstrixServiceInvocationResponse decodedResponse = decoded.getResponse();
+		assertTrue(decodedResponse.isServiceUnavailable());
+		assertArrayEquals(new byte[] { 4, 5 }, (byte[]) decodedResponse.getResponseBody());
+		assertNull(decodedResponse.getException());
+		assertEquals("msg", decodedResponse.getExceptionMsg());
+		assertEquals(IllegalArgumentException.class.getName(), decodedResponse.getThrownExceptionType());
+		assertEquals("correlation-id", decodedResponse.getCorrelationId());
+	}
+	
+	@Test
+	public void decodesFramesSplitAcrossReads() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setArguments(new Object[] { "foo" });
+		EmbeddedChannel encoder = new EmbeddedChannel(new NettyRemotingEncoder());
+		encoder.writeOutbound(new InvocationRequestFrame(1L, request), new InvocationRequestFrame(2L, request));
+		ByteBuf first = (ByteBuf) encoder.readOutbound();
+		ByteBuf second = (ByteBuf) encoder.readOutbound();
+		
+		EmbeddedChannel decoder = new EmbeddedChannel(new NettyRemotingDecoder());
+		decoder.writeInbound(first.readSlice(3).retain());
+		assertNull(decoder.readInbound());
+		decoder.writeInbound(first, second);
+		
+		assertEquals(1L, ((InvocationRequestFrame) decoder.readInbound()).getCorrelationId());
+		assertEquals(2L, ((InvocationRequestFrame) decoder.readInbound()).getCorrelationId());
+	}
+
+	@Test(expected = CorruptedFrameException.class)
+	public void rejectsArgumentCountExceedingFrameLength() throws Exception {
+		ByteBuf frame = requestFrameHeader(0);
+		frame.writeInt(Integer.MAX_VALUE);
+		decode(frame);
+	}
+	
+	@Test(expected = CorruptedFrameException.class)
+	public void rejectsNegativeArgumentCount() throws Exception {
+		ByteBuf frame = requestFrameHeader(0);
+		frame.writeInt(-2);
+		decode(frame);
+	}
+	
+	@Test(expected = CorruptedFrameException.class)
+	public void rejectsPayloadLengthExceedingFrameLength() throws Exception {
+		ByteBuf frame = requestFrameHeader(0);
+		frame.writeInt(1);
+		frame.writeByte(1); // BYTES_PAYLOAD
+		frame.writeInt(Integer.MAX_VALUE);
+		decode(frame);
+	}
+	
+	@Test(expected = CorruptedFrameException.class)
+	public void rejectsStringLengthExceedingFrameLength() throws Exception {
+		ByteBuf frame = requestFrameHeader(1);
+		frame.writeInt(Integer.MAX_VALUE); // Name of first header
+		decode(frame);
+	}
+
+	private ByteBuf requestFrameHeader(int headerCount) {
+		ByteBuf frame = Unpooled.buffer();
+		frame.writeByte(NettyRemotingProtocol.REQUEST);
+		frame.writeByte(0);
+		frame.writeLong(1L);
+		frame.writeInt(0).writeInt(0).writeInt(0).writeInt(0);
+		frame.writeShort(headerCount);
+		return frame;
+	}
+	
+	private void decode(ByteBuf frame) {
+		ByteBuf lengthPrefixedFrame = Unpooled.buffer();
+		lengthPrefixedFrame.writeInt(frame.readableBytes());
+		lengthPrefixedFrame.writeBytes(frame);
+		new EmbeddedChannel(new NettyRemotingDecoder()).writeInbound(lengthPrefixedFrame);
+	}
+	
+	private Object roundtrip(Object frame) {
+		EmbeddedChannel encoder = new EmbeddedChannel(new NettyRemotingEncoder());
+		encoder.writeOutbound(frame);
+		EmbeddedChannel decoder = new EmbeddedChannel(new NettyRemotingDecoder());
+		decoder.writeInbound(encoder.readOutbound());
+		return decoder.readInbound();
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.netty.protocol.InvocationRequestFrame;
+import com.avanza.astrix.netty.protocol.InvocationResponseFrame;
+import com.avanza.astrix.netty.server.ServiceInvocationExecutor.ExecutionModel;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class NettyRemotingServerHandlerTest {
+	
+	private final CompletableFuture<AstrixServiceInvocationResponse> invocationResponse = new CompletableFuture<>();
+	private final EmbeddedChannel channel = new EmbeddedChannel(new NettyRemotingServerHandler(serviceActivator(), 
+			new ServiceInvocationExecutor(ExecutionModel.INLINE, 1, 1, new Metrics.NoMetrics(), request -> null)));
+	
+	@Test
+	public void respondsWithServiceUnavailableWhenInvocationFailsSynchronously() throws Exception {
+		invocationResponse.completeExceptionally(new IllegalStateException("foo"));
+		
+		channel.writeInbound(new InvocationRequestFrame(7L, new AstrixServiceInvocationRequest()));
+		
+		assertServiceUnavailableResponse(7L);
+	}
+	
+	@Test
+	public void respondsWithServiceUnavailableWhenInvocationFailsAsynchronously() throws Exception {
+		channel.writeInbound(new InvocationRequestFrame(7L, new AstrixServiceInvocationRequest()));
+		invocationResponse.completeExceptionally(new IllegalStateException("foo"));
+		channel.runPendingTasks();
+		
+		assertServiceUnavailableResponse(7L);
+	}
+
+	private void assertServiceUnavailableResponse(long expectedCorrelationId) {
+		InvocationResponseFrame response = (InvocationResponseFrame) channel.readOutbound();
+		assertEquals(expectedCorrelationId, response.getCorrelationId());
+		assertTrue(response.getResponse().isServiceUnavailable());
+		assertEquals("Service invocation failed: foo", response.getResponse().getExceptionMsg());
+		assertTrue("Connection should be kept open", channel.isOpen());
+	}
+	
+	private AstrixServiceActivator serviceActivator() {
+		return (AstrixServiceActivator) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { AstrixServiceActivator.class }, (proxy, method, args) -> {
+			if (method.getName().equals("invokeServiceAsync")) {
+				return invocationResponse;
+			}
+			throw new UnsupportedOperationException(method.getName());
+		});
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.netty.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.netty.server.ServiceInvocationExecutor.ExecutionModel;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
+
+public class ServiceInvocationExecutorTest {
+	
+	private final FakeMetrics metrics = new FakeMetrics();
+	private final CountDownLatch blockWorkers = new CountDownLatch(1);
+	private ServiceInvocationExecutor executor;
+	
+	@After
+	public void after() {
+		blockWorkers.countDown();
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void inlineExecutionRunsInCallingThread() throws Exception {
+		executor = new ServiceInvocationExecutor(ExecutionModel.INLINE, 1, 1, metrics, this::resolveExportedApi);
+		AtomicReference<Thread> executingThread = new AtomicReference<>();
+		
+		executor.execute(request("FooService"), () -> executingThread.set(Thread.currentThread()));
+		
+		assertSame(Thread.currentThread(), executingThread.get());
+	}
+	
+	@Test
+	public void rejectsInvocationsWhenWorkerPoolIsSaturated() throws Exception {
+		executor = new ServiceInvocationExecutor(ExecutionModel.WORKER_POOL, 1, 1, metrics, this::resolveExportedApi);
+		CountDownLatch workerStarted = new CountDownLatch(1);
+		executor.execute(request("FooService"), () -> {
+			workerStarted.countDown();
+			awaitUninterruptibly(blockWorkers);
+		});
+		workerStarted.await(1, TimeUnit.SECONDS);
+		executor.execute(request("BarService"), () -> {});
+		assertEquals(1, metrics.gauges.get("queueDepth.default").get().intValue());
+		
+		try {
+			executor.execute(request("BarService"), () -> {});
+			fail("Expected invocation to be rejected");
+		} catch (RejectedExecutionException e) {
+		}
+		assertEquals(Integer.valueOf(1), metrics.counters.get("rejectedInvocations"));
+	}
+	
+	@Test
+	public void perServiceApiExecutionIsolatesServices() throws Exception {
+		executor = new ServiceInvocationExecutor(ExecutionModel.PER_SERVICE_API, 1, 1, metrics, this::resolveExportedApi);
+		CountDownLatch fooStarted = new CountDownLatch(1);
+		executor.execute(request("FooService"), () -> {
+			fooStarted.countDown();
+			awaitUninterruptibly(blockWorkers);
+		});
+		fooStarted.await(1, TimeUnit.SECONDS);
+		
+		AtomicReference<Thread> barThread = new AtomicReference<>();
+		CountDownLatch barDone = new CountDownLatch(1);
+		executor.execute(request("BarService"), () -> {
+			barThread.set(Thread.currentThread());
+			barDone.countDown();
+		});
+		
+		assertTrue(barDone.await(1, TimeUnit.SECONDS));
+		assertNotEquals(Thread.currentThread(), barThread.get());
+	}
+	
+	@Test
+	public void perServiceApiExecutionOnlyCreatesPoolsForExportedApis() throws Exception {
+		executor = new ServiceInvocationExecutor(ExecutionModel.PER_SERVICE_API, 1, 10, metrics, this::resolveExportedApi);
+		AstrixServiceInvocationRequest compactFooRequest = new AstrixServiceInvocationRequest();
+		compactFooRequest.setCompactHeader(1, 1, 1, 1);
+		CountDownLatch done = new CountDownLatch(4);
+		
+		executor.execute(request("FooService"), done::countDown);
+		executor.execute(compactFooRequest, done::countDown);
+		executor.execute(request("UnknownService1"), done::countDown);
+		executor.execute(request("UnknownService2"), done::countDown);
+		
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertEquals(new HashSet<>(Arrays.asList("queueDepth.FooService", "queueDepth.default")), metrics.gauges.keySet());
+	}
+	
+	@Test
+	public void parsesExecutionModel() throws Exception {
+		assertEquals(ExecutionModel.PER_SERVICE_API, ExecutionModel.parse("per-service-api"));
+		assertEquals(ExecutionModel.WORKER_POOL, ExecutionModel.parse("WORKER_POOL"));
+		assertEquals(ExecutionModel.INLINE, ExecutionModel.parse(" inline"));
+	}
+	
+	private String resolveExportedApi(AstrixServiceInvocationRequest request) {
+		if (request.hasCompactHeader()) {
+			return request.getServiceId() == 1 ? "FooService" : null;
+		}
+		String serviceApi = request.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API);
+		return "FooService".equals(serviceApi) || "BarService".equals(serviceApi) ? serviceApi : null;
+	}
+	
+	private static AstrixServiceInvocationRequest request(String serviceApi) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, serviceApi);
+		return request;
+	}
+	
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static class FakeMetrics extends Metrics.NoMetrics {
+		
+		private final Map<String, Integer> counters = new HashMap<>();
+		private final Map<String, Supplier<? extends Number>> gauges = new HashMap<>();
+		
+		@Override
+		public synchronized void incrementCounter(String group, String name) {
+			counters.merge(name, 1, Integer::sum);
+		}
+		
+		@Override
+		public synchronized void registerGauge(String group, String name, Supplier<? extends Number> gauge) {
+			gauges.put(name, gauge);
+		}
+	}
+
+}
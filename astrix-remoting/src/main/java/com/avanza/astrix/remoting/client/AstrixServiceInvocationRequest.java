@@ -17,6 +17,7 @@ package com.avanza.astrix.remoting.client;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 /**
@@ -28,7 +29,34 @@ public class AstrixServiceInvocationRequest implements Serializable {
 	
 	private static final long serialVersionUID = 1L;
 	
-	private final Map<String, String> headers = new HashMap<>();
+	/**
+	 * Service id used for requests that are identified by the string headers, see
+	 * {@link AstrixServiceInvocationRequestHeaders}. Service id's assigned by the
+	 * server always starts on 1.
+	 */
+	public static final int NO_SERVICE_ID = 0;
+	
+	/**
+	 * Service property published by servers that accept byte payloads, see {@link #hasBytePayloads()}.
+	 */
+	public static final String BYTE_PAYLOADS_PROPERTY = "_remotingBytePayloads";
+	
+	/*
+	 * Compact invocation header, see ServiceMethodTable. Note that requests from old clients
+	 * are deserialized with all fields set to 0, i.e NO_SERVICE_ID.  
+	 */
+	private int serviceId;
+	private int methodId;
+	private int methodTableFingerprint;
+	private int apiVersion;
+	
+	/*
+	 * Whether the arguments are serialized using the byte oriented serializer contract. Requests
+	 * from old clients are deserialized with this field set to false.
+	 */
+	private boolean bytePayloads;
+	
+	private Map<String, String> headers;
 	private Object[] arguments;
 	
 	public void setArguments(Object[] requestBody) {
@@ -38,27 +66,99 @@ public class AstrixServiceInvocationRequest implements Serializable {
 	public Object[] getArguments() {
 		return arguments;
 	}
+	
+	/**
+	 * Identifies the invoked service method using the service id and method table published by the server
+	 * rather than the string headers.
+	 */
+	public void setCompactHeader(int serviceId, int methodId, int methodTableFingerprint, int apiVersion) {
+		this.serviceId = serviceId;
+		this.methodId = methodId;
+		this.methodTableFingerprint = methodTableFingerprint;
+		this.apiVersion = apiVersion;
+	}
+	
+	public boolean hasCompactHeader() {
+		return this.serviceId != NO_SERVICE_ID;
+	}
+	
+	public int getServiceId() {
+		return serviceId;
+	}
+	
+	public int getMethodId() {
+		return methodId;
+	}
+	
+	public int getMethodTableFingerprint() {
+		return methodTableFingerprint;
+	}
+	
+	public int getApiVersion() {
+		return apiVersion;
+	}
+
+	/**
+	 * Indicates that the arguments are serialized to raw bytes using the byte oriented contract of 
+	 * the AstrixObjectSerializer, and that the response should be serialized the same way. Only used 
+	 * against servers that publish the {@link #BYTE_PAYLOADS_PROPERTY}.
+	 */
+	public void setBytePayloads(boolean bytePayloads) {
+		this.bytePayloads = bytePayloads;
+	}
+	
+	public boolean hasBytePayloads() {
+		return bytePayloads;
+	}
 
 	public void setHeader(String name, String value) {
+		if (this.headers == null) {
+			this.headers = new HashMap<>(4);
+		}
 		this.headers.put(name, value);
 	}
 	
 	public String getHeader(String name) {
+		if (this.headers == null) {
+			return null;
+		}
 		return this.headers.get(name);
 	}
 	
 	@Override
 	public String toString() {
-		return "Invocation Request. headers=" + this.headers.toString() + ", arguments=" + Arrays.toString(arguments);
+		if (hasCompactHeader()) {
+			return "Invocation Request. serviceId=" + serviceId + ", methodId=" + methodId + ", apiVersion=" + apiVersion 
+					+ ", headers=" + getHeaders() + ", arguments=" + Arrays.toString(arguments);
+		}
+		return "Invocation Request. headers=" + getHeaders() + ", arguments=" + Arrays.toString(arguments);
 	}
 
 	public Map<String, String> getHeaders() {
+		if (this.headers == null) {
+			return Collections.emptyMap();
+		}
 		return this.headers;
 	}
 
 	public void setAllHeaders(Map<String, String> headers) {
+		if (headers.isEmpty()) {
+			return;
+		}
+		if (this.headers == null) {
+			this.headers = new HashMap<>(headers);
+			return;
+		}
 		this.headers.putAll(headers);
 	}
-
+	
+	/**
+	 * Copies the compact header, the payload format and all string headers from a given request.
+	 */
+	public void copyHeaders(AstrixServiceInvocationRequest request) {
+		setCompactHeader(request.serviceId, request.methodId, request.methodTableFingerprint, request.apiVersion);
+		setBytePayloads(request.bytePayloads);
+		setAllHeaders(request.getHeaders());
+	}
 	
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.remoting.Partitioner;
+import com.avanza.astrix.core.remoting.RoutingKey;
+
+import rx.Observable;
+import rx.Subscriber;
+/**
+ * RemotingTransportSpi decorator that gathers routed invocation requests targeting the same 
+ * partition and sends them using {@link RemotingTransportSpi#submitRoutedBatch(List, RoutingKey)}. <p>
+ * 
+ * A batch is sent when the configured max batch size is reached, or when the batch window has elapsed
+ * since the first request in the batch was submitted. Each request is still represented by its own
+ * Observable, which allows the fault tolerance layer to time out (unsubscribe from) individual requests. 
+ * Responses to requests that have been unsubscribed are discarded, and requests unsubscribed before the 
+ * batch is sent are never sent. <p>
+ * 
+ * Batching is disabled while the enabled property is false, in which case all requests are passed
+ * directly to the target transport.
+ */
+final class BatchingRemotingTransport implements RemotingTransportSpi {
+	
+	private final RemotingTransportSpi target;
+	private final DynamicBooleanProperty enabled;
+	private final DynamicLongProperty windowMicros;
+	private final DynamicIntProperty maxBatchSize;
+	private final ConcurrentMap<Integer, PartitionBatcher> batcherByPartition = new ConcurrentHashMap<>();
+	
+	BatchingRemotingTransport(RemotingTransportSpi target, 
+							  DynamicBooleanProperty enabled, 
+							  DynamicLongProperty windowMicros,
+							  DynamicIntProperty maxBatchSize) {
+		this.target = target;
+		this.enabled = enabled;
+		this.windowMicros = windowMicros;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		if (!enabled.get() || windowMicros.get() <= 0 || maxBatchSize.get() <= 1) {
+			return target.submitRoutedRequest(request, routingKey);
+		}
+		return Observable.create(subscriber -> getBatcher(routingKey).add(new BatchedRequest(request, subscriber)));
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> submitHedgedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		// Hedged requests are never batched, since waiting for the batch window would defeat the purpose of hedging
+		return target.submitHedgedRequest(request, routingKey);
+	}
+	
+	@Override
+	public boolean supportsHedgedRequest(RoutingKey routingKey) {
+		return target.supportsHedgedRequest(routingKey);
+	}
+	
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		return target.submitRoutedBatch(requests, routingKey);
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		return target.submitRoutedRequests(requests);
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return target.submitBroadcastRequest(request);
+	}
+
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		return target.streamRoutedRequests(requests);
+	}
+	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return target.streamBroadcastRequest(request);
+	}
+
+	@Override
+	public int partitionCount() {
+		return target.partitionCount();
+	}
+	
+	@Override
+	public Partitioner partitioner() {
+		return target.partitioner();
+	}
+	
+	private PartitionBatcher getBatcher(RoutingKey routingKey) {
+		int partition = target.partitioner().partition(routingKey, target.partitionCount());
+		PartitionBatcher batcher = batcherByPartition.get(partition);
+		if (batcher != null) {
+			return batcher;
+		}
+		return batcherByPartition.computeIfAbsent(partition, p -> new PartitionBatcher(routingKey));
+	}
+	
+	private final class PartitionBatcher {
+		
+		/*
+		 * Any routing key mapping to the partition served by this batcher. Used
+		 * to route all batches gathered by this batcher.
+		 */
+		private final RoutingKey routingKey;
+		private List<BatchedRequest> pending = new ArrayList<>();
+		private long batchNumber = 0;
+		
+		public PartitionBatcher(RoutingKey routingKey) {
+			this.routingKey = routingKey;
+		}
+
+		void add(BatchedRequest request) {
+			List<BatchedRequest> fullBatch = null;
+			long startedBatch = -1;
+			synchronized (this) {
+				pending.add(request);
+				if (pending.size() >= maxBatchSize.get()) {
+					fullBatch = takePending();
+				} else if (pending.size() == 1) {
+					startedBatch = batchNumber;
+				}
+			}
+			if (fullBatch != null) {
+				send(fullBatch);
+			} else if (startedBatch >= 0) {
+				final long batch = startedBatch;
+				Observable.timer(windowMicros.get(), TimeUnit.MICROSECONDS).subscribe(t -> flush(batch));
+			}
+		}
+
+		private void flush(long batch) {
+			List<BatchedRequest> requests;
+			synchronized (this) {
+				if (batch != batchNumber || pending.isEmpty()) {
+					// Batch already sent since it reached max batch size
+					return;
+				}
+				requests = takePending();
+			}
+			send(requests);
+		}
+		
+		private List<BatchedRequest> takePending() {
+			List<BatchedRequest> result = pending;
+			pending = new ArrayList<>();
+			batchNumber++;
+			return result;
+		}
+		
+		private void send(List<BatchedRequest> batch) {
+			List<BatchedRequest> requests = new ArrayList<>(batch.size());
+			for (BatchedRequest request : batch) {
+				if (!request.subscriber.isUnsubscribed()) {
+					requests.add(request);
+				}
+			}
+			if (requests.isEmpty()) {
+				return;
+			}
+			if (requests.size() == 1) {
+				BatchedRequest request = requests.get(0);
+				target.submitRoutedRequest(request.request, routingKey).subscribe(request::onResponse, request::onError);
+				return;
+			}
+			List<AstrixServiceInvocationRequest> invocationRequests = new ArrayList<>(requests.size());
+			for (BatchedRequest request : requests) {
+				invocationRequests.add(request.request);
+			}
+			target.submitRoutedBatch(invocationRequests, routingKey).subscribe(responses -> {
+				for (int i = 0; i < requests.size(); i++) {
+					requests.get(i).onResponse(responses.get(i));
+				}
+			}, error -> {
+				for (BatchedRequest request : requests) {
+					request.onError(error);
+				}
+			});
+		}
+	}
+	
+	private static final class BatchedRequest {
+		
+		private final AstrixServiceInvocationRequest request;
+		private final Subscriber<? super AstrixServiceInvocationResponse> subscriber;
+		
+		public BatchedRequest(AstrixServiceInvocationRequest request, Subscriber<? super AstrixServiceInvocationResponse> subscriber) {
+			this.request = request;
+			this.subscriber = subscriber;
+		}
+		
+		void onResponse(AstrixServiceInvocationResponse response) {
+			if (!subscriber.isUnsubscribed()) {
+				subscriber.onNext(response);
+				subscriber.onCompleted();
+			}
+		}
+		
+		void onError(Throwable error) {
+			if (!subscriber.isUnsubscribed()) {
+				subscriber.onError(error);
+			}
+		}
+	}
+
+}
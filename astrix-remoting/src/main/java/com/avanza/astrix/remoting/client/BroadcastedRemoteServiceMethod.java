@@ -23,6 +23,7 @@ import rx.Observable;
 import rx.functions.Func1;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
@@ -38,15 +39,27 @@ public class BroadcastedRemoteServiceMethod implements RemoteServiceMethod {
 	private final Class<? extends RemoteResultReducer> reducer;
 	private final RemotingEngine remotingEngine;
 	private final Type returnType;
+	private final boolean reduceIncrementally;
+	private final PartialResultDeadline partialResultDeadline;
 	
 	public BroadcastedRemoteServiceMethod(String signature,
 			Class<? extends RemoteResultReducer> reducer,
 			RemotingEngine remotingEngine, 
 			Type returnType) {
+		this(signature, reducer, remotingEngine, returnType, null);
+	}
+	
+	BroadcastedRemoteServiceMethod(String signature,
+			Class<? extends RemoteResultReducer> reducer,
+			RemotingEngine remotingEngine, 
+			Type returnType,
+			PartialResultDeadline partialResultDeadline) {
 		this.signature = signature;
+		this.partialResultDeadline = partialResultDeadline;
 		this.reducer = reducer;
 		this.remotingEngine = remotingEngine;
 		this.returnType = returnType;
+		this.reduceIncrementally = IncrementalRemoteResultReducer.class.isAssignableFrom(reducer) && !returnType.equals(Void.TYPE);
 	}
 
 	public String getSignature() {
@@ -67,6 +80,14 @@ public class BroadcastedRemoteServiceMethod implements RemoteServiceMethod {
 			IllegalAccessException {
 		request.setArguments(remotingEngine.marshall(args));
 		final RemoteResultReducer<T> reducer = (RemoteResultReducer<T>) newReducer();
+		if (partialResultDeadline != null) {
+			return partialResultDeadline.reduce(remotingEngine, remotingEngine.streamBroadcastRequest(request), 
+												remotingEngine.partitionCount(), reducer, returnType);
+		}
+		if (reduceIncrementally) {
+			return remotingEngine.reduceIncrementally(remotingEngine.streamBroadcastRequest(request), 
+													  (IncrementalRemoteResultReducer<T, ?>) reducer, returnType);
+		}
 		Observable<List<AstrixServiceInvocationResponse>> responesObservable = remotingEngine.submitBroadcastRequest(request);
 		if (returnType.equals(Void.TYPE)) {
 			return responesObservable.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.core.remoting.RoutingKey;
+
+import rx.Observable;
+/**
+ * Hedges routed invocations of idempotent service methods, see {@link com.avanza.astrix.beans.core.AstrixBeanSettings#REMOTING_HEDGING_ENABLED}. <p>
+ * 
+ * If no response is received within the hedge delay, a duplicate request is sent using 
+ * {@link RemotingTransportSpi#submitHedgedRequest(AstrixServiceInvocationRequest, com.avanza.astrix.core.remoting.RoutingKey)}
+ * and the first received response is used. A hedged request that fails is ignored, leaving the outcome to the 
+ * original request. The hedge delay is either configured, or the 95th percentile of the
+ * latencies observed for the latest requests. <p>
+ * 
+ * The number of hedged requests is limited by a budget. Each invocation adds a fraction (budgetPercent / 100) of a 
+ * hedged request to the budget, and each hedged request consumes one request from the budget. Hence hedging can't
+ * amplify the load on an overloaded server by more than the given percentage. <p>
+ * 
+ * The number of hedged requests sent, and the number of hedged requests that returned before the original request, 
+ * are reported to {@link Metrics}. A warning is logged the first time hedging is enabled but a request can't be 
+ * hedged since the transport knows no alternate provider for it.
+ */
+final class HedgingPolicy {
+	
+	private static final String METRICS_GROUP = "RemotingHedges";
+	private static final Logger log = LoggerFactory.getLogger(HedgingPolicy.class);
+	private static final int LATENCY_SAMPLES = 256; // Must be a power of two
+	private static final int LATENCY_RECALCULATION_INTERVAL = 64;
+	private static final long BUDGET_UNITS_PER_REQUEST = 100;
+	private static final long MAX_BUDGET_UNITS = 10 * BUDGET_UNITS_PER_REQUEST;
+	
+	private final DynamicBooleanProperty enabled;
+	private final DynamicLongProperty delayMillis;
+	private final DynamicIntProperty budgetPercent;
+	private final Metrics metrics;
+	private final String name;
+	private final String sentMetric;
+	private final String wonMetric;
+	private final AtomicLongArray latencySamples = new AtomicLongArray(LATENCY_SAMPLES);
+	private final AtomicLong latencySampleCount = new AtomicLong();
+	private final AtomicLong budgetUnits = new AtomicLong();
+	private final AtomicBoolean notSupportedWarningLogged = new AtomicBoolean(false);
+	private volatile long observedP95LatencyNanos = -1;
+	
+	HedgingPolicy(DynamicBooleanProperty enabled, 
+				  DynamicLongProperty delayMillis, 
+				  DynamicIntProperty budgetPercent, 
+				  Metrics metrics, 
+				  String metricsName) {
+		this.enabled = enabled;
+		this.delayMillis = delayMillis;
+		this.budgetPercent = budgetPercent;
+		this.metrics = metrics;
+		this.name = metricsName;
+		this.sentMetric = metricsName + ".sent";
+		this.wonMetric = metricsName + ".won";
+	}
+	
+	static HedgingPolicy none() {
+		return new HedgingPolicy(new DynamicBooleanProperty(false), new DynamicLongProperty(-1), new DynamicIntProperty(0), new Metrics.NoMetrics(), "");
+	}
+
+	<T> Observable<T> submit(Supplier<Observable<T>> request, Supplier<Observable<T>> hedgedRequest) {
+		if (!enabled.get()) {
+			return request.get();
+		}
+		return Observable.defer(() -> {
+			depositBudget();
+			long startTime = System.nanoTime();
+			Observable<T> response = request.get();
+			long hedgeDelayNanos = getHedgeDelayNanos();
+			if (hedgeDelayNanos < 0) {
+				// Not enough latency samples observed yet
+				return response.doOnNext(r -> recordLatency(System.nanoTime() - startTime));
+			}
+			Observable<T> hedgedResponse = Observable.timer(hedgeDelayNanos, TimeUnit.NANOSECONDS).flatMap(t -> {
+				if (!tryWithdrawBudget()) {
+					return Observable.never();
+				}
+				metrics.incrementCounter(METRICS_GROUP, sentMetric);
+				return hedgedRequest.get()
+									.doOnNext(r -> metrics.incrementCounter(METRICS_GROUP, wonMetric))
+									.onErrorResumeNext(error -> {
+										log.debug("Hedged request failed: " + name, error);
+										return Observable.never();
+									});
+			});
+			/*
+			 * The elapsed time of the winning response is recorded. When the hedged request wins it is a lower 
+			 * bound of the latency of the original request. Only recording responses to original requests would 
+			 * leave out the slowest requests and bias the observed latency, and hence the hedge delay, downwards.
+			 */
+			return Observable.amb(response, hedgedResponse).doOnNext(r -> recordLatency(System.nanoTime() - startTime));
+		});
+	}
+
+	/**
+	 * Invoked instead of {@link #submit(Supplier, Supplier)} for requests that can't be hedged.
+	 */
+	void hedgingNotSupported(RoutingKey routingKey) {
+		if (enabled.get() && notSupportedWarningLogged.compareAndSet(false, true)) {
+			log.warn("Hedging is enabled but no alternate provider is known, requests are not hedged. bean={} routingKey={}", name, routingKey);
+		}
+	}
+
+	long getHedgeDelayNanos() {
+		long configuredDelayMillis = delayMillis.get();
+		if (configuredDelayMillis > 0) {
+			return TimeUnit.MILLISECONDS.toNanos(configuredDelayMillis);
+		}
+		return observedP95LatencyNanos;
+	}
+
+	private void depositBudget() {
+		long deposit = budgetPercent.get();
+		long current;
+		do {
+			current = budgetUnits.get();
+			if (current >= MAX_BUDGET_UNITS) {
+				return;
+			}
+		} while (!budgetUnits.compareAndSet(current, Math.min(MAX_BUDGET_UNITS, current + deposit)));
+	}
+	
+	private boolean tryWithdrawBudget() {
+		long current;
+		do {
+			current = budgetUnits.get();
+			if (current < BUDGET_UNITS_PER_REQUEST) {
+				return false;
+			}
+		} while (!budgetUnits.compareAndSet(current, current - BUDGET_UNITS_PER_REQUEST));
+		return true;
+	}
+
+	private void recordLatency(long latencyNanos) {
+		long sample = latencySampleCount.getAndIncrement();
+		latencySamples.set((int) (sample & (LATENCY_SAMPLES - 1)), latencyNanos);
+		if ((sample + 1) % LATENCY_RECALCULATION_INTERVAL == 0) {
+			observedP95LatencyNanos = calculateP95Latency(Math.min(sample + 1, LATENCY_SAMPLES));
+		}
+	}
+
+	private long calculateP95Latency(long sampleCount) {
+		long[] samples = new long[(int) sampleCount];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = latencySamples.get(i);
+		}
+		Arrays.sort(samples);
+		return samples[(int) (samples.length * 0.95)];
+	}
+
+}
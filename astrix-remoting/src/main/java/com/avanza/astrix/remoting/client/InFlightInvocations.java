@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.avanza.astrix.context.metrics.Metrics;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.subjects.ReplaySubject;
+import rx.subscriptions.Subscriptions;
+/**
+ * Collapses concurrent invocations of an idempotent service method, see {@link com.avanza.astrix.core.AstrixIdempotent}. <p>
+ * 
+ * While an invocation is in flight, all invocations with equal marshalled arguments subscribe to
+ * the response of the in flight invocation rather than sending a new request. The invocation is
+ * removed as soon as its response is received (or fails), hence responses are never reused
+ * after an invocation completes. It is also removed, and the request unsubscribed, when all callers 
+ * collapsed into it have unsubscribed. <p>
+ * 
+ * The number of collapsed invocations (hits) and sent invocations (misses) are reported to {@link Metrics}.
+ */
+final class InFlightInvocations {
+	
+	private static final String METRICS_GROUP = "IdempotentInvocations";
+	
+	private final ConcurrentMap<InvocationKey, InFlightInvocation> inFlightInvocations = new ConcurrentHashMap<>();
+	private final Metrics metrics;
+	private final String hitsMetric;
+	private final String missesMetric;
+	
+	InFlightInvocations(Metrics metrics, String metricsName) {
+		this.metrics = metrics;
+		this.hitsMetric = metricsName + ".hits";
+		this.missesMetric = metricsName + ".misses";
+	}
+
+	/**
+	 * Returns the response of the in flight invocation with arguments equal to the given marshalled arguments, or
+	 * sends a new invocation using the given request factory if no such invocation is in flight.
+	 */
+	Observable<AstrixServiceInvocationResponse> submit(Object[] marshalledArguments, Supplier<Observable<AstrixServiceInvocationResponse>> request) {
+		InvocationKey key = new InvocationKey(marshalledArguments);
+		while (true) {
+			InFlightInvocation inFlightInvocation = inFlightInvocations.get(key);
+			if (inFlightInvocation == null) {
+				InFlightInvocation invocation = new InFlightInvocation(key);
+				invocation.retain();
+				inFlightInvocation = inFlightInvocations.putIfAbsent(key, invocation);
+				if (inFlightInvocation == null) {
+					metrics.incrementCounter(METRICS_GROUP, missesMetric);
+					invocation.send(request);
+					return invocation.observe();
+				}
+			}
+			if (inFlightInvocation.retain()) {
+				metrics.incrementCounter(METRICS_GROUP, hitsMetric);
+				return inFlightInvocation.observe();
+			}
+			// Concurrently abandoned by all subscribers
+			inFlightInvocations.remove(key, inFlightInvocation);
+		}
+	}
+	
+	// For testing
+	int inFlightCount() {
+		return inFlightInvocations.size();
+	}
+	
+	/**
+	 * An invocation shared by all callers that retained it. The invocation is removed, and the underlying 
+	 * request unsubscribed, when all callers have unsubscribed. This ensures that an invocation that never 
+	 * completes, for instance since the response is lost and the fault tolerance layer times out, is not 
+	 * reused by later invocations.
+	 */
+	private final class InFlightInvocation {
+		
+		private final InvocationKey key;
+		private final ReplaySubject<AstrixServiceInvocationResponse> response = ReplaySubject.create();
+		private volatile Subscription request;
+		private int retainCount = 0; // Guarded by this
+		private boolean abandoned = false; // Guarded by this
+		
+		InFlightInvocation(InvocationKey key) {
+			this.key = key;
+		}
+		
+		synchronized boolean retain() {
+			if (abandoned) {
+				return false;
+			}
+			retainCount++;
+			return true;
+		}
+		
+		private void release() {
+			synchronized (this) {
+				retainCount--;
+				if (retainCount > 0) {
+					return;
+				}
+				abandoned = true;
+			}
+			inFlightInvocations.remove(key, this);
+			Subscription request = this.request;
+			if (request != null) {
+				request.unsubscribe();
+			}
+		}
+		
+		void send(Supplier<Observable<AstrixServiceInvocationResponse>> requestFactory) {
+			Observable<AstrixServiceInvocationResponse> sentRequest;
+			try {
+				sentRequest = requestFactory.get();
+			} catch (RuntimeException e) {
+				inFlightInvocations.remove(key, this);
+				throw e;
+			}
+			// Remove before the response is propagated to subscribers, allowing new invocations to be sent immediately
+			this.request = sentRequest.doOnTerminate(() -> inFlightInvocations.remove(key, this)).subscribe(response);
+		}
+		
+		/**
+		 * Creates the Observable returned to a caller that retained this invocation. The invocation is
+		 * released when the caller unsubscribes, or when the response is received.
+		 */
+		Observable<AstrixServiceInvocationResponse> observe() {
+			AtomicBoolean released = new AtomicBoolean(false);
+			return Observable.create(subscriber -> {
+				subscriber.add(Subscriptions.create(() -> {
+					if (released.compareAndSet(false, true)) {
+						release();
+					}
+				}));
+				response.subscribe(subscriber);
+			});
+		}
+	}
+	
+	private static final class InvocationKey {
+		
+		private final Object[] marshalledArguments;
+		private final int hash;
+		
+		public InvocationKey(Object[] marshalledArguments) {
+			this.marshalledArguments = marshalledArguments;
+			this.hash = Arrays.deepHashCode(marshalledArguments);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof InvocationKey)) {
+				return false;
+			}
+			InvocationKey other = (InvocationKey) obj;
+			return hash == other.hash && Arrays.deepEquals(marshalledArguments, other.marshalledArguments);
+		}
+	}
+
+}
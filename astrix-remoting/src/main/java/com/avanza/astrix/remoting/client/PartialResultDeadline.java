@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.avanza.astrix.context.metrics.Metrics;
+import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.CorrelationId;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
+import com.avanza.astrix.core.RemoteResultReducer;
+
+import rx.Observable;
+/**
+ * Reduces the responses from a broadcasted or partitioned invocation that arrives before a given deadline, see 
+ * {@link com.avanza.astrix.core.AstrixBroadcast#partialResultDeadlineMillis()}. <p>
+ * 
+ * Each expected response that is not received when the deadline expires is passed to the reducer
+ * as an {@link AstrixRemoteResult#unavailable(String, CorrelationId)} result. The number of invocations
+ * that returned a partial result are reported to {@link Metrics}.
+ */
+final class PartialResultDeadline {
+	
+	private static final String METRICS_GROUP = "PartialRemoteResults";
+	
+	private final long deadlineMillis;
+	private final Metrics metrics;
+	private final String metricsName;
+	
+	PartialResultDeadline(long deadlineMillis, Metrics metrics, String metricsName) {
+		this.deadlineMillis = deadlineMillis;
+		this.metrics = metrics;
+		this.metricsName = metricsName;
+	}
+	
+	static boolean isEnabled(long deadlineMillis, Type returnType) {
+		return deadlineMillis > 0 && !returnType.equals(Void.TYPE);
+	}
+
+	<T> Observable<T> reduce(RemotingEngine remotingEngine,
+							 Observable<AstrixServiceInvocationResponse> responses,
+							 int expectedResponseCount,
+							 RemoteResultReducer<T> reducer,
+							 Type returnType) {
+		return reduceIncrementally(remotingEngine, responses, expectedResponseCount, incremental(reducer), returnType);
+	}
+	
+	private <T, A> Observable<T> reduceIncrementally(RemotingEngine remotingEngine,
+													 Observable<AstrixServiceInvocationResponse> responses,
+													 int expectedResponseCount,
+													 IncrementalRemoteResultReducer<T, A> reducer,
+													 Type returnType) {
+		return Observable.defer(() -> {
+			AtomicInteger receivedResponseCount = new AtomicInteger();
+			return responses.takeUntil(Observable.timer(deadlineMillis, TimeUnit.MILLISECONDS))
+							.reduce(reducer.init(), (accumulator, response) -> {
+								receivedResponseCount.incrementAndGet();
+								AstrixRemoteResult<T> result = remotingEngine.toRemoteResult(response, returnType);
+								return reducer.accumulate(accumulator, result);
+							})
+							.map(accumulator -> {
+								int missingResponseCount = expectedResponseCount - receivedResponseCount.get();
+								if (missingResponseCount > 0) {
+									metrics.incrementCounter(METRICS_GROUP, metricsName);
+								}
+								for (int i = 0; i < missingResponseCount; i++) {
+									AstrixRemoteResult<T> unavailable = AstrixRemoteResult.unavailable(
+											"No response received from partition within deadline. deadlineMillis=" + deadlineMillis, CorrelationId.undefined());
+									accumulator = reducer.accumulate(accumulator, unavailable);
+								}
+								return reducer.finish(accumulator);
+							});
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> IncrementalRemoteResultReducer<T, ?> incremental(RemoteResultReducer<T> reducer) {
+		if (reducer instanceof IncrementalRemoteResultReducer) {
+			return (IncrementalRemoteResultReducer<T, ?>) reducer;
+		}
+		return new CollectingReducer<>(reducer);
+	}
+	
+	private static final class CollectingReducer<T> implements IncrementalRemoteResultReducer<T, List<AstrixRemoteResult<T>>> {
+		
+		private final RemoteResultReducer<T> reducer;
+		
+		public CollectingReducer(RemoteResultReducer<T> reducer) {
+			this.reducer = reducer;
+		}
+
+		@Override
+		public List<AstrixRemoteResult<T>> init() {
+			return new ArrayList<>();
+		}
+
+		@Override
+		public List<AstrixRemoteResult<T>> accumulate(List<AstrixRemoteResult<T>> accumulator, AstrixRemoteResult<T> result) {
+			accumulator.add(result);
+			return accumulator;
+		}
+
+		@Override
+		public T finish(List<AstrixRemoteResult<T>> accumulator) {
+			return reducer.reduce(accumulator);
+		}
+	}
+
+}
@@ -21,16 +21,17 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
@@ -43,6 +44,12 @@ import rx.functions.Func1;
  */
 public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 
+	/**
+	 * The number of partitioned elements (keys) required to marshal the requests for different
+	 * partitions in parallel.
+	 */
+	private static final int PARALLEL_MARSHALLING_THRESHOLD = 1024;
+	
 	private final int partitionedArgumentIndex;
 	private final String methodSignature;
 	private final RemotingEngine remotingEngine;
@@ -51,12 +58,24 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 	private final ContainerType partitionedArgumentContainerType;
 	private final PartitionedRouter router;
 	private final Method proxiedMethod;
+	private final boolean reduceIncrementally;
+	private final PartialResultDeadline partialResultDeadline;
 
 	public PartitionedRemoteServiceMethod(int partitionedArgumentIndex,
 										  Method proxiedMethod,
 										  String methodSignature, 
 										  RemotingEngine remotingEngine,
 										  Type targetReturnType) {
+		this(partitionedArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType, null);
+	}
+	
+	PartitionedRemoteServiceMethod(int partitionedArgumentIndex,
+								   Method proxiedMethod,
+								   String methodSignature, 
+								   RemotingEngine remotingEngine,
+								   Type targetReturnType,
+								   PartialResultDeadline partialResultDeadline) {
+		this.partialResultDeadline = partialResultDeadline;
 		this.partitionedArgumentIndex = partitionedArgumentIndex;
 		this.proxiedMethod = proxiedMethod;
 		this.methodSignature = methodSignature;
@@ -64,6 +83,7 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		this.targetReturnType = targetReturnType;
 		AstrixPartitionedRouting partitionedRouting = getPartitionedRoutingAnnotation(proxiedMethod, partitionedArgumentIndex);
 		this.reducerType = getReducer(partitionedRouting, proxiedMethod);
+		this.reduceIncrementally = IncrementalRemoteResultReducer.class.isAssignableFrom(reducerType) && !targetReturnType.equals(Void.TYPE);
 		this.partitionedArgumentContainerType = getPartititonedArgumentContainerType(proxiedMethod, partitionedRouting);
 		this.router = createRouter(partitionedRouting);
 	}
@@ -111,7 +131,7 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		return reducerType;
 	}
 
-	private static AstrixPartitionedRouting getPartitionedRoutingAnnotation(Method proxiedMethod, int partitionedByArgumentIndex) {
+	static AstrixPartitionedRouting getPartitionedRoutingAnnotation(Method proxiedMethod, int partitionedByArgumentIndex) {
 		for (Annotation a : proxiedMethod.getParameterAnnotations()[partitionedByArgumentIndex]) {
 			if (a instanceof AstrixPartitionedRouting) {
 				return AstrixPartitionedRouting.class.cast(a);
@@ -129,11 +149,19 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 	public Observable<?> invoke(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
 		/*
 		 * 1. Partition Requests
-		 * 2. Marshall arguments
+		 * 2. Marshall arguments (non-partitioned arguments are only marshalled once)
 		 * 3. Execute requests
 		 */
 		ServiceInvocationPartitioner serviceInvocationPartitioner = new ServiceInvocationPartitioner();
 		List<RoutedServiceInvocationRequest> partitionInvocationRequest = serviceInvocationPartitioner.partitionInvocationRequest(invocationRequest, args);
+		if (partialResultDeadline != null) {
+			return partialResultDeadline.reduce(remotingEngine, remotingEngine.streamRoutedRequests(partitionInvocationRequest), 
+												partitionInvocationRequest.size(), newRemoteResultReducer(), targetReturnType);
+		}
+		if (reduceIncrementally) {
+			IncrementalRemoteResultReducer<Object, ?> reducer = (IncrementalRemoteResultReducer<Object, ?>) newRemoteResultReducer();
+			return remotingEngine.reduceIncrementally(remotingEngine.streamRoutedRequests(partitionInvocationRequest), reducer, targetReturnType);
+		}
 		Observable<List<AstrixServiceInvocationResponse>> serviceInvocationResponses = remotingEngine.submitRoutedRequests(partitionInvocationRequest);
 		return reduce(serviceInvocationResponses);
 	}
@@ -175,47 +203,70 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		private final ContainerBuilder routingKeys;
 		private final RoutingKey targetPartitionRoutingKey;
 
-		public RoutedServiceInvocationRequestBuilder(ContainerBuilder keys, int targetPartition) {
+		/**
+		 * @param targetPartitionRoutingKey - any routing key mapping to the target partition, used to route
+		 * the request for the target partition.
+		 */
+		public RoutedServiceInvocationRequestBuilder(ContainerBuilder keys, RoutingKey targetPartitionRoutingKey) {
 			this.routingKeys = keys;
-			this.targetPartitionRoutingKey = RoutingKey.create(targetPartition);
+			this.targetPartitionRoutingKey = targetPartitionRoutingKey;
 		}
 
 		public void addKey(Object requestedKey) {
 			this.routingKeys.add(requestedKey);
 		}
 		
+		/**
+		 * @param sharedMarshalledArguments - the marshalled non-partitioned arguments, shared by
+		 * the requests for all partitions. Must not be modified.
+		 */
 		private RoutedServiceInvocationRequest createInvocationRequest(
 				AstrixServiceInvocationRequest invocationRequest,
-				Object[] unpartitionedArguments) {
+				Object[] sharedMarshalledArguments) {
 			AstrixServiceInvocationRequest partitionedRequest = new AstrixServiceInvocationRequest();
-			partitionedRequest.setAllHeaders(invocationRequest.getHeaders());
-			Object[] requestForPartition = Arrays.copyOf(unpartitionedArguments, unpartitionedArguments.length);
-			requestForPartition[partitionedArgumentIndex] = this.routingKeys.buildTarget();
-			partitionedRequest.setArguments(remotingEngine.marshall(requestForPartition));
+			partitionedRequest.copyHeaders(invocationRequest);
+			Object[] requestForPartition = sharedMarshalledArguments.clone();
+			requestForPartition[partitionedArgumentIndex] = remotingEngine.marshall(this.routingKeys.buildTarget());
+			partitionedRequest.setArguments(requestForPartition);
 			return new RoutedServiceInvocationRequest(partitionedRequest, targetPartitionRoutingKey);
 		}
 	}
 	
 	private class ServiceInvocationPartitioner {
 		private final RoutedServiceInvocationRequestBuilder[] requests;
+		private int partitionedElementCount = 0;
+		private int targetPartitionCount = 0;
+		private final Partitioner partitioner;
 		
 		public ServiceInvocationPartitioner() {
 			this.requests = new RoutedServiceInvocationRequestBuilder[remotingEngine.partitionCount()];
+			this.partitioner = remotingEngine.partitioner();
 		}
 
 		public List<RoutedServiceInvocationRequest> partitionInvocationRequest(AstrixServiceInvocationRequest invocationRequest, Object[] args) {
-			partitionedArgumentContainerType.iterateContainer(getContainerInstance(args), new Consumer<Object>() {
-				@Override
-				public void accept(Object element) {
-					addElement(element);
+			partitionedArgumentContainerType.iterateContainer(getContainerInstance(args), this::addElement);
+			// The non-partitioned arguments are identical for all partitions, hence only marshalled once
+			Object[] sharedMarshalledArguments = new Object[args.length];
+			for (int argumentIndex = 0; argumentIndex < args.length; argumentIndex++) {
+				if (argumentIndex != partitionedArgumentIndex) {
+					sharedMarshalledArguments[argumentIndex] = remotingEngine.marshall(args[argumentIndex]);
 				}
-			});
-			List<RoutedServiceInvocationRequest> result = new LinkedList<>();
+			}
+			List<RoutedServiceInvocationRequestBuilder> targetPartitions = new ArrayList<>(targetPartitionCount);
 			for (RoutedServiceInvocationRequestBuilder routedInvocationReqeustBuilder : requests) {
 				if (routedInvocationReqeustBuilder != null) {
-					result.add(routedInvocationReqeustBuilder.createInvocationRequest(invocationRequest, args));
+					targetPartitions.add(routedInvocationReqeustBuilder);
 				}
 			}
+			if (partitionedElementCount >= PARALLEL_MARSHALLING_THRESHOLD && targetPartitions.size() > 1) {
+				return targetPartitions.parallelStream()
+									   .map(builder -> builder.createInvocationRequest(invocationRequest, sharedMarshalledArguments))
+									   .collect(Collectors.toList());
+			}
+			List<RoutedServiceInvocationRequest> result = new ArrayList<>(targetPartitions.size());
+			for (RoutedServiceInvocationRequestBuilder routedInvocationReqeustBuilder : targetPartitions) {
+				result.add(routedInvocationReqeustBuilder.createInvocationRequest(invocationRequest, sharedMarshalledArguments));
+			}
 			return result;
 		}
 		
@@ -224,15 +275,16 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		}
 
 		public void addElement(Object element) {
-			Object routingKey = router.getRoutingKey(element);
-			int targetPartition = routingKey.hashCode() % requests.length;
+			RoutingKey routingKey = RoutingKey.create(router.getRoutingKey(element));
+			int targetPartition = partitioner.partition(routingKey, requests.length);
 			RoutedServiceInvocationRequestBuilder invocationRequestBuilderForPartition = this.requests[targetPartition];
 			if (invocationRequestBuilderForPartition == null) {
-				invocationRequestBuilderForPartition = new RoutedServiceInvocationRequestBuilder(newCollectionInstance(), targetPartition);
+				invocationRequestBuilderForPartition = new RoutedServiceInvocationRequestBuilder(newCollectionInstance(), routingKey);
 				this.requests[targetPartition] = invocationRequestBuilderForPartition;
-				
+				this.targetPartitionCount++;
 			}
 			invocationRequestBuilderForPartition.addKey(element);
+			this.partitionedElementCount++;
 		}
 
 	}
@@ -285,6 +337,13 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 
 		@Override
 		public void iterateContainer(Object container, Consumer<Object> consumer) {
+			if (container instanceof Object[]) {
+				// Avoid reflective access for arrays of reference types
+				for (Object element : (Object[]) container) {
+					consumer.accept(element);
+				}
+				return;
+			}
 			for (int i = 0; i < Array.getLength(container); i++) {
 				consumer.accept(Array.get(container, i));
 			}
@@ -312,6 +371,9 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		
 		@Override
 		Object buildTarget() {
+			if (!elementType.isPrimitive()) {
+				return elements.toArray((Object[]) Array.newInstance(elementType, elements.size()));
+			}
 			Object array = Array.newInstance(elementType, elements.size());
 			int nextIndex = 0;
 			for (Object element : elements) {
@@ -19,7 +19,9 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 
+import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixIdempotent;
 import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRoutingStrategy;
 import com.avanza.astrix.core.IllegalServiceMetadataException;
@@ -35,30 +37,58 @@ public class RemoteServiceMethodFactory {
 
 	private final RemotingEngine remotingEngine;
 	private final RoutingStrategy defaultRoutingStrategy;
+	private final Metrics metrics;
 	
 	public RemoteServiceMethodFactory(RemotingEngine remotingEngine,
-			RoutingStrategy defaultRoutingStrategy) {
+			RoutingStrategy defaultRoutingStrategy, Metrics metrics) {
 		this.remotingEngine = remotingEngine;
 		this.defaultRoutingStrategy = defaultRoutingStrategy;
+		this.metrics = metrics;
 	}
 
 	public RemoteServiceMethod createRemoteServiceMethod(
 			Class<?> targetServiceType, Method proxiedMethod, Type targetReturnType) {
 		String methodSignature = ReflectionUtil.methodSignatureWithoutReturnType(proxiedMethod);
 		if (proxiedMethod.isAnnotationPresent(AstrixBroadcast.class)) {
+			Method targetServiceMethod = ReflectionUtil.getMethod(targetServiceType, proxiedMethod.getName(), proxiedMethod.getParameterTypes());
+			long deadlineMillis = targetServiceMethod.getAnnotation(AstrixBroadcast.class).partialResultDeadlineMillis();
 			return new BroadcastedRemoteServiceMethod(methodSignature,
 					getRemoteResultReducerClass(proxiedMethod, targetServiceType),
-					remotingEngine, targetReturnType);
+					remotingEngine, targetReturnType, 
+					createPartialResultDeadline(deadlineMillis, targetServiceType, proxiedMethod, targetReturnType));
 		}
 		int partitionedByArgumentIndex = getPartitionedByAnnotation(proxiedMethod);
 		if (partitionedByArgumentIndex >= 0) {
-			return new PartitionedRemoteServiceMethod(partitionedByArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType);
+			long deadlineMillis = PartitionedRemoteServiceMethod.getPartitionedRoutingAnnotation(proxiedMethod, partitionedByArgumentIndex).partialResultDeadlineMillis();
+			return new PartitionedRemoteServiceMethod(partitionedByArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType,
+					createPartialResultDeadline(deadlineMillis, targetServiceType, proxiedMethod, targetReturnType));
 		}
+		RoutingStrategy routingStrategy = defaultRoutingStrategy;
 		if (proxiedMethod.isAnnotationPresent(AstrixRoutingStrategy.class)) {
-			RoutingStrategy routingStrategy = createRoutingStrategy(proxiedMethod);
-			return new RoutedRemoteServiceMethod(methodSignature, routingStrategy.create(proxiedMethod), remotingEngine, targetReturnType);
+			routingStrategy = createRoutingStrategy(proxiedMethod);
 		}
-		return new RoutedRemoteServiceMethod(methodSignature, defaultRoutingStrategy.create(proxiedMethod), remotingEngine, targetReturnType);
+		InFlightInvocations inFlightInvocations = null;
+		if (isIdempotent(proxiedMethod, targetServiceType)) {
+			// Keyed on the signature to separate the metrics of overloaded methods
+			inFlightInvocations = new InFlightInvocations(metrics, targetServiceType.getSimpleName() + "." + methodSignature);
+		}
+		return new RoutedRemoteServiceMethod(methodSignature, routingStrategy.create(proxiedMethod), remotingEngine, targetReturnType, inFlightInvocations);
+	}
+	
+	private PartialResultDeadline createPartialResultDeadline(long deadlineMillis, Class<?> targetServiceType, Method proxiedMethod, Type targetReturnType) {
+		if (!PartialResultDeadline.isEnabled(deadlineMillis, targetReturnType)) {
+			return null;
+		}
+		return new PartialResultDeadline(deadlineMillis, metrics, targetServiceType.getSimpleName() + "." + proxiedMethod.getName());
+	}
+	
+	private static boolean isIdempotent(Method proxiedMethod, Class<?> targetServiceType) {
+		if (proxiedMethod.isAnnotationPresent(AstrixIdempotent.class)) {
+			return true;
+		}
+		// The annotation might only be present on the target service, for instance when proxying an async interface
+		Method targetServiceMethod = ReflectionUtil.getMethod(targetServiceType, proxiedMethod.getName(), proxiedMethod.getParameterTypes());
+		return targetServiceMethod.isAnnotationPresent(AstrixIdempotent.class);
 	}
 
 	private RoutingStrategy createRoutingStrategy(Method proxiedMethod) {
@@ -18,8 +18,10 @@ package com.avanza.astrix.remoting.client;
 
 import org.kohsuke.MetaInfServices;
 
+import com.avanza.astrix.beans.config.BeanConfigurations;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.context.AstrixContextPlugin;
+import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.modules.ModuleContext;
 import com.avanza.astrix.versioning.core.ObjectSerializerFactory;
 
@@ -32,6 +34,8 @@ public class RemotingClientModule implements AstrixContextPlugin {
 		
 		moduleContext.importType(ObjectSerializerFactory.class);
 		moduleContext.importType(ReactiveTypeConverter.class);
+		moduleContext.importType(BeanConfigurations.class);
+		moduleContext.importType(Metrics.class);
 		
 		moduleContext.export(RemotingProxyFactory.class);
 	}
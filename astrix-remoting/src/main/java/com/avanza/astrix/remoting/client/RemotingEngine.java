@@ -16,14 +16,17 @@
 package com.avanza.astrix.remoting.client;
 
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import rx.Observable;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.CorrelationId;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteServiceInvocationException;
 import com.avanza.astrix.core.ServiceInvocationException;
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
@@ -34,11 +37,31 @@ public final class RemotingEngine {
 	private final RemotingTransport serviceTransport;
 	private final AstrixObjectSerializer objectSerializer;
 	private final int apiVersion;
+	private final boolean bytePayloads;
 	
 	public RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion) {
+		this(serviceTransport, objectSerializer, apiVersion, false);
+	}
+	
+	/**
+	 * @param bytePayloads - whether to marshall arguments and unmarshall responses using the byte oriented
+	 * contract of the given AstrixObjectSerializer, see {@link AstrixServiceInvocationRequest#setBytePayloads(boolean)}. 
+	 */
+	public RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion, boolean bytePayloads) {
 		this.serviceTransport = serviceTransport;
 		this.objectSerializer = objectSerializer;
 		this.apiVersion = apiVersion;
+		this.bytePayloads = bytePayloads;
+	}
+
+	/**
+	 * Resolves the type information required to unmarshall responses of the given type up front, 
+	 * see {@link AstrixObjectSerializer#prepareType(Type)}.
+	 */
+	final void prepareType(Type type) {
+		if (!type.equals(Void.TYPE)) {
+			this.objectSerializer.prepareType(type);
+		}
 	}
 
 	protected final <T> AstrixRemoteResult<T> toRemoteResult(AstrixServiceInvocationResponse response, Type returnType) {
@@ -63,20 +86,34 @@ public final class RemotingEngine {
 		}
 		Object[] result = new Object[elements.length];
 		for (int i = 0; i < result.length; i++) {
-			result[i] = this.objectSerializer.serialize(elements[i], apiVersion);
+			result[i] = marshall(elements[i]);
 		}
 		return result;
 	}
+	
+	protected final Object marshall(Object element) {
+		if (bytePayloads) {
+			return this.objectSerializer.serializeToBytes(element, apiVersion);
+		}
+		return this.objectSerializer.serialize(element, apiVersion);
+	}
 
 	private <T> T unmarshall(AstrixServiceInvocationResponse response, Type returnType, int version) {
-		return objectSerializer.deserialize(response.getResponseBody(), returnType, version);
+		return unmarshall(response.getResponseBody(), returnType, version);
+	}
+	
+	private <T> T unmarshall(Object payload, Type type, int version) {
+		if (bytePayloads) {
+			return objectSerializer.deserialize(ByteBuffer.wrap((byte[]) payload), type, version);
+		}
+		return objectSerializer.deserialize(payload, type, version);
 	}
 	
 	protected final ServiceInvocationException createClientSideException(AstrixServiceInvocationResponse response, int version) {
 		if (response.getException() != null) {
-			ServiceInvocationException exception = objectSerializer.deserialize(response.getException(), 
-																		ServiceInvocationException.class, 
-																		version);
+			ServiceInvocationException exception = unmarshall(response.getException(), 
+															  ServiceInvocationException.class, 
+															  version);
 			return exception;
 		} 
 		return new RemoteServiceInvocationException(response.getExceptionMsg(), response.getThrownExceptionType());			
@@ -86,6 +123,10 @@ public final class RemotingEngine {
 		return this.serviceTransport.submitRoutedRequest(request, routingKey);
 	}
 	
+	final Observable<AstrixServiceInvocationResponse> submitIdempotentRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return this.serviceTransport.submitIdempotentRequest(request, routingKey);
+	}
+	
 	final Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
 		return this.serviceTransport.submitRoutedRequests(requests);
 	}
@@ -94,8 +135,33 @@ public final class RemotingEngine {
 		return this.serviceTransport.submitBroadcastRequest(request);
 	}
 
+	final Observable<AstrixServiceInvocationResponse> streamRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
+		return this.serviceTransport.streamRoutedRequests(requests);
+	}
+	
+	final Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return this.serviceTransport.streamBroadcastRequest(request);
+	}
+	
+	/**
+	 * Unmarshalls and accumulates each response as it is received using the given reducer. The 
+	 * returned Observable emits a single item, the reduced result, when all responses are received.
+	 */
+	final <T, A> Observable<T> reduceIncrementally(Observable<AstrixServiceInvocationResponse> responses, 
+												   IncrementalRemoteResultReducer<T, A> reducer,
+												   Type returnType) {
+		return Observable.defer(() -> responses.reduce(reducer.init(), (accumulator, response) -> {
+			AstrixRemoteResult<T> result = toRemoteResult(response, returnType);
+			return reducer.accumulate(accumulator, result);
+		})).map(reducer::finish);
+	}
+
 	public int partitionCount() {
 		return this.serviceTransport.partitionCount();
 	}
+	
+	public Partitioner partitioner() {
+		return this.serviceTransport.partitioner();
+	}
 
 }
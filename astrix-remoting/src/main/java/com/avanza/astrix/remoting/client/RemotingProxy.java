@@ -29,7 +29,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.core.AstrixCallStackTrace;
+import com.avanza.astrix.core.ServiceInvocationException;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -46,12 +49,36 @@ public class RemotingProxy implements InvocationHandler {
 	
 	private final int apiVersion;
 	private final String serviceApi;
-	private final ConcurrentMap<Method, RemoteServiceMethod> remoteServiceMethodByMethod = new ConcurrentHashMap<>();
+	private final int serviceId;
+	private final int methodTableFingerprint;
+	private final boolean bytePayloads;
+	private final ConcurrentMap<Method, ProxiedServiceMethod> serviceMethodByMethod = new ConcurrentHashMap<>();
 	private final RemoteServiceMethodFactory remoteServiceMethodFactory;
 	private final ReactiveTypeConverter reactiveTypeConverter;
 
 	public static <T> T create(Class<T> proxyApi, Class<?> targetApi, RemotingTransport transport, AstrixObjectSerializer objectSerializer, RoutingStrategy defaultRoutingStrategy, ReactiveTypeConverter reactiveTypeConverter) {
-		RemotingProxy handler = new RemotingProxy(proxyApi, targetApi, objectSerializer, transport, defaultRoutingStrategy, reactiveTypeConverter);
+		return create(proxyApi, targetApi, transport, objectSerializer, defaultRoutingStrategy, reactiveTypeConverter, new ServiceProperties());
+	}
+	
+	/**
+	 * Creates a RemotingProxy that identifies each invocation using the compact invocation header
+	 * if the given ServiceProperties contains a method table matching the targetApi, see {@link ServiceMethodTable}.
+	 * Payloads are moved as raw bytes if the given AstrixObjectSerializer is byte oriented and the ServiceProperties
+	 * indicates that the server accepts byte payloads, see {@link AstrixServiceInvocationRequest#BYTE_PAYLOADS_PROPERTY}.
+	 */
+	public static <T> T create(Class<T> proxyApi, Class<?> targetApi, RemotingTransport transport, AstrixObjectSerializer objectSerializer, 
+							   RoutingStrategy defaultRoutingStrategy, ReactiveTypeConverter reactiveTypeConverter, ServiceProperties serviceProperties) {
+		return create(proxyApi, targetApi, transport, objectSerializer, defaultRoutingStrategy, reactiveTypeConverter, serviceProperties, new Metrics.NoMetrics());
+	}
+	
+	/**
+	 * Creates a RemotingProxy that reports metrics, for instance for collapsed invocations 
+	 * of idempotent service methods, to the given {@link Metrics}.
+	 */
+	public static <T> T create(Class<T> proxyApi, Class<?> targetApi, RemotingTransport transport, AstrixObjectSerializer objectSerializer, 
+							   RoutingStrategy defaultRoutingStrategy, ReactiveTypeConverter reactiveTypeConverter, ServiceProperties serviceProperties,
+							   Metrics metrics) {
+		RemotingProxy handler = new RemotingProxy(proxyApi, targetApi, objectSerializer, transport, defaultRoutingStrategy, reactiveTypeConverter, serviceProperties, metrics);
 		T serviceProxy = (T) Proxy.newProxyInstance(RemotingProxy.class.getClassLoader(), new Class[]{proxyApi}, handler);
 		return serviceProxy;
 	}
@@ -61,12 +88,16 @@ public class RemotingProxy implements InvocationHandler {
 							    AstrixObjectSerializer objectSerializer,
 							    RemotingTransport AstrixServiceTransport,
 							    RoutingStrategy defaultRoutingStrategy,
-							    ReactiveTypeConverter reactiveTypeConverter) {
+							    ReactiveTypeConverter reactiveTypeConverter,
+							    ServiceProperties serviceProperties,
+							    Metrics metrics) {
 		this.reactiveTypeConverter = reactiveTypeConverter;
 		this.serviceApi = targetServiceApi.getName();
 		this.apiVersion = objectSerializer.version();
-		RemotingEngine remotingEngine = new RemotingEngine(AstrixServiceTransport, objectSerializer, apiVersion);
-		this.remoteServiceMethodFactory = new RemoteServiceMethodFactory(remotingEngine, defaultRoutingStrategy);
+		this.bytePayloads = objectSerializer.isByteOriented() 
+				&& Boolean.parseBoolean(serviceProperties.getProperty(AstrixServiceInvocationRequest.BYTE_PAYLOADS_PROPERTY));
+		RemotingEngine remotingEngine = new RemotingEngine(AstrixServiceTransport, objectSerializer, apiVersion, bytePayloads);
+		this.remoteServiceMethodFactory = new RemoteServiceMethodFactory(remotingEngine, defaultRoutingStrategy, metrics);
 		/*
 		 * For each of the following services the "targetServiceType" resolves to MyService:
 		 *  - MyService
@@ -74,10 +105,16 @@ public class RemotingProxy implements InvocationHandler {
 		 *  - ObservableMyService
 		 */
 		Class<?> targetServiceType = ReflectionUtil.classForName(this.serviceApi);
+		ServiceMethodTable methodTable = ServiceMethodTable.create(targetServiceType);
+		this.serviceId = methodTable.getServiceId(serviceProperties);
+		this.methodTableFingerprint = methodTable.getFingerprint();
+		remotingEngine.prepareType(ServiceInvocationException.class);
 		for (Method proxiedMethod : proxiedServiceApi.getMethods()) {
 			Type returnType = getReturnType(proxiedMethod);
+			remotingEngine.prepareType(returnType);
 			RemoteServiceMethod remoteServiceMethod = this.remoteServiceMethodFactory.createRemoteServiceMethod(targetServiceType, proxiedMethod, returnType);
-			remoteServiceMethodByMethod.put(proxiedMethod, remoteServiceMethod);
+			int methodId = methodTable.getMethodId(remoteServiceMethod.getSignature());
+			serviceMethodByMethod.put(proxiedMethod, new ProxiedServiceMethod(remoteServiceMethod, methodId));
 		}
 	}
 
@@ -91,13 +128,18 @@ public class RemotingProxy implements InvocationHandler {
 		if (method.getDeclaringClass().equals(Object.class)) {
 			return ReflectionUtil.invokeMethod(method, this, args);
 		}
-		RemoteServiceMethod remoteServiceMethod = this.remoteServiceMethodByMethod.get(method);
+		ProxiedServiceMethod serviceMethod = this.serviceMethodByMethod.get(method);
+		RemoteServiceMethod remoteServiceMethod = serviceMethod.remoteServiceMethod;
 		
 		AstrixServiceInvocationRequest invocationRequest = new AstrixServiceInvocationRequest();
-		
-		invocationRequest.setHeader("apiVersion", Integer.toString(this.apiVersion));
-		invocationRequest.setHeader("serviceMethodSignature", remoteServiceMethod.getSignature());
-		invocationRequest.setHeader("serviceApi", this.serviceApi);
+		invocationRequest.setBytePayloads(this.bytePayloads);
+		if (this.serviceId != AstrixServiceInvocationRequest.NO_SERVICE_ID && serviceMethod.methodId >= 0) {
+			invocationRequest.setCompactHeader(this.serviceId, serviceMethod.methodId, this.methodTableFingerprint, this.apiVersion);
+		} else {
+			invocationRequest.setHeader(AstrixServiceInvocationRequestHeaders.API_VERSION, Integer.toString(this.apiVersion));
+			invocationRequest.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE, remoteServiceMethod.getSignature());
+			invocationRequest.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, this.serviceApi);
+		}
 		
 		Observable<?> result = remoteServiceMethod.invoke(invocationRequest, args);
 		if (isObservableType(method.getReturnType())) {
@@ -154,6 +196,18 @@ public class RemotingProxy implements InvocationHandler {
 		return this.reactiveTypeConverter.isReactiveType(asyncType);
 	}
 	
+	private static class ProxiedServiceMethod {
+		
+		private final RemoteServiceMethod remoteServiceMethod;
+		private final int methodId;
+		
+		public ProxiedServiceMethod(RemoteServiceMethod remoteServiceMethod, int methodId) {
+			this.remoteServiceMethod = remoteServiceMethod;
+			this.methodId = methodId;
+		}
+		
+	}
+	
 	private static class FutureAdapter<T> implements Future<T> {
 		
 		private final CountDownLatch done = new CountDownLatch(1);
@@ -15,9 +15,13 @@
  */
 package com.avanza.astrix.remoting.client;
 
+import com.avanza.astrix.beans.config.BeanConfiguration;
+import com.avanza.astrix.beans.config.BeanConfigurations;
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -27,19 +31,31 @@ public class RemotingProxyFactoryImpl implements RemotingProxyFactory {
 	
 	private final ObjectSerializerFactory objectSerializerFactory;
 	private final ReactiveTypeConverter reactiveTypeConverter;
+	private final BeanConfigurations beanConfigurations;
+	private final Metrics metrics;
 	
-	public RemotingProxyFactoryImpl(ObjectSerializerFactory objectSerializerFactory, ReactiveTypeConverter reactiveTypeConverter) {
+	public RemotingProxyFactoryImpl(ObjectSerializerFactory objectSerializerFactory, ReactiveTypeConverter reactiveTypeConverter, BeanConfigurations beanConfigurations, Metrics metrics) {
 		this.objectSerializerFactory = objectSerializerFactory;
 		this.reactiveTypeConverter = reactiveTypeConverter;
+		this.beanConfigurations = beanConfigurations;
+		this.metrics = metrics;
 	}
 
 	@Override
 	public <T> T create(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties,
 			RemotingTransportSpi remotingTransportSpi, RoutingStrategy routingStrategy) {
 		AstrixObjectSerializer objectSerializer = objectSerializerFactory.create(serviceDefinition.getObjectSerializerDefinition());
-		RemotingTransport remotingTransport = RemotingTransport.create(remotingTransportSpi);
+		BeanConfiguration beanConfiguration = beanConfigurations.getBeanConfiguration(serviceDefinition.getBeanKey());
+		HedgingPolicy hedgingPolicy = new HedgingPolicy(beanConfiguration.get(AstrixBeanSettings.REMOTING_HEDGING_ENABLED),
+				beanConfiguration.get(AstrixBeanSettings.REMOTING_HEDGE_DELAY_MILLIS),
+				beanConfiguration.get(AstrixBeanSettings.REMOTING_HEDGE_BUDGET_PERCENT),
+				metrics, serviceDefinition.getBeanKey().toString());
+		RemotingTransport remotingTransport = RemotingTransport.create(new BatchingRemotingTransport(remotingTransportSpi, 
+				beanConfiguration.get(AstrixBeanSettings.REMOTING_BATCHING_ENABLED),
+				beanConfiguration.get(AstrixBeanSettings.REMOTING_BATCH_WINDOW_MICROS),
+				beanConfiguration.get(AstrixBeanSettings.REMOTING_BATCH_MAX_SIZE)), hedgingPolicy);
 		return RemotingProxy.create(serviceDefinition.getServiceType(), ReflectionUtil.classForName(serviceProperties.getProperty(ServiceProperties.API))
-				, remotingTransport, objectSerializer, routingStrategy, reactiveTypeConverter);
+				, remotingTransport, objectSerializer, routingStrategy, reactiveTypeConverter, serviceProperties, metrics);
 	}
 
 }
@@ -19,6 +19,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.TypeVariable;
 import java.util.List;
 
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
@@ -32,7 +33,7 @@ final class RemotingProxyUtil {
 	private static void validateRemoteResultReducerReturnType(
 			Method targetServiceMethod,
 			Class<? extends RemoteResultReducer<?>> reducerType) {
-		Method reduceMethod = ReflectionUtil.getMethod(reducerType, "reduce", List.class);
+		Method reduceMethod = getReduceMethod(reducerType);
 		Class<?> returnType = targetServiceMethod.getReturnType();
 		if (returnType.equals(Void.TYPE)) {
 			return;
@@ -49,7 +50,20 @@ final class RemotingProxyUtil {
 							targetServiceMethod, reducerType, returnType.getName(), reduceMethod.getReturnType().getName()));
 		}
 	}
-
 	
+	/*
+	 * IncrementalRemoteResultReducer's typically inherits the default reduce method, whose
+	 * return type is a type variable. The finish method defines the actual return type.
+	 */
+	private static Method getReduceMethod(Class<? extends RemoteResultReducer<?>> reducerType) {
+		if (IncrementalRemoteResultReducer.class.isAssignableFrom(reducerType)) {
+			for (Method method : reducerType.getMethods()) {
+				if (method.getName().equals("finish") && method.getParameterTypes().length == 1 && !method.isBridge()) {
+					return method;
+				}
+			}
+		}
+		return ReflectionUtil.getMethod(reducerType, "reduce", List.class);
+	}
 
 }
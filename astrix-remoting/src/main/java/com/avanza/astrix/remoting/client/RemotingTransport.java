@@ -17,6 +17,7 @@ package com.avanza.astrix.remoting.client;
 
 import java.util.List;
 
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 
 import rx.Observable;
@@ -28,19 +29,39 @@ import rx.Observable;
 public class RemotingTransport {
 	
 	private final RemotingTransportSpi impl;
+	private final HedgingPolicy hedgingPolicy;
 	
-	RemotingTransport(RemotingTransportSpi impl) {
+	RemotingTransport(RemotingTransportSpi impl, HedgingPolicy hedgingPolicy) {
 		this.impl = impl;
+		this.hedgingPolicy = hedgingPolicy;
 	}
 
 	public static RemotingTransport create(RemotingTransportSpi impl) {
-		return new RemotingTransport(impl);
+		return new RemotingTransport(impl, HedgingPolicy.none());
+	}
+	
+	static RemotingTransport create(RemotingTransportSpi impl, HedgingPolicy hedgingPolicy) {
+		return new RemotingTransport(impl, hedgingPolicy);
 	}
 
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
 		return impl.submitRoutedRequest(request, routingKey);
 	}
 	
+	/**
+	 * Sends a routed invocation request for an idempotent service method, which might be hedged 
+	 * according to the {@link HedgingPolicy} of this transport if the underlying transport knows
+	 * an alternate provider for the given routing key.
+	 */
+	public Observable<AstrixServiceInvocationResponse> submitIdempotentRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		if (!impl.supportsHedgedRequest(routingKey)) {
+			hedgingPolicy.hedgingNotSupported(routingKey);
+			return impl.submitRoutedRequest(request, routingKey);
+		}
+		return hedgingPolicy.submit(() -> impl.submitRoutedRequest(request, routingKey), 
+									() -> impl.submitHedgedRequest(request, routingKey));
+	}
+	
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
 		return impl.submitRoutedRequests(requests);
 	}
@@ -49,9 +70,21 @@ public class RemotingTransport {
 		return impl.submitBroadcastRequest(request);
 	}
 
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
+		return impl.streamRoutedRequests(requests);
+	}
+	
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return impl.streamBroadcastRequest(request);
+	}
+
 	public int partitionCount() {
 		return this.impl.partitionCount();
 	}
 	
+	public Partitioner partitioner() {
+		return this.impl.partitioner();
+	}
+	
 
 }
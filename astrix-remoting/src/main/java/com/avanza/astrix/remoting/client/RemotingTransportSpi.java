@@ -15,9 +15,11 @@
  */
 package com.avanza.astrix.remoting.client;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import com.avanza.astrix.core.remoting.Partitioner;
 import com.avanza.astrix.core.remoting.RoutingKey;
 
 import rx.Observable;
@@ -47,6 +49,11 @@ public interface RemotingTransportSpi {
 	 * second event to be emitted. Therefore, in order to ensure that service invocation are protected
 	 * with a timeout, the RemotingTransportSpi has been designed to only emit one event with all responses,
 	 * or non at all.
+	 * 
+	 * The streaming methods (RemotingTransportSpi#streamRoutedRequests and RemotingTransportSpi#streamBroadcastRequest)
+	 * emit one event per response. They are only used internally by the remoting framework, which folds all 
+	 * responses into a single event using an IncrementalRemoteResultReducer before the result is passed 
+	 * to the fault tolerance layer. Hence the timeout guarantee above still holds.
 	 */
 	
 	/**
@@ -58,6 +65,65 @@ public interface RemotingTransportSpi {
 	 */
 	Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey);
 	
+	/**
+	 * Sends a batch of routed invocation requests, all targeting the same cluster member, to the 
+	 * cluster member associated with the given routing key. <p>
+	 * 
+	 * The default implementation sends each request individually. Transports able to send several 
+	 * invocations in one round trip should override this method.
+	 * 
+	 * @param requests
+	 * @param routingKey
+	 * @return an Observable that will emit one item with the responses for each request, in the same
+	 * order as the given requests.
+	 */
+	default Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(requests.size());
+		for (AstrixServiceInvocationRequest request : requests) {
+			responses.add(submitRoutedRequest(request, routingKey));
+		}
+		return Observable.zip(responses, args -> {
+			List<AstrixServiceInvocationResponse> result = new ArrayList<>(args.length);
+			for (Object response : args) {
+				result.add((AstrixServiceInvocationResponse) response);
+			}
+			return result;
+		});
+	}
+	
+	/**
+	 * Sends a duplicate of a routed invocation request that has not completed within the hedge delay, see 
+	 * {@link com.avanza.astrix.beans.core.AstrixBeanSettings#REMOTING_HEDGING_ENABLED}. Only invoked for
+	 * idempotent service methods, and only if {@link #supportsHedgedRequest(RoutingKey)} returns true for
+	 * the given routing key. <p>
+	 * 
+	 * Transports aware of an alternate provider for the given routing key, for instance a replica, should override this
+	 * method and send the request to the alternate provider. The default implementation fails with an 
+	 * UnsupportedOperationException.
+	 * 
+	 * @param request
+	 * @param routingKey
+	 * @return an Observable that will emit one item for the response from the given invocation request.
+	 */
+	default Observable<AstrixServiceInvocationResponse> submitHedgedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return Observable.error(new UnsupportedOperationException("Hedged requests not supported by transport: " + getClass().getName()));
+	}
+	
+	/**
+	 * Whether this transport is able to send a hedged request for the given routing key to another provider than the one 
+	 * targeted by {@link #submitRoutedRequest(AstrixServiceInvocationRequest, RoutingKey)}, see 
+	 * {@link #submitHedgedRequest(AstrixServiceInvocationRequest, RoutingKey)}. Hedging a request to the same provider
+	 * would only add load to a provider that is already slow, hence requests are never hedged when this method returns false. <p>
+	 * 
+	 * The default implementation returns false.
+	 * 
+	 * @param routingKey
+	 * @return
+	 */
+	default boolean supportsHedgedRequest(RoutingKey routingKey) {
+		return false;
+	}
+	
 	/**
 	 * Sends each service invocation to the associate target cluster member.
 	 * 
@@ -66,6 +132,20 @@ public interface RemotingTransportSpi {
 	 */
 	Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests);
 	
+	/**
+	 * Streaming version of {@link #submitRoutedRequests(Collection)} that emits the response from each 
+	 * invocation as soon as it is received, see design note above. <p>
+	 * 
+	 * The default implementation emits the responses from {@link #submitRoutedRequests(Collection)} when 
+	 * all responses are received.
+	 * 
+	 * @param requests
+	 * @return an Observable that will emit one item for the response from each invocation
+	 */
+	default Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		return submitRoutedRequests(requests).flatMap(responses -> Observable.from(responses));
+	}
+	
 	/**
 	 * Sends a service invocation request to each member in the cluster. 
 	 * 
@@ -75,9 +155,35 @@ public interface RemotingTransportSpi {
 	 */
 	Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request);
 	
+	/**
+	 * Streaming version of {@link #submitBroadcastRequest(AstrixServiceInvocationRequest)} that emits the response 
+	 * from each member as soon as it is received, see design note above. <p>
+	 * 
+	 * The default implementation emits the responses from {@link #submitBroadcastRequest(AstrixServiceInvocationRequest)} when 
+	 * all responses are received.
+	 * 
+	 * @param request
+	 * @return an Observable that will emit one item for the response from each member in the entire cluster
+	 */
+	default Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return submitBroadcastRequest(request).flatMap(responses -> Observable.from(responses));
+	}
+	
 	/**
 	 * 
 	 * @return the number of members in the target cluster.
 	 */
 	int partitionCount();
+	
+	/**
+	 * The Partitioner used by this transport to map a routing key to a cluster member. Partitioned invocations
+	 * use the same Partitioner to split the partitioned argument. <p>
+	 * 
+	 * The default implementation returns {@link Partitioner#MODULO}, which is the routing used by GigaSpaces.
+	 * 
+	 * @return
+	 */
+	default Partitioner partitioner() {
+		return Partitioner.MODULO;
+	}
 }
\ No newline at end of file
@@ -29,15 +29,29 @@ public class RoutedRemoteServiceMethod implements RemoteServiceMethod {
 	private final Router router;
 	private final RemotingEngine remotingEngine;
 	private final Type returnType;
+	private final InFlightInvocations inFlightInvocations;
 
 	public RoutedRemoteServiceMethod(String signature, 
 									 Router router,
 									 RemotingEngine remotingEngine, 
 									 Type returnType) {
+		this(signature, router, remotingEngine, returnType, null);
+	}
+	
+	/**
+	 * @param inFlightInvocations - used to collapse concurrent invocations with equal arguments, or null 
+	 * if the service method is not idempotent.
+	 */
+	RoutedRemoteServiceMethod(String signature, 
+							  Router router,
+							  RemotingEngine remotingEngine, 
+							  Type returnType,
+							  InFlightInvocations inFlightInvocations) {
 		this.signature = signature;
 		this.router = router;
 		this.remotingEngine = remotingEngine;
 		this.returnType = returnType;
+		this.inFlightInvocations = inFlightInvocations;
 	}
 
 	public String getSignature() {
@@ -56,8 +70,12 @@ public class RoutedRemoteServiceMethod implements RemoteServiceMethod {
 	
 	protected Observable<Object> submitRoutedRequest(AstrixServiceInvocationRequest request,
 			RoutingKey routingKey) {
-		Observable<AstrixServiceInvocationResponse> response = remotingEngine.submitRoutedRequest(
-				request, routingKey);
+		Observable<AstrixServiceInvocationResponse> response;
+		if (inFlightInvocations != null) {
+			response = Observable.defer(() -> inFlightInvocations.submit(request.getArguments(), () -> remotingEngine.submitIdempotentRequest(request, routingKey)));
+		} else {
+			response = remotingEngine.submitRoutedRequest(request, routingKey);
+		}
 		return response.map(new Func1<AstrixServiceInvocationResponse, Object>() {
 			@Override
 			public Object call(AstrixServiceInvocationResponse t1) {
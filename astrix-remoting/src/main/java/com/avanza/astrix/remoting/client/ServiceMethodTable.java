@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.core.util.ReflectionUtil;
+/**
+ * Deterministic numbering of the methods in a service api. <p>
+ * 
+ * The method id of a given method is its index among all methods in the api sorted by signature,
+ * hence the client and server computes the same table from the same api. The fingerprint of
+ * a table is derived from the api name and all method signatures, and is used to verify that
+ * the client and server agrees on the table. <p>
+ * 
+ * A server publishes the service id and table fingerprint of each exported service as service properties
+ * (see {@link #setServiceProperties(ServiceProperties, int)}). A client that finds a matching fingerprint
+ * when binding to the service identifies each invocation using the numeric ids rather than the string
+ * headers in {@link AstrixServiceInvocationRequestHeaders}. Servers that don't publish a method table, 
+ * or publishes a table that doesn't match the client api, are invoked using the string headers.
+ */
+public final class ServiceMethodTable {
+	
+	public static final String SERVICE_ID_PROPERTY = "_remotingServiceId";
+	public static final String FINGERPRINT_PROPERTY = "_remotingMethodTable";
+	
+	private final Method[] methodById;
+	private final Map<String, Integer> methodIdBySignature = new HashMap<>();
+	private final int fingerprint;
+	
+	private ServiceMethodTable(Class<?> serviceApi) {
+		TreeMap<String, Method> methodBySignature = new TreeMap<>();
+		for (Method m : serviceApi.getMethods()) {
+			methodBySignature.put(ReflectionUtil.methodSignatureWithoutReturnType(m), m);
+		}
+		this.methodById = methodBySignature.values().toArray(new Method[methodBySignature.size()]);
+		int hash = serviceApi.getName().hashCode();
+		int methodId = 0;
+		for (String signature : methodBySignature.keySet()) {
+			this.methodIdBySignature.put(signature, methodId);
+			hash = 31 * hash + signature.hashCode();
+			methodId++;
+		}
+		this.fingerprint = hash;
+	}
+	
+	public static ServiceMethodTable create(Class<?> serviceApi) {
+		return new ServiceMethodTable(serviceApi);
+	}
+	
+	/**
+	 * @param signature, see {@link ReflectionUtil#methodSignatureWithoutReturnType(Method)}
+	 * @return the id of the method with the given signature, or -1 if no such method exists
+	 */
+	public int getMethodId(String signature) {
+		Integer methodId = methodIdBySignature.get(signature);
+		return methodId != null ? methodId.intValue() : -1;
+	}
+	
+	/**
+	 * @param methodId
+	 * @return the method with the given id, or null if no such method exists
+	 */
+	public Method getMethod(int methodId) {
+		if (methodId < 0 || methodId >= methodById.length) {
+			return null;
+		}
+		return methodById[methodId];
+	}
+	
+	public int getFingerprint() {
+		return fingerprint;
+	}
+	
+	public void setServiceProperties(ServiceProperties serviceProperties, int serviceId) {
+		serviceProperties.setProperty(SERVICE_ID_PROPERTY, Integer.toString(serviceId));
+		serviceProperties.setProperty(FINGERPRINT_PROPERTY, Integer.toString(fingerprint));
+	}
+	
+	/**
+	 * Reads the service id published by the server from the given ServiceProperties.
+	 * 
+	 * @param serviceProperties
+	 * @return the service id, or {@link AstrixServiceInvocationRequest#NO_SERVICE_ID} if the server
+	 *  	   didn't publish a method table matching this table.
+	 */
+	public int getServiceId(ServiceProperties serviceProperties) {
+		String serviceId = serviceProperties.getProperty(SERVICE_ID_PROPERTY);
+		String publishedFingerprint = serviceProperties.getProperty(FINGERPRINT_PROPERTY);
+		if (serviceId == null || publishedFingerprint == null) {
+			return AstrixServiceInvocationRequest.NO_SERVICE_ID;
+		}
+		try {
+			if (Integer.parseInt(publishedFingerprint) != fingerprint) {
+				return AstrixServiceInvocationRequest.NO_SERVICE_ID;
+			}
+			return Integer.parseInt(serviceId);
+		} catch (NumberFormatException e) {
+			return AstrixServiceInvocationRequest.NO_SERVICE_ID;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceMethodTable [fingerprint=" + fingerprint + ", methods=" + Arrays.toString(methodById) + "]";
+	}
+	
+}
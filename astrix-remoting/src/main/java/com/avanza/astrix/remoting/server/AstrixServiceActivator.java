@@ -15,14 +15,70 @@
  */
 package com.avanza.astrix.remoting.server;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.ServiceMethodTable;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
 public interface AstrixServiceActivator {
 
 	AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest invocationRequest);
+	
+	/**
+	 * Invokes a service without blocking the calling thread while waiting for service methods 
+	 * with a reactive return type (Observable, CompletableFuture or any type supported by a 
+	 * ReactiveTypeHandlerPlugin) to complete. The returned CompletionStage is completed with 
+	 * the response when the reactive result completes.<p>
+	 * 
+	 * Service methods with a non reactive return type are invoked synchronously in the calling thread.
+	 *  
+	 * @param invocationRequest
+	 * @return
+	 */
+	CompletionStage<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest invocationRequest);
+
+	/**
+	 * Invokes each request in a batch sent by a batching client, see {@link #invokeService(AstrixServiceInvocationRequest)}.
+	 * 
+	 * @param invocationRequests
+	 * @return the response for each request, in the same order as the given requests
+	 */
+	List<AstrixServiceInvocationResponse> invokeServiceBatch(List<AstrixServiceInvocationRequest> invocationRequests);
+	
+	/**
+	 * Non blocking version of {@link #invokeServiceBatch(List)}, see {@link #invokeServiceAsync(AstrixServiceInvocationRequest)}.
+	 * The returned CompletionStage is completed when all requests in the batch are completed.
+	 * 
+	 * @param invocationRequests
+	 * @return
+	 */
+	CompletionStage<List<AstrixServiceInvocationResponse>> invokeServiceBatchAsync(List<AstrixServiceInvocationRequest> invocationRequests);
 
 	void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi);
+	
+	/**
+	 * Resolves the registered api targeted by a given request, identified either by the compact invocation
+	 * header or by the service api header.
+	 * 
+	 * @param invocationRequest
+	 * @return the name of the targeted api, or null if the request does not target an api registered in this activator
+	 */
+	String getServiceApi(AstrixServiceInvocationRequest invocationRequest);
+	
+	/**
+	 * Adds the service id and method table of a registered api to the given ServiceProperties, allowing 
+	 * clients to identify invocations using the compact invocation header, see {@link ServiceMethodTable}. 
+	 * Also announces that the server accepts byte payloads if the provider is registered with a byte
+	 * oriented AstrixObjectSerializer, see {@link AstrixServiceInvocationRequest#BYTE_PAYLOADS_PROPERTY}. 
+	 * Does nothing if no provider for the given api is registered.
+	 * 
+	 * @param publishedApi
+	 * @param serviceProperties
+	 */
+	void publishMethodTable(Class<?> publishedApi, ServiceProperties serviceProperties);
 
 }
@@ -19,23 +19,35 @@ package com.avanza.astrix.remoting.server;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.beans.core.ReactiveTypeConverter;
+import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.core.ServiceInvocationException;
 import com.avanza.astrix.core.function.Command;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.MissingServiceMethodException;
+import com.avanza.astrix.remoting.client.ServiceMethodTable;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+
+import rx.Observable;
 /**
  * Server side component used to invoke exported services. <p> 
  * 
@@ -46,25 +58,43 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 	
 	private static final Logger logger = LoggerFactory.getLogger(AstrixServiceActivatorImpl.class);
 	private final ConcurrentMap<String, PublishedService<?>> serviceByType = new ConcurrentHashMap<>();
+	/*
+	 * Published services indexed by service id. Index 0 (NO_SERVICE_ID) is never used.
+	 */
+	private volatile PublishedService<?>[] serviceById = new PublishedService<?>[1];
 	private final Metrics metrics;
+	private final ReactiveTypeConverter reactiveTypeConverter;
 	
-	public AstrixServiceActivatorImpl(Metrics metrics) {
+	public AstrixServiceActivatorImpl(Metrics metrics, ReactiveTypeConverter reactiveTypeConverter) {
 		this.metrics = metrics;
+		this.reactiveTypeConverter = reactiveTypeConverter;
 	}
 
 	static class PublishedService<T> {
 
 		private final T service;
+		private final int serviceId;
+		private final String serviceApi;
 		private final Map<String, Method> methodBySignature = new HashMap<>();
+		private final Map<Method, Type[]> parameterTypesByMethod = new HashMap<>();
+		private final ServiceMethodTable methodTable;
 		private final AstrixObjectSerializer objectSerializer;
+		private final ReactiveTypeConverter reactiveTypeConverter;
 
-		public PublishedService(T service, AstrixObjectSerializer serializer, Class<?>... providedApis) {
+		public PublishedService(T service, AstrixObjectSerializer serializer, int serviceId, Class<?> providedApi, ReactiveTypeConverter reactiveTypeConverter) {
 			this.service = service;
 			this.objectSerializer = serializer;
-			for (Class<?> api : providedApis) {
-				for (Method m : api.getMethods()) {
-					methodBySignature.put(ReflectionUtil.methodSignatureWithoutReturnType(m), m);
+			this.serviceId = serviceId;
+			this.reactiveTypeConverter = reactiveTypeConverter;
+			this.serviceApi = providedApi.getName();
+			this.methodTable = ServiceMethodTable.create(providedApi);
+			for (Method m : providedApi.getMethods()) {
+				methodBySignature.put(ReflectionUtil.methodSignatureWithoutReturnType(m), m);
+				Type[] parameterTypes = m.getGenericParameterTypes();
+				for (Type parameterType : parameterTypes) {
+					serializer.prepareType(parameterType);
 				}
+				parameterTypesByMethod.put(m, parameterTypes);
 			}
 		}
 		
@@ -72,59 +102,160 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 			return service;
 		}
 		
-		private AstrixServiceInvocationResponse invoke(AstrixServiceInvocationRequest request, int version, String serviceApi) {
+		private AstrixServiceInvocationResponse invoke(AstrixServiceInvocationRequest request, int version) {
 			try {
-				return invokeService(request, version, serviceApi);
+				Method serviceMethod = getServiceMethod(request);
+				if (isReactive(serviceMethod)) {
+					return invokeReactive(serviceMethod, request, version).toBlocking().first();
+				}
+				return invokeService(serviceMethod, request, version);
 			} catch (Exception e) {
-				Throwable exceptionThrownByService = resolveException(e);
-				AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-				invocationResponse.setExceptionMsg(exceptionThrownByService.getMessage());
-				invocationResponse.setCorrelationId(UUID.randomUUID().toString());
-				if (exceptionThrownByService instanceof ServiceInvocationException) {
-					invocationResponse.setException(this.objectSerializer.serialize(exceptionThrownByService, version));
-				} else {
-					invocationResponse.setThrownExceptionType(exceptionThrownByService.getClass().getName());
+				return toExceptionResponse(e, request, version);
+			}
+		}
+		
+		/**
+		 * Invokes the target service. Service methods with a reactive return type (see {@link ReactiveTypeConverter}) 
+		 * are completed when the returned reactive type completes, all other service methods are invoked
+		 * synchronously in the calling thread. 
+		 */
+		private Observable<AstrixServiceInvocationResponse> invokeAsync(AstrixServiceInvocationRequest request, int version) {
+			try {
+				Method serviceMethod = getServiceMethod(request);
+				if (isReactive(serviceMethod)) {
+					return invokeReactive(serviceMethod, request, version);
 				}
-				logger.info(String.format("Service invocation ended with exception. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()), exceptionThrownByService);
-				return invocationResponse;
+				return Observable.just(invokeService(serviceMethod, request, version));
+			} catch (Exception e) {
+				return Observable.just(toExceptionResponse(e, request, version));
 			}
 		}
+		
+		private AstrixServiceInvocationResponse toExceptionResponse(Throwable e, AstrixServiceInvocationRequest request, int version) {
+			Throwable exceptionThrownByService = resolveException(e);
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setExceptionMsg(exceptionThrownByService.getMessage());
+			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+			if (exceptionThrownByService instanceof ServiceInvocationException) {
+				invocationResponse.setException(marshall(exceptionThrownByService, request, version));
+			} else {
+				invocationResponse.setThrownExceptionType(exceptionThrownByService.getClass().getName());
+			}
+			logger.info(String.format("Service invocation ended with exception. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()), exceptionThrownByService);
+			return invocationResponse;
+		}
 
 		private AstrixServiceInvocationResponse invokeService(
-				AstrixServiceInvocationRequest request, int version,
-				String serviceApi) throws IllegalAccessException,
+				Method serviceMethod, AstrixServiceInvocationRequest request, int version) throws IllegalAccessException,
 				InvocationTargetException {
-			String serviceMethodSignature = request.getHeader("serviceMethodSignature");
-			Method serviceMethod = methodBySignature.get(serviceMethodSignature);
-			if (serviceMethod == null) {
-				throw new MissingServiceMethodException(String.format("Missing service method: service=%s method=%s", serviceApi, serviceMethodSignature));
-			}
-			Object[] arguments = unmarshal(request.getArguments(), serviceMethod.getGenericParameterTypes(), version);
+			Object[] arguments = unmarshal(request, getParameterTypes(serviceMethod), version);
 			Object result = serviceMethod.invoke(service, arguments);
 			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
 			if (!serviceMethod.getReturnType().equals(Void.TYPE)) {
-				invocationResponse.setResponseBody(objectSerializer.serialize(result, version));
+				invocationResponse.setResponseBody(marshall(result, request, version));
 			}
 			return invocationResponse;
 		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Observable<AstrixServiceInvocationResponse> invokeReactive(
+				Method serviceMethod, AstrixServiceInvocationRequest request, int version) throws IllegalAccessException,
+				InvocationTargetException {
+			Object[] arguments = unmarshal(request, getParameterTypes(serviceMethod), version);
+			Object reactiveResult = serviceMethod.invoke(service, arguments);
+			if (reactiveResult == null) {
+				throw new IllegalStateException("Service method returned null reactive type: " + serviceMethod);
+			}
+			Observable<Object> result;
+			if (reactiveResult instanceof Observable) {
+				result = (Observable<Object>) reactiveResult;
+			} else {
+				result = reactiveTypeConverter.toObservable((Class) serviceMethod.getReturnType(), reactiveResult);
+			}
+			return result.firstOrDefault(null).map(value -> {
+				AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+				invocationResponse.setResponseBody(marshall(value, request, version));
+				return invocationResponse;
+			}).onErrorReturn(e -> toExceptionResponse(e, request, version));
+		}
+		
+		private boolean isReactive(Method serviceMethod) {
+			Class<?> returnType = serviceMethod.getReturnType();
+			return Observable.class.isAssignableFrom(returnType) || reactiveTypeConverter.isReactiveType(returnType);
+		}
+
+		private Method getServiceMethod(AstrixServiceInvocationRequest request) {
+			if (request.hasCompactHeader()) {
+				Method serviceMethod = methodTable.getMethod(request.getMethodId());
+				if (serviceMethod == null) {
+					throw new MissingServiceMethodException(String.format("Missing service method: service=%s methodId=%s", serviceApi, request.getMethodId()));
+				}
+				return serviceMethod;
+			}
+			String serviceMethodSignature = request.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE);
+			Method serviceMethod = methodBySignature.get(serviceMethodSignature);
+			if (serviceMethod == null) {
+				throw new MissingServiceMethodException(String.format("Missing service method: service=%s method=%s", serviceApi, serviceMethodSignature));
+			}
+			return serviceMethod;
+		}
+
+		private Type[] getParameterTypes(Method serviceMethod) {
+			Type[] parameterTypes = parameterTypesByMethod.get(serviceMethod);
+			if (parameterTypes == null) {
+				return serviceMethod.getGenericParameterTypes();
+			}
+			return parameterTypes;
+		}
 
-		private Object[] unmarshal(Object[] elements, Type[] types, int version) {
+		private Object[] unmarshal(AstrixServiceInvocationRequest request, Type[] types, int version) {
+			Object[] elements = request.getArguments();
 			Object[] result = new Object[elements.length];
 			for (int i = 0; i < result.length; i++) {
-				result[i] = objectSerializer.deserialize(elements[i], types[i], version);
+				if (request.hasBytePayloads()) {
+					result[i] = objectSerializer.deserialize(ByteBuffer.wrap((byte[]) elements[i]), types[i], version);
+				} else {
+					result[i] = objectSerializer.deserialize(elements[i], types[i], version);
+				}
 			}
 			return result;
 		}
 		
+		/**
+		 * Serializes a response using the same payload format as the request.
+		 */
+		private Object marshall(Object element, AstrixServiceInvocationRequest request, int version) {
+			if (request.hasBytePayloads()) {
+				return objectSerializer.serializeToBytes(element, version);
+			}
+			return objectSerializer.serialize(element, version);
+		}
+		
 	}
 	
 	@Override
-	public void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi) {
+	public synchronized void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi) {
 		if (!publishedApi.isAssignableFrom(provider.getClass())) {
 			throw new IllegalArgumentException("Provider: " + provider.getClass() + " does not implement: " + publishedApi);
 		}
-		PublishedService<?> publishedService = new PublishedService<>(provider, objectSerializer, publishedApi);
+		PublishedService<?> registeredService = this.serviceByType.get(publishedApi.getName());
+		int serviceId = registeredService != null ? registeredService.serviceId : this.serviceById.length;
+		PublishedService<?> publishedService = new PublishedService<>(provider, objectSerializer, serviceId, publishedApi, reactiveTypeConverter);
+		PublishedService<?>[] serviceById = Arrays.copyOf(this.serviceById, Math.max(this.serviceById.length, serviceId + 1));
+		serviceById[serviceId] = publishedService;
 		this.serviceByType.put(publishedApi.getName(), publishedService);
+		this.serviceById = serviceById;
+	}
+	
+	@Override
+	public void publishMethodTable(Class<?> publishedApi, ServiceProperties serviceProperties) {
+		PublishedService<?> publishedService = this.serviceByType.get(publishedApi.getName());
+		if (publishedService != null) {
+			publishedService.methodTable.setServiceProperties(serviceProperties, publishedService.serviceId);
+			if (publishedService.objectSerializer.isByteOriented()) {
+				serviceProperties.setProperty(AstrixServiceInvocationRequest.BYTE_PAYLOADS_PROPERTY, "true");
+			}
+		}
 	}
 	
 	/**
@@ -133,26 +264,106 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 	 */
 	@Override
 	public AstrixServiceInvocationResponse invokeService(final AstrixServiceInvocationRequest request) {
-		final int version = Integer.parseInt(request.getHeader("apiVersion"));
-		final String serviceApi = request.getHeader("serviceApi");
-		final PublishedService<?> publishedService = this.serviceByType.get(serviceApi);
+		final PublishedService<?> publishedService = getPublishedService(request);
 		if (publishedService == null) {
-			/*
-			 * Service not available. This might happen in rare conditions when a processing unit
-			 * is restarted and old clients connects to the space before the framework is fully initialized. 
-			 */
-			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-			invocationResponse.setServiceUnavailable(true);;
-			invocationResponse.setExceptionMsg("Service not available in service activator: " + serviceApi);
-			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
-			logger.info(String.format("Service not available. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
-			return invocationResponse;
+			return serviceUnavailable(request);
 		}
+		final int version = getApiVersion(request);
 		return this.metrics.timeExecution(
-				(Command<AstrixServiceInvocationResponse>) () -> publishedService.invoke(request, version, serviceApi), "ServiceActivator", serviceApi).call();
+				(Command<AstrixServiceInvocationResponse>) () -> publishedService.invoke(request, version), "ServiceActivator", publishedService.serviceApi).call();
+	}
+	
+	@Override
+	public CompletionStage<AstrixServiceInvocationResponse> invokeServiceAsync(final AstrixServiceInvocationRequest request) {
+		final PublishedService<?> publishedService = getPublishedService(request);
+		if (publishedService == null) {
+			return CompletableFuture.completedFuture(serviceUnavailable(request));
+		}
+		final int version = getApiVersion(request);
+		CompletableFuture<AstrixServiceInvocationResponse> result = new CompletableFuture<>();
+		this.metrics.timeObservable(() -> publishedService.invokeAsync(request, version), "ServiceActivator", publishedService.serviceApi)
+					.get()
+					.subscribe(result::complete, result::completeExceptionally);
+		return result;
+	}
+
+	@Override
+	public List<AstrixServiceInvocationResponse> invokeServiceBatch(List<AstrixServiceInvocationRequest> requests) {
+		List<AstrixServiceInvocationResponse> responses = new ArrayList<>(requests.size());
+		for (AstrixServiceInvocationRequest request : requests) {
+			responses.add(invokeService(request));
+		}
+		return responses;
+	}
+	
+	@Override
+	public CompletionStage<List<AstrixServiceInvocationResponse>> invokeServiceBatchAsync(List<AstrixServiceInvocationRequest> requests) {
+		List<CompletableFuture<AstrixServiceInvocationResponse>> pendingResponses = new ArrayList<>(requests.size());
+		for (AstrixServiceInvocationRequest request : requests) {
+			pendingResponses.add(invokeServiceAsync(request).toCompletableFuture());
+		}
+		return CompletableFuture.allOf(pendingResponses.toArray(new CompletableFuture<?>[pendingResponses.size()])).thenApply(done -> {
+			List<AstrixServiceInvocationResponse> responses = new ArrayList<>(pendingResponses.size());
+			for (CompletableFuture<AstrixServiceInvocationResponse> response : pendingResponses) {
+				responses.add(response.join());
+			}
+			return responses;
+		});
+	}
+
+	@Override
+	public String getServiceApi(AstrixServiceInvocationRequest request) {
+		PublishedService<?> publishedService = getPublishedService(request);
+		return publishedService != null ? publishedService.serviceApi : null;
+	}
+
+	private PublishedService<?> getPublishedService(AstrixServiceInvocationRequest request) {
+		if (request.hasCompactHeader()) {
+			PublishedService<?>[] serviceById = this.serviceById;
+			if (request.getServiceId() <= 0 || request.getServiceId() >= serviceById.length) {
+				return null;
+			}
+			PublishedService<?> publishedService = serviceById[request.getServiceId()];
+			if (publishedService == null || publishedService.methodTable.getFingerprint() != request.getMethodTableFingerprint()) {
+				return null;
+			}
+			return publishedService;
+		}
+		String serviceApi = request.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API);
+		return serviceApi != null ? this.serviceByType.get(serviceApi) : null;
+	}
+	
+	private static int getApiVersion(AstrixServiceInvocationRequest request) {
+		if (request.hasCompactHeader()) {
+			return request.getApiVersion();
+		}
+		return Integer.parseInt(request.getHeader(AstrixServiceInvocationRequestHeaders.API_VERSION));
+	}
+
+	private AstrixServiceInvocationResponse serviceUnavailable(AstrixServiceInvocationRequest request) {
+		/*
+		 * Service not available. This might happen in rare conditions when a processing unit
+		 * is restarted and old clients connects to the space before the framework is fully initialized.
+		 * 
+		 * For requests using the compact invocation header it also happens when the method table used by 
+		 * the client does not match the one published by this server, for instance when a server is redeployed 
+		 * with a changed api before the client has rebound to the new service.
+		 */
+		String message;
+		if (request.hasCompactHeader()) {
+			message = "Method table not available in service activator: serviceId=" + request.getServiceId();
+		} else {
+			message = "Service not available in service activator: " + request.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API);
+		}
+		AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+		invocationResponse.setServiceUnavailable(true);
+		invocationResponse.setExceptionMsg(message);
+		invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+		logger.info(String.format("Service not available. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
+		return invocationResponse;
 	}
 
-	private static Throwable resolveException(Exception e) {
+	private static Throwable resolveException(Throwable e) {
 		if (e instanceof InvocationTargetException) {
 			// Invoked service threw an exception
 			return InvocationTargetException.class.cast(e).getTargetException();
@@ -160,4 +371,4 @@ class AstrixServiceActivatorImpl implements AstrixServiceActivator {
 		return e;
 	}
 
-}
\ No newline at end of file
+}
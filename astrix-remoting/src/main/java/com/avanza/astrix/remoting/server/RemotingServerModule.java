@@ -17,6 +17,7 @@ package com.avanza.astrix.remoting.server;
 
 import org.kohsuke.MetaInfServices;
 
+import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.context.AstrixContextPlugin;
 import com.avanza.astrix.context.AstrixStrategiesConfig;
 import com.avanza.astrix.context.metrics.Metrics;
@@ -29,6 +30,7 @@ public class RemotingServerModule implements AstrixContextPlugin {
 		moduleContext.bind(AstrixServiceActivator.class, AstrixServiceActivatorImpl.class);
 		
 		moduleContext.importType(Metrics.class);
+		moduleContext.importType(ReactiveTypeConverter.class);
 		
 		moduleContext.export(AstrixServiceActivator.class);
 	}
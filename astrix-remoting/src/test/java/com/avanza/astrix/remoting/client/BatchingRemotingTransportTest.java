@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.remoting.RoutingKey;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+
+public class BatchingRemotingTransportTest {
+	
+	private final RecordingTransport target = new RecordingTransport(2);
+	private final DynamicBooleanProperty enabled = new DynamicBooleanProperty(true);
+	private final DynamicLongProperty windowMicros = new DynamicLongProperty(TimeUnit.SECONDS.toMicros(10));
+	private final DynamicIntProperty maxBatchSize = new DynamicIntProperty(3);
+	private final BatchingRemotingTransport batchingTransport = new BatchingRemotingTransport(target, enabled, windowMicros, maxBatchSize);
+	
+	@Test
+	public void sendsRequestsTargetingSamePartitionInOneBatchWhenMaxBatchSizeIsReached() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> first = submit("a", RoutingKey.create(0));
+		TestSubscriber<AstrixServiceInvocationResponse> second = submit("b", RoutingKey.create(2));
+		TestSubscriber<AstrixServiceInvocationResponse> otherPartition = submit("c", RoutingKey.create(1));
+		assertEquals(0, target.sentBatches.size());
+		
+		TestSubscriber<AstrixServiceInvocationResponse> third = submit("d", RoutingKey.create(4));
+		
+		assertEquals(1, target.sentBatches.size());
+		assertEquals(3, target.sentBatches.get(0).size());
+		assertResponse("a", first);
+		assertResponse("b", second);
+		assertResponse("d", third);
+		assertEquals(0, otherPartition.getOnNextEvents().size());
+	}
+	
+	@Test
+	public void sendsBatchWhenBatchWindowElapses() throws Exception {
+		windowMicros.set(TimeUnit.MILLISECONDS.toMicros(5));
+		TestSubscriber<AstrixServiceInvocationResponse> first = submit("a", RoutingKey.create(0));
+		TestSubscriber<AstrixServiceInvocationResponse> second = submit("b", RoutingKey.create(0));
+		
+		first.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		second.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		
+		assertResponse("a", first);
+		assertResponse("b", second);
+		assertEquals(1, target.sentBatches.size());
+	}
+	
+	@Test
+	public void requestsUnsubscribedBeforeBatchIsSentAreNotSent() throws Exception {
+		TestSubscriber<AstrixServiceInvocationResponse> first = submit("a", RoutingKey.create(0));
+		Subscription timedOut = batchingTransport.submitRoutedRequest(request("b"), RoutingKey.create(0)).subscribe();
+		timedOut.unsubscribe();
+		TestSubscriber<AstrixServiceInvocationResponse> third = submit("c", RoutingKey.create(0));
+		
+		assertEquals(1, target.sentBatches.size());
+		assertEquals(2, target.sentBatches.get(0).size());
+		assertResponse("a", first);
+		assertResponse("c", third);
+	}
+	
+	@Test
+	public void passesRequestsDirectlyToTargetWhenBatchingIsDisabled() throws Exception {
+		enabled.set(false);
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = submit("a", RoutingKey.create(0));
+		
+		assertResponse("a", subscriber);
+		assertEquals(0, target.sentBatches.size());
+	}
+	
+	private TestSubscriber<AstrixServiceInvocationResponse> submit(String id, RoutingKey routingKey) {
+		TestSubscriber<AstrixServiceInvocationResponse> subscriber = new TestSubscriber<>();
+		batchingTransport.submitRoutedRequest(request(id), routingKey).subscribe(subscriber);
+		return subscriber;
+	}
+	
+	private static void assertResponse(String expectedId, TestSubscriber<AstrixServiceInvocationResponse> subscriber) {
+		subscriber.assertNoErrors();
+		assertEquals(1, subscriber.getOnCompletedEvents().size());
+		assertEquals(1, subscriber.getOnNextEvents().size());
+		assertEquals(expectedId, subscriber.getOnNextEvents().get(0).getResponseBody());
+	}
+
+	private static AstrixServiceInvocationRequest request(String id) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader("id", id);
+		return request;
+	}
+	
+	private static AstrixServiceInvocationResponse response(AstrixServiceInvocationRequest request) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody(request.getHeader("id"));
+		return response;
+	}
+	
+	private static class RecordingTransport implements RemotingTransportSpi {
+		
+		private final List<List<AstrixServiceInvocationRequest>> sentBatches = new CopyOnWriteArrayList<>();
+		private final int partitionCount;
+		
+		public RecordingTransport(int partitionCount) {
+			this.partitionCount = partitionCount;
+		}
+
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			return Observable.just(response(request));
+		}
+		
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+			sentBatches.add(requests);
+			List<AstrixServiceInvocationResponse> responses = new ArrayList<>();
+			for (AstrixServiceInvocationRequest request : requests) {
+				responses.add(response(request));
+			}
+			return Observable.just(responses);
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int partitionCount() {
+			return partitionCount;
+		}
+		
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.context.metrics.Metrics;
+
+import rx.Observable;
+
+public class HedgingPolicyTest {
+	
+	private final Metrics metrics = Mockito.mock(Metrics.class);
+	private final DynamicIntProperty budgetPercent = new DynamicIntProperty(100);
+	private final HedgingPolicy hedgingPolicy = new HedgingPolicy(new DynamicBooleanProperty(true), new DynamicLongProperty(10), budgetPercent, metrics, "MyService");
+	private final AtomicInteger sentHedges = new AtomicInteger();
+	
+	@Test
+	public void sendsHedgedRequestWhenNoResponseIsReceivedWithinHedgeDelay() throws Exception {
+		Observable<String> response = hedgingPolicy.submit(() -> Observable.never(), this::hedgedRequest);
+		
+		assertEquals("hedged-response", response.timeout(1, TimeUnit.SECONDS).toBlocking().first());
+		assertEquals(1, sentHedges.get());
+		Mockito.verify(metrics).incrementCounter("RemotingHedges", "MyService.sent");
+		Mockito.verify(metrics).incrementCounter("RemotingHedges", "MyService.won");
+	}
+	
+	@Test
+	public void doesNotSendHedgedRequestWhenResponseIsReceivedWithinHedgeDelay() throws Exception {
+		Observable<String> response = hedgingPolicy.submit(() -> Observable.just("response"), this::hedgedRequest);
+		
+		assertEquals("response", response.toBlocking().first());
+		Thread.sleep(50);
+		assertEquals(0, sentHedges.get());
+	}
+	
+	@Test
+	public void doesNotSendHedgedRequestsWhenBudgetIsExhausted() throws Exception {
+		budgetPercent.set(0);
+		Observable<String> response = hedgingPolicy.submit(() -> Observable.<String>never().timeout(100, TimeUnit.MILLISECONDS, Observable.just("late-response")), 
+														   this::hedgedRequest);
+		
+		assertEquals("late-response", response.toBlocking().first());
+		assertEquals(0, sentHedges.get());
+	}
+	
+	@Test
+	public void recordsElapsedTimeOfInvocationsWonByHedgedRequest() throws Exception {
+		DynamicLongProperty delayMillis = new DynamicLongProperty(10);
+		HedgingPolicy observedDelayPolicy = new HedgingPolicy(new DynamicBooleanProperty(true), delayMillis, budgetPercent, metrics, "MyService");
+		for (int i = 0; i < 64; i++) {
+			assertEquals("hedged-response", observedDelayPolicy.submit(() -> Observable.never(), this::hedgedRequest).toBlocking().first());
+		}
+		
+		delayMillis.set(-1);
+		assertTrue(observedDelayPolicy.getHedgeDelayNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+	}
+	
+	private Observable<String> hedgedRequest() {
+		sentHedges.incrementAndGet();
+		return Observable.just("hedged-response");
+	}
+
+}
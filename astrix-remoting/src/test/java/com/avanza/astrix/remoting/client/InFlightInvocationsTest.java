@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.avanza.astrix.context.metrics.Metrics;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+public class InFlightInvocationsTest {
+	
+	private final InFlightInvocations inFlightInvocations = new InFlightInvocations(Mockito.mock(Metrics.class), "test");
+	private final Object[] arguments = new Object[] { "foo" };
+	
+	@Test
+	public void collapsesInvocationsWithEqualArgumentsWhileInFlight() throws Exception {
+		AtomicInteger sentRequests = new AtomicInteger();
+		PublishSubject<AstrixServiceInvocationResponse> response = PublishSubject.create();
+		TestSubscriber<AstrixServiceInvocationResponse> first = new TestSubscriber<>();
+		TestSubscriber<AstrixServiceInvocationResponse> second = new TestSubscriber<>();
+		
+		inFlightInvocations.submit(arguments, () -> { sentRequests.incrementAndGet(); return response; }).subscribe(first);
+		inFlightInvocations.submit(new Object[] { "foo" }, () -> { sentRequests.incrementAndGet(); return response; }).subscribe(second);
+		AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+		response.onNext(invocationResponse);
+		response.onCompleted();
+		
+		assertEquals(1, sentRequests.get());
+		assertEquals(Arrays.asList(invocationResponse), first.getOnNextEvents());
+		assertEquals(Arrays.asList(invocationResponse), second.getOnNextEvents());
+		assertEquals(0, inFlightInvocations.inFlightCount());
+	}
+	
+	@Test
+	public void invocationThatNeverCompletesIsRemovedWhenAllSubscribersUnsubscribe() throws Exception {
+		AtomicInteger sentRequests = new AtomicInteger();
+		AtomicInteger unsubscribedRequests = new AtomicInteger();
+		Observable<AstrixServiceInvocationResponse> lostResponse = Observable.<AstrixServiceInvocationResponse>never().doOnUnsubscribe(unsubscribedRequests::incrementAndGet);
+		
+		Subscription first = inFlightInvocations.submit(arguments, () -> { sentRequests.incrementAndGet(); return lostResponse; }).subscribe();
+		Subscription second = inFlightInvocations.submit(arguments, () -> { sentRequests.incrementAndGet(); return lostResponse; }).subscribe();
+		first.unsubscribe();
+		assertEquals(1, inFlightInvocations.inFlightCount());
+		
+		second.unsubscribe(); // For instance a timeout in the fault tolerance layer
+		assertEquals(0, inFlightInvocations.inFlightCount());
+		assertEquals(1, unsubscribedRequests.get());
+		
+		TestSubscriber<AstrixServiceInvocationResponse> third = new TestSubscriber<>();
+		AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+		inFlightInvocations.submit(arguments, () -> { sentRequests.incrementAndGet(); return Observable.just(invocationResponse); }).subscribe(third);
+		
+		assertEquals(2, sentRequests.get());
+		assertEquals(Arrays.asList(invocationResponse), third.getOnNextEvents());
+	}
+
+}
@@ -18,9 +18,18 @@ package com.avanza.astrix.remoting.server;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
@@ -33,9 +42,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -43,12 +54,15 @@ import org.mockito.Mockito;
 import com.avanza.astrix.beans.core.ReactiveTypeConverter;
 import com.avanza.astrix.beans.core.ReactiveTypeConverterImpl;
 import com.avanza.astrix.beans.core.ReactiveTypeHandlerPlugin;
+import com.avanza.astrix.beans.service.ServiceProperties;
 import com.avanza.astrix.context.JavaSerializationSerializer;
 import com.avanza.astrix.context.metrics.Metrics;
 import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixIdempotent;
 import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.AstrixRoutingStrategy;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.RemoteServiceInvocationException;
 import com.avanza.astrix.core.ServiceInvocationException;
@@ -57,6 +71,7 @@ import com.avanza.astrix.core.remoting.Router;
 import com.avanza.astrix.core.remoting.RoutingKey;
 import com.avanza.astrix.core.remoting.RoutingStrategy;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequestHeaders;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
 import com.avanza.astrix.remoting.client.IncompatibleRemoteResultReducerException;
@@ -64,6 +79,7 @@ import com.avanza.astrix.remoting.client.RemotingProxy;
 import com.avanza.astrix.remoting.client.RemotingTransport;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.ServiceMethodTable;
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
 
 import rx.Observable;
@@ -78,8 +94,8 @@ public class AstrixRemotingTest {
 
 	AstrixObjectSerializer objectSerializer = new JavaSerializationSerializer(1);
 	Metrics metrics = new Metrics.NoMetrics();
-	AstrixServiceActivatorImpl partition1 = new AstrixServiceActivatorImpl(metrics);
 	ReactiveTypeConverter reactiveTypeConverter = new ReactiveTypeConverterImpl(Collections.<ReactiveTypeHandlerPlugin<?>>emptyList());
+	AstrixServiceActivatorImpl partition1 = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 	
 	private static class NoRoutingStrategy implements RoutingStrategy {
 		@Override
@@ -224,7 +240,7 @@ public class AstrixRemotingTest {
 
 	@Test
 	public void broadcastRequest() throws Exception {
-		AstrixServiceActivatorImpl partition2 = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl partition2 = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		PingService impl = new PingService() {
 			@Override
 			public List<String> ping(String msg) {
@@ -243,8 +259,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		CalculatorListService eventPartitionCalculator = new CalculatorListService() {
 			@Override
 			public Integer squareSum(Collection<Integer> nums) {
@@ -280,10 +296,169 @@ public class AstrixRemotingTest {
 		assertEquals(1 + 4 + 9 + 16 + 25, squareSum);
 	}
 	
+	@Test
+	public void partitionedRequest_NonPartitionedArgumentsAreOnlyMarshalledOnce() throws Exception {
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		evenPartition.register((FilteredLookupService) (keys, filter) -> Arrays.asList(filter + keys), objectSerializer, FilteredLookupService.class);
+		oddPartition.register((FilteredLookupService) (keys, filter) -> Arrays.asList(filter + keys), objectSerializer, FilteredLookupService.class);
+		AtomicInteger filterMarshallCount = new AtomicInteger();
+		AstrixObjectSerializer clientSerializer = new AstrixObjectSerializer() {
+			@Override
+			public Object serialize(Object element, int version) {
+				if ("filter".equals(element)) {
+					filterMarshallCount.incrementAndGet();
+				}
+				return objectSerializer.serialize(element, version);
+			}
+			@Override
+			public <T> T deserialize(Object element, Type type, int version) {
+				return objectSerializer.deserialize(element, type, version);
+			}
+			@Override
+			public int version() {
+				return objectSerializer.version();
+			}
+		};
+		
+		FilteredLookupService lookupService = createRemotingProxy(FilteredLookupService.class, FilteredLookupService.class, directTransport(evenPartition, oddPartition), clientSerializer, new NoRoutingStrategy());
+		
+		assertThat(lookupService.lookup(Arrays.asList(1, 2, 3), "filter"), containsInAnyOrder("filter[2]", "filter[1, 3]"));
+		assertEquals(1, filterMarshallCount.get());
+	}
+	
+	@Test
+	public void partitionedRequestUsingCompactInvocationHeader() throws Exception {
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		CalculatorListService calculator = new CalculatorListService() {
+			@Override
+			public Integer squareSum(Collection<Integer> nums) {
+				int squareSum = 0;
+				for (int num : nums) {
+					squareSum += num * num;
+				}
+				return squareSum;
+			}
+		};
+		evenPartition.register(calculator, objectSerializer, CalculatorListService.class);
+		oddPartition.register(calculator, objectSerializer, CalculatorListService.class);
+		ServiceProperties serviceProperties = new ServiceProperties();
+		evenPartition.publishMethodTable(CalculatorListService.class, serviceProperties);
+		
+		List<AstrixServiceInvocationRequest> sentRequests = new ArrayList<>();
+		RemotingTransport transport = RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(evenPartition, oddPartition)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				sentRequests.add(request);
+				return super.submitRoutedRequest(request, routingKey);
+			}
+		});
+		CalculatorListService calculatorService = RemotingProxy.create(CalculatorListService.class, CalculatorListService.class, transport, objectSerializer, 
+																	   new NoRoutingStrategy(), reactiveTypeConverter, serviceProperties);
+		assertEquals(1 + 4 + 9 + 16 + 25, calculatorService.squareSum(Arrays.asList(1, 2, 3, 4, 5)).intValue());
+		assertEquals(2, sentRequests.size());
+		for (AstrixServiceInvocationRequest request : sentRequests) {
+			assertTrue(request.hasCompactHeader());
+			assertEquals(Collections.emptyMap(), request.getHeaders());
+		}
+	}
+	
+	@Test
+	public void usesSignatureHeadersWhenPublishedMethodTableDoesNotMatchClientApi() throws Exception {
+		partition1.register((EchoService) msg -> msg, objectSerializer, EchoService.class);
+		ServiceProperties serviceProperties = new ServiceProperties();
+		partition1.publishMethodTable(EchoService.class, serviceProperties);
+		serviceProperties.setProperty(ServiceMethodTable.FINGERPRINT_PROPERTY, "1");
+		List<AstrixServiceInvocationRequest> sentRequests = new ArrayList<>();
+		RemotingTransport transport = RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(partition1)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				sentRequests.add(request);
+				return super.submitRoutedRequest(request, routingKey);
+			}
+		});
+		
+		EchoService echoService = RemotingProxy.create(EchoService.class, EchoService.class, transport, objectSerializer, 
+										 new NoRoutingStrategy(), reactiveTypeConverter, serviceProperties);
+		assertEquals("foo", echoService.echo("foo"));
+		assertEquals(1, sentRequests.size());
+		AstrixServiceInvocationRequest sentRequest = sentRequests.get(0);
+		assertFalse(sentRequest.hasCompactHeader());
+		assertEquals(EchoService.class.getName(), sentRequest.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API));
+		assertEquals("echo(java.lang.String)", sentRequest.getHeader(AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE));
+	}
+	
+	@Test
+	public void movesPayloadsAsRawBytesWhenSerializerIsByteOrientedAndServerAcceptsBytePayloads() throws Exception {
+		AstrixObjectSerializer byteSerializer = new ByteOrientedSerializer(objectSerializer);
+		partition1.register((EchoService) msg -> msg + "-reply", byteSerializer, EchoService.class);
+		ServiceProperties serviceProperties = new ServiceProperties();
+		partition1.publishMethodTable(EchoService.class, serviceProperties);
+		assertEquals("true", serviceProperties.getProperty(AstrixServiceInvocationRequest.BYTE_PAYLOADS_PROPERTY));
+		List<AstrixServiceInvocationResponse> responses = new ArrayList<>();
+		RemotingTransport transport = RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(partition1)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				assertTrue(request.hasBytePayloads());
+				assertTrue(request.getArguments()[0] instanceof byte[]);
+				return super.submitRoutedRequest(request, routingKey).doOnNext(responses::add);
+			}
+		});
+		
+		EchoService echoService = RemotingProxy.create(EchoService.class, EchoService.class, transport, byteSerializer, 
+													   new NoRoutingStrategy(), reactiveTypeConverter, serviceProperties);
+		assertEquals("foo-reply", echoService.echo("foo"));
+		assertTrue(responses.get(0).getResponseBody() instanceof byte[]);
+	}
+	
+	@Test
+	public void compactInvocationHeaderWithStaleMethodTable_respondsServiceUnavailable() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		partition1.register((EchoService) msg -> msg, objectSerializer, EchoService.class);
+		ServiceProperties serviceProperties = new ServiceProperties();
+		partition1.publishMethodTable(EchoService.class, serviceProperties);
+		int serviceId = Integer.parseInt(serviceProperties.getProperty(ServiceMethodTable.SERVICE_ID_PROPERTY));
+		request.setCompactHeader(serviceId, 0, ServiceMethodTable.create(EchoService.class).getFingerprint() + 1, objectSerializer.version());
+		request.setArguments(new Object[] { objectSerializer.serialize("foo", objectSerializer.version()) });
+		
+		AstrixServiceInvocationResponse response = partition1.invokeService(request);
+		
+		assertTrue(response.isServiceUnavailable());
+		assertNotNull(response.getExceptionMsg());
+		assertNull(response.getResponseBody());
+	}
+	
+	@Test
+	public void invokeServiceAsync_completesResponseWhenReactiveResultFromProviderCompletes() throws Exception {
+		CompletableFuture<String> pendingReply = new CompletableFuture<>();
+		partition1.register((AsyncPingService) msg -> pendingReply.thenApply(reply -> reply + msg), objectSerializer, AsyncPingService.class);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.API_VERSION, Integer.toString(objectSerializer.version()));
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, AsyncPingService.class.getName());
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE, "ping(java.lang.String)");
+		request.setArguments(new Object[] { objectSerializer.serialize("foo", objectSerializer.version()) });
+		
+		CompletableFuture<AstrixServiceInvocationResponse> response = partition1.invokeServiceAsync(request).toCompletableFuture();
+		assertFalse(response.isDone());
+		
+		pendingReply.complete("reply-");
+		Object responseBody = response.get(1, TimeUnit.SECONDS).getResponseBody();
+		assertEquals("reply-foo", objectSerializer.deserialize(responseBody, String.class, objectSerializer.version()));
+	}
+	
+	@Test
+	public void invokesServiceWithReactiveReturnTypeOnServerSide() throws Exception {
+		partition1.register((AsyncPingService) msg -> CompletableFuture.completedFuture("reply-" + msg), objectSerializer, AsyncPingService.class);
+		
+		AsyncPingService pingService = createRemotingProxy(AsyncPingService.class, AsyncPingService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		assertEquals("reply-foo", pingService.ping("foo").get(1, TimeUnit.SECONDS));
+	}
+	
 	@Test
 	public void customRoutingRequest() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		CustomRoutedCalc eventPartitionCalculator = new CustomRoutedCalc() {
 			@Override
 			public int squareSum(Collection<Integer> nums) {
@@ -311,8 +486,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_GenericArrayArgument() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		PartitionedPingService eventPartitionPing = new PartitionedPingServiceImpl();
 		PartitionedPingService oddPartitionPing = new PartitionedPingServiceImpl();
 		
@@ -330,8 +505,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_voidReturnType() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		PartitionedPingService eventPartitionPing = new PartitionedPingServiceImpl();
 		PartitionedPingService oddPartitionPing = new PartitionedPingServiceImpl();
 		
@@ -344,8 +519,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_emptyArgument() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		PartitionedPingService evenPartitionPing = Mockito.mock(PartitionedPingService.class);
 		PartitionedPingService oddPartitionPing = Mockito.mock(PartitionedPingService.class);
 		
@@ -360,8 +535,8 @@ public class AstrixRemotingTest {
 	
 	@Test(expected = RemoteServiceInvocationException.class)
 	public void partitoinedRoutingRequest_NonServiceInovcationExcpetion_WrappedInRemoteServiceInvocation() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		PartitionedPingService evenPartitionPing = new PartitionedPingServiceImpl() {
 			@Override
 			public List<String> ping(String... nums) {
@@ -380,8 +555,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_routingOnPropertyOnTargetObject() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		CalculatorArrayPojoService eventPartitionCalculator = new CalculatorArrayPojoService() {
 			@Override
 			public Integer squareSum(NumPojo... nums) {
@@ -423,8 +598,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_routingOnPropertyOnTargetObject_CollectionArgument() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
-		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		AstrixServiceActivatorImpl oddPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		CalculatorListPojoService eventPartitionCalculator = new CalculatorListPojoServiceImpl();
 		CalculatorListPojoService oddPartitionCalculator = new CalculatorListPojoServiceImpl();
 		
@@ -438,14 +613,14 @@ public class AstrixRemotingTest {
 	
 	@Test(expected = IllegalArgumentException.class)
 	public void partitionedRequest_routingOnProperty_throwsExceptionForRawTypes() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		createRemotingProxy(ServiceWithRawListRoutingArgument.class, ServiceWithRawListRoutingArgument.class, 
 				directTransport(evenPartition), objectSerializer, new DefaultAstrixRoutingStrategy());
 	}
 	
 	@Test(expected = IllegalArgumentException.class)
 	public void partitionedRequest_routingOnProperty_throwsExceptionForMissingMethods() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		createRemotingProxy(ServiceWithListMissingRoutingPropertyMethod.class, ServiceWithListMissingRoutingPropertyMethod.class,
 				directTransport(evenPartition), objectSerializer, new DefaultAstrixRoutingStrategy());
 	}
@@ -461,21 +636,21 @@ public class AstrixRemotingTest {
 	
 	@Test(expected = IllegalArgumentException.class)
 	public void partitionedService_IncompatibleCollectionType_throwsException() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		createRemotingProxy(InvalidCollectionTypePartitionedService.class, InvalidCollectionTypePartitionedService.class, 
 				directTransport(evenPartition), objectSerializer, new NoRoutingStrategy());
 	}
 	
 	@Test(expected = IncompatibleRemoteResultReducerException.class)
 	public void partitionedService_IncompatibleReducer_throwsException() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		createRemotingProxy(InvalidReducerPartitionedService.class, InvalidReducerPartitionedService.class,
 				directTransport(evenPartition), objectSerializer, new NoRoutingStrategy());
 	}
 	
 	@Test
 	public void partitionedService_NonListCollection() throws Exception {
-		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics);
+		AstrixServiceActivatorImpl evenPartition = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		PartitionedServiceUsingSet sevenPartitionService = new PartitionedServiceUsingSet() {
 			@Override
 			public Set<Integer> ping(Set<Integer> nums) {
@@ -608,7 +783,7 @@ public class AstrixRemotingTest {
 			}
 			
 		};
-		partition1 = new AstrixServiceActivatorImpl(metrics);
+		partition1 = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
 		
 		TestService impl = new TestService() {
 			@Override
@@ -793,6 +968,112 @@ public class AstrixRemotingTest {
 		voidService.hello("foo");
 	}
 	
+	@Test
+	public void broadcastWithIncrementalReducer_ReducesEachResponseAsItIsReceived() throws Exception {
+		AstrixServiceActivatorImpl partition2 = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		partition1.register((IncrementalCountService) () -> 1, objectSerializer, IncrementalCountService.class);
+		partition2.register((IncrementalCountService) () -> 2, objectSerializer, IncrementalCountService.class);
+		List<AstrixServiceInvocationResponse> streamedResponses = new ArrayList<>();
+		RemotingTransportSpi transport = new PartitionedDirectTransport(Arrays.asList(partition1, partition2)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+				return Observable.just(partition1.invokeService(request), partition2.invokeService(request)).doOnNext(streamedResponses::add);
+			}
+		};
+		
+		IncrementalCountService countService = createRemotingProxy(IncrementalCountService.class, IncrementalCountService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		assertEquals(3, countService.count().intValue());
+		assertEquals(2, streamedResponses.size());
+	}
+	
+	@Test
+	public void broadcastWithPartialResultDeadline_ReportsPartitionsNotRespondingWithinDeadlineAsUnavailable() throws Exception {
+		AstrixServiceActivatorImpl partition2 = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		partition1.register((PartialResultService) () -> "foo", objectSerializer, PartialResultService.class);
+		partition2.register((PartialResultService) () -> "bar", objectSerializer, PartialResultService.class);
+		RemotingTransportSpi transport = new PartitionedDirectTransport(Arrays.asList(partition1, partition2)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+				// partition2 never responds
+				return Observable.just(partition1.invokeService(request)).mergeWith(Observable.never());
+			}
+		};
+		Metrics clientMetrics = Mockito.mock(Metrics.class);
+		
+		PartialResultService partialResultService = RemotingProxy.create(PartialResultService.class, PartialResultService.class, RemotingTransport.create(transport), 
+																		 objectSerializer, new NoRoutingStrategy(), reactiveTypeConverter, new ServiceProperties(), clientMetrics);
+		
+		assertEquals("foo,unavailable", partialResultService.find());
+		Mockito.verify(clientMetrics).incrementCounter("PartialRemoteResults", "PartialResultService.find");
+	}
+	
+	@Test
+	public void broadcastWithPartialResultDeadline_DefaultReducerLeavesOutPartitionsNotRespondingWithinDeadline() throws Exception {
+		AstrixServiceActivatorImpl partition2 = new AstrixServiceActivatorImpl(metrics, reactiveTypeConverter);
+		partition1.register((DefaultReducerPartialResultService) () -> Arrays.asList("foo"), objectSerializer, DefaultReducerPartialResultService.class);
+		partition2.register((DefaultReducerPartialResultService) () -> Arrays.asList("bar"), objectSerializer, DefaultReducerPartialResultService.class);
+		RemotingTransportSpi transport = new PartitionedDirectTransport(Arrays.asList(partition1, partition2)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+				// partition2 never responds
+				return Observable.just(partition1.invokeService(request)).mergeWith(Observable.never());
+			}
+		};
+		
+		DefaultReducerPartialResultService partialResultService = createRemotingProxy(DefaultReducerPartialResultService.class, DefaultReducerPartialResultService.class, 
+																					  RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		assertEquals(Arrays.asList("foo"), partialResultService.find());
+	}
+	
+	@Test
+	public void collapsesConcurrentInvocationsOfIdempotentServiceMethodWithEqualArguments() throws Exception {
+		CompletableFuture<String> fooResult = new CompletableFuture<>();
+		CompletableFuture<String> barResult = new CompletableFuture<>();
+		partition1.register((IdempotentEchoService) msg -> "foo".equals(msg) ? fooResult : barResult, objectSerializer, IdempotentEchoService.class);
+		AsyncDirectTransport transport = new AsyncDirectTransport(partition1);
+		IdempotentEchoService echoService = createRemotingProxy(IdempotentEchoService.class, IdempotentEchoService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		CompletableFuture<String> firstFoo = echoService.echo("foo");
+		CompletableFuture<String> secondFoo = echoService.echo("foo");
+		CompletableFuture<String> bar = echoService.echo("bar");
+		assertEquals(2, transport.sentRequests.get());
+		
+		fooResult.complete("foo-reply");
+		barResult.complete("bar-reply");
+		assertEquals("foo-reply", firstFoo.get(1, TimeUnit.SECONDS));
+		assertEquals("foo-reply", secondFoo.get(1, TimeUnit.SECONDS));
+		assertEquals("bar-reply", bar.get(1, TimeUnit.SECONDS));
+		
+		assertEquals("foo-reply", echoService.echo("foo").get(1, TimeUnit.SECONDS));
+		assertEquals("Invocations are only collapsed while in flight", 3, transport.sentRequests.get());
+	}
+	
+	@Test
+	public void reportsCollapsedInvocationsOfOverloadedIdempotentServiceMethodsSeparately() throws Exception {
+		partition1.register(new OverloadedIdempotentService() {
+			@Override
+			public String echo(String msg) {
+				return msg;
+			}
+			@Override
+			public String echo(String msg, int times) {
+				return msg + times;
+			}
+		}, objectSerializer, OverloadedIdempotentService.class);
+		Metrics clientMetrics = Mockito.mock(Metrics.class);
+		OverloadedIdempotentService echoService = RemotingProxy.create(OverloadedIdempotentService.class, OverloadedIdempotentService.class, 
+																	   RemotingTransport.create(new PartitionedDirectTransport(Arrays.asList(partition1))), 
+																	   objectSerializer, new NoRoutingStrategy(), reactiveTypeConverter, new ServiceProperties(), clientMetrics);
+		
+		assertEquals("foo", echoService.echo("foo"));
+		assertEquals("foo2", echoService.echo("foo", 2));
+		
+		Mockito.verify(clientMetrics).incrementCounter("IdempotentInvocations", "OverloadedIdempotentService.echo(java.lang.String).misses");
+		Mockito.verify(clientMetrics).incrementCounter("IdempotentInvocations", "OverloadedIdempotentService.echo(java.lang.String, int).misses");
+	}
+	
 	private <T> T createRemotingProxy(Class<T> proxyApi, Class<?> targetApi,
 		RemotingTransport transport, AstrixObjectSerializer objectSerializer, RoutingStrategy routingStrategy) {
 		return RemotingProxy.create(proxyApi, targetApi, transport, objectSerializer, routingStrategy, reactiveTypeConverter);
@@ -893,6 +1174,74 @@ public class AstrixRemotingTest {
 		List<HelloResponse> hello(List<HelloRequest> greeting);
 	}
 	
+	interface AsyncPingService {
+		CompletableFuture<String> ping(String msg);
+	}
+	
+	interface EchoService {
+		String echo(String msg);
+	}
+	
+	interface IncrementalCountService {
+		@AstrixBroadcast(reducer = IncrementalSummingReducer.class)
+		Integer count();
+	}
+	
+	public static class IncrementalSummingReducer implements IncrementalRemoteResultReducer<Integer, Integer> {
+		@Override
+		public Integer init() {
+			return 0;
+		}
+
+		@Override
+		public Integer accumulate(Integer sum, AstrixRemoteResult<Integer> result) {
+			return sum + result.getResult();
+		}
+
+		@Override
+		public Integer finish(Integer sum) {
+			return sum;
+		}
+	}
+	
+	interface PartialResultService {
+		@AstrixBroadcast(reducer = PartialResultReducer.class, partialResultDeadlineMillis = 50)
+		String find();
+	}
+	
+	interface DefaultReducerPartialResultService {
+		@AstrixBroadcast(partialResultDeadlineMillis = 50)
+		List<String> find();
+	}
+	
+	public static class PartialResultReducer implements RemoteResultReducer<String> {
+		@Override
+		public String reduce(List<AstrixRemoteResult<String>> results) {
+			List<String> result = new ArrayList<>();
+			for (AstrixRemoteResult<String> remoteResult : results) {
+				result.add(remoteResult.getThrownException() instanceof ServiceUnavailableException ? "unavailable" : remoteResult.getResult());
+			}
+			return String.join(",", result);
+		}
+	}
+	
+	interface FilteredLookupService {
+		List<String> lookup(@AstrixPartitionedRouting List<Integer> keys, String filter);
+	}
+	
+	interface IdempotentEchoService {
+		@AstrixIdempotent
+		CompletableFuture<String> echo(String msg);
+	}
+	
+	interface OverloadedIdempotentService {
+		@AstrixIdempotent
+		String echo(String msg);
+		
+		@AstrixIdempotent
+		String echo(String msg, int times);
+	}
+	
 	interface PingService {
 		@AstrixBroadcast
 		List<String> ping(String msg);
@@ -1166,6 +1515,75 @@ public class AstrixRemotingTest {
 		
 	}
 	
+	/**
+	 * Byte oriented serializer that writes the serialized form of a given serializer to the stream.
+	 */
+	private static class ByteOrientedSerializer implements AstrixObjectSerializer {
+		
+		private final AstrixObjectSerializer serializer;
+		
+		public ByteOrientedSerializer(AstrixObjectSerializer serializer) {
+			this.serializer = serializer;
+		}
+
+		@Override
+		public <T> T deserialize(Object element, Type type, int version) {
+			return serializer.deserialize(element, type, version);
+		}
+
+		@Override
+		public Object serialize(Object element, int version) {
+			return serializer.serialize(element, version);
+		}
+
+		@Override
+		public int version() {
+			return serializer.version();
+		}
+		
+		@Override
+		public boolean isByteOriented() {
+			return true;
+		}
+		
+		@Override
+		public void serialize(Object element, int version, OutputStream out) throws IOException {
+			ObjectOutputStream objectOut = new ObjectOutputStream(out);
+			objectOut.writeObject(serializer.serialize(element, version));
+			objectOut.flush();
+		}
+		
+		@Override
+		public <T> T deserialize(InputStream in, Type type, int version) throws IOException {
+			try {
+				return serializer.deserialize(new ObjectInputStream(in).readObject(), type, version);
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+	
+	private static class AsyncDirectTransport extends PartitionedDirectTransport {
+		
+		private final AstrixServiceActivatorImpl activator;
+		private final AtomicInteger sentRequests = new AtomicInteger();
+		
+		public AsyncDirectTransport(AstrixServiceActivatorImpl activator) {
+			super(Arrays.asList(activator));
+			this.activator = activator;
+		}
+		
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			sentRequests.incrementAndGet();
+			CompletableFuture<AstrixServiceInvocationResponse> response = activator.invokeServiceAsync(request).toCompletableFuture();
+			return Observable.create(subscriber -> response.thenAccept(r -> {
+				subscriber.onNext(r);
+				subscriber.onCompleted();
+			}));
+		}
+	}
+	
 	private static class PartitionedDirectTransport implements RemotingTransportSpi {
 
 		private List<AstrixServiceActivatorImpl> partitions;
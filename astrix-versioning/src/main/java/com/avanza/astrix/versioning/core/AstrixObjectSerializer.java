@@ -15,7 +15,14 @@
  */
 package com.avanza.astrix.versioning.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
 
 public interface AstrixObjectSerializer {
 	
@@ -40,6 +47,90 @@ public interface AstrixObjectSerializer {
 	Object serialize(Object element, int version);
 	
 	int version();
+	
+	/**
+	 * Indicates that objects of the given type will be deserialized using this serializer, 
+	 * which allows the serializer to resolve and cache the type information it needs up front rather
+	 * than on the first invocation. <p>
+	 * 
+	 * Defaults to doing nothing.
+	 * 
+	 * @param type
+	 */
+	default void prepareType(Type type) {
+	}
+	
+	/**
+	 * Whether this serializer supports the byte oriented contract, i.e {@link #serialize(Object, int, OutputStream)}
+	 * and {@link #deserialize(InputStream, Type, int)}. A byte oriented serializer allows the remoting
+	 * framework to move payloads as raw bytes rather than as serialized Strings. <p>
+	 * 
+	 * Defaults to false.
+	 * 
+	 * @return
+	 */
+	default boolean isByteOriented() {
+		return false;
+	}
+	
+	/**
+	 * Serializes a given object to the serialized form of a given version, and writes it to the given stream. 
+	 * Only supported by byte oriented serializers, see {@link #isByteOriented()}.
+	 * 
+	 * @param element
+	 * @param version - the version of the serialized data format to serialize the object to.
+	 * @param out
+	 * @throws IOException
+	 */
+	default void serialize(Object element, int version, OutputStream out) throws IOException {
+		throw new UnsupportedOperationException("Byte oriented serialization not supported by: " + getClass().getName());
+	}
+	
+	/**
+	 * Deserializes an object from the given stream. Only supported by byte oriented serializers, 
+	 * see {@link #isByteOriented()}.
+	 * 
+	 * @param in
+	 * @param type
+	 * @param version - the version of the serialized form of the object
+	 * @return
+	 * @throws IOException
+	 */
+	default <T> T deserialize(InputStream in, Type type, int version) throws IOException {
+		throw new UnsupportedOperationException("Byte oriented deserialization not supported by: " + getClass().getName());
+	}
+	
+	/**
+	 * Serializes a given object into a byte array using {@link #serialize(Object, int, OutputStream)}.
+	 */
+	default byte[] serializeToBytes(Object element, int version) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+		try {
+			serialize(element, version, out);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to serialize: " + element, e);
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Deserializes an object from the remaining bytes in the given buffer using {@link #deserialize(InputStream, Type, int)}.
+	 */
+	default <T> T deserialize(ByteBuffer buffer, Type type, int version) {
+		InputStream in;
+		if (buffer.hasArray()) {
+			in = new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		} else {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.duplicate().get(bytes);
+			in = new ByteArrayInputStream(bytes);
+		}
+		try {
+			return deserialize(in, type, version);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to deserialize into type: " + type, e);
+		}
+	}
 
 	public static class NoVersioningSupport implements AstrixObjectSerializer {
 		
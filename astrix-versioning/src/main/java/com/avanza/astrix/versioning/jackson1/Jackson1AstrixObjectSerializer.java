@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.versioning.jackson1;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 
 import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
@@ -59,9 +61,29 @@ class Jackson1AstrixObjectSerializer implements AstrixObjectSerializer {
 		return objectMapper.serialize(element, version);
 	}
 
+	@Override
+	public void prepareType(Type type) {
+		objectMapper.prepare(type, version);
+	}
+
 	@Override
 	public int version() {
 		return version;
 	}
+	
+	@Override
+	public boolean isByteOriented() {
+		return true;
+	}
+	
+	@Override
+	public void serialize(Object element, int version, OutputStream out) {
+		objectMapper.serialize(element, version, out);
+	}
+	
+	@Override
+	public <T> T deserialize(InputStream in, Type type, int version) {
+		return objectMapper.deserialize(in, type, version);
+	}
 
 }
@@ -18,6 +18,8 @@ package com.avanza.astrix.versioning.jackson1;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.jackson.node.ObjectNode;
 /**
@@ -30,9 +32,11 @@ import org.codehaus.jackson.node.ObjectNode;
  */
 class JsonMessageMigrator<T> {
 	
-	private Class<T> type;
-	private List<JsonMessageMigrationWithVersion<T>> migrationsInOrder;
-	private List<JsonMessageMigrationWithVersion<T>> migrationsInReverseOrder;
+	private final Class<T> type;
+	private final List<JsonMessageMigrationWithVersion<T>> migrationsInOrder;
+	private final List<JsonMessageMigrationWithVersion<T>> migrationsInReverseOrder;
+	private final ConcurrentMap<Integer, MigrationChain<T>> upgradeChainByVersion = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, MigrationChain<T>> downgradeChainByVersion = new ConcurrentHashMap<>();
 	
 	public JsonMessageMigrator(Class<T> type,
 							   List<JsonMessageMigrationWithVersion<T>> migrations) {
@@ -45,27 +49,92 @@ class JsonMessageMigrator<T> {
 	}
 
 	public void upgrade(ObjectNode json, int fromVersion) {
+		upgradeChain(fromVersion).apply(json);
+	}
+	
+	public void downgrade(ObjectNode json, int toVersion) {
+		downgradeChain(toVersion).apply(json);
+	}
+	
+	/**
+	 * Whether any migration applies to messages on the given version. 
+	 */
+	public boolean hasMigrations(int version) {
+		return !upgradeChain(version).isEmpty();
+	}
+	
+	/**
+	 * Returns the precompiled chain of migrations that upgrades a message from the given version
+	 * to the current version.
+	 */
+	public MigrationChain<T> upgradeChain(int fromVersion) {
+		return upgradeChainByVersion.computeIfAbsent(fromVersion, this::createUpgradeChain);
+	}
+	
+	/**
+	 * Returns the precompiled chain of migrations that downgrades a message from the current version 
+	 * to the given version.
+	 */
+	public MigrationChain<T> downgradeChain(int toVersion) {
+		return downgradeChainByVersion.computeIfAbsent(toVersion, this::createDowngradeChain);
+	}
+	
+	private MigrationChain<T> createUpgradeChain(int fromVersion) {
+		List<JsonMessageMigrationWithVersion<T>> chain = new ArrayList<>();
 		for (JsonMessageMigrationWithVersion<T> migration : migrationsInOrder) {
 			if (migration.getVersion() < fromVersion) {
 				continue;
 			}
-			migration.upgrade(json);
+			chain.add(migration);
 		}
+		return new MigrationChain<>(chain, true);
 	}
 	
-	public void downgrade(ObjectNode json, int toVersion) {
+	private MigrationChain<T> createDowngradeChain(int toVersion) {
+		List<JsonMessageMigrationWithVersion<T>> chain = new ArrayList<>();
 		for (JsonMessageMigrationWithVersion<T> migration : migrationsInReverseOrder) {
 			if (!(migration.getVersion() >= toVersion)) {
-				return;
+				break;
 			}
-			migration.downgrade(json);
+			chain.add(migration);
 		}
+		return new MigrationChain<>(chain, false);
 	}
 
 	public Class<T> getJavaType() {
 		return type;
 	}
 	
+	/**
+	 * An ordered sequence of migrations that upgrades or downgrades a message between a 
+	 * given version and the current version.
+	 */
+	static final class MigrationChain<T> {
+		
+		private final JsonMessageMigrationWithVersion<T>[] migrations;
+		private final boolean upgrade;
+		
+		@SuppressWarnings("unchecked")
+		private MigrationChain(List<JsonMessageMigrationWithVersion<T>> migrations, boolean upgrade) {
+			this.migrations = migrations.toArray(new JsonMessageMigrationWithVersion[migrations.size()]);
+			this.upgrade = upgrade;
+		}
+		
+		boolean isEmpty() {
+			return migrations.length == 0;
+		}
+		
+		void apply(ObjectNode json) {
+			for (JsonMessageMigrationWithVersion<T> migration : migrations) {
+				if (upgrade) {
+					migration.upgrade(json);
+				} else {
+					migration.downgrade(json);
+				}
+			}
+		}
+	}
+	
 	static class JsonMessageMigrationWithVersion<T> implements Comparable<JsonMessageMigrationWithVersion<T>> {
 		private int version;
 		private AstrixJsonMessageMigration<T> migration;
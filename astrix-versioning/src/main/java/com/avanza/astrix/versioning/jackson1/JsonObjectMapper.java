@@ -15,7 +15,11 @@
  */
 package com.avanza.astrix.versioning.jackson1;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -53,6 +57,34 @@ public class JsonObjectMapper {
 		}
 	}
 	
+	public void serialize(Object object, int toVersion, OutputStream out) {
+		try {
+			impl.serialize(object, toVersion, out);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to serialize: " + object + ".", e);
+		}
+	}
+	
+	public <T> T deserialize(InputStream in, Type target, int fromVersion) {
+		try {
+			return impl.deserialize(in, target, fromVersion);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to deserialize into type: " + target, e);
+		}
+	}
+	
+	/**
+	 * Resolves and caches everything required to deserialize the given type from the given version, 
+	 * so that subsequent deserialization of the type does no type resolution work.
+	 */
+	public void prepare(Type type, int version) {
+		try {
+			impl.prepare(type, version);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to prepare type: " + type, e);
+		}
+	}
+	
 	public static JsonObjectMapper create(Impl impl) {
 		return new JsonObjectMapper(impl);
 	}
@@ -61,6 +93,31 @@ public class JsonObjectMapper {
 	public interface Impl {
 		String serialize(Object object, int toVersion) throws Exception;
 		<T> T deserialize(String json, Type target, int fromVersion) throws Exception;
+		
+		/**
+		 * Writes the json representation of the given object to the given stream, encoded in UTF-8. The
+		 * default implementation writes the result of {@link #serialize(Object, int)}.
+		 */
+		default void serialize(Object object, int toVersion, OutputStream out) throws Exception {
+			out.write(serialize(object, toVersion).getBytes(StandardCharsets.UTF_8));
+		}
+		
+		/**
+		 * Reads an object from the given UTF-8 encoded json stream. The default implementation reads the 
+		 * entire stream and delegates to {@link #deserialize(String, Type, int)}.
+		 */
+		default <T> T deserialize(InputStream json, Type target, int fromVersion) throws Exception {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = json.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+			return deserialize(new String(content.toByteArray(), StandardCharsets.UTF_8), target, fromVersion);
+		}
+		
+		default void prepare(Type type, int version) throws Exception {
+		}
 	}
 	
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+import com.avanza.astrix.versioning.core.AstrixObjectSerializerConfigurer;
+import com.avanza.astrix.versioning.core.ObjectSerializerDefinition;
+import com.avanza.astrix.versioning.jackson1.VersionedJsonObjectMapper.VersionedObjectMapperBuilder;
+
+/**
+ * AstrixObjectSerializer using the compact binary format described in {@link TaggedBinaryFormat}. The
+ * serialized form of an object is a byte[]. <p>
+ * 
+ * Data binding and migrations between versions are handled by a {@link VersionedJsonObjectMapper}, 
+ * hence the same {@link AstrixJsonApiMigration}'s can be used as with the json format. 
+ */
+class TaggedBinaryAstrixObjectSerializer implements AstrixObjectSerializer {
+
+	private final VersionedJsonObjectMapper objectMapper;
+	private final int version;
+
+	public TaggedBinaryAstrixObjectSerializer(ObjectSerializerDefinition serializerDefinition) {
+		Class<? extends AstrixObjectSerializerConfigurer> serializerBuilder = serializerDefinition.getObjectSerializerConfigurerClass();
+		this.version = serializerDefinition.version();
+		try {
+			this.objectMapper = buildObjectMapper(TaggedBinaryObjectSerializerConfigurer.class.cast(serializerBuilder.newInstance()));
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to init VersionedJsonObjectMapper", e);
+		}
+	}
+	
+	private VersionedJsonObjectMapper buildObjectMapper(TaggedBinaryObjectSerializerConfigurer serializerBuilder) {
+		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(serializerBuilder.apiMigrations());
+		objectMapperBuilder.failOnUnknownProperties(false);
+		serializerBuilder.configure(objectMapperBuilder);
+		return objectMapperBuilder.build();
+	}
+
+	@Override
+	public <T> T deserialize(Object element, Type type, int fromVersion) {
+		if (fromVersion == NoVersioningSupport.NO_VERSIONING) {
+			return (T) element;
+		}
+		byte[] bytes = (byte[]) element;
+		return deserialize(bytes, 0, bytes.length, type, fromVersion);
+	}
+
+	@Override
+	public Object serialize(Object element, int version) {
+		if (version == NoVersioningSupport.NO_VERSIONING) {
+			return element;
+		}
+		return serializeToBytes(element, version);
+	}
+
+	@Override
+	public int version() {
+		return version;
+	}
+	
+	@Override
+	public void prepareType(Type type) {
+		objectMapper.prepare(type, version);
+	}
+	
+	@Override
+	public boolean isByteOriented() {
+		return true;
+	}
+	
+	@Override
+	public void serialize(Object element, int version, OutputStream out) throws IOException {
+		objectMapper.serialize(element, version, codec -> new TaggedBinaryGenerator(out, codec));
+	}
+	
+	@Override
+	public byte[] serializeToBytes(Object element, int version) {
+		try {
+			return objectMapper.serialize(element, version, TaggedBinaryGenerator::new).toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to serialize: " + element, e);
+		}
+	}
+	
+	@Override
+	public <T> T deserialize(InputStream in, Type type, int version) throws IOException {
+		// Streams wrapping in memory buffers know their remaining length, in which case the bytes are read without copying
+		byte[] bytes = new byte[Math.max(in.available(), 128)];
+		int length = 0;
+		while (true) {
+			if (length == bytes.length) {
+				int next = in.read();
+				if (next == -1) {
+					break;
+				}
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				bytes[length++] = (byte) next;
+			}
+			int read = in.read(bytes, length, bytes.length - length);
+			if (read == -1) {
+				break;
+			}
+			length += read;
+		}
+		return deserialize(bytes, 0, length, type, version);
+	}
+	
+	@Override
+	public <T> T deserialize(ByteBuffer buffer, Type type, int version) {
+		if (buffer.hasArray()) {
+			return deserialize(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), type, version);
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.duplicate().get(bytes);
+		return deserialize(bytes, 0, bytes.length, type, version);
+	}
+	
+	private <T> T deserialize(byte[] bytes, int offset, int length, Type type, int version) {
+		try {
+			return objectMapper.deserialize(codec -> new TaggedBinaryParser(bytes, offset, length, codec), type, version);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to deserialize into type: " + type, e);
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+/**
+ * Constants describing the compact binary format written by {@link TaggedBinaryGenerator} and 
+ * read by {@link TaggedBinaryParser}. <p>
+ * 
+ * A message starts with a single {@link #FORMAT_VERSION} byte followed by a sequence of tagged tokens
+ * mirroring the token stream of the corresponding json message. Each token starts with a one byte tag, 
+ * followed by the token payload:
+ * 
+ * <pre>
+ * START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, TRUE, FALSE, NULL:  no payload
+ * FIELD_NAME:     varint length + utf8 bytes. The name is assigned the next index in the message's name table
+ * FIELD_NAME_REF: varint index of a field name previously written in the same message
+ * STRING:         varint length + utf8 bytes
+ * INT, LONG:      zigzag encoded varint
+ * FLOAT, DOUBLE:  4/8 bytes IEEE 754, big endian
+ * BIG_INTEGER:    varint length + two's complement bytes
+ * BIG_DECIMAL:    zigzag encoded varint scale, varint length + two's complement bytes of the unscaled value
+ * BINARY:         varint length + raw bytes
+ * </pre>
+ * 
+ * Every field is tagged with its name, hence a reader can skip fields it does not know about,
+ * which allows an old client to read messages containing fields added in a later version. 
+ */
+final class TaggedBinaryFormat {
+	
+	static final int FORMAT_VERSION = 1;
+	
+	static final int START_OBJECT = 1;
+	static final int END_OBJECT = 2;
+	static final int START_ARRAY = 3;
+	static final int END_ARRAY = 4;
+	static final int FIELD_NAME = 5;
+	static final int FIELD_NAME_REF = 6;
+	static final int STRING = 7;
+	static final int INT = 8;
+	static final int LONG = 9;
+	static final int BIG_INTEGER = 10;
+	static final int FLOAT = 11;
+	static final int DOUBLE = 12;
+	static final int BIG_DECIMAL = 13;
+	static final int TRUE = 14;
+	static final int FALSE = 15;
+	static final int NULL = 16;
+	static final int BINARY = 17;
+	
+	private TaggedBinaryFormat() {
+	}
+
+}
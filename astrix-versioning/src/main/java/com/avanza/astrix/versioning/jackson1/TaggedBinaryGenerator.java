@@ -0,0 +1,425 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.jackson.Base64Variant;
+import org.codehaus.jackson.JsonGenerationException;
+import org.codehaus.jackson.ObjectCodec;
+import org.codehaus.jackson.impl.JsonGeneratorBase;
+import org.codehaus.jackson.impl.JsonWriteContext;
+
+/**
+ * JsonGenerator that writes the compact binary format described in {@link TaggedBinaryFormat}. <p>
+ * 
+ * The generator either writes to an OutputStream, using a fixed size buffer, or to a growing
+ * in memory buffer that is retrieved using {@link #toByteArray()}. A generator is used to write 
+ * a single message and is not thread safe.
+ */
+final class TaggedBinaryGenerator extends JsonGeneratorBase {
+	
+	private static final int STREAM_BUFFER_SIZE = 4000;
+	private static final int INITIAL_MEMORY_BUFFER_SIZE = 256;
+	/*
+	 * Most messages contains a few distinct field names, which are looked up by a linear
+	 * scan. A hash based index is only created for messages with many distinct field names.
+	 */
+	private static final int MAX_LINEAR_FIELD_NAMES = 16;
+	
+	private final OutputStream out;
+	private byte[] buffer;
+	private int position = 0;
+	private String[] fieldNames;
+	private int fieldNameCount = 0;
+	private Map<String, Integer> fieldNameIndex;
+	
+	/**
+	 * Creates a generator that writes to the given OutputStream. 
+	 */
+	TaggedBinaryGenerator(OutputStream out, ObjectCodec codec) {
+		super(0, codec);
+		this.out = out;
+		this.buffer = new byte[STREAM_BUFFER_SIZE];
+		this.buffer[position++] = TaggedBinaryFormat.FORMAT_VERSION;
+	}
+	
+	/**
+	 * Creates a generator that writes to an in memory buffer, see {@link #toByteArray()}.
+	 */
+	TaggedBinaryGenerator(ObjectCodec codec) {
+		super(0, codec);
+		this.out = null;
+		this.buffer = new byte[INITIAL_MEMORY_BUFFER_SIZE];
+		this.buffer[position++] = TaggedBinaryFormat.FORMAT_VERSION;
+	}
+	
+	/**
+	 * Returns the bytes written by a generator created without an OutputStream.
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, position);
+	}
+
+	@Override
+	protected void _writeStartArray() throws IOException {
+		writeByte(TaggedBinaryFormat.START_ARRAY);
+	}
+	
+	@Override
+	protected void _writeEndArray() throws IOException {
+		writeByte(TaggedBinaryFormat.END_ARRAY);
+	}
+	
+	@Override
+	protected void _writeStartObject() throws IOException {
+		writeByte(TaggedBinaryFormat.START_OBJECT);
+	}
+	
+	@Override
+	protected void _writeEndObject() throws IOException {
+		writeByte(TaggedBinaryFormat.END_OBJECT);
+	}
+	
+	@Override
+	public void writeFieldName(String name) throws IOException {
+		if (_writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+			_reportError("Can not write a field name, expecting a value");
+		}
+		int index = indexOf(name);
+		if (index >= 0) {
+			writeByte(TaggedBinaryFormat.FIELD_NAME_REF);
+			writeVarInt(index);
+			return;
+		}
+		addFieldName(name);
+		writeByte(TaggedBinaryFormat.FIELD_NAME);
+		writeUtf8(name);
+	}
+	
+	private int indexOf(String name) {
+		if (fieldNameIndex != null) {
+			Integer index = fieldNameIndex.get(name);
+			return index != null ? index : -1;
+		}
+		for (int i = 0; i < fieldNameCount; i++) {
+			// Field names are typically the same interned instances for each occurrence
+			if (fieldNames[i] == name) {
+				return i;
+			}
+		}
+		for (int i = 0; i < fieldNameCount; i++) {
+			if (fieldNames[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private void addFieldName(String name) {
+		if (fieldNameIndex != null) {
+			fieldNameIndex.put(name, fieldNameIndex.size());
+			return;
+		}
+		if (fieldNames == null) {
+			fieldNames = new String[MAX_LINEAR_FIELD_NAMES];
+		}
+		if (fieldNameCount < MAX_LINEAR_FIELD_NAMES) {
+			fieldNames[fieldNameCount++] = name;
+			return;
+		}
+		fieldNameIndex = new HashMap<>();
+		for (int i = 0; i < fieldNameCount; i++) {
+			fieldNameIndex.put(fieldNames[i], i);
+		}
+		fieldNameIndex.put(name, fieldNameCount);
+	}
+
+	@Override
+	public void writeString(String text) throws IOException {
+		if (text == null) {
+			writeNull();
+			return;
+		}
+		_verifyValueWrite("write String value");
+		writeByte(TaggedBinaryFormat.STRING);
+		writeUtf8(text);
+	}
+
+	@Override
+	public void writeString(char[] text, int offset, int len) throws IOException {
+		writeString(new String(text, offset, len));
+	}
+
+	@Override
+	public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+		writeUTF8String(text, offset, length);
+	}
+
+	@Override
+	public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+		_verifyValueWrite("write String value");
+		writeByte(TaggedBinaryFormat.STRING);
+		writeVarInt(length);
+		writeBytes(text, offset, length);
+	}
+
+	@Override
+	public void writeRaw(String text) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+
+	@Override
+	public void writeRaw(String text, int offset, int len) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+
+	@Override
+	public void writeRaw(char[] text, int offset, int len) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+
+	@Override
+	public void writeRaw(char c) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+	
+	@Override
+	public void writeRawValue(String text) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+	
+	@Override
+	public void writeRawValue(String text, int offset, int len) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+	
+	@Override
+	public void writeRawValue(char[] text, int offset, int len) throws IOException {
+		throw new UnsupportedOperationException("Raw content not supported by the tagged binary format");
+	}
+
+	@Override
+	public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len) throws IOException {
+		if (data == null) {
+			writeNull();
+			return;
+		}
+		_verifyValueWrite("write Binary value");
+		writeByte(TaggedBinaryFormat.BINARY);
+		writeVarInt(len);
+		writeBytes(data, offset, len);
+	}
+
+	@Override
+	public void writeNumber(int value) throws IOException {
+		_verifyValueWrite("write number");
+		writeByte(TaggedBinaryFormat.INT);
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	@Override
+	public void writeNumber(long value) throws IOException {
+		_verifyValueWrite("write number");
+		writeByte(TaggedBinaryFormat.LONG);
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	@Override
+	public void writeNumber(BigInteger value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		_verifyValueWrite("write number");
+		writeByte(TaggedBinaryFormat.BIG_INTEGER);
+		byte[] bytes = value.toByteArray();
+		writeVarInt(bytes.length);
+		writeBytes(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public void writeNumber(double value) throws IOException {
+		_verifyValueWrite("write number");
+		writeByte(TaggedBinaryFormat.DOUBLE);
+		long bits = Double.doubleToRawLongBits(value);
+		writeInt32((int) (bits >>> 32));
+		writeInt32((int) bits);
+	}
+
+	@Override
+	public void writeNumber(float value) throws IOException {
+		_verifyValueWrite("write number");
+		writeByte(TaggedBinaryFormat.FLOAT);
+		writeInt32(Float.floatToRawIntBits(value));
+	}
+
+	@Override
+	public void writeNumber(BigDecimal value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		_verifyValueWrite("write number");
+		writeByte(TaggedBinaryFormat.BIG_DECIMAL);
+		int scale = value.scale();
+		writeVarInt((scale << 1) ^ (scale >> 31));
+		byte[] unscaled = value.unscaledValue().toByteArray();
+		writeVarInt(unscaled.length);
+		writeBytes(unscaled, 0, unscaled.length);
+	}
+
+	@Override
+	public void writeNumber(String encodedValue) throws IOException {
+		// Numbers that are already encoded are retained as is
+		writeString(encodedValue);
+	}
+
+	@Override
+	public void writeBoolean(boolean state) throws IOException {
+		_verifyValueWrite("write boolean value");
+		writeByte(state ? TaggedBinaryFormat.TRUE : TaggedBinaryFormat.FALSE);
+	}
+
+	@Override
+	public void writeNull() throws IOException {
+		_verifyValueWrite("write null value");
+		writeByte(TaggedBinaryFormat.NULL);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (out != null) {
+			flushBuffer();
+			out.flush();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		super.close();
+		flushBuffer();
+	}
+
+	@Override
+	protected void _releaseBuffers() {
+	}
+
+	@Override
+	protected void _verifyValueWrite(String typeMsg) throws JsonGenerationException {
+		if (_writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+			_reportError("Can not " + typeMsg + ", expecting field name");
+		}
+	}
+	
+	private void writeUtf8(String text) throws IOException {
+		int length = text.length();
+		int utf8Length = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				utf8Length++;
+			} else {
+				// Not plain ascii, let the platform encoder deal with multi byte sequences and surrogates
+				byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+				writeVarInt(bytes.length);
+				writeBytes(bytes, 0, bytes.length);
+				return;
+			}
+		}
+		writeVarInt(utf8Length);
+		int offset = 0;
+		while (offset < length) {
+			ensureCapacity(1);
+			int chunk = Math.min(length - offset, buffer.length - position);
+			for (int i = 0; i < chunk; i++) {
+				buffer[position++] = (byte) text.charAt(offset + i);
+			}
+			offset += chunk;
+		}
+	}
+	
+	private void writeVarInt(int value) throws IOException {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+	
+	private void writeVarLong(long value) throws IOException {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+	
+	private void writeInt32(int value) throws IOException {
+		ensureCapacity(4);
+		buffer[position++] = (byte) (value >>> 24);
+		buffer[position++] = (byte) (value >>> 16);
+		buffer[position++] = (byte) (value >>> 8);
+		buffer[position++] = (byte) value;
+	}
+	
+	private void writeByte(int value) throws IOException {
+		ensureCapacity(1);
+		buffer[position++] = (byte) value;
+	}
+	
+	private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+		if (out == null) {
+			ensureCapacity(length);
+		} else if (length > buffer.length - position) {
+			flushBuffer();
+			if (length > buffer.length) {
+				out.write(bytes, offset, length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, offset, buffer, position, length);
+		position += length;
+	}
+	
+	private void ensureCapacity(int length) throws IOException {
+		if (buffer.length - position >= length) {
+			return;
+		}
+		if (out == null) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+			return;
+		}
+		flushBuffer();
+	}
+
+	private void flushBuffer() throws IOException {
+		if (out != null && position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+import java.util.List;
+
+import com.avanza.astrix.versioning.core.AstrixObjectSerializerConfigurer;
+
+/**
+ * Selects the compact, field tagged binary format (see {@link TaggedBinaryFormat}) for an api. 
+ * Messages are migrated between versions using the same {@link AstrixJsonApiMigration}'s 
+ * as with {@link Jackson1ObjectSerializerConfigurer}. <p>
+ * 
+ * Since every field is tagged with its name, properties unknown to the target type are ignored when 
+ * reading a message, which allows old clients to read messages containing fields added in a later version.
+ */
+public interface TaggedBinaryObjectSerializerConfigurer extends AstrixObjectSerializerConfigurer {
+	List<? extends AstrixJsonApiMigration> apiMigrations();
+	void configure(JacksonObjectMapperBuilder objectMapperBuilder);
+}
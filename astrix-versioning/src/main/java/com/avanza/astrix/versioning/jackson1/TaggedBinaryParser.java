@@ -0,0 +1,436 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jackson.Base64Variant;
+import org.codehaus.jackson.Base64Variants;
+import org.codehaus.jackson.JsonLocation;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonStreamContext;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.ObjectCodec;
+import org.codehaus.jackson.impl.JsonParserMinimalBase;
+import org.codehaus.jackson.impl.JsonReadContext;
+import org.codehaus.jackson.util.ByteArrayBuilder;
+
+/**
+ * JsonParser that reads the compact binary format described in {@link TaggedBinaryFormat}. <p>
+ * 
+ * Binary values are exposed as VALUE_STRING tokens, with the base64 encoded text created lazily, 
+ * which allows them to be read both using {@link #getBinaryValue(Base64Variant)} and by json tree 
+ * based migrations. <p>
+ * 
+ * A parser is used to read a single message and is not thread safe.
+ */
+final class TaggedBinaryParser extends JsonParserMinimalBase {
+	
+	private final byte[] input;
+	private final int end;
+	private int position;
+	private int tokenPosition;
+	private ObjectCodec codec;
+	private JsonReadContext parsingContext = JsonReadContext.createRootContext();
+	private List<String> fieldNames;
+	private boolean closed = false;
+	
+	private String text;
+	private byte[] binary;
+	private NumberType numberType;
+	private int intValue;
+	private long longValue;
+	private float floatValue;
+	private double doubleValue;
+	private BigInteger bigIntegerValue;
+	private BigDecimal bigDecimalValue;
+	
+	TaggedBinaryParser(byte[] input, int offset, int length, ObjectCodec codec) throws IOException {
+		this.input = input;
+		this.position = offset;
+		this.end = offset + length;
+		this.codec = codec;
+		if (length == 0) {
+			return;
+		}
+		int formatVersion = input[position++];
+		if (formatVersion != TaggedBinaryFormat.FORMAT_VERSION) {
+			throw new JsonParseException("Unsupported tagged binary format version: " + formatVersion, getCurrentLocation());
+		}
+	}
+
+	@Override
+	public JsonToken nextToken() throws IOException {
+		text = null;
+		binary = null;
+		numberType = null;
+		if (position >= end) {
+			_handleEOF();
+			close();
+			return (_currToken = null);
+		}
+		tokenPosition = position;
+		int tag = input[position++];
+		switch (tag) {
+		case TaggedBinaryFormat.START_OBJECT:
+			parsingContext = parsingContext.createChildObjectContext(-1, -1);
+			return (_currToken = JsonToken.START_OBJECT);
+		case TaggedBinaryFormat.END_OBJECT:
+			if (!parsingContext.inObject()) {
+				_reportError("Unexpected end of object in " + parsingContext.getTypeDesc());
+			}
+			parsingContext = parsingContext.getParent();
+			return (_currToken = JsonToken.END_OBJECT);
+		case TaggedBinaryFormat.START_ARRAY:
+			parsingContext = parsingContext.createChildArrayContext(-1, -1);
+			return (_currToken = JsonToken.START_ARRAY);
+		case TaggedBinaryFormat.END_ARRAY:
+			if (!parsingContext.inArray()) {
+				_reportError("Unexpected end of array in " + parsingContext.getTypeDesc());
+			}
+			parsingContext = parsingContext.getParent();
+			return (_currToken = JsonToken.END_ARRAY);
+		case TaggedBinaryFormat.FIELD_NAME:
+			if (fieldNames == null) {
+				fieldNames = new ArrayList<>();
+			}
+			String name = readUtf8();
+			fieldNames.add(name);
+			parsingContext.setCurrentName(name);
+			return (_currToken = JsonToken.FIELD_NAME);
+		case TaggedBinaryFormat.FIELD_NAME_REF:
+			int index = readVarInt();
+			if (fieldNames == null || index >= fieldNames.size()) {
+				_reportError("Invalid field name reference: " + index);
+			}
+			parsingContext.setCurrentName(fieldNames.get(index));
+			return (_currToken = JsonToken.FIELD_NAME);
+		case TaggedBinaryFormat.STRING:
+			text = readUtf8();
+			return (_currToken = JsonToken.VALUE_STRING);
+		case TaggedBinaryFormat.BINARY:
+			binary = readBytes(readVarInt());
+			return (_currToken = JsonToken.VALUE_STRING);
+		case TaggedBinaryFormat.INT:
+			int zigzagInt = readVarInt();
+			intValue = (zigzagInt >>> 1) ^ -(zigzagInt & 1);
+			numberType = NumberType.INT;
+			return (_currToken = JsonToken.VALUE_NUMBER_INT);
+		case TaggedBinaryFormat.LONG:
+			long zigzagLong = readVarLong();
+			longValue = (zigzagLong >>> 1) ^ -(zigzagLong & 1);
+			numberType = NumberType.LONG;
+			return (_currToken = JsonToken.VALUE_NUMBER_INT);
+		case TaggedBinaryFormat.BIG_INTEGER:
+			bigIntegerValue = new BigInteger(readBytes(readVarInt()));
+			numberType = NumberType.BIG_INTEGER;
+			return (_currToken = JsonToken.VALUE_NUMBER_INT);
+		case TaggedBinaryFormat.FLOAT:
+			floatValue = Float.intBitsToFloat(readInt32());
+			numberType = NumberType.FLOAT;
+			return (_currToken = JsonToken.VALUE_NUMBER_FLOAT);
+		case TaggedBinaryFormat.DOUBLE:
+			long highBits = readInt32() & 0xFFFFFFFFL;
+			long lowBits = readInt32() & 0xFFFFFFFFL;
+			doubleValue = Double.longBitsToDouble((highBits << 32) | lowBits);
+			numberType = NumberType.DOUBLE;
+			return (_currToken = JsonToken.VALUE_NUMBER_FLOAT);
+		case TaggedBinaryFormat.BIG_DECIMAL:
+			int zigzagScale = readVarInt();
+			int scale = (zigzagScale >>> 1) ^ -(zigzagScale & 1);
+			bigDecimalValue = new BigDecimal(new BigInteger(readBytes(readVarInt())), scale);
+			numberType = NumberType.BIG_DECIMAL;
+			return (_currToken = JsonToken.VALUE_NUMBER_FLOAT);
+		case TaggedBinaryFormat.TRUE:
+			return (_currToken = JsonToken.VALUE_TRUE);
+		case TaggedBinaryFormat.FALSE:
+			return (_currToken = JsonToken.VALUE_FALSE);
+		case TaggedBinaryFormat.NULL:
+			return (_currToken = JsonToken.VALUE_NULL);
+		default:
+			_reportError("Invalid token tag: " + tag);
+			return null;
+		}
+	}
+
+	@Override
+	protected void _handleEOF() throws JsonParseException {
+		if (!parsingContext.inRoot()) {
+			_reportInvalidEOF(": expected close marker for " + parsingContext.getTypeDesc());
+		}
+	}
+
+	@Override
+	public String getCurrentName() {
+		if (_currToken == JsonToken.START_OBJECT || _currToken == JsonToken.START_ARRAY) {
+			return parsingContext.getParent().getCurrentName();
+		}
+		return parsingContext.getCurrentName();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public JsonStreamContext getParsingContext() {
+		return parsingContext;
+	}
+
+	@Override
+	public String getText() throws IOException {
+		if (_currToken == null) {
+			return null;
+		}
+		switch (_currToken) {
+		case FIELD_NAME:
+			return parsingContext.getCurrentName();
+		case VALUE_STRING:
+			if (text == null && binary != null) {
+				text = Base64Variants.getDefaultVariant().encode(binary);
+			}
+			return text;
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return getNumberValue().toString();
+		default:
+			return _currToken.asString();
+		}
+	}
+
+	@Override
+	public char[] getTextCharacters() throws IOException {
+		String currentText = getText();
+		return currentText == null ? null : currentText.toCharArray();
+	}
+
+	@Override
+	public boolean hasTextCharacters() {
+		return false;
+	}
+
+	@Override
+	public int getTextLength() throws IOException {
+		String currentText = getText();
+		return currentText == null ? 0 : currentText.length();
+	}
+
+	@Override
+	public int getTextOffset() {
+		return 0;
+	}
+
+	@Override
+	public byte[] getBinaryValue(Base64Variant b64variant) throws IOException {
+		if (_currToken != JsonToken.VALUE_STRING) {
+			_reportError("Current token (" + _currToken + ") not VALUE_STRING, can not access as binary");
+		}
+		if (binary != null) {
+			return binary;
+		}
+		ByteArrayBuilder builder = new ByteArrayBuilder();
+		_decodeBase64(text, builder, b64variant);
+		return builder.toByteArray();
+	}
+
+	@Override
+	public ObjectCodec getCodec() {
+		return codec;
+	}
+
+	@Override
+	public void setCodec(ObjectCodec codec) {
+		this.codec = codec;
+	}
+
+	@Override
+	public JsonLocation getTokenLocation() {
+		return new JsonLocation(null, tokenPosition, -1L, -1, -1);
+	}
+
+	@Override
+	public JsonLocation getCurrentLocation() {
+		return new JsonLocation(null, position, -1L, -1, -1);
+	}
+
+	@Override
+	public Number getNumberValue() throws IOException {
+		switch (numberType()) {
+		case INT:
+			return intValue;
+		case LONG:
+			return longValue;
+		case BIG_INTEGER:
+			return bigIntegerValue;
+		case FLOAT:
+			return floatValue;
+		case DOUBLE:
+			return doubleValue;
+		default:
+			return bigDecimalValue;
+		}
+	}
+
+	@Override
+	public NumberType getNumberType() throws IOException {
+		return numberType();
+	}
+
+	@Override
+	public int getIntValue() throws IOException {
+		if (numberType() == NumberType.INT) {
+			return intValue;
+		}
+		return getNumberValue().intValue();
+	}
+
+	@Override
+	public long getLongValue() throws IOException {
+		switch (numberType()) {
+		case INT:
+			return intValue;
+		case LONG:
+			return longValue;
+		default:
+			return getNumberValue().longValue();
+		}
+	}
+
+	@Override
+	public BigInteger getBigIntegerValue() throws IOException {
+		switch (numberType()) {
+		case BIG_INTEGER:
+			return bigIntegerValue;
+		case BIG_DECIMAL:
+			return bigDecimalValue.toBigInteger();
+		case FLOAT:
+		case DOUBLE:
+			return BigDecimal.valueOf(getDoubleValue()).toBigInteger();
+		default:
+			return BigInteger.valueOf(getLongValue());
+		}
+	}
+
+	@Override
+	public float getFloatValue() throws IOException {
+		if (numberType() == NumberType.FLOAT) {
+			return floatValue;
+		}
+		return getNumberValue().floatValue();
+	}
+
+	@Override
+	public double getDoubleValue() throws IOException {
+		if (numberType() == NumberType.DOUBLE) {
+			return doubleValue;
+		}
+		return getNumberValue().doubleValue();
+	}
+
+	@Override
+	public BigDecimal getDecimalValue() throws IOException {
+		switch (numberType()) {
+		case BIG_DECIMAL:
+			return bigDecimalValue;
+		case BIG_INTEGER:
+			return new BigDecimal(bigIntegerValue);
+		case INT:
+		case LONG:
+			return BigDecimal.valueOf(getLongValue());
+		default:
+			return BigDecimal.valueOf(getDoubleValue());
+		}
+	}
+	
+	private NumberType numberType() throws JsonParseException {
+		if (numberType == null) {
+			_reportError("Current token (" + _currToken + ") not numeric, can not use numeric value accessors");
+		}
+		return numberType;
+	}
+	
+	private String readUtf8() throws JsonParseException {
+		int length = readVarInt();
+		ensureAvailable(length);
+		String result = new String(input, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return result;
+	}
+	
+	private byte[] readBytes(int length) throws JsonParseException {
+		ensureAvailable(length);
+		byte[] result = new byte[length];
+		System.arraycopy(input, position, result, 0, length);
+		position += length;
+		return result;
+	}
+	
+	private int readVarInt() throws JsonParseException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			ensureAvailable(1);
+			byte b = input[position++];
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		_reportError("Malformed varint");
+		return 0;
+	}
+	
+	private long readVarLong() throws JsonParseException {
+		long result = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			ensureAvailable(1);
+			byte b = input[position++];
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		_reportError("Malformed varint");
+		return 0;
+	}
+	
+	private int readInt32() throws JsonParseException {
+		ensureAvailable(4);
+		int result = ((input[position] & 0xFF) << 24) 
+				   | ((input[position + 1] & 0xFF) << 16) 
+				   | ((input[position + 2] & 0xFF) << 8) 
+				   | (input[position + 3] & 0xFF);
+		position += 4;
+		return result;
+	}
+	
+	private void ensureAvailable(int length) throws JsonParseException {
+		if (length < 0 || end - position < length) {
+			_reportInvalidEOF();
+		}
+	}
+
+}
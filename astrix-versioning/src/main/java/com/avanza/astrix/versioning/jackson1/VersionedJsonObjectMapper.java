@@ -16,6 +16,8 @@
 package com.avanza.astrix.versioning.jackson1;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -27,51 +29,209 @@ import java.util.concurrent.ConcurrentMap;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.ObjectCodec;
 import org.codehaus.jackson.Version;
+import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.DeserializationContext;
 import org.codehaus.jackson.map.JsonDeserializer;
 import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializerProvider;
 import org.codehaus.jackson.map.module.SimpleModule;
 import org.codehaus.jackson.node.ObjectNode;
 import org.codehaus.jackson.type.JavaType;
 
 import com.avanza.astrix.versioning.jackson1.JsonMessageMigrator.Builder;
+import com.avanza.astrix.versioning.jackson1.JsonMessageMigrator.MigrationChain;
 
+/**
+ * JsonObjectMapper that migrates messages between versions using the registered {@link AstrixJsonApiMigration}'s. <p>
+ * 
+ * Each version is served by its own ObjectMapper, created the first time the version is used. The ObjectMapper 
+ * for a given version intercepts (de)serialization of each type that has at least one migration to apply for that
+ * version, using the precompiled {@link MigrationChain} for the (type, version) pair. Types without migrations
+ * to apply are (de)serialized straight through. In particular, messages on the current version are never
+ * converted to a json tree. <p>
+ * 
+ * The JavaType resolved for each deserialized {@link Type}, and the ObjectReader used to read it on a given version, 
+ * are cached. Types known up front, for instance the argument and return types of a remote service method, can
+ * be resolved eagerly using {@link #prepare(Type, int)}, which leaves no type resolution work for the invocation path. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 	
-	private ObjectMapper migratingMapper;
-	private ThreadLocal<Integer> versionHolder;
+	private final ObjectMapper rawMapper;
+	private final Map<Class<?>, JsonMessageMigrator<?>> migratorsByType;
+	private final List<JsonSerializerHolder<?>> serializers;
+	private final List<JsonDeserializerHolder<?>> deserializers;
+	private final boolean failOnUnknownProperties;
+	private final ConcurrentMap<Integer, VersionMapper> mapperByVersion = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Type, JavaType> javaTypeByType = new ConcurrentHashMap<>();
 	
-	public VersionedJsonObjectMapper(ThreadLocal<Integer> versionHolder,
-								 ObjectMapper migratingMapper) {
-				this.versionHolder = versionHolder;
-				this.migratingMapper = migratingMapper;
+	private VersionedJsonObjectMapper(ObjectMapper rawMapper,
+									  Map<Class<?>, JsonMessageMigrator<?>> migratorsByType,
+									  List<JsonSerializerHolder<?>> serializers,
+									  List<JsonDeserializerHolder<?>> deserializers,
+									  boolean failOnUnknownProperties) {
+		this.rawMapper = rawMapper;
+		this.migratorsByType = migratorsByType;
+		this.serializers = serializers;
+		this.deserializers = deserializers;
+		this.failOnUnknownProperties = failOnUnknownProperties;
 	}
 
 	@Override
 	public String serialize(Object object, int toVersion) throws Exception {
-		versionHolder.set(toVersion);
-		try {
-			return migratingMapper.writeValueAsString(object);
-		} finally {
-			versionHolder.remove();
-		}
+		return getMapper(toVersion).writer.writeValueAsString(object);
 	}
 
 	@Override
 	public <T> T deserialize(String json, Type target, int fromVersion) throws Exception {
-		versionHolder.set(fromVersion);
-		try {
-			JavaType javaType = migratingMapper.getTypeFactory().constructType(target);
-			return migratingMapper.readValue(json, javaType);
-		} finally {
-			versionHolder.remove();
+		return getMapper(fromVersion).getReader(target).readValue(json);
+	}
+	
+	@Override
+	public void serialize(Object object, int toVersion, OutputStream out) throws Exception {
+		getMapper(toVersion).writer.writeValue(out, object);
+	}
+	
+	@Override
+	public <T> T deserialize(InputStream json, Type target, int fromVersion) throws Exception {
+		return getMapper(fromVersion).getReader(target).readValue(json);
+	}
+	
+	/**
+	 * Serializes an object to the given version using a JsonGenerator created by the given factory, which
+	 * allows messages to be written in other formats than json text, see {@link TaggedBinaryGenerator}.
+	 * 
+	 * @return the generator used, which is closed
+	 */
+	<G extends JsonGenerator> G serialize(Object object, int toVersion, GeneratorFactory<G> generatorFactory) throws IOException {
+		VersionMapper mapper = getMapper(toVersion);
+		G generator = generatorFactory.create(mapper.mapper);
+		mapper.writer.writeValue(generator, object);
+		generator.close();
+		return generator;
+	}
+	
+	/**
+	 * Deserializes an object from the given version using a JsonParser created by the given factory, see
+	 * {@link TaggedBinaryParser}.
+	 */
+	<T> T deserialize(ParserFactory parserFactory, Type target, int fromVersion) throws IOException {
+		VersionMapper mapper = getMapper(fromVersion);
+		return mapper.getReader(target).readValue(parserFactory.create(mapper.mapper));
+	}
+	
+	@Override
+	public void prepare(Type type, int version) {
+		getMapper(version).getReader(type);
+	}
+	
+	private VersionMapper getMapper(int version) {
+		VersionMapper mapper = mapperByVersion.get(version);
+		if (mapper != null) {
+			return mapper;
+		}
+		mapper = new VersionMapper(buildMapper(version));
+		VersionMapper existing = mapperByVersion.putIfAbsent(version, mapper);
+		return existing != null ? existing : mapper;
+	}
+	
+	private JavaType getJavaType(Type type) {
+		JavaType javaType = javaTypeByType.get(type);
+		if (javaType == null) {
+			javaType = rawMapper.getTypeFactory().constructType(type);
+			javaTypeByType.putIfAbsent(type, javaType);
 		}
+		return javaType;
 	}
 	
-	// TODO: document whats going on in this class (the migrating object mapper)
+	private ObjectMapper buildMapper(int version) {
+		SimpleModule module = new SimpleModule("Astrix-migratingModule-v" + version, new Version(1,0,0, ""));
+		boolean migrating = false;
+		for (JsonMessageMigrator<?> migrator : this.migratorsByType.values()) {
+			migrating |= registerMigratingSerializerAndDeserializer(module, migrator, version);
+		}
+		if (!migrating) {
+			// No migrations to apply for this version, typically the current version
+			return rawMapper;
+		}
+		// register custom serializers/deserializers for all custom types not intercepted by a migrating serializer/deserializer
+		for (JsonDeserializerHolder<?> deserializer : this.deserializers) {
+			if (!isMigrated(deserializer.type, version)) {
+				deserializer.register(module);
+			}
+		}
+		for (JsonSerializerHolder<?> serializer : this.serializers) {
+			if (!isMigrated(serializer.type, version)) {
+				serializer.register(module);
+			}
+		}
+		return newObjectMapper(module, failOnUnknownProperties);
+	}
+	
+	private boolean isMigrated(Class<?> type, int version) {
+		JsonMessageMigrator<?> migrator = this.migratorsByType.get(type);
+		return migrator != null && migrator.hasMigrations(version);
+	}
+
+	private <T> boolean registerMigratingSerializerAndDeserializer(SimpleModule module, JsonMessageMigrator<T> migrator, int version) {
+		if (!migrator.hasMigrations(version)) {
+			return false;
+		}
+		module.addSerializer(migrator.getJavaType(), new MigratingJsonSerializer<>(rawMapper, migrator.downgradeChain(version)));
+		module.addDeserializer(migrator.getJavaType(), new MigratingJsonDeserializer<>(rawMapper, migrator.upgradeChain(version), migrator.getJavaType()));
+		return true;
+	}
+	
+	private static ObjectMapper newObjectMapper(SimpleModule module, boolean failOnUnknownProperties) {
+		ObjectMapper result = new ObjectMapper();
+		result.registerModule(module);
+		result.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, failOnUnknownProperties);
+		// Streams are owned by the caller when using the byte oriented serialization methods
+		result.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+		result.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+		return result;
+	}
+	
+	interface GeneratorFactory<G extends JsonGenerator> {
+		G create(ObjectCodec codec) throws IOException;
+	}
+	
+	interface ParserFactory {
+		JsonParser create(ObjectCodec codec) throws IOException;
+	}
+	
+	/**
+	 * The ObjectMapper for a given version along with the ObjectReader for each type read on that version. 
+	 * 
+	 * Objects are written using their runtime type, hence a single ObjectWriter is shared by all types.
+	 */
+	private final class VersionMapper {
+		
+		private final ObjectMapper mapper;
+		private final ObjectWriter writer;
+		private final ConcurrentMap<Type, ObjectReader> readerByType = new ConcurrentHashMap<>();
+		
+		public VersionMapper(ObjectMapper mapper) {
+			this.mapper = mapper;
+			this.writer = mapper.writer();
+		}
+		
+		ObjectReader getReader(Type type) {
+			ObjectReader reader = readerByType.get(type);
+			if (reader == null) {
+				reader = mapper.reader(getJavaType(type));
+				readerByType.putIfAbsent(type, reader);
+			}
+			return reader;
+		}
+	}
 	
 	static class JsonSerializerHolder<T> {
 		
@@ -107,64 +267,42 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 
 	static class MigratingJsonSerializer<T> extends JsonSerializer<T> {
 		
-		private ObjectMapper rawMapper;
-		private JsonMessageMigrator<T> migrator;
-		private ThreadLocal<Integer> versionHolder;
+		private final ObjectMapper rawMapper;
+		private final MigrationChain<T> downgradeChain;
 		
-		public MigratingJsonSerializer(ObjectMapper rawMapper,
-				JsonMessageMigrator<T> migrator,
-				ThreadLocal<Integer> versionHolder) {
+		public MigratingJsonSerializer(ObjectMapper rawMapper, MigrationChain<T> downgradeChain) {
 			this.rawMapper = rawMapper;
-			this.migrator = migrator;
-			this.versionHolder = versionHolder;
+			this.downgradeChain = downgradeChain;
 		}
 
-		public static <T> MigratingJsonSerializer<T> create(ObjectMapper rawMapper, JsonMessageMigrator<T> migrator, ThreadLocal<Integer> versionHolder) {
-			return new MigratingJsonSerializer<>(rawMapper, migrator, versionHolder);
-		}
-		
 		@Override
 		public void serialize(T value, JsonGenerator jgen,
 				SerializerProvider provider) throws IOException,
 				JsonProcessingException {
 			ObjectNode objectNode = rawMapper.convertValue(value, ObjectNode.class);
-			migrator.downgrade(objectNode, getVersion());
+			downgradeChain.apply(objectNode);
 			jgen.writeObject(objectNode);					
 		}
-		
-		int getVersion() {
-			return versionHolder.get();
-		}
 	}
 	
 	static class MigratingJsonDeserializer<T> extends JsonDeserializer<T> {
 		
-		private ObjectMapper rawMapper;
-		private JsonMessageMigrator<T> migrator;
-		private ThreadLocal<Integer> versionHolder;
+		private final ObjectMapper rawMapper;
+		private final MigrationChain<T> upgradeChain;
+		private final Class<T> type;
 		
-		public MigratingJsonDeserializer(ObjectMapper rawMapper,
-				JsonMessageMigrator<T> migrator,
-				ThreadLocal<Integer> versionHolder) {
+		public MigratingJsonDeserializer(ObjectMapper rawMapper, MigrationChain<T> upgradeChain, Class<T> type) {
 			this.rawMapper = rawMapper;
-			this.migrator = migrator;
-			this.versionHolder = versionHolder;
+			this.upgradeChain = upgradeChain;
+			this.type = type;
 		}
 
-		public static <T> MigratingJsonDeserializer<T> create(ObjectMapper rawMapper, JsonMessageMigrator<T> migrator, ThreadLocal<Integer> versionHolder) {
-			return new MigratingJsonDeserializer<>(rawMapper, migrator, versionHolder);
-		}
-		
 		@Override
 		public T deserialize(JsonParser jp, DeserializationContext ctxt)
 				throws IOException, JsonProcessingException {
 			ObjectNode objectNode = jp.readValueAs(ObjectNode.class);
-			migrator.upgrade(objectNode, getVersion());
-			return rawMapper.convertValue(objectNode, migrator.getJavaType());					
-		}
-		
-		int getVersion() {
-			return versionHolder.get();
+			upgradeChain.apply(objectNode);
+			return rawMapper.convertValue(objectNode, type);					
 		}
 	}
 	
@@ -191,8 +329,8 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 			builder.addMigration(messageMigration, version);
 		}
 		
-		ConcurrentMap<Class<?>, JsonMessageMigrator<?>> build() {
-			ConcurrentMap<Class<?>, JsonMessageMigrator<?>> migratorsByType = new ConcurrentHashMap<Class<?>, JsonMessageMigrator<?>>();
+		Map<Class<?>, JsonMessageMigrator<?>> build() {
+			Map<Class<?>, JsonMessageMigrator<?>> migratorsByType = new HashMap<Class<?>, JsonMessageMigrator<?>>();
 			for (JsonMessageMigrator.Builder<?> builder : this.buildersByType.values()) {
 				JsonMessageMigrator<?> jsonMessageMigrator = builder.build();
 				migratorsByType.put(jsonMessageMigrator.getJavaType(), jsonMessageMigrator);
@@ -205,7 +343,8 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 		
 		private List<JsonSerializerHolder<?>> serializers = new ArrayList<>();
 		private List<JsonDeserializerHolder<?>> deserializers = new ArrayList<>();
-		private ConcurrentMap<Class<?>, JsonMessageMigrator<?>> migratorsByType;
+		private Map<Class<?>, JsonMessageMigrator<?>> migratorsByType;
+		private boolean failOnUnknownProperties = true;
 		
 		public VersionedObjectMapperBuilder(List<? extends AstrixJsonApiMigration> migrations) {
 			this.migratorsByType = new MessageMigratorsBuilder().registerAll(migrations).build();
@@ -221,43 +360,19 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 			this.deserializers.add(new JsonDeserializerHolder<>(type, deserializer));
 		}
 		
-		public VersionedJsonObjectMapper build() {
-			ThreadLocal<Integer> versionHolder = new ThreadLocal<>();
-			ObjectMapper rawMapper = buildRaw();
-			ObjectMapper migratingMapper = buildMigratingMapper(rawMapper, versionHolder);
-			return new VersionedJsonObjectMapper(versionHolder, migratingMapper);
+		/**
+		 * Whether deserialization fails when a message contains a property that is not known by the target type. 
+		 * Defaults to true.
+		 */
+		VersionedObjectMapperBuilder failOnUnknownProperties(boolean failOnUnknownProperties) {
+			this.failOnUnknownProperties = failOnUnknownProperties;
+			return this;
 		}
 		
-		private ObjectMapper buildMigratingMapper(ObjectMapper rawMapper, ThreadLocal<Integer> versionHolder) {
-			SimpleModule module = new SimpleModule("Astrix-migratingModule", new Version(1,0,0, ""));
-			for (JsonMessageMigrator<?> migrator : this.migratorsByType.values()) {
-				registerSerializerAndDeserializer(rawMapper, versionHolder, module, migrator);
-			}
-			// register custom serializers/deserializers for all custom types without migrator since those won't be intercepted by migratingObjectMapper
-			for (JsonDeserializerHolder<?> deserializer : this.deserializers) {
-				if (!this.migratorsByType.containsKey(deserializer.type)) {
-					deserializer.register(module);
-				}
-			}
-			for (JsonSerializerHolder<?> serializer : this.serializers) {
-				if (!this.migratorsByType.containsKey(serializer.type)) {
-					serializer.register(module);
-				}
-			}
-
-			ObjectMapper result = new ObjectMapper();
-			result.registerModule(module);
-			return result;
-		}
-
-		private <T> void registerSerializerAndDeserializer(ObjectMapper rawMapper,
-														   ThreadLocal<Integer> versionHolder, 
-														   SimpleModule module,
-														   JsonMessageMigrator<T> migrator) {
-			module.addSerializer(migrator.getJavaType(), MigratingJsonSerializer.create(rawMapper, migrator, versionHolder));
-			module.addDeserializer(migrator.getJavaType(), MigratingJsonDeserializer.create(rawMapper, migrator, versionHolder));
+		public VersionedJsonObjectMapper build() {
+			return new VersionedJsonObjectMapper(buildRaw(), migratorsByType, new ArrayList<>(serializers), new ArrayList<>(deserializers), failOnUnknownProperties);
 		}
-
+		
 		private ObjectMapper buildRaw() {
 			SimpleModule rawModule = new SimpleModule("Astrix-rawModule", new Version(1,0,0, ""));
 			for (JsonDeserializerHolder<?> deserializer : this.deserializers) {
@@ -266,18 +381,9 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 			for (JsonSerializerHolder<?> serializer : this.serializers) {
 				serializer.register(rawModule);
 			}
-			ObjectMapper rawMapper = new ObjectMapper();
-			rawMapper.registerModule(rawModule);
-			return rawMapper;
+			return newObjectMapper(rawModule, failOnUnknownProperties);
 		}
 		
 	}
 
-//	public static JsonObjectMapper create(AstrixRemotingServerApi jsonObjectMapperFactory) {
-//		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(jsonObjectMapperFactory.getMigrations());
-//		jsonObjectMapperFactory.configure(objectMapperBuilder);
-//		return JsonObjectMapper.create(objectMapperBuilder.build());
-//	}
-
-
 }
@@ -17,6 +17,7 @@ package com.avanza.astrix.versioning.jackson1;
 
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -63,6 +64,26 @@ public class JacksonVersioningPluginTest {
 		assertEquals(null, deserializedPojo.getBar()); // bar is stripped during downgrade
 	}
 	
+	@Test
+	public void serializesV2ObjectsToBytes() throws Exception {
+		AstrixObjectSerializer astrixObjectSerializer = new Jackson1SerializerPlugin().create(ObjectSerializerDefinition.versionedService(2, TestObjectMapperConfigurer.class));
+		
+		byte[] serialized = astrixObjectSerializer.serializeToBytes(new TestPojoV2("foo", "bar"), 2);
+		TestPojoV2 deserializedPojo = astrixObjectSerializer.deserialize(ByteBuffer.wrap(serialized), TestPojoV2.class, 2);
+		assertEquals("foo", deserializedPojo.getFoo());
+		assertEquals("bar", deserializedPojo.getBar());
+	}
+	
+	@Test
+	public void deserializesFromV1BytesByUpgrading() throws Exception {
+		AstrixObjectSerializer astrixObjectSerializer = new Jackson1SerializerPlugin().create(ObjectSerializerDefinition.versionedService(2, TestObjectMapperConfigurer.class));
+		
+		byte[] serializedV1 = astrixObjectSerializer.serializeToBytes(new TestPojoV1("foo"), 1);
+		TestPojoV2 deserializedPojo = astrixObjectSerializer.deserialize(ByteBuffer.wrap(serializedV1), TestPojoV2.class, 1);
+		assertEquals("foo", deserializedPojo.getFoo());
+		assertEquals("defaultBar", deserializedPojo.getBar());
+	}
+	
 	public static class FakeDescriptor {
 	}
 	
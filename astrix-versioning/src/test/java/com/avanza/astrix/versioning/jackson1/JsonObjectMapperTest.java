@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class JsonObjectMapperTest {
+	
+	private final JsonObjectMapper objectMapper = JsonObjectMapper.create(new StringOnlyImpl());
+	
+	@Test
+	public void streamingSerializationDelegatesToStringBasedSerializationByDefault() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		objectMapper.serialize("åäö", 2, out);
+		
+		assertEquals("v2:åäö", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void streamingDeserializationDelegatesToStringBasedDeserializationByDefault() throws Exception {
+		byte[] json = "v2:åäö".getBytes(StandardCharsets.UTF_8);
+		
+		String result = objectMapper.deserialize(new ByteArrayInputStream(json), String.class, 2);
+		
+		assertEquals("åäö", result);
+	}
+	
+	private static class StringOnlyImpl implements JsonObjectMapper.Impl {
+
+		@Override
+		public String serialize(Object object, int toVersion) throws Exception {
+			return "v" + toVersion + ":" + object;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> T deserialize(String json, Type target, int fromVersion) throws Exception {
+			return (T) json.substring(("v" + fromVersion + ":").length());
+		}
+	}
+
+}
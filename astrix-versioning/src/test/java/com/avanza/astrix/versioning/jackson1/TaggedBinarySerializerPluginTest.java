@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning.jackson1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.avanza.astrix.versioning.core.AstrixObjectSerializer;
+import com.avanza.astrix.versioning.core.ObjectSerializerDefinition;
+import com.avanza.astrix.versioning.jackson1.JacksonVersioningPluginTest.TestPojoV1;
+import com.avanza.astrix.versioning.jackson1.JacksonVersioningPluginTest.TestPojoV1ToV2Migration;
+import com.avanza.astrix.versioning.jackson1.JacksonVersioningPluginTest.TestPojoV2;
+import com.google.common.reflect.TypeToken;
+
+public class TaggedBinarySerializerPluginTest {
+	
+	private final AstrixObjectSerializer serializer = new TaggedBinarySerializerPlugin().create(ObjectSerializerDefinition.versionedService(2, TestBinarySerializerConfigurer.class));
+	
+	@Test
+	public void serializesV2Objects() throws Exception {
+		Object serialized = serializer.serialize(new TestPojoV2("foo", "bar"), 2);
+		
+		assertTrue(serialized instanceof byte[]);
+		TestPojoV2 deserializedPojo = serializer.deserialize(serialized, TestPojoV2.class, 2);
+		assertEquals("foo", deserializedPojo.getFoo());
+		assertEquals("bar", deserializedPojo.getBar());
+	}
+	
+	@Test
+	public void deserializesFromV1ObjectsByUpgrading() throws Exception {
+		byte[] serializedV1 = serializer.serializeToBytes(new TestPojoV1("foo"), 1);
+		
+		TestPojoV2 deserializedPojo = serializer.deserialize(ByteBuffer.wrap(serializedV1), TestPojoV2.class, 1);
+		assertEquals("foo", deserializedPojo.getFoo());
+		assertEquals("defaultBar", deserializedPojo.getBar());
+	}
+	
+	@Test
+	public void serializesToV1ObjectsByDowngrading() throws Exception {
+		Object serializedV1 = serializer.serialize(new TestPojoV2("foo", "bar"), 1); // bar will be removed during serialization
+		
+		TestPojoV2 deserializedPojo = serializer.deserialize(serializedV1, TestPojoV2.class, 2);
+		assertEquals("foo", deserializedPojo.getFoo());
+		assertNull(deserializedPojo.getBar());
+	}
+	
+	@Test
+	public void skipsFieldsUnknownToTheTargetType() throws Exception {
+		Object serialized = serializer.serialize(new TestPojoV2("foo", "bar"), 2);
+		
+		TestPojoV1 deserializedPojo = serializer.deserialize(serialized, TestPojoV1.class, 2);
+		assertEquals("foo", deserializedPojo.getFoo());
+	}
+	
+	@Test
+	public void deserializesFromStreams() throws Exception {
+		String longFoo = String.join("", Collections.nCopies(100, "foo"));
+		byte[] serialized = serializer.serializeToBytes(new TestPojoV2(longFoo, "bar"), 2);
+		InputStream streamOfUnknownLength = new FilterInputStream(new ByteArrayInputStream(serialized)) {
+			@Override
+			public int available() {
+				return 0;
+			}
+		};
+		
+		assertEquals(longFoo, serializer.<TestPojoV2>deserialize(new ByteArrayInputStream(serialized), TestPojoV2.class, 2).getFoo());
+		assertEquals(longFoo, serializer.<TestPojoV2>deserialize(streamOfUnknownLength, TestPojoV2.class, 2).getFoo());
+	}
+	
+	@Test
+	@SuppressWarnings("serial")
+	public void serializesAllValueTypes() throws Exception {
+		List<ValuesPojo> values = new ArrayList<>();
+		values.add(ValuesPojo.create(Integer.MIN_VALUE, Long.MAX_VALUE, -1.5d, 2.5f, "åäö €"));
+		values.add(ValuesPojo.create(300, -300L, Double.MAX_VALUE, Float.MIN_VALUE, null));
+		Type listType = new TypeToken<List<ValuesPojo>>() {}.getType();
+		serializer.prepareType(listType);
+		
+		List<ValuesPojo> deserialized = serializer.deserialize(serializer.serialize(values, 2), listType, 2);
+		
+		assertEquals(2, deserialized.size());
+		for (int i = 0; i < values.size(); i++) {
+			ValuesPojo expected = values.get(i);
+			ValuesPojo actual = deserialized.get(i);
+			assertEquals(expected.intValue, actual.intValue);
+			assertEquals(expected.longValue, actual.longValue);
+			assertEquals(expected.doubleValue, actual.doubleValue, 0d);
+			assertEquals(expected.floatValue, actual.floatValue, 0f);
+			assertEquals(expected.text, actual.text);
+			assertEquals(expected.decimal, actual.decimal);
+			assertEquals(expected.bigInteger, actual.bigInteger);
+			assertEquals(expected.flag, actual.flag);
+			assertArrayEquals(expected.bytes, actual.bytes);
+			assertEquals(expected.counts, actual.counts);
+			assertEquals("foo", actual.pojos.get(1).getFoo());
+		}
+	}
+	
+	public static class TestBinarySerializerConfigurer implements TaggedBinaryObjectSerializerConfigurer {
+
+		@Override
+		public List<? extends AstrixJsonApiMigration> apiMigrations() {
+			return Arrays.asList(new TestPojoV1ToV2Migration());
+		}
+
+		@Override
+		public void configure(JacksonObjectMapperBuilder objectMapperBuilder) {
+		}
+	}
+	
+	public static class ValuesPojo {
+		public int intValue;
+		public long longValue;
+		public double doubleValue;
+		public float floatValue;
+		public String text;
+		public BigDecimal decimal;
+		public BigInteger bigInteger;
+		public boolean flag;
+		public byte[] bytes;
+		public Map<String, Integer> counts;
+		public List<TestPojoV2> pojos;
+		
+		static ValuesPojo create(int intValue, long longValue, double doubleValue, float floatValue, String text) {
+			ValuesPojo result = new ValuesPojo();
+			result.intValue = intValue;
+			result.longValue = longValue;
+			result.doubleValue = doubleValue;
+			result.floatValue = floatValue;
+			result.text = text;
+			result.decimal = new BigDecimal("-1234567890.0987654321");
+			result.bigInteger = BigInteger.valueOf(Long.MIN_VALUE).multiply(BigInteger.TEN);
+			result.flag = intValue > 0;
+			result.bytes = new byte[] { 0, 1, -1, 127, -128 };
+			result.counts = new LinkedHashMap<>();
+			result.counts.put("a", 1);
+			result.counts.put("b", -1);
+			result.pojos = Arrays.asList(new TestPojoV2("foo", "bar"), new TestPojoV2("foo", null));
+			return result;
+		}
+	}
+
+}
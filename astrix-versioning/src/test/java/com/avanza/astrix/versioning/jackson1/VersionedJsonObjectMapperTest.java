@@ -118,6 +118,25 @@ public class VersionedJsonObjectMapperTest {
 		assertEquals("defaultBar", deserializedPojos.get(0).getBar());
 	}
 	
+	@Test
+	@SuppressWarnings("serial")
+	public void deserializesPreparedTypesOnAllVersions() throws Exception {
+		apiMigrations.add(new TestPojoV1ToV2Migration());
+		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(apiMigrations);
+		VersionedJsonObjectMapper objectMapper = objectMapperBuilder.build();
+		TypeToken<List<TestPojoV2>> genericListType = new TypeToken<List<TestPojoV2>>() {};
+		objectMapper.prepare(genericListType.getType(), 2);
+		
+		List<TestPojoV1> testPojos = new ArrayList<>();
+		testPojos.add(new TestPojoV1("p1"));
+		List<TestPojoV2> v1Pojos = objectMapper.deserialize(objectMapper.serialize(testPojos, 1), genericListType.getType(), 1);
+		assertEquals("defaultBar", v1Pojos.get(0).getBar());
+		
+		List<TestPojoV2> v2Pojos = objectMapper.deserialize(objectMapper.serialize(v1Pojos, 2), genericListType.getType(), 2);
+		assertEquals("p1", v2Pojos.get(0).getFoo());
+		assertEquals("defaultBar", v2Pojos.get(0).getBar());
+	}
+	
 	private final class TestPojoV1ToV2Migration implements AstrixJsonApiMigration {
 		@Override
 		public AstrixJsonMessageMigration<?>[] getMigrations() {